@@ -41,6 +41,14 @@ public class Experiments {
             edgeStream = makeSimpleTemporalEdgeStream.getVertexPartitionedStream(
                     env, numberOfPartitions, filepath,
                     Integer.parseInt(numberOfVertices), Integer.parseInt(numberOfEdges), false);
+        } else if (edgeOrVertexPartitioner.equals("parallelVertex")) {
+            // Fennel in all subtasks, sharing their assignments every 1000 vertices.
+            edgeStream = makeSimpleTemporalEdgeStream.getVertexPartitionedStream(
+                    env, numberOfPartitions, filepath,
+                    Integer.parseInt(numberOfVertices), Integer.parseInt(numberOfEdges), false, false, 1000);
+        } else if (edgeOrVertexPartitioner.equals("hdrf") || edgeOrVertexPartitioner.equals("2ps")) {
+            edgeStream = makeSimpleTemporalEdgeStream.getEdgePartitionedStream(
+                    env, numberOfPartitions, filepath, false, false, edgeOrVertexPartitioner);
         } else {
             edgeStream = makeSimpleTemporalEdgeStream.getEdgePartitionedStream(
                     env, numberOfPartitions, filepath, false);
@@ -69,17 +77,19 @@ public class Experiments {
                                     String activeOrLazyPurging,
                                     String parallelism,
                                     String windowSize,
-                                    String slideSize) {
+                                    String slideSize,
+                                    String maxOutOfOrderness,
+                                    String topologyOnly) {
         System.out.println("Experiment2: batchSize " + batchSizePerPU + ", " + datastructure + ", " + activeOrLazyPurging
                 + " purging, run" + runNumber + ", parallelism "+parallelism+", windowsize "+windowSize+", slide "+slideSize
-        +", file "+filepath.split("/")[filepath.split("/").length -1]);
+        +", file "+filepath.split("/")[filepath.split("/").length -1]+", topologyOnly "+topologyOnly);
         int numberOfPartitions = Integer.parseInt(parallelism);
         System.out.println("Started job at: \t" + System.currentTimeMillis());
         StreamExecutionEnvironment env = StreamExecutionEnvironment.getExecutionEnvironment();
         env.setParallelism(numberOfPartitions);
         env.setStreamTimeCharacteristic(TimeCharacteristic.ProcessingTime);
         SimpleTemporalEdgeStream edgeStream = makeSimpleTemporalEdgeStream.getEdgePartitionedStream(
-                env, numberOfPartitions, filepath, false);
+                env, numberOfPartitions, filepath, false, Boolean.parseBoolean(topologyOnly));
         env.setParallelism(numberOfPartitions);
         QueryState QS = new QueryState();
         // Change window/slide to fit dataset. System exits/closes when all data has been loaded in state, so not
@@ -90,9 +100,22 @@ public class Experiments {
         } else {
             slide = Long.parseLong(slideSize);
         }
-        GraphState GS = edgeStream.buildState(QS, datastructure, Long.parseLong(windowSize), slide,
-                numberOfPartitions, (activeOrLazyPurging.equals("lazy")), Integer.parseInt(batchSizePerPU),
-                null);
+        GraphState GS;
+        if(maxOutOfOrderness.equals("null")) {
+            GS = edgeStream.buildState(QS, datastructure, Long.parseLong(windowSize), slide,
+                    numberOfPartitions, (activeOrLazyPurging.equals("lazy")), Integer.parseInt(batchSizePerPU),
+                    null);
+        } else {
+            // Event time, batches follow the timestamps in the third column of the input file.
+            GS = edgeStream.buildState(QS, datastructure, Long.parseLong(windowSize), slide,
+                    numberOfPartitions, (activeOrLazyPurging.equals("lazy")), Integer.parseInt(batchSizePerPU),
+                    null, Long.parseLong(maxOutOfOrderness));
+        }
+        if(datastructure.equals("incrementalTC")) {
+            // The incremental strategy keeps its triangle count up to date and outputs it every slide. It is a
+            // single-partition baseline for the triangle counting algorithms, so it needs numberOfPartitions 1.
+            GS.getAlgorithmOutput().print();
+        }
         try {
             env.execute();
         } catch (Exception e) {
@@ -109,10 +132,14 @@ public class Experiments {
                                     String numberOfVertices,
                                     String numberOfEdges,
                                     String fullyDecoupled,
-                                    String parallelism) {
+                                    String parallelism,
+                                    String probePushDown,
+                                    String bloomFilterEdges,
+                                    String algorithmParallelism) {
         System.out.println("Experiment3: granularity " + algorithmGranularity + ", " + edgeOrVertexPartitioner +
                 "partitioned, caching " + withCaching + ", QS batchsize "+QSbatchSize+", run " + runNumber +
-                ", fullyDecoupled " + fullyDecoupled+", number of edges "+numberOfEdges);
+                ", fullyDecoupled " + fullyDecoupled+", number of edges "+numberOfEdges+", probePushDown "+probePushDown+
+                ", bloomFilterEdges "+bloomFilterEdges+", algorithmParallelism "+algorithmParallelism);
         int numberOfPartitions = Integer.parseInt(parallelism);
         System.out.println("Started job at: \t" + System.currentTimeMillis());
 
@@ -133,14 +160,21 @@ public class Experiments {
             edgeStream = makeSimpleTemporalEdgeStream.getEdgePartitionedStream(
                     env, numberOfPartitions, filepath, true);
             edgeStream = edgeStream.undirected();
-            alg = new TriangleCountingALRetrieveAllState();
+            if (algorithmGranularity.equals("intersection")) {
+                alg = new TriangleCountingALSortedIntersection(Integer.parseInt(algorithmParallelism));
+            } else {
+                alg = new TriangleCountingALRetrieveAllState(Integer.parseInt(algorithmParallelism));
+            }
         } else if (edgeOrVertexPartitioner.equals("vertex")) {
             edgeStream = makeSimpleTemporalEdgeStream.getVertexPartitionedStream(
                     env, numberOfPartitions, filepath, Integer.parseInt(numberOfVertices),
                     Integer.parseInt(numberOfEdges), true);
             switch (algorithmGranularity) {
                 case "state":
-                    alg = new TriangleCountingALRetrieveAllState();
+                    alg = new TriangleCountingALRetrieveAllState(Integer.parseInt(algorithmParallelism));
+                    break;
+                case "intersection":
+                    alg = new TriangleCountingALSortedIntersection(Integer.parseInt(algorithmParallelism));
                     break;
                 case "edge":
                     alg = new TriangleCountingALRetrieveEdge(
@@ -154,6 +188,12 @@ public class Experiments {
         }
 
         QueryState QS = new QueryState();
+        if (probePushDown.equals("true")) {
+            QS.enableProbePushDown();
+        }
+        if (Long.parseLong(bloomFilterEdges) > 0) {
+            QS.enableEdgeBloomFilter(Long.parseLong(bloomFilterEdges), 0.01);
+        }
         GraphState GS;
         assert edgeStream != null;
         if (fullyDecoupled.equals("true")) {
@@ -192,10 +232,12 @@ public class Experiments {
                                     String repeats,
                                     String windowSize,
                                     String slide,
-                                    String withQS) throws UnknownHostException {
+                                    String withQS,
+                                    String algorithmParallelism) throws UnknownHostException {
         System.out.println("Experiment 5: caching " + withCaching + ", QS batchsize "+QSbatchSize+", run " + runNumber +
                 ", fullyDecoupled " + fullyDecoupled + ", output each " + timeToRun + ", repeat output times "+ repeats +
-                " , windowSize "+windowSize+" , slide "+slide+", withQS "+withQS+", number of edges "+numberOfEdges);
+                " , windowSize "+windowSize+" , slide "+slide+", withQS "+withQS+", number of edges "+numberOfEdges+
+                ", algorithmParallelism "+algorithmParallelism);
         int numberOfPartitions = Integer.parseInt(parallelism);
         System.out.println("Started job at: \t" + System.currentTimeMillis());
 
@@ -212,7 +254,8 @@ public class Experiments {
         SimpleTemporalEdgeStream edgeStream = makeSimpleTemporalEdgeStream.getVertexPartitionedStream(
                 env, numberOfPartitions, filepath, Integer.parseInt(numberOfVertices), Integer.parseInt(numberOfEdges), true);
         Algorithm alg = new EstimateTrianglesAL(Integer.parseInt(QSbatchSize), withCaching.equals("true"),
-                Long.parseLong(timeToRun), Integer.parseInt(repeats), withQS.equals("true"));
+                Long.parseLong(timeToRun), Integer.parseInt(repeats), withQS.equals("true"),
+                Integer.parseInt(algorithmParallelism));
 
         QueryState QS = new QueryState();
         GraphState GS;
@@ -299,7 +342,12 @@ public class Experiments {
                     parallelism = args[6];
                     String windowSize = args[7];
                     String slideSize = args[8];
-                    Experiment2(batchSizePerPU, runNumber, filepath, datastructure, activeOrLazyPurging, parallelism, windowSize, slideSize);
+                    // Optional: max out of orderness in ms to build the state in event time, "null" for processing time.
+                    String maxOutOfOrderness = args.length > 9 ? args[9] : "null";
+                    // Optional: "true" to stream topology-only edges without properties.
+                    String topologyOnly = args.length > 10 ? args[10] : "false";
+                    Experiment2(batchSizePerPU, runNumber, filepath, datastructure, activeOrLazyPurging, parallelism,
+                            windowSize, slideSize, maxOutOfOrderness, topologyOnly);
                     break;
 
                 // Test behaviour of exact triangle counting algorithms on full state. First load all elements in AL, then
@@ -318,8 +366,16 @@ public class Experiments {
                     numberOfEdges = args[8];
                     String fullyDecoupled = args[9];
                     parallelism = args[10];
+                    // Optional: answer the edge probes inside the remote tasks instead of fetching their state.
+                    String probePushDown = args.length > 11 ? args[11] : "false";
+                    // Optional: expected number of edges a partition gets per batch (per slide), > 0 to skip probes
+                    // the remote edge bloom filters rule out.
+                    String bloomFilterEdges = args.length > 12 ? args[12] : "0";
+                    // Optional: threads per partition for the state and intersection algorithms.
+                    String algorithmParallelism = args.length > 13 ? args[13] : "1";
                     Experiment3(algorithmGranularity, edgeOrVertexPartitioner, withCaching, QSbatchSize,
-                                filepath, runNumber, numberOfVertices, numberOfEdges, fullyDecoupled, parallelism);
+                                filepath, runNumber, numberOfVertices, numberOfEdges, fullyDecoupled, parallelism,
+                                probePushDown, bloomFilterEdges, algorithmParallelism);
                     break;
 
                 // Experiment 4: use 3, but focus on reported the memory usage. Get these from web interface of flink
@@ -340,8 +396,10 @@ public class Experiments {
                     windowSize = args[11];
                     slideSize = args[12];
                     String withQS = args[13];
+                    // Optional: threads per partition that sample at the same time.
+                    algorithmParallelism = args.length > 14 ? args[14] : "1";
                     Experiment5(withCaching, QSbatchSize, filepath, runNumber, numberOfVertices, numberOfEdges, fullyDecoupled,
-                            parallelism, timeToRun, repeats, windowSize, slideSize, withQS);
+                            parallelism, timeToRun, repeats, windowSize, slideSize, withQS, algorithmParallelism);
                     break;
             }
         }
@@ -7,7 +7,6 @@ import gellyStreaming.gradoop.model.QueryState;
 import gellyStreaming.gradoop.model.SimpleTemporalEdgeStream;
 import gellyStreaming.gradoop.partitioner.*;
 import gellyStreaming.gradoop.util.GradoopIdUtil;
-import gellyStreaming.gradoop.util.HelpState;
 import gellyStreaming.gradoop.util.PartitionEdges;
 import gellyStreaming.gradoop.util.makeSimpleTemporalEdgeStream;
 import org.apache.flink.api.common.JobExecutionResult;
@@ -183,43 +182,6 @@ public class Tests {
         }
     }
 
-    public static void makeAL() throws Exception {
-        //StreamExecutionEnvironment env = StreamExecutionEnvironment.getExecutionEnvironment();
-        //env.setParallelism(1);
-        //DataStream<Edge<Long, String>> edgeDataStream = getMovieEdges2(env, "src/main/resources/email-Eu-core.txt");
-        //FennelPartitioner fennelPartitioner = new FennelPartitioner();
-        //HashMap<Long, HashSet<Long>> state = fennelPartitioner.AL4(edgeDataStream);
-        //System.out.println(state.toString());
-        HelpState state = new HelpState(true);
-        //FileReader fr = new FileReader("src/main/resources/email-Eu-core.txt");
-        FileReader fr = new FileReader("src/main/resources/Cit-HepPh.txt");
-        BufferedReader br = new BufferedReader(fr);
-        String line;
-        int counter = 0;
-        while((line = br.readLine())!= null) {
-            String[] fields = line.split("\\s");
-            long src = Long.parseLong(fields[0]);
-            long trg = Long.parseLong(fields[1]);
-            state.addEdge(src, trg);
-            System.out.println("We read "+counter++ +" edges");
-        }
-        br.close();
-        fr.close();
-
-        HashMap<Long, HashSet<Long>> stateFinal = state.returnState();
-
-        File output = new File("resources/AL/Cit-HepPh");
-        try (BufferedWriter bf = new BufferedWriter(new FileWriter(output))) {
-            for (long src : stateFinal.keySet()) {
-                bf.write( src + ":" + Arrays.toString(stateFinal.get(src).toArray()) );
-                bf.newLine();
-            }
-            bf.flush();
-        } catch (IOException e) {
-            e.printStackTrace();
-        }
-    }
-
     public static void testVertexPartitioner() throws Exception {
         StreamExecutionEnvironment env = StreamExecutionEnvironment.getExecutionEnvironment();
         FennelPartitioning fennel = new FennelPartitioning();
@@ -412,7 +374,6 @@ public class Tests {
         //countTriangles2();
         //builtState();
         //testBuildingState();
-        //makeAL();
         //testVertexPartitioner();
         //vertexBasedTriangleCounting();
         //testDecoupled();
@@ -16,8 +16,9 @@ public class TotalSizeALState implements Algorithm<String, MapState<Long, HashMa
         AtomicInteger counter = new AtomicInteger(0);
         try {
             for(Long timestamp: localState.keys()) {
-                for(GradoopId id : localState.get(timestamp).keySet()) {
-                    counter.getAndAdd(localState.get(timestamp).get(id).keySet().size());
+                HashMap<GradoopId, HashMap<GradoopId, TemporalEdge>> batch = localState.get(timestamp);
+                for(GradoopId id : batch.keySet()) {
+                    counter.getAndAdd(batch.get(id).keySet().size());
                 }
             }
         } catch (Exception e) {
@@ -1,16 +1,16 @@
 package gellyStreaming.gradoop.algorithms;
 
 import gellyStreaming.gradoop.util.GradoopIdUtil;
+import gellyStreaming.gradoop.util.ParallelRange;
 import gellyStreaming.gradoop.model.QueryState;
 import org.apache.flink.api.common.JobID;
 import org.apache.flink.api.common.state.MapState;
 import org.gradoop.common.model.impl.id.GradoopId;
 import org.gradoop.temporal.model.impl.pojo.TemporalEdge;
 
-import java.util.ConcurrentModificationException;
 import java.util.HashMap;
 import java.util.Set;
-import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicLong;
 
@@ -18,6 +18,17 @@ import java.util.concurrent.atomic.AtomicLong;
 // Working triangle counting alg for both edge & fennel partitioner, which retrieves entire remote states.
 public class TriangleCountingALRetrieveAllState implements Algorithm<String, MapState<Long, HashMap<GradoopId, HashMap<GradoopId, TemporalEdge>>>> {
 
+    // Threads counting the triangles of this partition, see ParallelRange.
+    private final int parallelism;
+
+    public TriangleCountingALRetrieveAllState() {
+        this(1);
+    }
+
+    public TriangleCountingALRetrieveAllState(int parallelism) {
+        this.parallelism = parallelism;
+    }
+
     @Override
     public String doAlgorithm(MapState<Long, HashMap<GradoopId, HashMap<GradoopId, TemporalEdge>>> localState,
                                QueryState QS, Integer localKey, Integer[] allKeys, long from, long maxValidTo) throws InterruptedException {
@@ -28,48 +39,26 @@ public class TriangleCountingALRetrieveAllState implements Algorithm<String, Map
         HashMap<GradoopId, HashMap<GradoopId, TemporalEdge>> localAdjacencyList = new HashMap<>();
         // First retrieve local state.
         if(localState == null) {
-            int tries = 0;
-            while(tries < 10) {
-                try {
-                    long start = System.currentTimeMillis();
-                    localState = QS.getALState(localKey);
-                    long stop = System.currentTimeMillis();
-                    QStimer.getAndAdd((stop - start));
-                    break;
-                } catch (ConcurrentModificationException e) {
-                    try {
-                        Thread.sleep(1000);
-                    } catch (InterruptedException ex) {
-                        ex.printStackTrace();
-                    }
-                    tries++;
-                    if (tries >= 10) {
-                        try {
-                            e.getCause();
-                            throw new Exception("We tried to get state 10 times, but failed. "+e);
-                        } catch (Exception ex) {
-                            ex.printStackTrace();
-                        }
-                    }
-                } catch(Exception e) {
-                    tries++;
-                    if(tries>= 10) {
-                        System.out.println("Error retrieving state. " + e );
-                        e.printStackTrace();
-                    }
-                }
+            try {
+                long start = System.currentTimeMillis();
+                localState = QS.getALStateAsync(localKey).get();
+                long stop = System.currentTimeMillis();
+                QStimer.getAndAdd((stop - start));
+            } catch (ExecutionException e) {
+                System.out.println("Error retrieving state. " + e.getCause());
+                e.printStackTrace();
             }
-
         }
         assert localState!= null;
         try {
             for(long timestamp: localState.keys()) {
                 if(timestamp <= maxValidTo && timestamp>= from) {
-                    for (GradoopId src : localState.get(timestamp).keySet()) {
+                    HashMap<GradoopId, HashMap<GradoopId, TemporalEdge>> batch = localState.get(timestamp);
+                    for (GradoopId src : batch.keySet()) {
                         if (!localAdjacencyList.containsKey(src)) {
                             localAdjacencyList.put(src, new HashMap<>());
                         }
-                        localAdjacencyList.get(src).putAll(localState.get(timestamp).get(src));
+                        localAdjacencyList.get(src).putAll(batch.get(src));
                     }
                 }
             }
@@ -77,104 +66,79 @@ public class TriangleCountingALRetrieveAllState implements Algorithm<String, Map
             e.printStackTrace();
         }
         // Get rest of states.
-        for(int key : allKeys) {
-            if(key != localKey) {
-                int tries = 0;
-                int maxTries = 10;
-                while(tries < maxTries) {
-                    try {
-                        long start = System.currentTimeMillis();
-                        MapState<Long, HashMap<GradoopId, HashMap<GradoopId, TemporalEdge>>> tempState =
-                                QS.getALState(key);
-                        long stop = System.currentTimeMillis();
-                        QStimer.getAndAdd((stop-start));
-                        for (Long timestamp : tempState.keys()) {
-                            if (timestamp <= maxValidTo && timestamp >= from) {
-                                for(GradoopId src : tempState.get(timestamp).keySet()) {
-                                    if (!localAdjacencyList.containsKey(src)) {
-                                        localAdjacencyList.put(src, new HashMap<>());
-                                    }
-                                    localAdjacencyList.get(src).putAll(tempState.get(timestamp).get(src));
-                                }
-                            }
-                        }
-                        tries = maxTries;
-                    } catch (ConcurrentModificationException e) {
-                        try {
-                            Thread.sleep(1000);
-                        } catch (InterruptedException ignored) { }
-                        tries++;
-                        if (tries >= maxTries) {
-                            try {
-                                e.getCause();
-                                throw new Exception("We tried to get state " + maxTries + " times, but failed. "+e);
-                            } catch (Exception ex) {
-                                ex.printStackTrace();
-                            }
-                        }
-
-                    } catch (Exception e) {
-                        tries++;
-                        Thread.sleep(10);
-                        if (tries >= maxTries) {
-                            try {
-                                e.getCause();
-                                throw new Exception("We tried to get state " + maxTries + " times, but failed. "+e);
-                            } catch (Exception ex) {
-                                ex.printStackTrace();
+        // All remote states are requested at once and merged in as they come in.
+        long start = System.currentTimeMillis();
+        QS.fanOut(localKey, allKeys, QS::getALStateAsync, (key, tempState) -> {
+            try {
+                for (Long timestamp : tempState.keys()) {
+                    if (timestamp <= maxValidTo && timestamp >= from) {
+                        HashMap<GradoopId, HashMap<GradoopId, TemporalEdge>> batch = tempState.get(timestamp);
+                        for(GradoopId src : batch.keySet()) {
+                            if (!localAdjacencyList.containsKey(src)) {
+                                localAdjacencyList.put(src, new HashMap<>());
                             }
+                            localAdjacencyList.get(src).putAll(batch.get(src));
                         }
                     }
                 }
+            } catch (Exception e) {
+                e.printStackTrace();
             }
-        }
+        });
+        long stop = System.currentTimeMillis();
+        QStimer.getAndAdd((stop-start));
         // Iterate over vertex IDs and all pairs of its neighbours (which forms a wedge) and check if these
         // two neighbours are connected with an egde, which makes it a triangle.
         // Only count the triangles if the srcId < neighbour1 < neighbour2 to avoid duplicates.
         // Only start with vertices what, when used Modulo, are allocated to this partition.
         // This so each partition only check a non-overlapping part of the potential triangles.
-        AtomicInteger triangleCount = new AtomicInteger(0);
-        long currentsrcId = 0;
-        long allVertices = localAdjacencyList.keySet().size();
-        int percentage = 0;
-        for (GradoopId srcId : localAdjacencyList.keySet()) {
-            if(GradoopIdUtil.getModulo(srcId, localKey, allKeys)) {
-                Set<GradoopId> neighboursSet = localAdjacencyList.get(srcId).keySet();
-                GradoopId[] neighbours = neighboursSet.toArray(GradoopId[]::new);
-                for (int i = 0; i < neighbours.length; i++) {
-                    GradoopId neighbour1 = neighbours[i];
-                    if (neighbour1.compareTo(srcId) > 0) {
-                        for (int j = 0; j < neighbours.length; j++) {
-                            GradoopId neighbour2 = neighbours[j];
-                            if (i != j && neighbour2.compareTo(neighbour1) > 0) {
-                                AtomicBoolean triangle = new AtomicBoolean(false);
-                                if (localAdjacencyList.containsKey(neighbour1)) {
-                                    if (localAdjacencyList.get(neighbour1).containsKey(neighbour2)) {
-                                        triangle.set(true);
+        // Vertices are split over parallelism threads, each counting its own triangles.
+        GradoopId[] srcIds = localAdjacencyList.keySet().toArray(GradoopId[]::new);
+        long allVertices = srcIds.length;
+        AtomicLong currentsrcId = new AtomicLong(0);
+        AtomicInteger percentage = new AtomicInteger(0);
+        long triangleCount = ParallelRange.sum(parallelism, srcIds.length, (fromIndex, toIndex) -> {
+            long triangles = 0;
+            for (int index = fromIndex; index < toIndex; index++) {
+                GradoopId srcId = srcIds[index];
+                if(GradoopIdUtil.getModulo(srcId, localKey, allKeys)) {
+                    Set<GradoopId> neighboursSet = localAdjacencyList.get(srcId).keySet();
+                    GradoopId[] neighbours = neighboursSet.toArray(GradoopId[]::new);
+                    for (int i = 0; i < neighbours.length; i++) {
+                        GradoopId neighbour1 = neighbours[i];
+                        if (neighbour1.compareTo(srcId) > 0) {
+                            for (int j = 0; j < neighbours.length; j++) {
+                                GradoopId neighbour2 = neighbours[j];
+                                if (i != j && neighbour2.compareTo(neighbour1) > 0) {
+                                    boolean triangle = false;
+                                    if (localAdjacencyList.containsKey(neighbour1)) {
+                                        if (localAdjacencyList.get(neighbour1).containsKey(neighbour2)) {
+                                            triangle = true;
+                                        }
                                     }
-                                }
-                                if (!triangle.get() && localAdjacencyList.containsKey(neighbour2)) {
-                                    if (localAdjacencyList.get(neighbour2).containsKey(neighbour1)) {
-                                        triangle.set(true);
+                                    if (!triangle && localAdjacencyList.containsKey(neighbour2)) {
+                                        if (localAdjacencyList.get(neighbour2).containsKey(neighbour1)) {
+                                            triangle = true;
+                                        }
+                                    }
+                                    if (triangle) {
+                                        triangles++;
                                     }
-                                }
-                                if (triangle.get()) {
-                                    triangleCount.getAndIncrement();
                                 }
                             }
                         }
                     }
                 }
+                int newper = (int) (currentsrcId.incrementAndGet() * 100 / allVertices);
+                int oldper = percentage.get();
+                if (newper > oldper && percentage.compareAndSet(oldper, newper)) {
+                    System.out.println("At "+newper+"%");
+                }
             }
-            currentsrcId++;
-            int newper;
-            if((newper = (int)(currentsrcId/allVertices*100.)) > percentage) {
-                percentage = newper;
-                System.out.println("At "+percentage+"%");
-            }
-        }
+            return triangles;
+        });
         System.out.println("Time spend on QS in partition \t"+localKey+"\t:\t"+QStimer.get());
-        return "In partition "+localKey+" we found "+triangleCount.get()+" triangles ";
+        return "In partition "+localKey+" we found "+triangleCount+" triangles ";
     }
 
 
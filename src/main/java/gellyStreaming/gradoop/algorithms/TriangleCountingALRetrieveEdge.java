@@ -1,5 +1,6 @@
 package gellyStreaming.gradoop.algorithms;
 
+import gellyStreaming.gradoop.util.EdgeBloomFilter;
 import gellyStreaming.gradoop.util.GradoopIdUtil;
 import gellyStreaming.gradoop.model.QueryState;
 import gellyStreaming.gradoop.partitioner.FennelPartitioning;
@@ -13,6 +14,7 @@ import java.io.Serializable;
 import java.net.UnknownHostException;
 import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicLong;
@@ -43,45 +45,39 @@ public class TriangleCountingALRetrieveEdge implements Algorithm<String, MapStat
         AtomicLong QStimer = new AtomicLong(0);
 
         HashMap<GradoopId, HashMap<GradoopId, TemporalEdge>> localAdjacencyList = new HashMap<>();
-        int tries1 = 0;
         // If fully decoupled, we first need to retrieve the 'local'state.
-        while (localState == null && tries1 < 10) {
+        if (localState == null) {
             try {
                 long start = System.currentTimeMillis();
-                localState = QS.getALState(localKey);
+                localState = QS.getALStateAsync(localKey).get();
                 long stop = System.currentTimeMillis();
                 QStimer.getAndAdd((stop - start));
-                break;
-            } catch (ConcurrentModificationException e) {
-                try {
-                    Thread.sleep(1000);
-                } catch (InterruptedException ignored) { }
-                tries1++;
-                if (tries1 >= 10) {
-                    System.out.println("Error retrieving state. " + e);
-                }
-            } catch (Exception e) {
-                tries1++;
-                if (tries1 >= 10) {
-                    System.out.println("Error retrieving state. " + e);
-                }
+            } catch (ExecutionException e) {
+                System.out.println("Error retrieving state. " + e.getCause());
             }
         }
         // Take relevant timestamps & put them in a single hashmap
         try {
             for (long timestamp : localState.keys()) {
                 if (timestamp >= from && timestamp <= maxValidTo) {
-                    for (GradoopId src : localState.get(timestamp).keySet()) {
+                    HashMap<GradoopId, HashMap<GradoopId, TemporalEdge>> batch = localState.get(timestamp);
+                    for (GradoopId src : batch.keySet()) {
                         if (!localAdjacencyList.containsKey(src)) {
                             localAdjacencyList.put(src, new HashMap<>());
                         }
-                        localAdjacencyList.get(src).putAll(localState.get(timestamp).get(src));
+                        localAdjacencyList.get(src).putAll(batch.get(src));
                     }
                 }
             }
         } catch (Exception e) {
             e.printStackTrace();
         }
+        // If the remote partitions keep edge bloom filters, an edge none of the filters knows is in none of them
+        // and doesn't need to be probed. Null means every edge has to be probed.
+        long filterStart = System.currentTimeMillis();
+        EdgeBloomFilter[] remoteEdges = QS.getEdgeBloomFilterAllPartitions(localKey, allKeys);
+        QStimer.getAndAdd(System.currentTimeMillis() - filterStart);
+        AtomicLong skippedProbes = new AtomicLong(0);
         // Iterate over vertex IDs and all pairs of its neighbours (which forms a wedge) and check if these
         // two neighbours are connected with an egde, which makes it a triangle.
         // Only count the triangles if the srcId < neighbour1 < neighbour2 to avoid duplicates.
@@ -125,6 +121,11 @@ public class TriangleCountingALRetrieveEdge implements Algorithm<String, MapStat
                                 triangleCount.getAndIncrement();
                             }
                             if (!triangle.get()  && !localAdjacencyList.containsKey(neighbour1) &&
+                                    !localAdjacencyList.containsKey(neighbour2) && remoteEdges != null &&
+                                    !EdgeBloomFilter.mightContainAny(remoteEdges, GradoopIdUtil.toLong(neighbour1),
+                                            GradoopIdUtil.toLong(neighbour2))) {
+                                skippedProbes.getAndIncrement();
+                            } else if (!triangle.get()  && !localAdjacencyList.containsKey(neighbour1) &&
                                     !localAdjacencyList.containsKey(neighbour2)) {
                                 QSqueue.f0.add(neighbour1);
                                 QSqueue.f1.add(neighbour2);
@@ -132,51 +133,24 @@ public class TriangleCountingALRetrieveEdge implements Algorithm<String, MapStat
                                 if (QSqueueSize.get() > QSbatchsize) {
                                     LinkedList<GradoopId> listSrc = QSqueue.f0;
                                     LinkedList<GradoopId> listTrg = QSqueue.f1;
-                                    for (int partitionToQuery : allKeys) {
-                                        if (partitionToQuery != localKey) {
-                                            int tries = 0;
-                                            while (tries < 10) {
-                                                try {
-                                                    long start = System.currentTimeMillis();
-                                                    Boolean[] temp = QS.ALcontainsEdgesFromTo(
-                                                            partitionToQuery, listSrc, listTrg, from, maxValidTo);
-                                                    long stop = System.currentTimeMillis();
-                                                    QStimer.getAndAdd((stop - start));
-                                                    for (int k = temp.length-1; k > -1; k--) {
-                                                        if (temp[k]!= null && temp[k]) {
-                                                            if (caching) {
-                                                                if (!cache.containsKey(listSrc.get(k))) {
-                                                                    cache.put(listSrc.get(k), new HashSet<>());
-                                                                }
-                                                                cache.get(listSrc.get(k)).add(listTrg.get(k));
-                                                            }
-                                                            triangleCount.getAndIncrement();
-                                                            listSrc.remove(k);
-                                                            listTrg.remove(k);
-                                                        } else if(temp[k]!= null && !temp[k]) {
-                                                            listSrc.remove(k);
-                                                            listTrg.remove(k);
-                                                        }
-                                                    }
-                                                    break;
-                                                } catch (ConcurrentModificationException e) {
-                                                    try {
-                                                        Thread.sleep(1000);
-                                                    } catch (InterruptedException ignored) { }
-                                                    tries++;
-                                                    if (tries >= 10) {
-                                                        System.out.println("Error retrieving state. " + e);
-                                                    }
-                                                } catch (NullPointerException e) {
-                                                    e.printStackTrace();
-                                                } catch (Exception e) {
-                                                    tries++;
-                                                    Thread.sleep(10);
-                                                    if (tries >= 10) {
-                                                        System.out.print("ERROR, tried 10 times & failed using QS. " + e);
-                                                    }
+                                    long start = System.currentTimeMillis();
+                                    Boolean[] temp = QS.ALcontainsEdgesFromToAllPartitions(
+                                            localKey, allKeys, listSrc, listTrg, from, maxValidTo);
+                                    long stop = System.currentTimeMillis();
+                                    QStimer.getAndAdd((stop - start));
+                                    Iterator<GradoopId> srcIterator = listSrc.iterator();
+                                    Iterator<GradoopId> trgIterator = listTrg.iterator();
+                                    for (Boolean contains : temp) {
+                                        GradoopId querySrc = srcIterator.next();
+                                        GradoopId queryTrg = trgIterator.next();
+                                        if (contains != null && contains) {
+                                            if (caching) {
+                                                if (!cache.containsKey(querySrc)) {
+                                                    cache.put(querySrc, new HashSet<>());
                                                 }
+                                                cache.get(querySrc).add(queryTrg);
                                             }
+                                            triangleCount.getAndIncrement();
                                         }
                                     }
                                     QSqueueSize.set(0);
@@ -198,51 +172,23 @@ public class TriangleCountingALRetrieveEdge implements Algorithm<String, MapStat
         if (QSqueueSize.get() != 0) {
             LinkedList<GradoopId> listSrc = QSqueue.f0;
             LinkedList<GradoopId> listTrg = QSqueue.f1;
-            for (int partitionToQuery : allKeys) {
-                if (partitionToQuery != localKey) {
-                    int tries = 0;
-                    while (tries < 10) {
-                        try {
-                            long start = System.currentTimeMillis();
-                            Boolean[] temp = QS.ALcontainsEdgesFromTo(
-                                    partitionToQuery, listSrc, listTrg, from, maxValidTo);
-                            long stop = System.currentTimeMillis();
-                            QStimer.getAndAdd((stop - start));
-                            for (int k = temp.length-1; k > -1; k--) {
-                                if (temp[k]!= null && temp[k]) {
-                                    triangleCount.getAndIncrement();
-                                    listSrc.remove(k);
-                                    listTrg.remove(k);
-                                } else if(temp[k]!= null && !temp[k]) {
-                                    listSrc.remove(k);
-                                    listTrg.remove(k);
-                                }
-                            }
-                            break;
-                        } catch (NullPointerException e) {
-                            e.printStackTrace();
-                        } catch (ConcurrentModificationException e) {
-                            try {
-                                Thread.sleep(1000);
-                            } catch (InterruptedException ignored) { }
-                            tries++;
-                            if (tries >= 10) {
-                                System.out.println("Error retrieving state. " + e);
-                            }
-                        }catch (Exception e) {
-                            tries++;
-                            Thread.sleep(10);
-                            if (tries >= 10) {
-                                System.out.print("ERROR, tried 10 times & failed using QS. " + e);
-                            }
-                        }
-                    }
+            long start = System.currentTimeMillis();
+            Boolean[] temp = QS.ALcontainsEdgesFromToAllPartitions(
+                    localKey, allKeys, listSrc, listTrg, from, maxValidTo);
+            long stop = System.currentTimeMillis();
+            QStimer.getAndAdd((stop - start));
+            for (Boolean contains : temp) {
+                if (contains != null && contains) {
+                    triangleCount.getAndIncrement();
                 }
             }
         }
 
         String output = "In partition " + localKey + " we found " + triangleCount.get() + " triangles ";
         System.out.println("Time spend on QS in partition \t" + localKey + "\t:\t" + QStimer.get());
+        if (remoteEdges != null) {
+            System.out.println("Probes skipped by bloom filter in partition \t" + localKey + "\t:\t" + skippedProbes.get());
+        }
         //System.out.println(output);
         return output;
     }
@@ -1,5 +1,6 @@
 package gellyStreaming.gradoop.algorithms;
 
+import gellyStreaming.gradoop.util.EdgeBloomFilter;
 import gellyStreaming.gradoop.util.GradoopIdUtil;
 import gellyStreaming.gradoop.model.QueryState;
 import gellyStreaming.gradoop.partitioner.FennelPartitioning;
@@ -10,6 +11,7 @@ import org.gradoop.temporal.model.impl.pojo.TemporalEdge;
 
 import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicLong;
@@ -42,26 +44,14 @@ public class TriangleCountingALRetrieveVertex implements Algorithm<String, MapSt
         AtomicLong QStimer = new AtomicLong(0);
 
         // If local state = null, as is the case in the fully decoupled case, retrieve the state first.
-        int tries1 = 0;
-        while (localState == null && tries1 < 10) {
+        if (localState == null) {
             try {
                 long start = System.currentTimeMillis();
-                localState = QS.getALState(localKey);
+                localState = QS.getALStateAsync(localKey).get();
                 long stop = System.currentTimeMillis();
                 QStimer.getAndAdd((stop-start));
-            } catch (ConcurrentModificationException e) {
-                try {
-                    Thread.sleep(1000);
-                } catch (InterruptedException ignored) { }
-                tries1++;
-                if (tries1 >= 10) {
-                    System.out.println("Error retrieving state. " + e);
-                }
-            } catch (Exception e) {
-                tries1++;
-                if (tries1 >= 10) {
-                    System.out.println("Error retrieving state. " + e);
-                }
+            } catch (ExecutionException e) {
+                System.out.println("Error retrieving state. " + e.getCause());
             }
         }
 
@@ -71,17 +61,23 @@ public class TriangleCountingALRetrieveVertex implements Algorithm<String, MapSt
         try {
             for (long timestamp : localState.keys()) {
                 if (timestamp >= from && timestamp <= maxValidTo) {
-                    for (GradoopId src : localState.get(timestamp).keySet()) {
+                    HashMap<GradoopId, HashMap<GradoopId, TemporalEdge>> batch = localState.get(timestamp);
+                    for (GradoopId src : batch.keySet()) {
                         if (!localAdjacencyList.containsKey(src)) {
                             localAdjacencyList.put(src, new HashMap<>());
                         }
-                        localAdjacencyList.get(src).putAll(localState.get(timestamp).get(src));
+                        localAdjacencyList.get(src).putAll(batch.get(src));
                     }
                 }
             }
         } catch (Exception e) {
             e.printStackTrace();
         }
+        // Vertices are only retrieved for edges the remote bloom filters might have. Null means no filters.
+        long filterStart = System.currentTimeMillis();
+        EdgeBloomFilter[] remoteEdges = QS.getEdgeBloomFilterAllPartitions(localKey, allKeys);
+        QStimer.getAndAdd(System.currentTimeMillis() - filterStart);
+        AtomicLong skippedProbes = new AtomicLong(0);
         // Iterate over vertex IDs and all pairs of its neighbours (which forms a wedge) and check if these
         // two neighbours are connected with an egde, which makes it a triangle.
         // Only count the triangles if the srcId < neighbour1 < neighbour2 to avoid duplicates.
@@ -123,6 +119,12 @@ public class TriangleCountingALRetrieveVertex implements Algorithm<String, MapSt
                                 triangleCount.getAndIncrement();
                             }
                             if (!triangle.get() && !localAdjacencyList.containsKey(neighbour1) &&
+                                    !localAdjacencyList.containsKey(neighbour2) && !cache.containsKey(neighbour1)
+                                    && !cache.containsKey(neighbour2) && remoteEdges != null &&
+                                    !EdgeBloomFilter.mightContainAny(remoteEdges, GradoopIdUtil.toLong(neighbour1),
+                                            GradoopIdUtil.toLong(neighbour2))) {
+                                skippedProbes.getAndIncrement();
+                            } else if (!triangle.get() && !localAdjacencyList.containsKey(neighbour1) &&
                                     !localAdjacencyList.containsKey(neighbour2) && !cache.containsKey(neighbour1)
                                     && !cache.containsKey(neighbour2)) {
                                 // Retrieve the partition the neighbour is in from the fennel partitioner.
@@ -136,49 +138,22 @@ public class TriangleCountingALRetrieveVertex implements Algorithm<String, MapSt
                                     QSqueueSize.getAndIncrement();
                                     // If queue reaches size QSbatchsize, we go retrieve the requests.
                                     if (QSqueueSize.get() > QSbatchsize) {
-                                        for (int partitionToQuery : allKeys) {
-                                            if (partitionToQuery != localKey) {
-                                                GradoopId[] list = QSqueue.keySet().toArray(GradoopId[]::new);
-
-                                                int tries = 0;
-                                                while (tries < 10) {
-                                                    try {
-                                                        long start = System.currentTimeMillis();
-                                                        HashMap<GradoopId, HashMap<GradoopId, TemporalEdge>> temp = QS.getALVerticesFromTo(
-                                                                partitionToQuery, list, from, maxValidTo);
-                                                        long stop = System.currentTimeMillis();
-                                                        QStimer.getAndAdd((stop - start));
-                                                        for (GradoopId beenQueried : temp.keySet()) {
-                                                            if (caching) {
-                                                                if (!cache.containsKey(beenQueried)) {
-                                                                    cache.put(beenQueried, new HashMap<>());
-                                                                }
-                                                                cache.get(beenQueried).putAll(temp.get(beenQueried));
-                                                            }
-                                                            for (GradoopId potentialTriangle : QSqueue.get(beenQueried)) {
-                                                                if (temp.get(beenQueried).containsKey(potentialTriangle)) {
-                                                                    triangleCount.getAndIncrement();
-                                                                }
-                                                            }
-                                                            QSqueue.remove(beenQueried);
-                                                        }
-                                                        break;
-                                                        //} catch (NullPointerException ignored) {
-                                                    } catch (ConcurrentModificationException e) {
-                                                        try {
-                                                            Thread.sleep(1000);
-                                                        } catch (InterruptedException ignored) { }
-                                                        tries++;
-                                                        if (tries >= 10) {
-                                                            System.out.println("Error retrieving state. " + e);
-                                                        }
-                                                    } catch (Exception e) {
-                                                        tries++;
-
-                                                        if (tries >= 10) {
-                                                            System.out.println("ERROR, tried 10 times & failed using QS. " + e);
-                                                        }
-                                                    }
+                                        GradoopId[] list = QSqueue.keySet().toArray(GradoopId[]::new);
+                                        long start = System.currentTimeMillis();
+                                        HashMap<GradoopId, HashMap<GradoopId, TemporalEdge>> temp =
+                                                QS.getALVerticesFromToAllPartitions(localKey, allKeys, list, from, maxValidTo);
+                                        long stop = System.currentTimeMillis();
+                                        QStimer.getAndAdd((stop - start));
+                                        for (GradoopId beenQueried : temp.keySet()) {
+                                            if (caching) {
+                                                if (!cache.containsKey(beenQueried)) {
+                                                    cache.put(beenQueried, new HashMap<>());
+                                                }
+                                                cache.get(beenQueried).putAll(temp.get(beenQueried));
+                                            }
+                                            for (GradoopId potentialTriangle : QSqueue.get(beenQueried)) {
+                                                if (temp.get(beenQueried).containsKey(potentialTriangle)) {
+                                                    triangleCount.getAndIncrement();
                                                 }
                                             }
                                         }
@@ -199,47 +174,25 @@ public class TriangleCountingALRetrieveVertex implements Algorithm<String, MapSt
         }
         // Retrieved info doesn't need to be put in cache, because we won't use it again after.
         if (QSqueueSize.get() != 0) {
-            for (int partitionToQuery : allKeys) {
-                if (partitionToQuery != localKey) {
-                    GradoopId[] list = QSqueue.keySet().toArray(GradoopId[]::new);
-                    int tries = 0;
-                    while (tries < 10) {
-                        try {
-                            long start = System.currentTimeMillis();
-                            HashMap<GradoopId, HashMap<GradoopId, TemporalEdge>> temp = QS.getALVerticesFromTo(
-                                    partitionToQuery, list, from, maxValidTo);
-                            long stop = System.currentTimeMillis();
-                            QStimer.getAndAdd((stop - start));
-                            for (GradoopId beenQueried : temp.keySet()) {
-                                for (GradoopId potentialTriangle : QSqueue.get(beenQueried)) {
-                                    if (temp.get(beenQueried).containsKey(potentialTriangle)) {
-                                        triangleCount.getAndIncrement();
-                                    }
-                                }
-                                QSqueue.remove(beenQueried);
-                            }
-                            break;
-                            //} catch (NullPointerException ignored) {
-                        } catch (ConcurrentModificationException e) {
-                            try {
-                                Thread.sleep(1000);
-                            } catch (InterruptedException ignored) { }
-                            tries++;
-                            if (tries >= 10) {
-                                System.out.println("Error retrieving state. " + e);
-                            }
-                        } catch (Exception e) {
-                            tries++;
-                            if (tries >= 10) {
-                                System.out.println("ERROR, tried 10 times & failed using QS. " + e);
-                            }
-                        }
+            GradoopId[] list = QSqueue.keySet().toArray(GradoopId[]::new);
+            long start = System.currentTimeMillis();
+            HashMap<GradoopId, HashMap<GradoopId, TemporalEdge>> temp =
+                    QS.getALVerticesFromToAllPartitions(localKey, allKeys, list, from, maxValidTo);
+            long stop = System.currentTimeMillis();
+            QStimer.getAndAdd((stop - start));
+            for (GradoopId beenQueried : temp.keySet()) {
+                for (GradoopId potentialTriangle : QSqueue.get(beenQueried)) {
+                    if (temp.get(beenQueried).containsKey(potentialTriangle)) {
+                        triangleCount.getAndIncrement();
                     }
                 }
             }
         }
         String output = "In partition " + localKey + " we found " + triangleCount.get() + " triangles ";
         System.out.println("Time spend on QS in partition \t"+localKey+"\t:\t"+QStimer.get());
+        if (remoteEdges != null) {
+            System.out.println("Probes skipped by bloom filter in partition \t"+localKey+"\t:\t"+skippedProbes.get());
+        }
         //System.out.println(output);
         return output;
     }
@@ -0,0 +1,281 @@
+package gellyStreaming.gradoop.algorithms;
+
+import gellyStreaming.gradoop.model.PrimitiveAdjacencyList;
+import gellyStreaming.gradoop.model.QueryState;
+import gellyStreaming.gradoop.util.GradoopIdUtil;
+import gellyStreaming.gradoop.util.ParallelRange;
+import it.unimi.dsi.fastutil.longs.LongArrayList;
+import it.unimi.dsi.fastutil.longs.LongArrays;
+import org.apache.flink.api.common.state.MapState;
+import org.gradoop.common.model.impl.id.GradoopId;
+import org.gradoop.temporal.model.impl.pojo.TemporalEdge;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Exact triangle counting on the whole window, retrieving the remote states the same way as
+ * TriangleCountingALRetrieveAllState, but counting on primitive arrays instead of HashMaps.
+ *
+ * The window is turned into an undirected graph in CSR format with vertices ordered by (degree, id). Every
+ * vertex only keeps its neighbours of a higher rank, sorted, so each triangle is found exactly once, from its
+ * lowest ranked vertex u, as the intersection of the lists of u and of its neighbour v. The intersections
+ * merge both lists, or gallop through the longer one if it is much longer, without allocating anything.
+ *
+ * Like TriangleCountingALRetrieveAllState each partition only counts the triangles whose starting vertex, here
+ * the lowest ranked one, is assigned to it by GradoopIdUtil.getModulo, so the counts of all partitions add up to
+ * the total. On undirected streams, which is how the experiments build them, that total is the same as the one
+ * of the other exact classes.
+ */
+public class TriangleCountingALSortedIntersection implements Algorithm<String, MapState<Long, HashMap<GradoopId, HashMap<GradoopId, TemporalEdge>>>> {
+
+    // Use galloping instead of merging when one list is this many times longer than the other.
+    private static final int GALLOP_RATIO = 32;
+    // Threads counting the triangles of this partition, see ParallelRange.
+    private final int parallelism;
+
+    public TriangleCountingALSortedIntersection() {
+        this(1);
+    }
+
+    public TriangleCountingALSortedIntersection(int parallelism) {
+        this.parallelism = parallelism;
+    }
+
+    @Override
+    public String doAlgorithm(MapState<Long, HashMap<GradoopId, HashMap<GradoopId, TemporalEdge>>> localState,
+                              QueryState QS, Integer localKey, Integer[] allKeys, long from, long maxValidTo) throws InterruptedException {
+        if (!QS.isInitilized()) {
+            System.out.println("no qs");
+        }
+        AtomicLong QStimer = new AtomicLong(0);
+        LongArrayList src = new LongArrayList();
+        LongArrayList trg = new LongArrayList();
+        if (localState == null) {
+            try {
+                long start = System.currentTimeMillis();
+                localState = QS.getALStateAsync(localKey).get();
+                QStimer.getAndAdd(System.currentTimeMillis() - start);
+            } catch (ExecutionException e) {
+                System.out.println("Error retrieving state. " + e.getCause());
+            }
+        }
+        if (localState != null) {
+            addEdges(localState, from, maxValidTo, src, trg);
+        }
+        long start = System.currentTimeMillis();
+        QS.fanOut(localKey, allKeys, QS::getALStateAsync,
+                (key, remoteState) -> addEdges(remoteState, from, maxValidTo, src, trg));
+        QStimer.getAndAdd(System.currentTimeMillis() - start);
+
+        start = System.currentTimeMillis();
+        long triangles = countTriangles(src.elements(), trg.elements(), src.size(), localKey, allKeys, parallelism);
+        System.out.println("Time spend on QS in partition \t" + localKey + "\t:\t" + QStimer.get());
+        System.out.println("Time spend on counting in partition \t" + localKey + "\t:\t" +
+                (System.currentTimeMillis() - start));
+        return "In partition " + localKey + " we found " + triangles + " triangles ";
+    }
+
+    // Adds every edge of the batches with validTo in [from, to] in both directions. Self loops can't be part of
+    // a triangle and are left out.
+    private static void addEdges(MapState<Long, HashMap<GradoopId, HashMap<GradoopId, TemporalEdge>>> state,
+                                 long from, long to, LongArrayList src, LongArrayList trg) {
+        try {
+            if (state instanceof PrimitiveAdjacencyList) {
+                PrimitiveAdjacencyList primitiveState = (PrimitiveAdjacencyList) state;
+                for (long timestamp : primitiveState.keys()) {
+                    if (timestamp >= from && timestamp <= to) {
+                        primitiveState.forEachSource(timestamp, (vertex, neighbours, offset, degree) -> {
+                            for (int i = offset; i < offset + degree; i++) {
+                                addEdge(vertex, neighbours[i], src, trg);
+                            }
+                        });
+                    }
+                }
+                return;
+            }
+            for (long timestamp : state.keys()) {
+                if (timestamp >= from && timestamp <= to) {
+                    HashMap<GradoopId, HashMap<GradoopId, TemporalEdge>> batch = state.get(timestamp);
+                    for (GradoopId vertex : batch.keySet()) {
+                        long vertexId = GradoopIdUtil.toLong(vertex);
+                        for (GradoopId neighbour : batch.get(vertex).keySet()) {
+                            addEdge(vertexId, GradoopIdUtil.toLong(neighbour), src, trg);
+                        }
+                    }
+                }
+            }
+        } catch (Exception e) {
+            e.printStackTrace();
+        }
+    }
+
+    private static void addEdge(long vertex, long neighbour, LongArrayList src, LongArrayList trg) {
+        if (vertex != neighbour) {
+            src.add(vertex);
+            trg.add(neighbour);
+            src.add(neighbour);
+            trg.add(vertex);
+        }
+    }
+
+    /**
+     * Counts the triangles of the undirected graph given by the first size entries of src and trg, which have to
+     * contain every edge in both directions. Both arrays are sorted in place.
+     */
+    static long countTriangles(long[] src, long[] trg, int size, Integer localKey, Integer[] allKeys,
+                               int parallelism) {
+        LongArrays.quickSort(src, trg, 0, size);
+
+        // Distinct vertices and the number of distinct neighbours of each.
+        int vertexCount = 0;
+        for (int i = 0; i < size; i++) {
+            if (i == 0 || src[i] != src[i - 1]) {
+                vertexCount++;
+            }
+        }
+        long[] vertices = new long[vertexCount];
+        int[] degrees = new int[vertexCount];
+        int v = -1;
+        for (int i = 0; i < size; i++) {
+            if (i == 0 || src[i] != src[i - 1]) {
+                vertices[++v] = src[i];
+                degrees[v]++;
+            } else if (trg[i] != trg[i - 1]) {
+                degrees[v]++;
+            }
+        }
+
+        // Rank vertices by degree, ties by id, so high degree vertices get short lists.
+        long[] order = new long[vertexCount];
+        for (int i = 0; i < vertexCount; i++) {
+            order[i] = ((long) degrees[i] << 32) | i;
+        }
+        Arrays.sort(order);
+        int[] rank = new int[vertexCount];
+        boolean[] counted = new boolean[vertexCount];
+        for (int r = 0; r < vertexCount; r++) {
+            int index = (int) order[r];
+            rank[index] = r;
+            counted[r] = allKeys == null ||
+                    GradoopIdUtil.getModulo(GradoopIdUtil.fromLong(vertices[index]), localKey, allKeys);
+        }
+
+        // Neighbours of a higher rank, by rank, sorted. offsets are indexed by rank as well.
+        int[] offsets = new int[vertexCount + 1];
+        v = -1;
+        for (int i = 0; i < size; i++) {
+            if (i == 0 || src[i] != src[i - 1]) {
+                v++;
+            } else if (trg[i] == trg[i - 1]) {
+                continue;
+            }
+            int neighbour = Arrays.binarySearch(vertices, trg[i]);
+            if (rank[neighbour] > rank[v]) {
+                offsets[rank[v] + 1]++;
+            }
+        }
+        for (int r = 0; r < vertexCount; r++) {
+            offsets[r + 1] += offsets[r];
+        }
+        int[] higher = new int[offsets[vertexCount]];
+        int[] fill = Arrays.copyOf(offsets, vertexCount);
+        v = -1;
+        for (int i = 0; i < size; i++) {
+            if (i == 0 || src[i] != src[i - 1]) {
+                v++;
+            } else if (trg[i] == trg[i - 1]) {
+                continue;
+            }
+            int neighbourRank = rank[Arrays.binarySearch(vertices, trg[i])];
+            if (neighbourRank > rank[v]) {
+                higher[fill[rank[v]]++] = neighbourRank;
+            }
+        }
+        for (int r = 0; r < vertexCount; r++) {
+            Arrays.sort(higher, offsets[r], offsets[r + 1]);
+        }
+
+        return ParallelRange.sum(parallelism, vertexCount, (fromRank, toRank) -> {
+            long triangles = 0;
+            for (int u = fromRank; u < toRank; u++) {
+                if (!counted[u]) {
+                    continue;
+                }
+                int end = offsets[u + 1];
+                for (int k = offsets[u]; k < end; k++) {
+                    int w = higher[k];
+                    // Only neighbours of u after w can have a higher rank than w.
+                    triangles += intersect(higher, k + 1, end, offsets[w], offsets[w + 1]);
+                }
+            }
+            return triangles;
+        });
+    }
+
+    // Size of the intersection of the sorted ranges [aFrom, aTo) and [bFrom, bTo) of lists.
+    static int intersect(int[] lists, int aFrom, int aTo, int bFrom, int bTo) {
+        int aLength = aTo - aFrom;
+        int bLength = bTo - bFrom;
+        if (aLength == 0 || bLength == 0) {
+            return 0;
+        }
+        if (aLength * GALLOP_RATIO < bLength) {
+            return gallop(lists, aFrom, aTo, bFrom, bTo);
+        }
+        if (bLength * GALLOP_RATIO < aLength) {
+            return gallop(lists, bFrom, bTo, aFrom, aTo);
+        }
+        int count = 0;
+        int a = aFrom;
+        int b = bFrom;
+        while (a < aTo && b < bTo) {
+            int aValue = lists[a];
+            int bValue = lists[b];
+            if (aValue < bValue) {
+                a++;
+            } else if (aValue > bValue) {
+                b++;
+            } else {
+                count++;
+                a++;
+                b++;
+            }
+        }
+        return count;
+    }
+
+    // Looks up every element of the short range in the long one, doubling the step and then binary searching.
+    private static int gallop(int[] lists, int shortFrom, int shortTo, int longFrom, int longTo) {
+        int count = 0;
+        int low = longFrom;
+        for (int s = shortFrom; s < shortTo && low < longTo; s++) {
+            int value = lists[s];
+            int step = 1;
+            int high = low;
+            while (high < longTo && lists[high] < value) {
+                low = high + 1;
+                high += step;
+                step <<= 1;
+            }
+            if (high >= longTo) {
+                high = longTo - 1;
+            }
+            while (low <= high) {
+                int mid = (low + high) >>> 1;
+                if (lists[mid] < value) {
+                    low = mid + 1;
+                } else if (lists[mid] > value) {
+                    high = mid - 1;
+                } else {
+                    count++;
+                    low = mid + 1;
+                    break;
+                }
+            }
+        }
+        return count;
+    }
+}
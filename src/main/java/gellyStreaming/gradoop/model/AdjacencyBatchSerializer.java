@@ -0,0 +1,317 @@
+package gellyStreaming.gradoop.model;
+
+import gellyStreaming.gradoop.util.GradoopIdUtil;
+import org.apache.flink.api.common.ExecutionConfig;
+import org.apache.flink.api.common.typeinfo.TypeInformation;
+import org.apache.flink.api.common.typeutils.TypeSerializer;
+import org.apache.flink.api.common.typeutils.TypeSerializerSchemaCompatibility;
+import org.apache.flink.api.common.typeutils.TypeSerializerSnapshot;
+import org.apache.flink.core.memory.DataInputView;
+import org.apache.flink.core.memory.DataOutputView;
+import org.gradoop.common.model.impl.id.GradoopId;
+import org.gradoop.temporal.model.impl.pojo.TemporalEdge;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Serializer for one batch of the "adjacencyList" MapState of the AL strategy, used for checkpoints and for the
+ * responses of queryable state. The default POJO/Kryo serialization writes every nested HashMap, GradoopId and
+ * TemporalEdge with all of its fields. This one writes:
+ *
+ * - vertex ids made by the stream builders (new GradoopId(vertexId, 0, (short) 0, 0)) as varints of the
+ *   difference to the previous id, with sources and neighbour lists sorted. Other ids are written as 12 bytes.
+ * - only source, target, validFrom and validTo of the edges, validFrom and validTo as varint differences to the
+ *   previous edge, which is mostly a single byte as all edges of a batch share validTo. The edges that are read
+ *   back don't have an id, label, properties or graph ids, the algorithms only use their topology. With
+ *   withEdgeData the whole TemporalEdge is written instead, with the default serializer.
+ *
+ * A null validFrom or validTo is read back as Long.MIN_VALUE. The format is flagged per batch, so a serializer
+ * reads batches written with and without edge data.
+ */
+public class AdjacencyBatchSerializer extends TypeSerializer<HashMap<GradoopId, HashMap<GradoopId, TemporalEdge>>> {
+
+    static final int VERTEX_IDS = 1;
+    static final int EDGE_DATA = 2;
+
+    private final boolean withEdgeData;
+    private transient TypeSerializer<TemporalEdge> edgeSerializer;
+
+    public AdjacencyBatchSerializer() {
+        this(false);
+    }
+
+    public AdjacencyBatchSerializer(boolean withEdgeData) {
+        this.withEdgeData = withEdgeData;
+    }
+
+    public boolean isWithEdgeData() {
+        return withEdgeData;
+    }
+
+    private TypeSerializer<TemporalEdge> getEdgeSerializer() {
+        if (edgeSerializer == null) {
+            edgeSerializer = TypeInformation.of(TemporalEdge.class).createSerializer(new ExecutionConfig());
+        }
+        return edgeSerializer;
+    }
+
+    @Override
+    public boolean isImmutableType() {
+        return false;
+    }
+
+    @Override
+    public TypeSerializer<HashMap<GradoopId, HashMap<GradoopId, TemporalEdge>>> duplicate() {
+        // The edge serializer may be Kryo, which is not thread safe, so every duplicate gets its own.
+        return new AdjacencyBatchSerializer(withEdgeData);
+    }
+
+    @Override
+    public HashMap<GradoopId, HashMap<GradoopId, TemporalEdge>> createInstance() {
+        return new HashMap<>();
+    }
+
+    @Override
+    public HashMap<GradoopId, HashMap<GradoopId, TemporalEdge>> copy(HashMap<GradoopId, HashMap<GradoopId, TemporalEdge>> from) {
+        HashMap<GradoopId, HashMap<GradoopId, TemporalEdge>> copy = new HashMap<>(capacity(from.size()));
+        for (Map.Entry<GradoopId, HashMap<GradoopId, TemporalEdge>> source : from.entrySet()) {
+            HashMap<GradoopId, TemporalEdge> neighbours = new HashMap<>(capacity(source.getValue().size()));
+            for (Map.Entry<GradoopId, TemporalEdge> target : source.getValue().entrySet()) {
+                neighbours.put(target.getKey(), getEdgeSerializer().copy(target.getValue()));
+            }
+            copy.put(source.getKey(), neighbours);
+        }
+        return copy;
+    }
+
+    @Override
+    public HashMap<GradoopId, HashMap<GradoopId, TemporalEdge>> copy(HashMap<GradoopId, HashMap<GradoopId, TemporalEdge>> from,
+                                                                    HashMap<GradoopId, HashMap<GradoopId, TemporalEdge>> reuse) {
+        return copy(from);
+    }
+
+    @Override
+    public int getLength() {
+        return -1;
+    }
+
+    @Override
+    public void serialize(HashMap<GradoopId, HashMap<GradoopId, TemporalEdge>> batch, DataOutputView target) throws IOException {
+        boolean vertexIds = onlyVertexIds(batch);
+        target.writeByte((vertexIds ? VERTEX_IDS : 0) | (withEdgeData ? EDGE_DATA : 0));
+        writeVarLong(target, batch.size());
+        long previousSource = 0;
+        long previousFrom = 0;
+        long previousTo = 0;
+        for (Map.Entry<GradoopId, HashMap<GradoopId, TemporalEdge>> source : entries(batch, vertexIds)) {
+            previousSource = writeId(target, source.getKey(), vertexIds, previousSource);
+            writeVarLong(target, source.getValue().size());
+            long previousTarget = 0;
+            for (Map.Entry<GradoopId, TemporalEdge> neighbour : entries(source.getValue(), vertexIds)) {
+                previousTarget = writeId(target, neighbour.getKey(), vertexIds, previousTarget);
+                TemporalEdge edge = neighbour.getValue();
+                if (withEdgeData) {
+                    getEdgeSerializer().serialize(edge, target);
+                } else {
+                    long validFrom = edge.getValidFrom() == null ? Long.MIN_VALUE : edge.getValidFrom();
+                    long validTo = edge.getValidTo() == null ? Long.MIN_VALUE : edge.getValidTo();
+                    writeVarLong(target, zigZag(validFrom - previousFrom));
+                    writeVarLong(target, zigZag(validTo - previousTo));
+                    previousFrom = validFrom;
+                    previousTo = validTo;
+                }
+            }
+        }
+    }
+
+    @Override
+    public HashMap<GradoopId, HashMap<GradoopId, TemporalEdge>> deserialize(DataInputView source) throws IOException {
+        int flags = source.readByte();
+        boolean vertexIds = (flags & VERTEX_IDS) != 0;
+        boolean edgeData = (flags & EDGE_DATA) != 0;
+        int numSources = (int) readVarLong(source);
+        HashMap<GradoopId, HashMap<GradoopId, TemporalEdge>> batch = new HashMap<>(capacity(numSources));
+        long previousSource = 0;
+        long previousFrom = 0;
+        long previousTo = 0;
+        for (int i = 0; i < numSources; i++) {
+            GradoopId sourceId;
+            if (vertexIds) {
+                previousSource += readVarLong(source);
+                sourceId = GradoopIdUtil.fromLong(previousSource);
+            } else {
+                sourceId = readId(source);
+            }
+            int numNeighbours = (int) readVarLong(source);
+            HashMap<GradoopId, TemporalEdge> neighbours = new HashMap<>(capacity(numNeighbours));
+            long previousTarget = 0;
+            for (int j = 0; j < numNeighbours; j++) {
+                GradoopId targetId;
+                if (vertexIds) {
+                    previousTarget += readVarLong(source);
+                    targetId = GradoopIdUtil.fromLong(previousTarget);
+                } else {
+                    targetId = readId(source);
+                }
+                TemporalEdge edge;
+                if (edgeData) {
+                    edge = getEdgeSerializer().deserialize(source);
+                } else {
+                    previousFrom += unZigZag(readVarLong(source));
+                    previousTo += unZigZag(readVarLong(source));
+                    edge = new TemporalEdge(null, null, sourceId, targetId, null, null, previousFrom, previousTo);
+                }
+                neighbours.put(targetId, edge);
+            }
+            batch.put(sourceId, neighbours);
+        }
+        return batch;
+    }
+
+    @Override
+    public HashMap<GradoopId, HashMap<GradoopId, TemporalEdge>> deserialize(HashMap<GradoopId, HashMap<GradoopId, TemporalEdge>> reuse,
+                                                                           DataInputView source) throws IOException {
+        return deserialize(source);
+    }
+
+    @Override
+    public void copy(DataInputView source, DataOutputView target) throws IOException {
+        serialize(deserialize(source), target);
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        return obj instanceof AdjacencyBatchSerializer && ((AdjacencyBatchSerializer) obj).withEdgeData == withEdgeData;
+    }
+
+    @Override
+    public int hashCode() {
+        return Boolean.hashCode(withEdgeData);
+    }
+
+    @Override
+    public TypeSerializerSnapshot<HashMap<GradoopId, HashMap<GradoopId, TemporalEdge>>> snapshotConfiguration() {
+        return new AdjacencyBatchSerializerSnapshot(withEdgeData);
+    }
+
+    public static final class AdjacencyBatchSerializerSnapshot
+            implements TypeSerializerSnapshot<HashMap<GradoopId, HashMap<GradoopId, TemporalEdge>>> {
+
+        private static final int VERSION = 1;
+        private boolean withEdgeData;
+
+        // Used when restoring.
+        public AdjacencyBatchSerializerSnapshot() {
+        }
+
+        AdjacencyBatchSerializerSnapshot(boolean withEdgeData) {
+            this.withEdgeData = withEdgeData;
+        }
+
+        @Override
+        public int getCurrentVersion() {
+            return VERSION;
+        }
+
+        @Override
+        public void writeSnapshot(DataOutputView out) throws IOException {
+            out.writeBoolean(withEdgeData);
+        }
+
+        @Override
+        public void readSnapshot(int readVersion, DataInputView in, ClassLoader userCodeClassLoader) throws IOException {
+            withEdgeData = in.readBoolean();
+        }
+
+        @Override
+        public TypeSerializer<HashMap<GradoopId, HashMap<GradoopId, TemporalEdge>>> restoreSerializer() {
+            return new AdjacencyBatchSerializer(withEdgeData);
+        }
+
+        // Every version reads both formats, so switching withEdgeData needs no migration.
+        @Override
+        public TypeSerializerSchemaCompatibility<HashMap<GradoopId, HashMap<GradoopId, TemporalEdge>>> resolveSchemaCompatibility(
+                TypeSerializer<HashMap<GradoopId, HashMap<GradoopId, TemporalEdge>>> newSerializer) {
+            if (newSerializer instanceof AdjacencyBatchSerializer) {
+                return TypeSerializerSchemaCompatibility.compatibleAsIs();
+            }
+            return TypeSerializerSchemaCompatibility.incompatible();
+        }
+    }
+
+    private static boolean onlyVertexIds(HashMap<GradoopId, HashMap<GradoopId, TemporalEdge>> batch) {
+        for (Map.Entry<GradoopId, HashMap<GradoopId, TemporalEdge>> source : batch.entrySet()) {
+            if (!GradoopIdUtil.isVertexId(source.getKey())) {
+                return false;
+            }
+            for (GradoopId target : source.getValue().keySet()) {
+                if (!GradoopIdUtil.isVertexId(target)) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    // Entries of map, sorted by vertex id if all ids are vertex ids, so the differences stay small.
+    @SuppressWarnings("unchecked")
+    private static <V> Map.Entry<GradoopId, V>[] entries(HashMap<GradoopId, V> map, boolean vertexIds) {
+        Map.Entry<GradoopId, V>[] entries = map.entrySet().toArray(new Map.Entry[0]);
+        if (vertexIds) {
+            Arrays.sort(entries, Comparator.comparingLong(entry -> GradoopIdUtil.toLong(entry.getKey())));
+        }
+        return entries;
+    }
+
+    private static long writeId(DataOutputView target, GradoopId id, boolean vertexIds, long previous) throws IOException {
+        if (!vertexIds) {
+            target.write(id.toByteArray());
+            return previous;
+        }
+        long vertex = GradoopIdUtil.toLong(id);
+        writeVarLong(target, vertex - previous);
+        return vertex;
+    }
+
+    private static GradoopId readId(DataInputView source) throws IOException {
+        byte[] bytes = new byte[GradoopId.ID_SIZE];
+        source.readFully(bytes);
+        return GradoopId.fromByteArray(bytes);
+    }
+
+    static void writeVarLong(DataOutputView target, long value) throws IOException {
+        while ((value & ~0x7FL) != 0) {
+            target.writeByte((int) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        target.writeByte((int) value);
+    }
+
+    static long readVarLong(DataInputView source) throws IOException {
+        long value = 0;
+        int shift = 0;
+        byte b;
+        do {
+            b = source.readByte();
+            value |= (long) (b & 0x7F) << shift;
+            shift += 7;
+        } while ((b & 0x80) != 0);
+        return value;
+    }
+
+    static long zigZag(long value) {
+        return (value << 1) ^ (value >> 63);
+    }
+
+    static long unZigZag(long value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    private static int capacity(int size) {
+        return (int) (size / 0.75f) + 1;
+    }
+}
@@ -0,0 +1,122 @@
+package gellyStreaming.gradoop.model;
+
+import it.unimi.dsi.fastutil.longs.LongArrays;
+
+import java.io.IOException;
+
+/**
+ * One sealed batch (all edges sharing one validTo) of the compact adjacency list, stored in CSR format in three
+ * primitive arrays. Source vertices are kept in a sorted long[], their neighbours in one sorted long[] per
+ * source, addressed through an offsets array. Lookups are binary searches, so nothing is boxed or hashed.
+ *
+ * A batch is immutable once built. The arrays hold no references, so the garbage collector doesn't have to trace
+ * them, and they are gone with the batch once the window purges it.
+ */
+public class CompactAdjacencyBatch implements SealedAdjacencyBatch {
+
+    private final long validTo;
+    // Sorted source vertex ids.
+    private final long[] vertices;
+    // offsets[i] until offsets[i+1] are the neighbours of vertices[i].
+    private final int[] offsets;
+    // Neighbours, sorted per source vertex.
+    private final long[] neighbours;
+
+    CompactAdjacencyBatch(long validTo, long[] vertices, int[] offsets, long[] neighbours) {
+        this.validTo = validTo;
+        this.vertices = vertices;
+        this.offsets = offsets;
+        this.neighbours = neighbours;
+    }
+
+    /**
+     * Builds a batch out of the first size entries of src and trg. Both arrays are sorted in place. Duplicate
+     * (src, trg) pairs are stored once, the same as the HashMap based adjacency list does.
+     */
+    public static CompactAdjacencyBatch fromEdges(long validTo, long[] src, long[] trg, int size) {
+        LongArrays.quickSort(src, trg, 0, size);
+        return fromSortedEdges(validTo, src, trg, size);
+    }
+
+    // The same as fromEdges, for src and trg that are sorted by (src, trg) already.
+    static CompactAdjacencyBatch fromSortedEdges(long validTo, long[] src, long[] trg, int size) {
+        int distinctEdges = 0;
+        int distinctVertices = 0;
+        for (int i = 0; i < size; i++) {
+            if (i == 0 || src[i] != src[i - 1]) {
+                distinctVertices++;
+                distinctEdges++;
+            } else if (trg[i] != trg[i - 1]) {
+                distinctEdges++;
+            }
+        }
+        long[] vertices = new long[distinctVertices];
+        int[] offsets = new int[distinctVertices + 1];
+        long[] neighbours = new long[distinctEdges];
+        int v = -1;
+        int e = 0;
+        for (int i = 0; i < size; i++) {
+            if (i == 0 || src[i] != src[i - 1]) {
+                v++;
+                vertices[v] = src[i];
+                offsets[v] = e;
+            } else if (trg[i] == trg[i - 1]) {
+                continue;
+            }
+            neighbours[e] = trg[i];
+            e++;
+        }
+        offsets[distinctVertices] = e;
+        return new CompactAdjacencyBatch(validTo, vertices, offsets, neighbours);
+    }
+
+    @Override
+    public long getValidTo() {
+        return validTo;
+    }
+
+    @Override
+    public int getVertexCount() {
+        return vertices.length;
+    }
+
+    @Override
+    public long getEdgeCount() {
+        return neighbours.length;
+    }
+
+    @Override
+    public void forEachSource(PrimitiveAdjacencyList.SourceVisitor visitor) throws IOException {
+        for (int i = 0; i < vertices.length; i++) {
+            visitor.visit(vertices[i], neighbours, offsets[i], offsets[i + 1] - offsets[i]);
+        }
+    }
+
+    public long getVertex(int index) {
+        return vertices[index];
+    }
+
+    public int getDegree(int index) {
+        return offsets[index + 1] - offsets[index];
+    }
+
+    public long getNeighbour(int index, int position) {
+        return neighbours[offsets[index] + position];
+    }
+
+    // Position of the vertex in this batch, or -1 if it has no outgoing edges in this batch.
+    public int indexOf(long vertex) {
+        int index = LongArrays.binarySearch(vertices, vertex);
+        return index < 0 ? -1 : index;
+    }
+
+    public boolean containsEdge(long src, long trg) {
+        int index = indexOf(src);
+        return index != -1 && LongArrays.binarySearch(neighbours, offsets[index], offsets[index + 1], trg) >= 0;
+    }
+
+    // Copies the sorted neighbours of the vertex at index into target, starting at targetOffset.
+    public void copyNeighbours(int index, long[] target, int targetOffset) {
+        System.arraycopy(neighbours, offsets[index], target, targetOffset, getDegree(index));
+    }
+}
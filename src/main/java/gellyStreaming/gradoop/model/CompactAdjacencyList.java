@@ -0,0 +1,307 @@
+package gellyStreaming.gradoop.model;
+
+import it.unimi.dsi.fastutil.longs.LongArrays;
+import org.apache.flink.api.common.state.MapState;
+import org.gradoop.common.model.impl.id.GradoopId;
+import org.gradoop.temporal.model.impl.pojo.TemporalEdge;
+
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Window of one partition for the "compactAL" strategy. Every batch (validTo) is kept as a CompactAdjacencyBatch
+ * in the keyed "adjacencyList" MapState of the partition, so the partition is queryable and part of checkpoints the
+ * same as an AL partition, see SealedBatchSerializer. The batch that is currently being filled is kept in two
+ * growable long[] of the operator until it is sealed: when a new batch starts, and by the operator at every slide so
+ * readers see its edges. The arrays are kept sorted after a seal until the batch changes, so sealing again only sorts
+ * the edges added since and merges them in. The edges that are not sealed yet are operator-local, the operator
+ * checkpoints them through getUnsealedEdges() and restoreUnsealedEdges().
+ *
+ * Algorithms get it as their localState. They should read it through forEachSource(), a get() builds the HashMap
+ * of that one batch, with edges that only carry source, target and validTo. The last one built is kept until the
+ * batch changes, so algorithms that call get() for every source of a batch only build it once. The view is read-only
+ * apart from remove(), which purges a batch.
+ *
+ * The MapState is the one of the current key, so a CompactAdjacencyList must only be used for its own key.
+ */
+public class CompactAdjacencyList implements PrimitiveAdjacencyList {
+
+    private static final int INITIAL_OPEN_CAPACITY = 1024;
+
+    private final MapState<Long, SealedAdjacencyBatch> sealedBatches;
+    private Long openValidTo = null;
+    private long[] openSrc = new long[INITIAL_OPEN_CAPACITY];
+    private long[] openTrg = new long[INITIAL_OPEN_CAPACITY];
+    private int openSize = 0;
+    // The first openSorted edges of the open arrays are sorted and sealed already.
+    private int openSorted = 0;
+    // Whether the open arrays hold all edges of the sealed batch of openValidTo, if there is one.
+    private boolean openHoldsSealed = false;
+    // The batch get() built last, and its validTo.
+    private Long materializedValidTo = null;
+    private HashMap<GradoopId, HashMap<GradoopId, TemporalEdge>> materialized = null;
+
+    public CompactAdjacencyList(MapState<Long, SealedAdjacencyBatch> sealedBatches) {
+        this.sealedBatches = sealedBatches;
+    }
+
+    public void addEdge(long validTo, long src, long trg) throws Exception {
+        if (openValidTo == null || openValidTo != validTo) {
+            seal();
+            resetOpen();
+            openValidTo = validTo;
+        }
+        addOpenEdge(src, trg);
+    }
+
+    /**
+     * Moves the edges of the batch that is being filled to the sealed batches. Adding to an already sealed validTo
+     * puts a new batch with the edges of both, the sealed one is never changed. The sealed batch is only read back
+     * if the open arrays don't hold it, when its edges were added before the batch changed or before a restore.
+     */
+    public void seal() throws Exception {
+        if (openValidTo == null || openSize == openSorted) {
+            return;
+        }
+        if (!openHoldsSealed) {
+            SealedAdjacencyBatch existing = sealedBatches.get(openValidTo);
+            if (existing != null) {
+                existing.forEachSource((source, neighbours, offset, degree) -> {
+                    for (int i = offset; i < offset + degree; i++) {
+                        addOpenEdge(source, neighbours[i]);
+                    }
+                });
+            }
+            openHoldsSealed = true;
+        }
+        LongArrays.quickSort(openSrc, openTrg, openSorted, openSize);
+        if (openSorted > 0) {
+            mergeOpen();
+        }
+        openSorted = openSize;
+        sealedBatches.put(openValidTo, CompactAdjacencyBatch.fromSortedEdges(openValidTo, openSrc, openTrg, openSize));
+        if (openValidTo.equals(materializedValidTo)) {
+            materialized = null;
+            materializedValidTo = null;
+        }
+    }
+
+    // Merges the sorted edges [0, openSorted) and [openSorted, openSize) of the open arrays.
+    private void mergeOpen() {
+        long[] src = new long[openSrc.length];
+        long[] trg = new long[openTrg.length];
+        int left = 0;
+        int right = openSorted;
+        for (int i = 0; i < openSize; i++) {
+            if (right == openSize || (left < openSorted && (openSrc[left] < openSrc[right]
+                    || (openSrc[left] == openSrc[right] && openTrg[left] <= openTrg[right])))) {
+                src[i] = openSrc[left];
+                trg[i] = openTrg[left];
+                left++;
+            } else {
+                src[i] = openSrc[right];
+                trg[i] = openTrg[right];
+                right++;
+            }
+        }
+        openSrc = src;
+        openTrg = trg;
+    }
+
+    private void resetOpen() {
+        openValidTo = null;
+        openSize = 0;
+        openSorted = 0;
+        openHoldsSealed = false;
+        if (openSrc.length > INITIAL_OPEN_CAPACITY) {
+            openSrc = new long[INITIAL_OPEN_CAPACITY];
+            openTrg = new long[INITIAL_OPEN_CAPACITY];
+        }
+    }
+
+    private void addOpenEdge(long src, long trg) {
+        if (openSize == openSrc.length) {
+            openSrc = Arrays.copyOf(openSrc, openSize * 2);
+            openTrg = Arrays.copyOf(openTrg, openSize * 2);
+        }
+        openSrc[openSize] = src;
+        openTrg[openSize] = trg;
+        openSize++;
+    }
+
+    /**
+     * @return The validTo of the batch that is being filled, or null if there is none.
+     */
+    public Long getOpenValidTo() {
+        return openValidTo;
+    }
+
+    /**
+     * @return The edges of the open batch that are not sealed yet, as {src, trg} pairs one after the other, for the
+     * checkpoint of the operator.
+     */
+    public long[] getUnsealedEdges() {
+        long[] edges = new long[2 * (openSize - openSorted)];
+        for (int i = openSorted; i < openSize; i++) {
+            edges[2 * (i - openSorted)] = openSrc[i];
+            edges[2 * (i - openSorted) + 1] = openTrg[i];
+        }
+        return edges;
+    }
+
+    /**
+     * Makes the restored edges of getUnsealedEdges() the open batch of this new list again. It doesn't touch the
+     * MapState, so it can run before there is a current key. The sealed part of the batch is restored with the keyed
+     * state, the next seal merges both.
+     */
+    public void restoreUnsealedEdges(long validTo, long[] edges) {
+        resetOpen();
+        openValidTo = validTo;
+        for (int i = 0; i + 1 < edges.length; i += 2) {
+            addOpenEdge(edges[i], edges[i + 1]);
+        }
+    }
+
+    /**
+     * @return The CSR block of the batch with this validTo, sealing it first if it is still being filled,
+     * or null if there is no such batch.
+     */
+    public CompactAdjacencyBatch getBatch(long validTo) throws Exception {
+        if (openValidTo != null && openValidTo == validTo) {
+            seal();
+        }
+        return (CompactAdjacencyBatch) sealedBatches.get(validTo);
+    }
+
+    @Override
+    public void forEachSource(long validTo, SourceVisitor visitor) throws Exception {
+        CompactAdjacencyBatch batch = getBatch(validTo);
+        if (batch != null) {
+            batch.forEachSource(visitor);
+        }
+    }
+
+    public long getEdgeCount() throws Exception {
+        long count = openSize - openSorted;
+        for (SealedAdjacencyBatch batch : sealedBatches.values()) {
+            count += batch.getEdgeCount();
+        }
+        return count;
+    }
+
+    private List<Long> validTos() throws Exception {
+        List<Long> validTos = new ArrayList<>();
+        for (Long validTo : sealedBatches.keys()) {
+            validTos.add(validTo);
+        }
+        if (openValidTo != null && !sealedBatches.contains(openValidTo)) {
+            validTos.add(openValidTo);
+        }
+        return validTos;
+    }
+
+    @Override
+    public HashMap<GradoopId, HashMap<GradoopId, TemporalEdge>> get(Long validTo) throws Exception {
+        CompactAdjacencyBatch batch = getBatch(validTo);
+        if (batch == null) {
+            return null;
+        }
+        if (validTo.equals(materializedValidTo)) {
+            return materialized;
+        }
+        HashMap<GradoopId, HashMap<GradoopId, TemporalEdge>> adjacencyList = SealedAdjacencyBatch.toAdjacencyList(batch);
+        materializedValidTo = validTo;
+        materialized = adjacencyList;
+        return adjacencyList;
+    }
+
+    @Override
+    public void put(Long validTo, HashMap<GradoopId, HashMap<GradoopId, TemporalEdge>> adjacencyList) {
+        throw new UnsupportedOperationException("The compact adjacency list is filled through addEdge().");
+    }
+
+    @Override
+    public void putAll(Map<Long, HashMap<GradoopId, HashMap<GradoopId, TemporalEdge>>> map) {
+        throw new UnsupportedOperationException("The compact adjacency list is filled through addEdge().");
+    }
+
+    @Override
+    public void remove(Long validTo) throws Exception {
+        if (openValidTo != null && openValidTo.equals(validTo)) {
+            resetOpen();
+        }
+        if (validTo.equals(materializedValidTo)) {
+            materialized = null;
+            materializedValidTo = null;
+        }
+        sealedBatches.remove(validTo);
+    }
+
+    @Override
+    public boolean contains(Long validTo) throws Exception {
+        return (openValidTo != null && openValidTo.equals(validTo)) || sealedBatches.contains(validTo);
+    }
+
+    @Override
+    public Iterable<Map.Entry<Long, HashMap<GradoopId, HashMap<GradoopId, TemporalEdge>>>> entries() {
+        return this::iterator;
+    }
+
+    @Override
+    public Iterable<Long> keys() throws Exception {
+        return validTos();
+    }
+
+    @Override
+    public Iterable<HashMap<GradoopId, HashMap<GradoopId, TemporalEdge>>> values() throws Exception {
+        List<HashMap<GradoopId, HashMap<GradoopId, TemporalEdge>>> values = new ArrayList<>();
+        for (Long validTo : validTos()) {
+            values.add(get(validTo));
+        }
+        return values;
+    }
+
+    @Override
+    public Iterator<Map.Entry<Long, HashMap<GradoopId, HashMap<GradoopId, TemporalEdge>>>> iterator() {
+        Iterator<Long> validTos;
+        try {
+            validTos = validTos().iterator();
+        } catch (Exception e) {
+            throw new RuntimeException("Could not read the batches of the partition.", e);
+        }
+        return new Iterator<>() {
+            @Override
+            public boolean hasNext() {
+                return validTos.hasNext();
+            }
+
+            @Override
+            public Map.Entry<Long, HashMap<GradoopId, HashMap<GradoopId, TemporalEdge>>> next() {
+                Long validTo = validTos.next();
+                try {
+                    return new AbstractMap.SimpleImmutableEntry<>(validTo, get(validTo));
+                } catch (Exception e) {
+                    throw new RuntimeException("Could not read batch " + validTo + ".", e);
+                }
+            }
+        };
+    }
+
+    @Override
+    public boolean isEmpty() throws Exception {
+        return openValidTo == null && sealedBatches.isEmpty();
+    }
+
+    @Override
+    public void clear() {
+        sealedBatches.clear();
+        resetOpen();
+        materialized = null;
+        materializedValidTo = null;
+    }
+}
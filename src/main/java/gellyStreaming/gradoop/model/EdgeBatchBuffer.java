@@ -0,0 +1,86 @@
+package gellyStreaming.gradoop.model;
+
+import org.gradoop.temporal.model.impl.pojo.TemporalEdge;
+
+import java.util.Arrays;
+
+/**
+ * Operator-local buffer for the batch a partition of the "AL" strategy is filling. Edges are collected in a
+ * plain array and written to the adjacencyList MapState in one put when the batch is complete or a slide
+ * ends, instead of reading and writing keyed state for every edge.
+ *
+ * It also caches the bookkeeping of the partition, the timestamp of the current batch and of the next output.
+ * These are kept in keyed state as a single Tuple2, which only has to be written when one of them changes.
+ *
+ * Buffered edges are not in keyed state yet, so queries and probes only see them after the flush, at the latest at
+ * the end of the slide. The operators write them to their operator state in every checkpoint, see
+ * GraphState.snapshotBuffers.
+ */
+public class EdgeBatchBuffer {
+
+    private static final int INITIAL_CAPACITY = 1024;
+
+    private final int batchSize;
+    private TemporalEdge[] edges;
+    private int size = 0;
+    private long lastTimestamp;
+    private long nextOutputTimestamp;
+
+    public EdgeBatchBuffer(int batchSize, long lastTimestamp, long nextOutputTimestamp) {
+        this.batchSize = batchSize;
+        this.edges = new TemporalEdge[Math.max(1, Math.min(batchSize, INITIAL_CAPACITY))];
+        this.lastTimestamp = lastTimestamp;
+        this.nextOutputTimestamp = nextOutputTimestamp;
+    }
+
+    public void add(TemporalEdge edge) {
+        if (size == edges.length) {
+            // Double, but not beyond batchSize, a full batch is flushed before more edges come in.
+            edges = Arrays.copyOf(edges, size <= batchSize / 2 ? size * 2 : Math.max(batchSize, size + 1));
+        }
+        edges[size++] = edge;
+    }
+
+    // The buffered edges, for a checkpoint.
+    public TemporalEdge[] toArray() {
+        return Arrays.copyOf(edges, size);
+    }
+
+    public TemporalEdge get(int index) {
+        return edges[index];
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public boolean isFull() {
+        return size >= batchSize;
+    }
+
+    // Drops the buffered edges but keeps the array, so the next batch doesn't have to grow it again.
+    public void clear() {
+        Arrays.fill(edges, 0, size, null);
+        size = 0;
+    }
+
+    public long getLastTimestamp() {
+        return lastTimestamp;
+    }
+
+    public void setLastTimestamp(long lastTimestamp) {
+        this.lastTimestamp = lastTimestamp;
+    }
+
+    public long getNextOutputTimestamp() {
+        return nextOutputTimestamp;
+    }
+
+    public void setNextOutputTimestamp(long nextOutputTimestamp) {
+        this.nextOutputTimestamp = nextOutputTimestamp;
+    }
+}
@@ -0,0 +1,313 @@
+package gellyStreaming.gradoop.model;
+
+import gellyStreaming.gradoop.util.GradoopIdUtil;
+import org.apache.flink.configuration.GlobalConfiguration;
+import org.apache.flink.configuration.TaskManagerOptions;
+import org.gradoop.common.model.impl.id.GradoopId;
+import org.gradoop.temporal.model.impl.pojo.TemporalEdge;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Answers batched edge-existence probes inside the task that owns the adjacency list, so a remote partition
+ * only gets back two bitsets instead of its whole adjacencyList MapState through Queryable State.
+ *
+ * The AL operators register every version of a batch they publish in the LocalPartitionRegistry of the server and
+ * unregister it when it is purged. The registry keeps references to the same HashMaps that are in keyed state, so
+ * nothing is copied. A published version is never changed again (see GraphState.copyOnWrite), so probes read it
+ * without retries while the task writes the next one. Clients find the server
+ * through the queryable "probeEndpoint" state of the partition, see QueryState.ALcontainsEdgesFromToPushDown.
+ *
+ * The operators also mark up to which validTo the batches of a partition are sealed, so clients can cache what they
+ * got for those, see RemoteNeighbourCache.
+ *
+ * The server listens on the address of the TaskManager only (taskmanager.host, or the address of the local host if
+ * that isn't set), not on all interfaces. A connection has to start with the secret of the QueryState of the job,
+ * which all its tasks share, other connections are refused. Since published versions never change, a probe that
+ * fails is a bug: it is logged with its stack trace and the client gets the error instead of an answer.
+ *
+ * Wire format, all big endian. A connection starts with the secret as UTF, answered with byte status.
+ * Every request then starts with byte op and int key, long from, long to, int n.
+ * - OP_PROBE, then n times (long src, long trg). Response: byte status (0 = ok), int n, then the found and the
+ *   srcKnown bitsets, each as (n+63)/64 longs.
+ * - OP_NEIGHBOURS, then n times long vertex. Response: byte status, long sealedBefore, int n, then per vertex
+ *   int batches and per batch in which it has neighbours long validTo, int degree and degree times long neighbour.
+ * A status other than STATUS_OK is followed by the error message as UTF, and for the secret the server then closes
+ * the connection.
+ */
+public class EdgeProbeServer {
+
+    public static final byte STATUS_OK = 0;
+    public static final byte STATUS_ERROR = 1;
+    public static final byte OP_PROBE = 0;
+    public static final byte OP_NEIGHBOURS = 1;
+
+    private final LocalPartitionRegistry partitions;
+    // Per partition the validTo below which no batch changes any more.
+    private final ConcurrentHashMap<Integer, Long> sealedBefore = new ConcurrentHashMap<>();
+    private final ServerSocket serverSocket;
+    private final ExecutorService connectionThreads;
+    private final String endpoint;
+    private final byte[] secret;
+    private volatile boolean running = true;
+
+    // A server on the loopback address with a secret of its own, for probes from the same JVM.
+    public EdgeProbeServer() throws IOException {
+        this(new LocalPartitionRegistry(), InetAddress.getLoopbackAddress(), UUID.randomUUID().toString());
+    }
+
+    // Serves the batches of the partitions registered in partitions on the address of the TaskManager.
+    public EdgeProbeServer(LocalPartitionRegistry partitions, String secret) throws IOException {
+        this(partitions, taskManagerAddress(), secret);
+    }
+
+    public EdgeProbeServer(LocalPartitionRegistry partitions, InetAddress address, String secret) throws IOException {
+        this.partitions = partitions;
+        this.secret = secret.getBytes(StandardCharsets.UTF_8);
+        this.serverSocket = new ServerSocket(0, 50, address);
+        this.endpoint = address.getHostAddress() + ":" + serverSocket.getLocalPort();
+        this.connectionThreads = Executors.newCachedThreadPool(runnable -> {
+            Thread thread = new Thread(runnable, "EdgeProbeServer-" + serverSocket.getLocalPort());
+            thread.setDaemon(true);
+            return thread;
+        });
+        connectionThreads.submit(this::acceptConnections);
+    }
+
+    // The address the TaskManager is configured with in its flink-conf.yaml, or the one of the local host.
+    public static InetAddress taskManagerAddress() throws IOException {
+        String host = GlobalConfiguration.loadConfiguration().getString(TaskManagerOptions.HOST);
+        return host != null ? InetAddress.getByName(host) : InetAddress.getLocalHost();
+    }
+
+    public String getEndpoint() {
+        return endpoint;
+    }
+
+    public void register(int key, long validTo, HashMap<GradoopId, HashMap<GradoopId, TemporalEdge>> batch) {
+        partitions.register(key, validTo, batch);
+    }
+
+    public void unregister(int key, long validTo) {
+        partitions.unregister(key, validTo);
+    }
+
+    // Marks the batches of the partition with validTo below validTo as sealed, the mark only moves forward.
+    public void sealBefore(int key, long validTo) {
+        sealedBefore.merge(key, validTo, Math::max);
+    }
+
+    public long getSealedBefore(int key) {
+        return sealedBefore.getOrDefault(key, Long.MIN_VALUE);
+    }
+
+    public void close() {
+        running = false;
+        try {
+            serverSocket.close();
+        } catch (IOException ignored) { }
+        connectionThreads.shutdownNow();
+    }
+
+    /**
+     * Runs the probes against the batches of the partition with validTo in [from, to]. Bit i of found is set if
+     * edge (src[i], trg[i]) is in one of these batches, bit i of srcKnown if src[i] has any edge in them. This
+     * is the same information ALcontainsEdgesFromTo gives as true / false / null.
+     */
+    public long[][] probe(int key, long[] src, long[] trg, long from, long to) {
+        long[] found = new long[(src.length + 63) / 64];
+        long[] srcKnown = new long[(src.length + 63) / 64];
+        ConcurrentSkipListMap<Long, HashMap<GradoopId, HashMap<GradoopId, TemporalEdge>>> partition = partitions.getBatches(key);
+        if (partition == null || from > to) {
+            return new long[][]{found, srcKnown};
+        }
+        Map<Long, HashMap<GradoopId, HashMap<GradoopId, TemporalEdge>>> window = partition.subMap(from, true, to, true);
+        GradoopId[] srcIds = new GradoopId[src.length];
+        GradoopId[] trgIds = new GradoopId[trg.length];
+        for (int i = 0; i < src.length; i++) {
+            srcIds[i] = GradoopIdUtil.fromLong(src[i]);
+            trgIds[i] = GradoopIdUtil.fromLong(trg[i]);
+        }
+        for (HashMap<GradoopId, HashMap<GradoopId, TemporalEdge>> batch : window.values()) {
+            for (int i = 0; i < src.length; i++) {
+                if ((found[i >>> 6] & (1L << i)) != 0) {
+                    continue;
+                }
+                HashMap<GradoopId, TemporalEdge> neighbours = batch.get(srcIds[i]);
+                if (neighbours != null) {
+                    srcKnown[i >>> 6] |= 1L << i;
+                    if (neighbours.containsKey(trgIds[i])) {
+                        found[i >>> 6] |= 1L << i;
+                    }
+                }
+            }
+        }
+        return new long[][]{found, srcKnown};
+    }
+
+    /**
+     * Neighbours of each vertex in the batches of the partition with validTo in [from, to], per batch in which it
+     * has any, by validTo.
+     */
+    public List<TreeMap<Long, long[]>> neighbours(int key, long[] vertices, long from, long to) {
+        List<TreeMap<Long, long[]>> neighbours = new ArrayList<>(vertices.length);
+        for (int i = 0; i < vertices.length; i++) {
+            neighbours.add(new TreeMap<>());
+        }
+        ConcurrentSkipListMap<Long, HashMap<GradoopId, HashMap<GradoopId, TemporalEdge>>> partition = partitions.getBatches(key);
+        if (partition == null || from > to) {
+            return neighbours;
+        }
+        GradoopId[] ids = new GradoopId[vertices.length];
+        for (int i = 0; i < vertices.length; i++) {
+            ids[i] = GradoopIdUtil.fromLong(vertices[i]);
+        }
+        for (Map.Entry<Long, HashMap<GradoopId, HashMap<GradoopId, TemporalEdge>>> batch :
+                partition.subMap(from, true, to, true).entrySet()) {
+            for (int i = 0; i < vertices.length; i++) {
+                HashMap<GradoopId, TemporalEdge> vertexNeighbours = batch.getValue().get(ids[i]);
+                if (vertexNeighbours != null) {
+                    long[] targets = new long[vertexNeighbours.size()];
+                    int j = 0;
+                    for (GradoopId target : vertexNeighbours.keySet()) {
+                        targets[j++] = GradoopIdUtil.toLong(target);
+                    }
+                    neighbours.get(i).put(batch.getKey(), targets);
+                }
+            }
+        }
+        return neighbours;
+    }
+
+    private void acceptConnections() {
+        while (running) {
+            try {
+                Socket socket = serverSocket.accept();
+                socket.setTcpNoDelay(true);
+                connectionThreads.submit(() -> serve(socket));
+            } catch (IOException e) {
+                if (running) {
+                    System.out.println("EdgeProbeServer failed to accept a connection. " + e);
+                }
+            }
+        }
+    }
+
+    private void serve(Socket socket) {
+        try (Socket s = socket;
+             DataInputStream in = new DataInputStream(new BufferedInputStream(s.getInputStream()));
+             DataOutputStream out = new DataOutputStream(new BufferedOutputStream(s.getOutputStream()))) {
+            if (!MessageDigest.isEqual(secret, in.readUTF().getBytes(StandardCharsets.UTF_8))) {
+                System.out.println("EdgeProbeServer refused a connection from " + s.getRemoteSocketAddress()
+                        + " with a wrong secret.");
+                writeError(out, "Wrong secret.");
+                return;
+            }
+            out.writeByte(STATUS_OK);
+            out.flush();
+            while (running) {
+                byte op;
+                try {
+                    op = in.readByte();
+                } catch (EOFException e) {
+                    break;
+                }
+                int key = in.readInt();
+                long from = in.readLong();
+                long to = in.readLong();
+                int n = in.readInt();
+                if (op == OP_NEIGHBOURS) {
+                    serveNeighbours(out, key, from, to, n, in);
+                    continue;
+                }
+                long[] src = new long[n];
+                long[] trg = new long[n];
+                for (int i = 0; i < n; i++) {
+                    src[i] = in.readLong();
+                    trg[i] = in.readLong();
+                }
+                long[][] answer;
+                try {
+                    answer = probe(key, src, trg, from, to);
+                } catch (RuntimeException e) {
+                    System.out.println("EdgeProbeServer failed to answer the probes for key " + key + ".");
+                    e.printStackTrace();
+                    writeError(out, e.toString());
+                    continue;
+                }
+                out.writeByte(STATUS_OK);
+                out.writeInt(n);
+                for (long word : answer[0]) {
+                    out.writeLong(word);
+                }
+                for (long word : answer[1]) {
+                    out.writeLong(word);
+                }
+                out.flush();
+            }
+        } catch (IOException e) {
+            if (running) {
+                System.out.println("EdgeProbeServer lost a connection. " + e);
+            }
+        }
+    }
+
+    private void serveNeighbours(DataOutputStream out, int key, long from, long to, int n, DataInputStream in)
+            throws IOException {
+        long[] vertices = new long[n];
+        for (int i = 0; i < n; i++) {
+            vertices[i] = in.readLong();
+        }
+        // Read the mark first, batches sealed meanwhile are then answered too but not cached.
+        long sealed = getSealedBefore(key);
+        List<TreeMap<Long, long[]>> answer;
+        try {
+            answer = neighbours(key, vertices, from, to);
+        } catch (RuntimeException e) {
+            System.out.println("EdgeProbeServer failed to answer the neighbours for key " + key + ".");
+            e.printStackTrace();
+            writeError(out, e.toString());
+            return;
+        }
+        out.writeByte(STATUS_OK);
+        out.writeLong(sealed);
+        out.writeInt(n);
+        for (TreeMap<Long, long[]> vertexBatches : answer) {
+            out.writeInt(vertexBatches.size());
+            for (Map.Entry<Long, long[]> batch : vertexBatches.entrySet()) {
+                out.writeLong(batch.getKey());
+                out.writeInt(batch.getValue().length);
+                for (long neighbour : batch.getValue()) {
+                    out.writeLong(neighbour);
+                }
+            }
+        }
+        out.flush();
+    }
+
+    private static void writeError(DataOutputStream out, String message) throws IOException {
+        out.writeByte(STATUS_ERROR);
+        out.writeUTF(message);
+        out.flush();
+    }
+}
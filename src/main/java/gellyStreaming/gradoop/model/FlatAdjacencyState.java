@@ -0,0 +1,335 @@
+package gellyStreaming.gradoop.model;
+
+import gellyStreaming.gradoop.util.GradoopIdUtil;
+import it.unimi.dsi.fastutil.longs.LongArrays;
+import org.apache.flink.api.common.functions.RuntimeContext;
+import org.apache.flink.api.common.state.MapState;
+import org.apache.flink.api.common.state.MapStateDescriptor;
+import org.apache.flink.api.common.typeinfo.PrimitiveArrayTypeInfo;
+import org.apache.flink.api.common.typeinfo.TypeHint;
+import org.apache.flink.api.common.typeinfo.TypeInformation;
+import org.apache.flink.api.common.typeinfo.Types;
+import org.apache.flink.api.java.tuple.Tuple2;
+import org.gradoop.common.model.impl.id.GradoopId;
+import org.gradoop.temporal.model.impl.pojo.TemporalEdge;
+
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Window of one partition for the "flatAL" strategy, in keyed state laid out for RocksDB instead of one
+ * HashMap per batch:
+ *
+ * - "adjacencyBlocks" maps (validTo, source) to the sorted neighbours of the source in that batch. Every entry is a
+ *   small value of its own, and as the key is written as two big endian longs, RocksDB keeps the blocks of a batch
+ *   next to each other. It is queryable, QueryState regroups the blocks into batches, see readBatches().
+ * - "sourceChunks" maps (validTo, chunk) to the sources a flush added to the batch, and "batchChunks" validTo to the
+ *   number of chunks. MapState has no range scan or range delete, so this index takes their place: the blocks of a
+ *   batch are read and removed with a point access per source. A flush only appends a chunk with its new sources,
+ *   so it doesn't rewrite the sources the batch already had.
+ *
+ * Adding edges only reads and writes the blocks of their sources, so the cost per edge does not grow with the batch
+ * and nothing has to be mutated in place. Edges only keep their source, target and validTo.
+ *
+ * Algorithms should read it through forEachSource(). A get() builds the HashMap of the batch, the last one built is
+ * kept until the batch changes. It reads the keyed state of the current key, so it can only be used in
+ * processElement and onTimer.
+ */
+public class FlatAdjacencyState implements PrimitiveAdjacencyList {
+
+    private final MapState<Tuple2<Long, Long>, long[]> blocks;
+    private final MapState<Tuple2<Long, Integer>, long[]> sourceChunks;
+    private final MapState<Long, Integer> batchChunks;
+    // The batch get() built last, and its validTo.
+    private Long materializedValidTo = null;
+    private HashMap<GradoopId, HashMap<GradoopId, TemporalEdge>> materialized = null;
+
+    public FlatAdjacencyState(RuntimeContext context) {
+        this(context.getMapState(blocksDescriptor()),
+                context.getMapState(new MapStateDescriptor<>("sourceChunks",
+                        TypeInformation.of(new TypeHint<Tuple2<Long, Integer>>() {}),
+                        PrimitiveArrayTypeInfo.LONG_PRIMITIVE_ARRAY_TYPE_INFO)),
+                context.getMapState(new MapStateDescriptor<>("batchChunks", Types.LONG, Types.INT)));
+    }
+
+    public FlatAdjacencyState(MapState<Tuple2<Long, Long>, long[]> blocks,
+                              MapState<Tuple2<Long, Integer>, long[]> sourceChunks,
+                              MapState<Long, Integer> batchChunks) {
+        this.blocks = blocks;
+        this.sourceChunks = sourceChunks;
+        this.batchChunks = batchChunks;
+    }
+
+    // The queryable "adjacencyBlocks", for the operators and for the queryable state clients.
+    public static MapStateDescriptor<Tuple2<Long, Long>, long[]> blocksDescriptor() {
+        MapStateDescriptor<Tuple2<Long, Long>, long[]> descriptor = new MapStateDescriptor<>("adjacencyBlocks",
+                TypeInformation.of(new TypeHint<Tuple2<Long, Long>>() {}),
+                PrimitiveArrayTypeInfo.LONG_PRIMITIVE_ARRAY_TYPE_INFO);
+        descriptor.setQueryable("adjacencyBlocks");
+        return descriptor;
+    }
+
+    /**
+     * Regroups the blocks of a partition, as a queryable state client gets them, into the batches of the partition
+     * by validTo, so they are read like the "adjacencyList" of an AL partition.
+     */
+    public static MapState<Long, HashMap<GradoopId, HashMap<GradoopId, TemporalEdge>>> readBatches(
+            MapState<Tuple2<Long, Long>, long[]> blocks) throws Exception {
+        TreeMap<Long, HashMap<GradoopId, HashMap<GradoopId, TemporalEdge>>> batches = new TreeMap<>();
+        for (Map.Entry<Tuple2<Long, Long>, long[]> block : blocks.entries()) {
+            long validTo = block.getKey().f0;
+            batches.computeIfAbsent(validTo, v -> new HashMap<>())
+                    .put(GradoopIdUtil.fromLong(block.getKey().f1), toNeighbours(validTo, block.getKey().f1, block.getValue()));
+        }
+        return new LocalPartitionRegistry.ReadOnlyState<>(batches);
+    }
+
+    /**
+     * Adds the first size edges src[i] -> trg[i] to the batch validTo, sorting both arrays on the way. Edges that are
+     * already in the batch are skipped.
+     *
+     * @return The number of edges that were new in the batch.
+     */
+    public long addEdges(long validTo, long[] src, long[] trg, int size) throws Exception {
+        if (size == 0) {
+            return 0;
+        }
+        LongArrays.radixSort(src, trg, 0, size);
+        long added = 0;
+        long[] newSources = new long[size];
+        int sourceCount = 0;
+        for (int from = 0; from < size; ) {
+            int to = from + 1;
+            while (to < size && src[to] == src[from]) {
+                to++;
+            }
+            Tuple2<Long, Long> key = Tuple2.of(validTo, src[from]);
+            long[] existing = blocks.get(key);
+            long[] merged = union(existing, trg, from, to);
+            if (existing == null || merged.length != existing.length) {
+                blocks.put(key, merged);
+                added += merged.length - (existing == null ? 0 : existing.length);
+            }
+            if (existing == null) {
+                newSources[sourceCount++] = src[from];
+            }
+            from = to;
+        }
+        if (sourceCount > 0) {
+            Integer chunks = batchChunks.get(validTo);
+            int chunk = chunks == null ? 0 : chunks;
+            sourceChunks.put(Tuple2.of(validTo, chunk), Arrays.copyOf(newSources, sourceCount));
+            batchChunks.put(validTo, chunk + 1);
+        }
+        if (added > 0 && Long.valueOf(validTo).equals(materializedValidTo)) {
+            materialized = null;
+            materializedValidTo = null;
+        }
+        return added;
+    }
+
+    // Sources of the batch, each chunk sorted, null if there is no such batch.
+    public long[] getSources(long validTo) throws Exception {
+        Integer chunks = batchChunks.get(validTo);
+        if (chunks == null) {
+            return null;
+        }
+        if (chunks == 1) {
+            return sourceChunks.get(Tuple2.of(validTo, 0));
+        }
+        long[][] parts = new long[chunks][];
+        int length = 0;
+        for (int chunk = 0; chunk < chunks; chunk++) {
+            parts[chunk] = sourceChunks.get(Tuple2.of(validTo, chunk));
+            length += parts[chunk].length;
+        }
+        long[] sources = new long[length];
+        int n = 0;
+        for (long[] part : parts) {
+            System.arraycopy(part, 0, sources, n, part.length);
+            n += part.length;
+        }
+        return sources;
+    }
+
+    // Sorted neighbours of source in the batch, null if it has none there.
+    public long[] getNeighbours(long validTo, long source) throws Exception {
+        return blocks.get(Tuple2.of(validTo, source));
+    }
+
+    @Override
+    public void forEachSource(long validTo, SourceVisitor visitor) throws Exception {
+        long[] sources = getSources(validTo);
+        if (sources == null) {
+            return;
+        }
+        for (long source : sources) {
+            long[] neighbours = blocks.get(Tuple2.of(validTo, source));
+            visitor.visit(source, neighbours, 0, neighbours.length);
+        }
+    }
+
+    public long getEdgeCount() throws Exception {
+        long count = 0;
+        for (Long validTo : batchChunks.keys()) {
+            for (long source : getSources(validTo)) {
+                count += blocks.get(Tuple2.of(validTo, source)).length;
+            }
+        }
+        return count;
+    }
+
+    private static HashMap<GradoopId, TemporalEdge> toNeighbours(long validTo, long source, long[] targets) {
+        GradoopId src = GradoopIdUtil.fromLong(source);
+        HashMap<GradoopId, TemporalEdge> neighbours = new HashMap<>();
+        for (long target : targets) {
+            GradoopId trg = GradoopIdUtil.fromLong(target);
+            neighbours.put(trg, new TemporalEdge(null, null, src, trg, null, null, null, validTo));
+        }
+        return neighbours;
+    }
+
+    // Union of the sorted existing and the sorted values[from, to), which may hold duplicates.
+    private static long[] union(long[] existing, long[] values, int from, int to) {
+        int existingLength = existing == null ? 0 : existing.length;
+        long[] merged = new long[existingLength + to - from];
+        int i = 0;
+        int j = from;
+        int n = 0;
+        while (i < existingLength || j < to) {
+            long next;
+            if (j == to || (i < existingLength && existing[i] <= values[j])) {
+                next = existing[i++];
+            } else {
+                next = values[j++];
+            }
+            if (n == 0 || merged[n - 1] != next) {
+                merged[n++] = next;
+            }
+        }
+        return n == merged.length ? merged : Arrays.copyOf(merged, n);
+    }
+
+    @Override
+    public HashMap<GradoopId, HashMap<GradoopId, TemporalEdge>> get(Long validTo) throws Exception {
+        if (validTo.equals(materializedValidTo)) {
+            return materialized;
+        }
+        long[] sources = getSources(validTo);
+        if (sources == null) {
+            return null;
+        }
+        HashMap<GradoopId, HashMap<GradoopId, TemporalEdge>> adjacencyList = new HashMap<>();
+        for (long source : sources) {
+            adjacencyList.put(GradoopIdUtil.fromLong(source),
+                    toNeighbours(validTo, source, blocks.get(Tuple2.of(validTo, source))));
+        }
+        materializedValidTo = validTo;
+        materialized = adjacencyList;
+        return adjacencyList;
+    }
+
+    @Override
+    public void put(Long validTo, HashMap<GradoopId, HashMap<GradoopId, TemporalEdge>> adjacencyList) {
+        throw new UnsupportedOperationException("The flat adjacency state is filled through addEdges().");
+    }
+
+    @Override
+    public void putAll(Map<Long, HashMap<GradoopId, HashMap<GradoopId, TemporalEdge>>> map) {
+        throw new UnsupportedOperationException("The flat adjacency state is filled through addEdges().");
+    }
+
+    // Purges the batch, its blocks and then its entries in the index.
+    @Override
+    public void remove(Long validTo) throws Exception {
+        Integer chunks = batchChunks.get(validTo);
+        if (chunks == null) {
+            return;
+        }
+        for (int chunk = 0; chunk < chunks; chunk++) {
+            Tuple2<Long, Integer> chunkKey = Tuple2.of(validTo, chunk);
+            for (long source : sourceChunks.get(chunkKey)) {
+                blocks.remove(Tuple2.of(validTo, source));
+            }
+            sourceChunks.remove(chunkKey);
+        }
+        batchChunks.remove(validTo);
+        if (validTo.equals(materializedValidTo)) {
+            materialized = null;
+            materializedValidTo = null;
+        }
+    }
+
+    @Override
+    public boolean contains(Long validTo) throws Exception {
+        return batchChunks.contains(validTo);
+    }
+
+    @Override
+    public Iterable<Map.Entry<Long, HashMap<GradoopId, HashMap<GradoopId, TemporalEdge>>>> entries() {
+        return this::iterator;
+    }
+
+    @Override
+    public Iterable<Long> keys() throws Exception {
+        return batchChunks.keys();
+    }
+
+    @Override
+    public Iterable<HashMap<GradoopId, HashMap<GradoopId, TemporalEdge>>> values() throws Exception {
+        List<HashMap<GradoopId, HashMap<GradoopId, TemporalEdge>>> values = new ArrayList<>();
+        for (Long validTo : batchChunks.keys()) {
+            values.add(get(validTo));
+        }
+        return values;
+    }
+
+    @Override
+    public Iterator<Map.Entry<Long, HashMap<GradoopId, HashMap<GradoopId, TemporalEdge>>>> iterator() {
+        List<Long> validTos = new ArrayList<>();
+        try {
+            for (Long validTo : batchChunks.keys()) {
+                validTos.add(validTo);
+            }
+        } catch (Exception e) {
+            throw new IllegalStateException("Could not read the batches of the flat adjacency state", e);
+        }
+        Iterator<Long> iterator = validTos.iterator();
+        return new Iterator<>() {
+            @Override
+            public boolean hasNext() {
+                return iterator.hasNext();
+            }
+
+            @Override
+            public Map.Entry<Long, HashMap<GradoopId, HashMap<GradoopId, TemporalEdge>>> next() {
+                Long validTo = iterator.next();
+                try {
+                    return new AbstractMap.SimpleImmutableEntry<>(validTo, get(validTo));
+                } catch (Exception e) {
+                    throw new IllegalStateException("Could not read batch " + validTo, e);
+                }
+            }
+        };
+    }
+
+    @Override
+    public boolean isEmpty() throws Exception {
+        return batchChunks.isEmpty();
+    }
+
+    @Override
+    public void clear() {
+        blocks.clear();
+        sourceChunks.clear();
+        batchChunks.clear();
+        materialized = null;
+        materializedValidTo = null;
+    }
+}
@@ -2,21 +2,35 @@ package gellyStreaming.gradoop.model;
 
 import gellyStreaming.gradoop.Experiments;
 import gellyStreaming.gradoop.algorithms.Algorithm;
+import gellyStreaming.gradoop.util.CountingEdgeBloomFilter;
+import gellyStreaming.gradoop.util.EdgeBloomFilter;
+import gellyStreaming.gradoop.util.ExpiringBatches;
+import gellyStreaming.gradoop.util.GradoopIdUtil;
 import gellyStreaming.gradoop.util.KeyGen;
+import gellyStreaming.gradoop.util.ParallelRange;
 import org.apache.flink.api.common.JobID;
+import org.apache.flink.api.common.functions.RuntimeContext;
+import org.apache.flink.api.common.state.ListState;
+import org.apache.flink.api.common.state.ListStateDescriptor;
 import org.apache.flink.api.common.state.MapState;
 import org.apache.flink.api.common.state.MapStateDescriptor;
 import org.apache.flink.api.common.state.ValueState;
 import org.apache.flink.api.common.state.ValueStateDescriptor;
 import org.apache.flink.api.common.typeinfo.TypeHint;
 import org.apache.flink.api.common.typeinfo.TypeInformation;
+import org.apache.flink.api.common.typeutils.base.LongSerializer;
 import org.apache.flink.api.java.functions.KeySelector;
 import org.apache.flink.api.java.tuple.Tuple2;
 import org.apache.flink.api.java.tuple.Tuple3;
 import org.apache.flink.api.java.tuple.Tuple4;
 import org.apache.flink.configuration.Configuration;
 import org.apache.flink.configuration.TaskManagerOptions;
+import org.apache.flink.runtime.state.CheckpointListener;
+import org.apache.flink.runtime.state.FunctionInitializationContext;
+import org.apache.flink.runtime.state.FunctionSnapshotContext;
 import org.apache.flink.runtime.state.KeyGroupRangeAssignment;
+import org.apache.flink.streaming.api.checkpoint.CheckpointedFunction;
+import org.apache.flink.streaming.api.TimerService;
 import org.apache.flink.streaming.api.datastream.DataStream;
 import org.apache.flink.streaming.api.datastream.KeyedStream;
 import org.apache.flink.streaming.api.datastream.SingleOutputStreamOperator;
@@ -27,6 +41,7 @@ import org.gradoop.temporal.model.impl.pojo.TemporalEdge;
 
 import java.io.BufferedReader;
 import java.io.FileReader;
+import java.io.IOException;
 import java.io.Serializable;
 import java.util.*;
 import java.util.concurrent.atomic.AtomicLong;
@@ -44,6 +59,7 @@ public class GraphState implements Serializable {
     private transient SingleOutputStreamOperator<String> algorithmOutput = null;
     private final Algorithm algorithm;
     private final long firstTimestamp;
+    private final boolean eventTime;
     public transient JobID jobID;
 
 
@@ -56,6 +72,38 @@ public class GraphState implements Serializable {
                       Boolean lazyPurging,
                       int batchSize,
                       Algorithm algorithm) {
+        this(QS, input, strategy, windowSize, slide, numPartitions, lazyPurging, batchSize, algorithm, false);
+    }
+
+    /**
+     * With eventTime the batches are not made every batchSize edges in processing time, but from the validFrom of
+     * the edges, which have to be the timestamps of the input stream. An edge goes into the batch of the first
+     * slide boundary at or after its validFrom, purging and output happen on event time timers at these
+     * boundaries. Windows then only depend on the input, not on how fast it is read. Edges that arrive after
+     * the watermark passed their slide are dropped and counted as late.
+     *
+     * Event time needs a slide, always purges lazily and is supported by the AL and incrementalTC strategies.
+     *
+     * incrementalTC is a single-partition baseline for the triangle counting algorithms: it keeps the count of the
+     * whole window up to date instead of recounting it every slide, but it doesn't look at other partitions, so it
+     * needs numPartitions = 1. Triangles across partitions need AL with a triangle counting algorithm.
+     */
+    public GraphState(QueryState QS,
+                      KeyedStream<TemporalEdge, Integer> input,
+                      String strategy,
+                      Long windowSize,
+                      Long slide,
+                      Integer numPartitions,
+                      Boolean lazyPurging,
+                      int batchSize,
+                      Algorithm algorithm,
+                      boolean eventTime) {
+        if (eventTime && slide == null) {
+            throw new IllegalArgumentException("Event time needs a slide.");
+        }
+        if (eventTime && !strategy.equals("AL") && !strategy.equals("incrementalTC")) {
+            throw new IllegalArgumentException("Event time is only supported by the AL and incrementalTC strategies.");
+        }
         this.QS = QS;
         this.windowSize = windowSize;
         this.slide = slide;
@@ -67,9 +115,21 @@ public class GraphState implements Serializable {
         this.lazyPurging = lazyPurging;
         this.batchSize = batchSize;
         this.algorithm = algorithm;
-        this.firstTimestamp = System.currentTimeMillis()+1000L;
-
-        if (algorithm == null) {
+        this.eventTime = eventTime;
+        // In event time the slides are aligned to multiples of slide.
+        this.firstTimestamp = eventTime ? 0L : System.currentTimeMillis()+1000L;
+        // A partition starts a batch every slide, without a slide the whole window is one batch.
+        QS.sizeEdgeBloomFilters(slide == null ? 1 : (windowSize + slide - 1) / slide, numPartitions);
+
+        if (strategy.equals("incrementalTC")) {
+            // Single-partition baseline, triangles across partitions are not counted.
+            if (numPartitions != 1) {
+                throw new IllegalArgumentException("incrementalTC only counts the triangles within a partition, so " +
+                        "it needs numPartitions = 1, got " + numPartitions + ". Use AL with a triangle counting " +
+                        "algorithm for more partitions.");
+            }
+            algorithmOutput = input.process(new IncrementalTC());
+        } else if (algorithm == null) {
             switch (strategy) {
                 case "EL":
                     decoupledOutput = input.process(new ELDecoupled());
@@ -80,6 +140,16 @@ public class GraphState implements Serializable {
                 case "AL":
                     decoupledOutput = input.process(new ALdecoupled());
                     break;
+                case "compactAL":
+                    decoupledOutput = input.process(new CompactALdecoupled());
+                    break;
+                case "flatAL":
+                    QS.readFlatLayout();
+                    decoupledOutput = input.process(new FlatALdecoupled());
+                    break;
+                case "tieredAL":
+                    decoupledOutput = input.process(new TieredALdecoupled());
+                    break;
             }
         } else {
             switch (strategy) {
@@ -92,6 +162,16 @@ public class GraphState implements Serializable {
                 case "AL":
                     algorithmOutput = input.process(new ALwithAlg());
                     break;
+                case "compactAL":
+                    algorithmOutput = input.process(new CompactALwithAlg());
+                    break;
+                case "flatAL":
+                    QS.readFlatLayout();
+                    algorithmOutput = input.process(new FlatALwithAlg());
+                    break;
+                case "tieredAL":
+                    algorithmOutput = input.process(new TieredALwithAlg());
+                    break;
             }
         }
     }
@@ -105,6 +185,17 @@ public class GraphState implements Serializable {
                 return integerLongLongTuple4.f0;
             }
         }).process(new KeyedProcessFunction<Integer, Tuple4<Integer, Integer[], Long, Long>, String>() {
+            @Override
+            public void open(Configuration parameters) {
+                ParallelRange.retain();
+            }
+
+            @Override
+            public void close() {
+                ParallelRange.release();
+                QS.close();
+            }
+
             @Override
             public void processElement(Tuple4<Integer, Integer[], Long, Long> integerLongLongTuple4, Context context, Collector<String> collector) throws Exception {
                 System.out.println(integerLongLongTuple4);
@@ -154,6 +245,393 @@ public class GraphState implements Serializable {
     }
 
 
+    // Adds a new edge of the partition to its edge bloom filter, see restoreEdgeBloomFilter. The change is only
+    // visible to queries once publishEdgeBloomFilter was called.
+    private void addToEdgeBloomFilter(HashMap<Integer, CountingEdgeBloomFilter> counts, Integer key,
+                                      GradoopId source, GradoopId target) {
+        counts.get(key).add(GradoopIdUtil.toLong(source), GradoopIdUtil.toLong(target));
+    }
+
+    // Makes the edge bloom filter of a partition the first time the operator sees its key, from the batches it has
+    // in keyed state. The counts are not in checkpoints, so after a restore they are rebuilt before anything is
+    // published, otherwise the published filter would miss the restored edges.
+    private void restoreEdgeBloomFilter(HashMap<Integer, CountingEdgeBloomFilter> counts, Integer key,
+            MapState<Long, HashMap<GradoopId, HashMap<GradoopId, TemporalEdge>>> adjacencyList) throws Exception {
+        if(counts == null || counts.containsKey(key)) {
+            return;
+        }
+        CountingEdgeBloomFilter filter = QS.newCountingEdgeBloomFilter();
+        for(HashMap<GradoopId, HashMap<GradoopId, TemporalEdge>> batch : adjacencyList.values()) {
+            for(Map.Entry<GradoopId, HashMap<GradoopId, TemporalEdge>> neighbours : batch.entrySet()) {
+                long src = GradoopIdUtil.toLong(neighbours.getKey());
+                for(GradoopId target : neighbours.getValue().keySet()) {
+                    filter.add(src, GradoopIdUtil.toLong(target));
+                }
+            }
+        }
+        counts.put(key, filter);
+    }
+
+    // Takes the edges of a batch that is about to be purged out of the edge bloom filter of the partition.
+    private void removeFromEdgeBloomFilter(HashMap<Integer, CountingEdgeBloomFilter> counts, Integer key,
+                                           HashMap<GradoopId, HashMap<GradoopId, TemporalEdge>> batch) {
+        CountingEdgeBloomFilter filter = counts.get(key);
+        if(filter == null || batch == null) {
+            return;
+        }
+        for(GradoopId source : batch.keySet()) {
+            long src = GradoopIdUtil.toLong(source);
+            for(GradoopId target : batch.get(source).keySet()) {
+                filter.remove(src, GradoopIdUtil.toLong(target));
+            }
+        }
+    }
+
+    // Publishes a copy of the edge bloom filter of the partition through queryable state, after every flush and
+    // purge. Like the batches, a published version is never changed, and a state backend that serializes on
+    // update() gets the current filter too.
+    private void publishEdgeBloomFilter(ValueState<EdgeBloomFilter> edgeBloomFilter,
+                                        HashMap<Integer, CountingEdgeBloomFilter> counts, Integer key) throws Exception {
+        CountingEdgeBloomFilter filter = counts.get(key);
+        if(edgeBloomFilter != null && filter != null) {
+            edgeBloomFilter.update(filter.getFilter().copy());
+        }
+    }
+
+    /**
+     * Copy-on-write for the AL batches: returns a new version of the published batch with the buffered edges added,
+     * validTo set on them. Neighbour maps of sources without new edges are shared, the others are copied before they
+     * change. The published version itself is never changed after the put, so Queryable State requests and probes
+     * that are reading it always see a consistent batch instead of failing with a ConcurrentModificationException.
+     */
+    private HashMap<GradoopId, HashMap<GradoopId, TemporalEdge>> copyOnWrite(
+            HashMap<GradoopId, HashMap<GradoopId, TemporalEdge>> published, EdgeBatchBuffer buffer, long validTo,
+            Integer key, HashMap<Integer, CountingEdgeBloomFilter> edgeBloomFilterCounts) {
+        HashMap<GradoopId, HashMap<GradoopId, TemporalEdge>> batch =
+                published == null ? new HashMap<>() : new HashMap<>(published);
+        HashSet<GradoopId> copied = new HashSet<>();
+        for(int i = 0; i < buffer.size(); i++) {
+            TemporalEdge edge = buffer.get(i);
+            GradoopId source = edge.getSourceId();
+            GradoopId target = edge.getTargetId();
+            edge.setValidTo(validTo);
+            HashMap<GradoopId, TemporalEdge> neighbours = batch.get(source);
+            if(neighbours == null) {
+                neighbours = new HashMap<>();
+                batch.put(source, neighbours);
+                copied.add(source);
+            } else if(copied.add(source)) {
+                neighbours = new HashMap<>(neighbours);
+                batch.put(source, neighbours);
+            }
+            boolean newInBatch = neighbours.put(target, edge) == null;
+            if(edgeBloomFilterCounts != null && newInBatch) {
+                addToEdgeBloomFilter(edgeBloomFilterCounts, key, source, target);
+            }
+        }
+        return batch;
+    }
+
+    // Registers the batches a partition has in keyed state the first time the operator sees its key, which after a
+    // restore from a checkpoint are not in the LocalPartitionRegistry yet.
+    private void registerBatches(LocalPartitionRegistry partitions, HashSet<Integer> registeredKeys, Integer key,
+            MapState<Long, HashMap<GradoopId, HashMap<GradoopId, TemporalEdge>>> adjacencyList) throws Exception {
+        if(partitions == null || !registeredKeys.add(key)) {
+            return;
+        }
+        HashMap<Long, HashMap<GradoopId, HashMap<GradoopId, TemporalEdge>>> batches = new HashMap<>();
+        for(Map.Entry<Long, HashMap<GradoopId, HashMap<GradoopId, TemporalEdge>>> batch : adjacencyList.entries()) {
+            batches.put(batch.getKey(), batch.getValue());
+        }
+        partitions.registerAll(key, batches);
+    }
+
+    // Event time: start of the batch of an edge, the first slide boundary at or after its validFrom.
+    private long eventTimeBatch(TemporalEdge edge) {
+        return -Math.floorDiv(-edge.getValidFrom(), slide) * slide;
+    }
+
+    // Event time: every timer ends a slide. The next one is only registered while there are batches left, otherwise
+    // the final watermark of a bounded input would keep firing timers forever. New batches register their own.
+    private void registerNextEventTimeOutput(long timestamp, TimerService timerService, ExpiringBatches expiringBatches) {
+        if(!expiringBatches.isEmpty()) {
+            timerService.registerEventTimeTimer(timestamp + slide);
+        }
+    }
+
+    // flatAL: writes the buffered edges to their batch in the flat state, one block per source.
+    private void flushFlat(FlatAdjacencyState adjacencyState, EdgeBatchBuffer buffer) throws Exception {
+        if(buffer.isEmpty()) {
+            return;
+        }
+        long[] src = new long[buffer.size()];
+        long[] trg = new long[buffer.size()];
+        for(int i = 0; i < buffer.size(); i++) {
+            src[i] = TopologyEdge.sourceVertexOf(buffer.get(i));
+            trg[i] = TopologyEdge.targetVertexOf(buffer.get(i));
+        }
+        adjacencyState.addEdges(buffer.getLastTimestamp() + windowSize, src, trg, buffer.size());
+        buffer.clear();
+    }
+
+    // The buffered edges of the keys of an operator, {key, lastTimestamp, nextOutputTimestamp, edges}, as union
+    // list state, so after rescaling every subtask can take the buffers of the keys it got.
+    private static ListState<Tuple4<Integer, Long, Long, TemporalEdge[]>> getBufferedEdgesState(
+            FunctionInitializationContext context) throws Exception {
+        return context.getOperatorStateStore().getUnionListState(new ListStateDescriptor<>(
+                "bufferedEdges",
+                TypeInformation.of(new TypeHint<Tuple4<Integer, Long, Long, TemporalEdge[]>>() {
+                })
+        ));
+    }
+
+    // Writes the edges that are buffered but not flushed to keyed state yet to the checkpoint.
+    private static void snapshotBuffers(HashMap<Integer, EdgeBatchBuffer> buffers,
+                                        ListState<Tuple4<Integer, Long, Long, TemporalEdge[]>> bufferedEdges)
+            throws Exception {
+        bufferedEdges.clear();
+        for(Map.Entry<Integer, EdgeBatchBuffer> entry : buffers.entrySet()) {
+            EdgeBatchBuffer buffer = entry.getValue();
+            if(!buffer.isEmpty()) {
+                bufferedEdges.add(Tuple4.of(entry.getKey(), buffer.getLastTimestamp(),
+                        buffer.getNextOutputTimestamp(), buffer.toArray()));
+            }
+        }
+    }
+
+    // Puts the restored buffers of the keys of this subtask in buffers. Every subtask gets the buffers of all keys.
+    private void restoreBuffers(ListState<Tuple4<Integer, Long, Long, TemporalEdge[]>> bufferedEdges,
+                                RuntimeContext context, HashMap<Integer, EdgeBatchBuffer> buffers) throws Exception {
+        for(Tuple4<Integer, Long, Long, TemporalEdge[]> restored : bufferedEdges.get()) {
+            if(KeyGroupRangeAssignment.assignKeyToParallelOperator(restored.f0,
+                    context.getMaxNumberOfParallelSubtasks(), context.getNumberOfParallelSubtasks())
+                    != context.getIndexOfThisSubtask()) {
+                continue;
+            }
+            EdgeBatchBuffer buffer = new EdgeBatchBuffer(batchSize, restored.f1, restored.f2);
+            for(TemporalEdge edge : restored.f3) {
+                buffer.add(edge);
+            }
+            buffers.put(restored.f0, buffer);
+        }
+    }
+
+    // Writes the buffered edges of a key to the state of a BufferedIngest operator.
+    private interface BufferFlush {
+        void flush(Integer key, EdgeBatchBuffer buffer) throws Exception;
+    }
+
+    // Purges the batch with this validTo from the state of a BufferedIngest operator.
+    private interface BatchPurge {
+        void purge(long validTo) throws Exception;
+    }
+
+    /**
+     * Processing time ingest of the buffered strategies, AL and flatAL: per key an EdgeBatchBuffer with the
+     * {lastTimestamp, nextOutputTimestamp} bookkeeping of the partition, a new batch every batchSize edges and at every
+     * slide, the output timers and the purge of expired batches. The operators only say how a buffer is written to
+     * their state and how a batch is purged. Made in open(), as it holds keyed state.
+     *
+     * The buffers are operator-local, their edges are only visible to queries after the flush, at the latest at the
+     * end of the slide. Checkpoints keep them in the operator state of initializeState, see snapshotBuffers.
+     */
+    private class BufferedIngest {
+
+        // {lastTimestamp, nextOutputTimestamp}, cached per key in batchBuffers and only written when they change.
+        private final ValueState<Tuple2<Long, Long>> bookkeeping;
+        private final HashMap<Integer, EdgeBatchBuffer> batchBuffers = new HashMap<>();
+        private final ExpiringBatches expiringBatches;
+        private final AtomicLong totalRemovalTime = new AtomicLong(0);
+
+        private final ListState<Tuple4<Integer, Long, Long, TemporalEdge[]>> bufferedEdges;
+
+        private BufferedIngest(RuntimeContext context, ExpiringBatches expiringBatches,
+                               ListState<Tuple4<Integer, Long, Long, TemporalEdge[]>> bufferedEdges) throws Exception {
+            this.bookkeeping = context.getState(new ValueStateDescriptor<>(
+                    "bookkeeping",
+                    TypeInformation.of(new TypeHint<Tuple2<Long, Long>>() {
+                    })
+            ));
+            this.expiringBatches = expiringBatches;
+            this.bufferedEdges = bufferedEdges;
+            restoreBuffers(bufferedEdges, context, batchBuffers);
+        }
+
+        private void snapshot() throws Exception {
+            snapshotBuffers(batchBuffers, bufferedEdges);
+        }
+
+        // Buffer of the key, restored from the bookkeeping state if this operator didn't see the key yet.
+        // Null for a key without any edges.
+        private EdgeBatchBuffer getBuffer(Integer key) throws Exception {
+            EdgeBatchBuffer buffer = batchBuffers.get(key);
+            if(buffer == null) {
+                Tuple2<Long, Long> stored = bookkeeping.value();
+                if(stored != null) {
+                    buffer = new EdgeBatchBuffer(batchSize, stored.f0, stored.f1);
+                    batchBuffers.put(key, buffer);
+                }
+            }
+            return buffer;
+        }
+
+        /**
+         * Buffers an edge of the current key. The first edge of a key registers its first output timer, a full buffer
+         * is flushed and the next edges go to a new batch.
+         *
+         * @return The validTo of the batch if the edge is the first of a new one, otherwise null.
+         */
+        private Long add(Integer key, TemporalEdge edge, TimerService timerService, BufferFlush flush) throws Exception {
+            EdgeBatchBuffer buffer = getBuffer(key);
+            if(buffer == null) {
+                long next = firstTimestamp + (slide != null ? slide : 10000L);
+                timerService.registerProcessingTimeTimer(next);
+                buffer = new EdgeBatchBuffer(batchSize, firstTimestamp, next);
+                batchBuffers.put(key, buffer);
+                bookkeeping.update(Tuple2.of(firstTimestamp, next));
+            }
+
+            if(buffer.isFull()) {
+                flush.flush(key, buffer);
+                long newtimestamp = timerService.currentProcessingTime();
+                if(newtimestamp == buffer.getLastTimestamp()) {
+                    newtimestamp++;
+                }
+                buffer.setLastTimestamp(newtimestamp);
+                bookkeeping.update(Tuple2.of(newtimestamp, buffer.getNextOutputTimestamp()));
+            }
+
+            Long newBatch = null;
+            if(buffer.isEmpty()) {
+                newBatch = buffer.getLastTimestamp() + windowSize;
+                if(!lazyPurging && slide != null) {
+                    timerService.registerProcessingTimeTimer(newBatch);
+                } else {
+                    expiringBatches.add(newBatch);
+                }
+            }
+            buffer.add(edge);
+            return newBatch;
+        }
+
+        // The buffer of the key if the timer is its output timer, flushed, so the slide is output with all its edges.
+        // Null for the purge timers.
+        private EdgeBatchBuffer flushForOutput(Integer key, long timestamp, BufferFlush flush) throws Exception {
+            EdgeBatchBuffer buffer = getBuffer(key);
+            if(buffer == null || timestamp != buffer.getNextOutputTimestamp()) {
+                return null;
+            }
+            flush.flush(key, buffer);
+            return buffer;
+        }
+
+        // Purges the batches that expired at the timer.
+        private void purge(long timestamp, BatchPurge purge) throws Exception {
+            if(slide == null) {
+                return;
+            }
+            long start = System.currentTimeMillis();
+            if (lazyPurging || eventTime) {
+                for (long validTo : expiringBatches.expire(timestamp)) {
+                    purge.purge(validTo);
+                }
+            } else {
+                purge.purge(timestamp);
+            }
+            totalRemovalTime.getAndAdd(System.currentTimeMillis() - start);
+        }
+
+        /**
+         * Ends the slide at an output timer: the next edges go to a new batch and the next output timer is registered.
+         * Without a slide there is one output, once no batch was started for a minute.
+         *
+         * @return The window to output, {timestamp, timestamp + windowSize}, or {0, Long.MAX_VALUE} for the output
+         * without a slide. Null if there is nothing to output yet.
+         */
+        private Tuple2<Long, Long> endSlide(Integer key, EdgeBatchBuffer buffer, long timestamp,
+                                            TimerService timerService) throws Exception {
+            long newtimestamp = timestamp;
+            if(newtimestamp == buffer.getLastTimestamp()) {
+                newtimestamp++;
+            }
+            buffer.setLastTimestamp(newtimestamp);
+            Tuple2<Long, Long> window = null;
+            if(slide != null) {
+                buffer.setNextOutputTimestamp(timestamp + slide);
+                timerService.registerProcessingTimeTimer(timestamp + slide);
+                window = Tuple2.of(timestamp, timestamp + windowSize);
+            } else if(expiringBatches.getLastBatchTimestamp() < (timestamp-60000L)) {
+                System.out.println("Thread \t"+Thread.currentThread().getId()+"\t its last batchtimestamp was \t"+expiringBatches.getLastBatchTimestamp());
+                System.out.println("Thread \t"+Thread.currentThread().getId()+"\t  total removal time was \t"+totalRemovalTime.get());
+                window = Tuple2.of(0L, Long.MAX_VALUE);
+            } else {
+                buffer.setNextOutputTimestamp(timestamp+60000L);
+                timerService.registerProcessingTimeTimer(buffer.getNextOutputTimestamp());
+            }
+            bookkeeping.update(Tuple2.of(buffer.getLastTimestamp(), buffer.getNextOutputTimestamp()));
+            return window;
+        }
+    }
+
+    /**
+     * tieredAL: the partitions of one operator, their keyed and queryable "adjacencyList" of segment batches, the
+     * SegmentStore of the subtask and a TieredAdjacencyList per key. Made in open(), close() deletes the segments.
+     */
+    private class TieredPartitions {
+
+        private final MapState<Long, SealedAdjacencyBatch> sealedBatches;
+        private final SegmentStore segments;
+        private final LocalPartitionRegistry partitions;
+        private final HashMap<Integer, TieredAdjacencyList> adjacencyLists = new HashMap<>();
+
+        private TieredPartitions(RuntimeContext context) throws IOException {
+            MapStateDescriptor<Long, SealedAdjacencyBatch> descriptor = new MapStateDescriptor<>(
+                    "adjacencyList",
+                    LongSerializer.INSTANCE,
+                    new SealedBatchSerializer()
+            );
+            descriptor.setQueryable("adjacencyList");
+            sealedBatches = context.getMapState(descriptor);
+            segments = SegmentStore.forSubtask("tieredAL-" + QS.getPartitionScope(), context.getIndexOfThisSubtask());
+            partitions = QS.isLocalPartitionAccessEnabled() ? LocalPartitionRegistry.acquire(QS.getPartitionScope()) : null;
+        }
+
+        // The list of the current key. The first time the operator sees the key, batches restored from a checkpoint
+        // are written to segments.
+        private TieredAdjacencyList get(Integer key) throws Exception {
+            TieredAdjacencyList adjacencyList = adjacencyLists.get(key);
+            if(adjacencyList == null) {
+                adjacencyList = new TieredAdjacencyList(key, sealedBatches, segments, partitions);
+                adjacencyList.sealRestored();
+                adjacencyLists.put(key, adjacencyList);
+            }
+            return adjacencyList;
+        }
+
+        private void close() throws IOException {
+            try {
+                if(partitions != null) {
+                    for(Integer key : adjacencyLists.keySet()) {
+                        partitions.unregisterAll(key);
+                    }
+                    LocalPartitionRegistry.release(QS.getPartitionScope());
+                }
+            } finally {
+                segments.close();
+            }
+        }
+    }
+
+    private void initializeQS() throws IOException {
+        if(!QS.isInitilized()) {
+            FileReader fr = new FileReader("/share/hadoop/annemarie/tempJobId");
+            BufferedReader bf = new BufferedReader(fr);
+            QS.initialize(JobID.fromHexString(bf.readLine()));
+            bf.close();
+            fr.close();
+        }
+    }
+
     // Sorted EL decoupled
     public class SortedELDecoupled extends KeyedProcessFunction<Integer, TemporalEdge, Tuple4<Integer, Integer[], Long, Long>> {
 
@@ -161,7 +639,7 @@ public class GraphState implements Serializable {
         private transient ValueState<Long> lastTimestamp;
         private transient MapState<Long, HashMap<GradoopId, List<Tuple2<GradoopId, TemporalEdge>>>> sortedEdgeList;
         private transient ValueState<Long> nextOutputTimestamp;
-        private final LinkedList<Long> timestamps = new LinkedList<>();
+        private final ExpiringBatches expiringBatches = new ExpiringBatches(windowSize, slide);
         private final AtomicLong removalTimeCounter = new AtomicLong(0);
         private final AtomicLong totalRemovalTime = new AtomicLong(0);
 
@@ -214,7 +692,7 @@ public class GraphState implements Serializable {
                 if(!lazyPurging && slide != null) {
                     context.timerService().registerProcessingTimeTimer(lastTimestamp.value() + windowSize);
                 } else {
-                    timestamps.add(lastTimestamp.value());
+                    expiringBatches.add(lastTimestamp.value() + windowSize);
                 }
             }
 
@@ -236,7 +714,7 @@ public class GraphState implements Serializable {
                 if(!lazyPurging && slide != null) {
                     context.timerService().registerProcessingTimeTimer(lastTimestamp.value() + windowSize);
                 } else {
-                    timestamps.add(lastTimestamp.value());
+                    expiringBatches.add(lastTimestamp.value() + windowSize);
                 }
             }
 
@@ -267,20 +745,8 @@ public class GraphState implements Serializable {
             if(slide!= null) {
                 long start = System.currentTimeMillis();
                 if(lazyPurging) {
-                    boolean keepRemoving = true;
-                    while(keepRemoving) {
-                        long timestamp1;
-                        try {
-                            timestamp1 = timestamps.peek();
-                        } catch (NullPointerException e) {
-                            break;
-                        }
-                        if((timestamp1 + windowSize) <= timestamp) {
-                            sortedEdgeList.remove(timestamp1);
-                            timestamps.poll();
-                        } else {
-                            keepRemoving = false;
-                        }
+                    for (long validTo : expiringBatches.expire(timestamp)) {
+                        sortedEdgeList.remove(validTo);
                     }
                 } else {
                     sortedEdgeList.remove(timestamp);
@@ -312,15 +778,15 @@ public class GraphState implements Serializable {
                 if(!lazyPurging && slide != null) {
                     ctx.timerService().registerProcessingTimeTimer(lastTimestamp.value() + windowSize);
                 } else {
-                    timestamps.add(lastTimestamp.value());
+                    expiringBatches.add(lastTimestamp.value() + windowSize);
                 }
                 if(slide != null) {
                     nextOutputTimestamp.update(timestamp + slide);
                     ctx.timerService().registerProcessingTimeTimer(timestamp + slide);
                     out.collect(Tuple4.of(ctx.getCurrentKey(), keys, timestamp, timestamp + windowSize));
                 } else {
-                    if(timestamps.peekLast() < (timestamp-60000L)) {
-                        System.out.println("Thread \t"+Thread.currentThread().getId()+"\t its last batchtimestamp was \t"+timestamps.peekLast());
+                    if(expiringBatches.getLastBatchTimestamp() < (timestamp-60000L)) {
+                        System.out.println("Thread \t"+Thread.currentThread().getId()+"\t its last batchtimestamp was \t"+expiringBatches.getLastBatchTimestamp());
                         out.collect(Tuple4.of(ctx.getCurrentKey(), keys, timestamp, timestamp + windowSize));
                         System.out.println("Thread \t"+Thread.currentThread().getId()+"\t  total removal time was \t"+totalRemovalTime.get());
                     } else {
@@ -339,7 +805,7 @@ public class GraphState implements Serializable {
         private transient ValueState<Long> lastTimestamp;
         private transient MapState<Long, HashMap<GradoopId, List<Tuple2<GradoopId, TemporalEdge>>>> sortedEdgeList;
         private transient ValueState<Long> nextOutputTimestamp;
-        private final LinkedList<Long> timestamps = new LinkedList<>();
+        private final ExpiringBatches expiringBatches = new ExpiringBatches(windowSize, slide);
         private final AtomicLong removalTimeCounter = new AtomicLong(0);
         private final AtomicLong totalRemovalTime = new AtomicLong(0);
 
@@ -355,6 +821,7 @@ public class GraphState implements Serializable {
         @Override
         public void open(Configuration parameters) throws Exception {
             System.out.println("Thread \t"+Thread.currentThread().getId()+"\t opens at: \t"+System.currentTimeMillis());
+            ParallelRange.retain();
             MapStateDescriptor<Long, HashMap<GradoopId, List<Tuple2<GradoopId, TemporalEdge>>>> descriptor =
                     new MapStateDescriptor<>(
                             "sortedEdgeList",
@@ -376,6 +843,12 @@ public class GraphState implements Serializable {
             nextOutputTimestamp = getRuntimeContext().getState(descriptor4);
         }
 
+        @Override
+        public void close() {
+            ParallelRange.release();
+            QS.close();
+        }
+
         @Override
         public void processElement(TemporalEdge edge, Context context, Collector<String> collector) throws Exception {
             if (lastTimestamp.value() == null) {
@@ -406,7 +879,7 @@ public class GraphState implements Serializable {
                 if(!lazyPurging && slide != null) {
                     context.timerService().registerProcessingTimeTimer(lastTimestamp.value() + windowSize);
                 } else {
-                    timestamps.add(lastTimestamp.value());
+                    expiringBatches.add(lastTimestamp.value() + windowSize);
                 }
             }
 
@@ -430,20 +903,8 @@ public class GraphState implements Serializable {
             if(slide != null) {
                 long start = System.currentTimeMillis();
                 if (lazyPurging) {
-                    boolean keepRemoving = true;
-                    while (keepRemoving) {
-                        long timestamp1;
-                        try {
-                            timestamp1 = timestamps.peek();
-                        } catch (NullPointerException e) {
-                            break;
-                        }
-                        if ((timestamp1 + windowSize) <= timestamp) {
-                            sortedEdgeList.remove(timestamp1);
-                            timestamps.poll();
-                        } else {
-                            keepRemoving = false;
-                        }
+                    for (long validTo : expiringBatches.expire(timestamp)) {
+                        sortedEdgeList.remove(validTo);
                     }
                 } else {
                     sortedEdgeList.remove(timestamp);
@@ -482,8 +943,8 @@ public class GraphState implements Serializable {
                             ctx.getCurrentKey(), keys, timestamp, timestamp + windowSize));
                     out.collect(ctx.getCurrentKey()+"\t :This took \t" + (ctx.timerService().currentProcessingTime() - current) );
                 } else {
-                    if(timestamps.peekLast() < (timestamp-60000L)) {
-                        System.out.println("Thread \t"+Thread.currentThread().getId()+"\t its last batchtimestamp was \t"+timestamps.peekLast());
+                    if(expiringBatches.getLastBatchTimestamp() < (timestamp-60000L)) {
+                        System.out.println("Thread \t"+Thread.currentThread().getId()+"\t its last batchtimestamp was \t"+expiringBatches.getLastBatchTimestamp());
                         System.out.println("Thread \t"+Thread.currentThread().getId()+"\t  total removal time was \t"+totalRemovalTime.get());
                         long counter = 0;
                         if(sortedEdgeList.isEmpty()) {
@@ -516,7 +977,7 @@ public class GraphState implements Serializable {
         private transient ValueState<Long> lastTimestamp;
         private transient MapState<Long, List<Tuple3<GradoopId, GradoopId, TemporalEdge>>> edgeList;
         private transient ValueState<Long> nextOutputTimestamp;
-        private final LinkedList<Long> timestamps = new LinkedList<>();
+        private final ExpiringBatches expiringBatches = new ExpiringBatches(windowSize, slide);
         private final AtomicLong removalTimeCounter = new AtomicLong(0);
         private final AtomicLong totalRemovalTime = new AtomicLong(0);
 
@@ -592,7 +1053,7 @@ public class GraphState implements Serializable {
                 if(!lazyPurging && slide != null) {
                     context.timerService().registerProcessingTimeTimer(lastTimestamp.value() + windowSize);
                 } else {
-                    timestamps.add(lastTimestamp.value());
+                    expiringBatches.add(lastTimestamp.value() + windowSize);
                 }
             }
 
@@ -610,20 +1071,8 @@ public class GraphState implements Serializable {
             if(slide!= null) {
                 long start = System.currentTimeMillis();
                 if(lazyPurging) {
-                    boolean keepRemoving = true;
-                    while(keepRemoving) {
-                        long timestamp1;
-                        try {
-                            timestamp1 = timestamps.peek();
-                        } catch (NullPointerException e) {
-                            break;
-                        }
-                        if((timestamp1 + windowSize) <= timestamp) {
-                            edgeList.remove(timestamp1);
-                            timestamps.poll();
-                        } else {
-                            keepRemoving = false;
-                        }
+                    for (long validTo : expiringBatches.expire(timestamp)) {
+                        edgeList.remove(validTo);
                     }
                 }else {
                     edgeList.remove(timestamp);
@@ -657,8 +1106,8 @@ public class GraphState implements Serializable {
                     ctx.timerService().registerProcessingTimeTimer(timestamp + slide);
                     out.collect(Tuple4.of(ctx.getCurrentKey(), keys, timestamp, timestamp + windowSize));
                 } else {
-                    if(timestamps.peekLast() < (timestamp-60000L)) {
-                        System.out.println("Thread \t"+Thread.currentThread().getId()+"\t its last batchtimestamp was \t"+timestamps.peekLast());
+                    if(expiringBatches.getLastBatchTimestamp() < (timestamp-60000L)) {
+                        System.out.println("Thread \t"+Thread.currentThread().getId()+"\t its last batchtimestamp was \t"+expiringBatches.getLastBatchTimestamp());
                         System.out.println("Thread \t"+Thread.currentThread().getId()+"\t  total removal time was \t"+totalRemovalTime.get());
                         out.collect(Tuple4.of(ctx.getCurrentKey(), keys, 0L, Long.MAX_VALUE));
                     } else {
@@ -677,7 +1126,7 @@ public class GraphState implements Serializable {
         private transient ValueState<Long> lastTimestamp;
         private transient MapState<Long, List<Tuple3<GradoopId, GradoopId, TemporalEdge>>> edgeList;
         private transient ValueState<Long> nextOutputTimestamp;
-        private final LinkedList<Long> timestamps = new LinkedList<>();
+        private final ExpiringBatches expiringBatches = new ExpiringBatches(windowSize, slide);
         private final AtomicLong removalTimeCounter = new AtomicLong(0);
         private final AtomicLong totalRemovalTime = new AtomicLong(0);
 
@@ -685,6 +1134,7 @@ public class GraphState implements Serializable {
         @Override
         public void open(Configuration parameters) throws Exception {
             System.out.println("Thread \t"+Thread.currentThread().getId()+"\t opens at: \t"+System.currentTimeMillis());
+            ParallelRange.retain();
             MapStateDescriptor<Long, List<Tuple3<GradoopId, GradoopId, TemporalEdge>>> descriptor = new MapStateDescriptor<>(
                     "edgeList",
                     TypeInformation.of(new TypeHint<Long>() {
@@ -705,6 +1155,12 @@ public class GraphState implements Serializable {
             nextOutputTimestamp = getRuntimeContext().getState(descriptor4);
         }
 
+        @Override
+        public void close() {
+            ParallelRange.release();
+            QS.close();
+        }
+
         @Override
         public void processElement(TemporalEdge edge, Context context, Collector<String> collector) throws Exception {
             if(edgeCountSinceTimestamp.value() == null) {
@@ -715,7 +1171,7 @@ public class GraphState implements Serializable {
                 if(!lazyPurging && slide != null) {
                     context.timerService().registerProcessingTimeTimer(lastTimestamp.value() + windowSize);
                 } else {
-                    timestamps.add(lastTimestamp.value());
+                    expiringBatches.add(lastTimestamp.value() + windowSize);
                 }
             }
 
@@ -737,7 +1193,7 @@ public class GraphState implements Serializable {
                 if(!lazyPurging && slide != null) {
                     context.timerService().registerProcessingTimeTimer(lastTimestamp.value() + windowSize);
                 } else {
-                    timestamps.add(lastTimestamp.value());
+                    expiringBatches.add(lastTimestamp.value() + windowSize);
                 }
             }
 
@@ -764,20 +1220,8 @@ public class GraphState implements Serializable {
             if(slide!= null) {
                 long start = System.currentTimeMillis();
                 if(lazyPurging) {
-                    boolean keepRemoving = true;
-                    while(keepRemoving) {
-                        long timestamp1;
-                        try {
-                            timestamp1 = timestamps.peek();
-                        } catch (NullPointerException e) {
-                            break;
-                        }
-                        if((timestamp1 + windowSize) <= timestamp) {
-                            edgeList.remove(timestamp1);
-                            timestamps.poll();
-                        } else {
-                            keepRemoving = false;
-                        }
+                    for (long validTo : expiringBatches.expire(timestamp)) {
+                        edgeList.remove(validTo);
                     }
                 }else {
                     edgeList.remove(timestamp);
@@ -800,7 +1244,7 @@ public class GraphState implements Serializable {
                 if(!lazyPurging && slide != null) {
                     ctx.timerService().registerProcessingTimeTimer(lastTimestamp.value() + windowSize);
                 } else {
-                    timestamps.add(lastTimestamp.value());
+                    expiringBatches.add(lastTimestamp.value() + windowSize);
                 }
 
                 if(!QS.isInitilized()) {
@@ -821,8 +1265,8 @@ public class GraphState implements Serializable {
                                     timestamp, timestamp + windowSize));
                     out.collect(ctx.getCurrentKey()+"\t :This took \t" + (ctx.timerService().currentProcessingTime() - current));
                 } else {
-                    if(timestamps.peekLast() < (timestamp-60000L)) {
-                        System.out.println("Thread \t"+Thread.currentThread().getId()+"\t its last batchtimestamp was \t"+timestamps.peekLast());
+                    if(expiringBatches.getLastBatchTimestamp() < (timestamp-60000L)) {
+                        System.out.println("Thread \t"+Thread.currentThread().getId()+"\t its last batchtimestamp was \t"+expiringBatches.getLastBatchTimestamp());
                         System.out.println("Thread \t"+Thread.currentThread().getId()+"\t  total removal time was \t"+totalRemovalTime.get());
 
                         long counter = 0;
@@ -845,16 +1289,32 @@ public class GraphState implements Serializable {
     }
 
     // Adjacency List
-    public class ALdecoupled extends KeyedProcessFunction<Integer, TemporalEdge, Tuple4<Integer, Integer[], Long, Long>> {
+    public class ALdecoupled extends KeyedProcessFunction<Integer, TemporalEdge, Tuple4<Integer, Integer[], Long, Long>>
+            implements CheckpointedFunction {
 
-        private transient ValueState<Integer> edgeCountSinceTimestamp;
-        private transient ValueState<Long> lastTimestamp;
         private transient MapState<Long, HashMap<GradoopId, HashMap<GradoopId, TemporalEdge>>> adjacencyList;
-        private transient ValueState<Long> nextOutputTimestamp;
-        private final LinkedList<Long> timestamps = new LinkedList<>();
-        private final AtomicLong removalTimeCounter = new AtomicLong(0);
-        private final AtomicLong totalRemovalTime = new AtomicLong(0);
+        private transient BufferedIngest ingest;
+        private transient ListState<Tuple4<Integer, Long, Long, TemporalEdge[]>> bufferedEdges;
+        private final ExpiringBatches expiringBatches = new ExpiringBatches(windowSize, slide);
         private final AtomicLong counter = new AtomicLong(0);
+        private final AtomicLong lateEdges = new AtomicLong(0);
+        private transient EdgeProbeServer probeServer;
+        // Published batches, for the probe server and the algorithms of the other partitions in this JVM.
+        private transient LocalPartitionRegistry partitions;
+        private transient HashSet<Integer> registeredKeys;
+        private transient ValueState<String> probeEndpoint;
+        private transient ValueState<EdgeBloomFilter> edgeBloomFilter;
+        private transient HashMap<Integer, CountingEdgeBloomFilter> edgeBloomFilterCounts;
+
+        @Override
+        public void initializeState(FunctionInitializationContext context) throws Exception {
+            bufferedEdges = getBufferedEdgesState(context);
+        }
+
+        @Override
+        public void snapshotState(FunctionSnapshotContext context) throws Exception {
+            ingest.snapshot();
+        }
 
         @Override
         public void open(Configuration parameters) throws Exception {
@@ -862,22 +1322,33 @@ public class GraphState implements Serializable {
             //Experiments.log.appendLine("Thread \t"+Thread.currentThread().getId()+"\t opens at: \t"+System.currentTimeMillis());
             MapStateDescriptor<Long, HashMap<GradoopId, HashMap<GradoopId, TemporalEdge>>> descriptor = new MapStateDescriptor<>(
                     "adjacencyList",
-                    TypeInformation.of(new TypeHint<Long>() {
-                    }),
-                    TypeInformation.of(new TypeHint<HashMap<GradoopId, HashMap<GradoopId, TemporalEdge>>>() {
-                    })
+                    LongSerializer.INSTANCE,
+                    new AdjacencyBatchSerializer(QS.isKeepEdgeData())
             );
             descriptor.setQueryable("adjacencyList");
             adjacencyList = getRuntimeContext().getMapState(descriptor);
-            ValueStateDescriptor<Integer> descriptor2 = new ValueStateDescriptor<Integer>(
-                    "edgeCountSinceTimestamp", Integer.class);
-            edgeCountSinceTimestamp = getRuntimeContext().getState(descriptor2);
-            ValueStateDescriptor<Long> descriptor3 = new ValueStateDescriptor<Long>(
-                    "lastTimestamp", Long.class);
-            lastTimestamp = getRuntimeContext().getState(descriptor3);
-            ValueStateDescriptor<Long> descriptor4 = new ValueStateDescriptor<Long>(
-                    "nextOutputTimestamp", Long.class);
-            nextOutputTimestamp = getRuntimeContext().getState(descriptor4);
+            ingest = new BufferedIngest(getRuntimeContext(), expiringBatches, bufferedEdges);
+            if(QS.isProbePushDownEnabled() || QS.isLocalPartitionAccessEnabled()) {
+                partitions = LocalPartitionRegistry.acquire(QS.getPartitionScope());
+                registeredKeys = new HashSet<>();
+            }
+            if(QS.isProbePushDownEnabled()) {
+                ValueStateDescriptor<String> descriptor5 = new ValueStateDescriptor<String>(
+                        "probeEndpoint", String.class);
+                descriptor5.setQueryable("probeEndpoint");
+                probeEndpoint = getRuntimeContext().getState(descriptor5);
+                probeServer = new EdgeProbeServer(partitions, QS.getProbeSecret());
+            }
+            if(QS.isEdgeBloomFilterEnabled()) {
+                ValueStateDescriptor<EdgeBloomFilter> descriptor6 = new ValueStateDescriptor<>(
+                        "edgeBloomFilter",
+                        TypeInformation.of(new TypeHint<EdgeBloomFilter>() {
+                        })
+                );
+                descriptor6.setQueryable("edgeBloomFilter");
+                edgeBloomFilter = getRuntimeContext().getState(descriptor6);
+                edgeBloomFilterCounts = new HashMap<>();
+            }
         }
 
         @Override
@@ -885,177 +1356,184 @@ public class GraphState implements Serializable {
             //Experiments.log.appendLine("Thread \t"+Thread.currentThread().getId()+"\t closes at: \t"+System.currentTimeMillis());
             System.out.println("Thread \t"+Thread.currentThread().getId()+"\t closes at: \t"+System.currentTimeMillis());
 
-            System.out.println("Thread \t"+Thread.currentThread().getId()+"\t  total removal time was \t"+totalRemovalTime.get());
-
+            System.out.println("Thread \t"+Thread.currentThread().getId()+"\t  total removal time was \t"+ingest.totalRemovalTime.get());
+            if(eventTime) {
+                System.out.println("Thread \t"+Thread.currentThread().getId()+"\t dropped late edges: \t"+lateEdges.get());
+            }
+            if(probeServer != null) {
+                probeServer.close();
+            }
+            if(partitions != null) {
+                for(Integer key : registeredKeys) {
+                    partitions.unregisterAll(key);
+                }
+                LocalPartitionRegistry.release(QS.getPartitionScope());
+            }
         }
 
         @Override
         public void processElement(TemporalEdge edge, Context context, Collector<Tuple4<Integer, Integer[], Long, Long>> collector) throws Exception {
-            if(nextOutputTimestamp.value() == null && slide != null) {
-                nextOutputTimestamp.update(firstTimestamp + slide);
-                context.timerService().registerProcessingTimeTimer(nextOutputTimestamp.value());
-            } else if (nextOutputTimestamp.value()== null && slide == null) {
-                nextOutputTimestamp.update(firstTimestamp + 10000L);
-                context.timerService().registerProcessingTimeTimer(nextOutputTimestamp.value());
+            registerBatches(partitions, registeredKeys, context.getCurrentKey(), adjacencyList);
+            restoreEdgeBloomFilter(edgeBloomFilterCounts, context.getCurrentKey(), adjacencyList);
+            if(eventTime) {
+                processEventTime(edge, context);
+                return;
             }
+            Long newBatch = ingest.add(context.getCurrentKey(), edge, context.timerService(), this::flush);
+            if(newBatch != null && probeServer != null) {
+                // Earlier batches get no more edges.
+                probeServer.sealBefore(context.getCurrentKey(), newBatch);
+            }
+        }
 
-            if(lastTimestamp.value() == null) {
-                lastTimestamp.update(firstTimestamp);
-                edgeCountSinceTimestamp.update(0);
+        // Event time: the buffer holds the edges of one batch until an edge of another batch comes in, with slightly
+        // out of order input most edges still get written in bulk.
+        private void processEventTime(TemporalEdge edge, Context context) throws Exception {
+            long batchStart = eventTimeBatch(edge);
+            if(batchStart <= context.timerService().currentWatermark()) {
+                lateEdges.incrementAndGet();
+                return;
+            }
+            EdgeBatchBuffer buffer = ingest.batchBuffers.get(context.getCurrentKey());
+            boolean otherBatch = buffer == null || buffer.getLastTimestamp() != batchStart;
+            if(buffer == null) {
+                buffer = new EdgeBatchBuffer(batchSize, batchStart, Long.MIN_VALUE);
+                ingest.batchBuffers.put(context.getCurrentKey(), buffer);
+            } else if(otherBatch || buffer.isFull()) {
+                flush(context.getCurrentKey(), buffer);
+                buffer.setLastTimestamp(batchStart);
             }
+            if(otherBatch && !adjacencyList.contains(batchStart + windowSize)) {
+                context.timerService().registerEventTimeTimer(batchStart);
+                expiringBatches.add(batchStart + windowSize);
+            }
+            buffer.add(edge);
+        }
 
-            if(edgeCountSinceTimestamp.value() == batchSize) {
-                edgeCountSinceTimestamp.update(0);
-                long newtimestamp = context.timerService().currentProcessingTime();
-                if(newtimestamp == lastTimestamp.value()) {
-                    newtimestamp++;
+        // Writes the buffered edges to the batch of the current timestamp with a single put of a new version.
+        private void flush(Integer key, EdgeBatchBuffer buffer) throws Exception {
+            if(buffer.isEmpty()) {
+                return;
+            }
+            long validTo = buffer.getLastTimestamp() + windowSize;
+            HashMap<GradoopId, HashMap<GradoopId, TemporalEdge>> batch = copyOnWrite(adjacencyList.get(validTo),
+                    buffer, validTo, key, edgeBloomFilterCounts);
+            adjacencyList.put(validTo, batch);
+            publishEdgeBloomFilter(edgeBloomFilter, edgeBloomFilterCounts, key);
+            if(partitions != null) {
+                partitions.register(key, validTo, batch);
+            }
+            if(probeServer != null) {
+                if(probeEndpoint.value() == null) {
+                    probeEndpoint.update(probeServer.getEndpoint());
                 }
-                lastTimestamp.update(newtimestamp);
             }
+            buffer.clear();
+        }
 
-            long currentTime = lastTimestamp.value();
-            long validTo = currentTime + windowSize;
-
-            if(edgeCountSinceTimestamp.value() == 0) {
-                adjacencyList.put(validTo, new HashMap<>());
-                if(!lazyPurging && slide != null) {
-                    context.timerService().registerProcessingTimeTimer(lastTimestamp.value() + windowSize);
-                } else {
-                    timestamps.add(lastTimestamp.value());
+        @Override
+        public void onTimer(long timestamp, OnTimerContext ctx, Collector<Tuple4<Integer, Integer[], Long, Long>> out) throws Exception {
+            registerBatches(partitions, registeredKeys, ctx.getCurrentKey(), adjacencyList);
+            restoreEdgeBloomFilter(edgeBloomFilterCounts, ctx.getCurrentKey(), adjacencyList);
+            EdgeBatchBuffer buffer;
+            if(eventTime) {
+                buffer = ingest.batchBuffers.get(ctx.getCurrentKey());
+                if(buffer != null) {
+                    flush(ctx.getCurrentKey(), buffer);
                 }
+                if(probeServer != null) {
+                    // Edges of batches up to the watermark are late.
+                    probeServer.sealBefore(ctx.getCurrentKey(), timestamp + windowSize + 1);
+                }
+            } else {
+                // The slide ends the current batch, so the buffered edges are in the state before it is output.
+                buffer = ingest.flushForOutput(ctx.getCurrentKey(), timestamp, this::flush);
             }
-
-            GradoopId source = edge.getSourceId();
-            GradoopId target = edge.getTargetId();
-            edge.setValidTo(validTo);
-
-            /*
-
-            if(!adjacencyList.contains(validTo)) {
-                adjacencyList.put(validTo, new HashMap<>());
+            ingest.purge(timestamp, validTo -> {
+                if(edgeBloomFilter != null) {
+                    removeFromEdgeBloomFilter(edgeBloomFilterCounts, ctx.getCurrentKey(), adjacencyList.get(validTo));
+                }
+                adjacencyList.remove(validTo);
+                if(partitions != null) {
+                    partitions.unregister(ctx.getCurrentKey(), validTo);
+                }
+            });
+            publishEdgeBloomFilter(edgeBloomFilter, edgeBloomFilterCounts, ctx.getCurrentKey());
+
+            if(eventTime) {
+                initializeQS();
+                registerNextEventTimeOutput(timestamp, ctx.timerService(), expiringBatches);
+                out.collect(Tuple4.of(ctx.getCurrentKey(), keys, timestamp, timestamp + windowSize));
+                return;
             }
 
-            if(!adjacencyList.get(validTo).containsKey(source)) {
-                adjacencyList.get(validTo).put(source, new HashMap<>());
+            if(buffer != null) {
+                initializeQS();
+                Tuple2<Long, Long> window = ingest.endSlide(ctx.getCurrentKey(), buffer, timestamp, ctx.timerService());
+                if(window != null) {
+                    out.collect(Tuple4.of(ctx.getCurrentKey(), keys, window.f0, window.f1));
+                }
+                if(window != null && slide == null) {
+                    AtomicLong counter = new AtomicLong(0);
+                    for(Long key : adjacencyList.keys()) {
+                        for(GradoopId key2 : adjacencyList.get(key).keySet()) {
+                            counter.getAndAdd(adjacencyList.get(key).get(key2).keySet().size());
+                        }
+                    }
+                    System.out.println("Thread \t"+Thread.currentThread().getId()+"\t had edgeCount: \t "+counter.get()+
+                            " datastructure adjacencylist");
+                }
             }
-            adjacencyList.get(validTo).get(source).put(target, edge);
+        }
+    }
 
+    // Adjacency List with Algorithm onTimer
+    public class ALwithAlg extends KeyedProcessFunction<Integer, TemporalEdge, String>
+            implements CheckpointedFunction {
 
-             */
-            try {
-                adjacencyList.get(validTo).get(source).put(target, edge);
-                //System.out.println(counter.incrementAndGet());
-            } catch (NullPointerException e) {
-                HashMap<GradoopId, TemporalEdge> toPut = new HashMap<>();
-                toPut.put(target, edge);
-                adjacencyList.get(validTo).put(source, toPut);
-                //System.out.println(counter.incrementAndGet());
-            }
+        private transient ValueState<Integer> edgeCountSinceTimestamp;
+        private transient ValueState<Long> lastTimestamp;
+        private transient MapState<Long, HashMap<GradoopId, HashMap<GradoopId, TemporalEdge>>> adjacencyList;
+        private transient ValueState<Long> nextOutputTimestamp;
+        private final ExpiringBatches expiringBatches = new ExpiringBatches(windowSize, slide);
+        private final AtomicLong removalTimeCounter = new AtomicLong(0);
+        private final AtomicLong totalRemovalTime = new AtomicLong(0);
+        private final AtomicLong lateEdges = new AtomicLong(0);
+        private transient EdgeProbeServer probeServer;
+        // Published batches, for the probe server and the algorithms of the other partitions in this JVM.
+        private transient LocalPartitionRegistry partitions;
+        private transient HashSet<Integer> registeredKeys;
+        private transient ValueState<String> probeEndpoint;
+        private transient ValueState<EdgeBloomFilter> edgeBloomFilter;
+        private transient HashMap<Integer, CountingEdgeBloomFilter> edgeBloomFilterCounts;
+        // Edges of the batch each key is filling, published as a new version of the batch when it changes.
+        private transient HashMap<Integer, EdgeBatchBuffer> openBatches;
+        private transient ListState<Tuple4<Integer, Long, Long, TemporalEdge[]>> bufferedEdges;
 
+        @Override
+        public void initializeState(FunctionInitializationContext context) throws Exception {
+            bufferedEdges = getBufferedEdgesState(context);
+        }
 
-            edgeCountSinceTimestamp.update(edgeCountSinceTimestamp.value()+1);
+        @Override
+        public void snapshotState(FunctionSnapshotContext context) throws Exception {
+            snapshotBuffers(openBatches, bufferedEdges);
         }
 
         @Override
-        public void onTimer(long timestamp, OnTimerContext ctx, Collector<Tuple4<Integer, Integer[], Long, Long>> out) throws Exception {
-            if(slide != null) {
-                long start = System.currentTimeMillis();
-                if (lazyPurging) {
-                    boolean keepRemoving = true;
-                    while (keepRemoving) {
-                        long timestamp1;
-                        try {
-                            timestamp1 = timestamps.peek();
-                        } catch (NullPointerException e) {
-                            break;
-                        }
-                        if ((timestamp1 + windowSize) <= timestamp) {
-                            adjacencyList.remove(timestamp1);
-                            timestamps.poll();
-                        } else {
-                            keepRemoving = false;
-                        }
-                    }
-                } else {
-                    adjacencyList.remove(timestamp);
-                }
-                long removalTime = (System.currentTimeMillis()-start);
-                removalTimeCounter.getAndAdd(removalTime);
-                totalRemovalTime.getAndAdd(removalTime);
-            }
-
-            if(timestamp == nextOutputTimestamp.value()) {
-                //System.out.println(ctx.getCurrentKey()+"\t :State removal "+
-                  //      "took \t"+removalTimeCounter.get());
-                removalTimeCounter.set(0);
-                edgeCountSinceTimestamp.update(0);
-                long newtimestamp = timestamp;
-                if(newtimestamp == lastTimestamp.value()) {
-                    newtimestamp++;
-                }
-                lastTimestamp.update(newtimestamp);
-
-                if(!QS.isInitilized()) {
-                    FileReader fr = new FileReader("/share/hadoop/annemarie/tempJobId");
-                    BufferedReader bf = new BufferedReader(fr);
-                    QS.initialize(JobID.fromHexString(bf.readLine()));
-                    bf.close();
-                    fr.close();
-                }
-
-                if(slide != null) {
-                    nextOutputTimestamp.update(timestamp + slide);
-                    ctx.timerService().registerProcessingTimeTimer(timestamp + slide);
-                    out.collect(Tuple4.of(ctx.getCurrentKey(), keys, timestamp, timestamp + windowSize));
-                } else {
-                    if(timestamps.peekLast() < (timestamp-60000L)) {
-                        out.collect(Tuple4.of(ctx.getCurrentKey(), keys, 0L, Long.MAX_VALUE));
-                        System.out.println("Thread \t"+Thread.currentThread().getId()+"\t its last batchtimestamp was \t"+timestamps.peekLast());
-                        System.out.println("Thread \t"+Thread.currentThread().getId()+"\t  total removal time was \t"+totalRemovalTime.get());
-                        AtomicLong counter = new AtomicLong(0);
-                        for(Long key : adjacencyList.keys()) {
-                            for(GradoopId key2 : adjacencyList.get(key).keySet()) {
-                                counter.getAndAdd(adjacencyList.get(key).get(key2).keySet().size());
-                                //System.out.println(adjacencyList.get(key).get(key2).toString());
-                            }
-                        }
-                        System.out.println("Thread \t"+Thread.currentThread().getId()+"\t had edgeCount: \t "+counter.get()+
-                                " datastructure adjacencylist");
-                    } else {
-                        nextOutputTimestamp.update(timestamp+60000L);
-                        ctx.timerService().registerProcessingTimeTimer(nextOutputTimestamp.value());
-                    }
-                }
-            }
-        }
-    }
-
-    // Adjacency List with Algorithm onTimer
-    public class ALwithAlg extends KeyedProcessFunction<Integer, TemporalEdge, String> {
-
-        private transient ValueState<Integer> edgeCountSinceTimestamp;
-        private transient ValueState<Long> lastTimestamp;
-        private transient MapState<Long, HashMap<GradoopId, HashMap<GradoopId, TemporalEdge>>> adjacencyList;
-        private transient ValueState<Long> nextOutputTimestamp;
-        private final LinkedList<Long> timestamps = new LinkedList<>();
-        private final AtomicLong removalTimeCounter = new AtomicLong(0);
-        private final AtomicLong totalRemovalTime = new AtomicLong(0);
-
-
-
-        @Override
-        public void open(Configuration parameters) {
+        public void open(Configuration parameters) throws Exception {
             System.out.println("Thread \t"+Thread.currentThread().getId()+"\t opens at: \t"+System.currentTimeMillis());
+            ParallelRange.retain();
 
             MapStateDescriptor<Long, HashMap<GradoopId, HashMap<GradoopId, TemporalEdge>>> descriptor = new MapStateDescriptor<>(
                     "adjacencyList",
-                    TypeInformation.of(new TypeHint<Long>() {
-                    }),
-                    TypeInformation.of(new TypeHint<HashMap<GradoopId, HashMap<GradoopId, TemporalEdge>>>() {
-                    })
+                    LongSerializer.INSTANCE,
+                    new AdjacencyBatchSerializer(QS.isKeepEdgeData())
             );
             descriptor.setQueryable("adjacencyList");
             adjacencyList = getRuntimeContext().getMapState(descriptor);
+            openBatches = new HashMap<>();
+            restoreBuffers(bufferedEdges, getRuntimeContext(), openBatches);
             ValueStateDescriptor<Integer> descriptor2 = new ValueStateDescriptor<Integer>(
                     "edgeCountSinceTimestamp", Integer.class);
             edgeCountSinceTimestamp = getRuntimeContext().getState(descriptor2);
@@ -1065,10 +1543,55 @@ public class GraphState implements Serializable {
             ValueStateDescriptor<Long> descriptor4 = new ValueStateDescriptor<Long>(
                     "nextOutputTimestamp", Long.class);
             nextOutputTimestamp = getRuntimeContext().getState(descriptor4);
+            if(QS.isProbePushDownEnabled() || QS.isLocalPartitionAccessEnabled()) {
+                partitions = LocalPartitionRegistry.acquire(QS.getPartitionScope());
+                registeredKeys = new HashSet<>();
+            }
+            if(QS.isProbePushDownEnabled()) {
+                ValueStateDescriptor<String> descriptor5 = new ValueStateDescriptor<String>(
+                        "probeEndpoint", String.class);
+                descriptor5.setQueryable("probeEndpoint");
+                probeEndpoint = getRuntimeContext().getState(descriptor5);
+                probeServer = new EdgeProbeServer(partitions, QS.getProbeSecret());
+            }
+            if(QS.isEdgeBloomFilterEnabled()) {
+                ValueStateDescriptor<EdgeBloomFilter> descriptor6 = new ValueStateDescriptor<>(
+                        "edgeBloomFilter",
+                        TypeInformation.of(new TypeHint<EdgeBloomFilter>() {
+                        })
+                );
+                descriptor6.setQueryable("edgeBloomFilter");
+                edgeBloomFilter = getRuntimeContext().getState(descriptor6);
+                edgeBloomFilterCounts = new HashMap<>();
+            }
+        }
+
+        @Override
+        public void close() {
+            ParallelRange.release();
+            QS.close();
+            if(eventTime) {
+                System.out.println("Thread \t"+Thread.currentThread().getId()+"\t dropped late edges: \t"+lateEdges.get());
+            }
+            if(probeServer != null) {
+                probeServer.close();
+            }
+            if(partitions != null) {
+                for(Integer key : registeredKeys) {
+                    partitions.unregisterAll(key);
+                }
+                LocalPartitionRegistry.release(QS.getPartitionScope());
+            }
         }
 
         @Override
         public void processElement(TemporalEdge edge, Context context, Collector<String> collector) throws Exception {
+            registerBatches(partitions, registeredKeys, context.getCurrentKey(), adjacencyList);
+            restoreEdgeBloomFilter(edgeBloomFilterCounts, context.getCurrentKey(), adjacencyList);
+            if(eventTime) {
+                processEventTime(edge, context);
+                return;
+            }
             if(edgeCountSinceTimestamp.value() == null) {
                 edgeCountSinceTimestamp.update(0);
             }
@@ -1086,6 +1609,7 @@ public class GraphState implements Serializable {
             }
 
             if(edgeCountSinceTimestamp.value() == batchSize) {
+                publish(context.getCurrentKey());
                 edgeCountSinceTimestamp.update(0);
                 long newtimestamp = context.timerService().currentProcessingTime();
                 if(newtimestamp == lastTimestamp.value()) {
@@ -1097,66 +1621,160 @@ public class GraphState implements Serializable {
             long currentTime = lastTimestamp.value();
             long validTo = currentTime + windowSize;
 
-            if(edgeCountSinceTimestamp.value() == 0 || !adjacencyList.contains(validTo)) {
-                adjacencyList.put(validTo, new HashMap<>());
+            // lastTimestamp only changes together with a reset of edgeCountSinceTimestamp, so a count of 0 is the first
+            // edge of a new batch, without looking the batch up in the state.
+            if(edgeCountSinceTimestamp.value() == 0) {
+                HashMap<GradoopId, HashMap<GradoopId, TemporalEdge>> batch = new HashMap<>();
+                adjacencyList.put(validTo, batch);
+                if(partitions != null) {
+                    partitions.register(context.getCurrentKey(), validTo, batch);
+                }
+                if(probeServer != null) {
+                    probeServer.sealBefore(context.getCurrentKey(), validTo);
+                    if(probeEndpoint.value() == null) {
+                        probeEndpoint.update(probeServer.getEndpoint());
+                    }
+                }
                 if(!lazyPurging && slide != null) {
                     context.timerService().registerProcessingTimeTimer(lastTimestamp.value() + windowSize);
                 } else {
-                    timestamps.add(lastTimestamp.value());
+                    expiringBatches.add(lastTimestamp.value() + windowSize);
                 }
             }
 
-            GradoopId source = edge.getSourceId();
-            GradoopId target = edge.getTargetId();
-            edge.setValidTo(validTo);
+            addToOpenBatch(context.getCurrentKey(), currentTime, edge);
+            edgeCountSinceTimestamp.update(edgeCountSinceTimestamp.value()+1);
+        }
 
-            try {
-                adjacencyList.get(validTo).get(source).put(target, edge);
-            } catch (NullPointerException e) {
-                HashMap<GradoopId, TemporalEdge> toPut = new HashMap<>();
-                toPut.put(target, edge);
-                adjacencyList.get(validTo).put(source, toPut);
+        private void processEventTime(TemporalEdge edge, Context context) throws Exception {
+            long batchStart = eventTimeBatch(edge);
+            if(batchStart <= context.timerService().currentWatermark()) {
+                lateEdges.incrementAndGet();
+                return;
             }
-            edgeCountSinceTimestamp.update(edgeCountSinceTimestamp.value()+1);
+            long validTo = batchStart + windowSize;
+            // Out of order edges can go to any batch, the state is only looked at when the edge is not for the batch
+            // that is buffered already.
+            EdgeBatchBuffer buffer = openBatches.get(context.getCurrentKey());
+            boolean buffered = buffer != null && buffer.getLastTimestamp() == batchStart;
+            if(!buffered && !adjacencyList.contains(validTo)) {
+                HashMap<GradoopId, HashMap<GradoopId, TemporalEdge>> batch = new HashMap<>();
+                adjacencyList.put(validTo, batch);
+                if(partitions != null) {
+                    partitions.register(context.getCurrentKey(), validTo, batch);
+                }
+                if(probeServer != null) {
+                    if(probeEndpoint.value() == null) {
+                        probeEndpoint.update(probeServer.getEndpoint());
+                    }
+                }
+                context.timerService().registerEventTimeTimer(batchStart);
+                expiringBatches.add(validTo);
+            }
+            addToOpenBatch(context.getCurrentKey(), batchStart, edge);
+        }
+
+        // Buffers the edge for the batch starting at batchStart. Edges of another batch, or a full buffer, publish
+        // the buffered edges first.
+        private void addToOpenBatch(Integer key, long batchStart, TemporalEdge edge) throws Exception {
+            EdgeBatchBuffer buffer = openBatches.get(key);
+            if(buffer == null) {
+                buffer = new EdgeBatchBuffer(batchSize, batchStart, Long.MIN_VALUE);
+                openBatches.put(key, buffer);
+            } else if(buffer.getLastTimestamp() != batchStart || buffer.isFull()) {
+                publish(key);
+                buffer.setLastTimestamp(batchStart);
+            }
+            buffer.add(edge);
+        }
+
+        // Puts a new version of the open batch of the key with its buffered edges. The version the queries may be
+        // reading stays as it is.
+        private void publish(Integer key) throws Exception {
+            EdgeBatchBuffer buffer = openBatches.get(key);
+            if(buffer == null || buffer.isEmpty()) {
+                return;
+            }
+            long validTo = buffer.getLastTimestamp() + windowSize;
+            HashMap<GradoopId, HashMap<GradoopId, TemporalEdge>> batch = copyOnWrite(adjacencyList.get(validTo),
+                    buffer, validTo, key, edgeBloomFilterCounts);
+            adjacencyList.put(validTo, batch);
+            publishEdgeBloomFilter(edgeBloomFilter, edgeBloomFilterCounts, key);
+            if(partitions != null) {
+                partitions.register(key, validTo, batch);
+            }
+            buffer.clear();
         }
 
 
         @Override
         public void onTimer(long timestamp, OnTimerContext ctx, Collector<String> out) {
+            try {
+                registerBatches(partitions, registeredKeys, ctx.getCurrentKey(), adjacencyList);
+                restoreEdgeBloomFilter(edgeBloomFilterCounts, ctx.getCurrentKey(), adjacencyList);
+                // The algorithm and the queries see the edges of the open batch too.
+                publish(ctx.getCurrentKey());
+            } catch (Exception e) {
+                e.printStackTrace();
+            }
+            if(eventTime && probeServer != null) {
+                // Edges of batches up to the watermark are late.
+                probeServer.sealBefore(ctx.getCurrentKey(), timestamp + windowSize + 1);
+            }
             if(slide != null) {
                 long start = System.currentTimeMillis();
-                if (lazyPurging) {
-                    boolean keepRemoving = true;
-                    while (keepRemoving) {
-                        long timestamp1;
+                if (lazyPurging || eventTime) {
+                    for (long validTo : expiringBatches.expire(timestamp)) {
                         try {
-                            timestamp1 = timestamps.peek();
-                        } catch (NullPointerException e) {
-                            break;
-                        }
-                        if ((timestamp1 + windowSize) <= timestamp) {
-                            try {
-                                adjacencyList.remove(timestamp1);
-                            } catch (Exception e) {
-                                e.printStackTrace();
+                            if(edgeBloomFilter != null) {
+                                removeFromEdgeBloomFilter(edgeBloomFilterCounts, ctx.getCurrentKey(), adjacencyList.get(validTo));
                             }
-                            timestamps.poll();
-                        } else {
-                            keepRemoving = false;
+                            adjacencyList.remove(validTo);
+                        } catch (Exception e) {
+                            e.printStackTrace();
+                        }
+                        if(partitions != null) {
+                            partitions.unregister(ctx.getCurrentKey(), validTo);
                         }
                     }
                 } else {
                     try {
+                        if(edgeBloomFilter != null) {
+                            removeFromEdgeBloomFilter(edgeBloomFilterCounts, ctx.getCurrentKey(), adjacencyList.get(timestamp));
+                        }
                         adjacencyList.remove(timestamp);
                     } catch (Exception e) {
                         e.printStackTrace();
                     }
+                    if(partitions != null) {
+                        partitions.unregister(ctx.getCurrentKey(), timestamp);
+                    }
+                }
+                try {
+                    publishEdgeBloomFilter(edgeBloomFilter, edgeBloomFilterCounts, ctx.getCurrentKey());
+                } catch (Exception e) {
+                    e.printStackTrace();
                 }
                 long removalTime = (System.currentTimeMillis()-start);
                 removalTimeCounter.getAndAdd(removalTime);
                 totalRemovalTime.getAndAdd(removalTime);
             }
 
+            if(eventTime) {
+                registerNextEventTimeOutput(timestamp, ctx.timerService(), expiringBatches);
+                long current = System.currentTimeMillis();
+                try {
+                    initializeQS();
+                    out.collect(ctx.getCurrentKey()+"\t :AlgResult at time '" + timestamp + " : " +
+                            algorithm.doAlgorithm(adjacencyList, QS, ctx.getCurrentKey(), keys,
+                                    timestamp, timestamp + windowSize));
+                } catch (Exception e) {
+                    e.printStackTrace();
+                }
+                out.collect(ctx.getCurrentKey()+"\t :Alg took \t" + (System.currentTimeMillis() - current) + "\t ms");
+                return;
+            }
+
             try {
                 if(timestamp == nextOutputTimestamp.value()) {
                     //System.out.println(ctx.getCurrentKey()+"\t :State removal "+
@@ -1193,8 +1811,8 @@ public class GraphState implements Serializable {
                         out.collect(ctx.getCurrentKey()+"\t :Alg took \t" + (ctx.timerService().currentProcessingTime() - current) + "\t ms");
 
                     } else {
-                        if(timestamps.peekLast() < (timestamp-60000L)) {
-                            System.out.println("Thread \t"+Thread.currentThread().getId()+"\t its last batchtimestamp was \t"+timestamps.peekLast());
+                        if(expiringBatches.getLastBatchTimestamp() < (timestamp-60000L)) {
+                            System.out.println("Thread \t"+Thread.currentThread().getId()+"\t its last batchtimestamp was \t"+expiringBatches.getLastBatchTimestamp());
                             System.out.println("Thread \t"+Thread.currentThread().getId()+"\t  total removal time was \t"+totalRemovalTime.get());
 
                             long counter = 0;
@@ -1221,4 +1839,1011 @@ public class GraphState implements Serializable {
             }
         }
     }
+
+    // The unsealed edges of the open batches of a compactAL operator, {key, validTo, edges}, as union list state, so
+    // after rescaling every subtask can take those of the keys it got.
+    private static ListState<Tuple3<Integer, Long, long[]>> getCompactOpenBatchesState(
+            FunctionInitializationContext context) throws Exception {
+        return context.getOperatorStateStore().getUnionListState(new ListStateDescriptor<>(
+                "compactOpenBatches",
+                TypeInformation.of(new TypeHint<Tuple3<Integer, Long, long[]>>() {
+                })
+        ));
+    }
+
+    // Writes the edges of the open batches that are not sealed to keyed state yet to the checkpoint.
+    private static void snapshotOpenBatches(HashMap<Integer, CompactAdjacencyList> adjacencyLists,
+                                            ListState<Tuple3<Integer, Long, long[]>> openBatches) throws Exception {
+        openBatches.clear();
+        for(Map.Entry<Integer, CompactAdjacencyList> entry : adjacencyLists.entrySet()) {
+            long[] edges = entry.getValue().getUnsealedEdges();
+            if(edges.length > 0) {
+                openBatches.add(Tuple3.of(entry.getKey(), entry.getValue().getOpenValidTo(), edges));
+            }
+        }
+    }
+
+    // Puts the restored open batches of the keys of this subtask in adjacencyLists. Every subtask gets those of all
+    // keys. The purge timers are restored by Flink, the other ways purge from expiringBatches.
+    private void restoreOpenBatches(ListState<Tuple3<Integer, Long, long[]>> openBatches, RuntimeContext context,
+                                    HashMap<Integer, CompactAdjacencyList> adjacencyLists,
+                                    MapState<Long, SealedAdjacencyBatch> sealedBatches,
+                                    ExpiringBatches expiringBatches) throws Exception {
+        for(Tuple3<Integer, Long, long[]> restored : openBatches.get()) {
+            if(KeyGroupRangeAssignment.assignKeyToParallelOperator(restored.f0,
+                    context.getMaxNumberOfParallelSubtasks(), context.getNumberOfParallelSubtasks())
+                    != context.getIndexOfThisSubtask()) {
+                continue;
+            }
+            CompactAdjacencyList adjacencyList = new CompactAdjacencyList(sealedBatches);
+            adjacencyList.restoreUnsealedEdges(restored.f1, restored.f2);
+            adjacencyLists.put(restored.f0, adjacencyList);
+            if(lazyPurging || slide == null) {
+                expiringBatches.add(restored.f1);
+            }
+        }
+    }
+
+    // Compact adjacency list decoupled. Sealed batches are kept in CSR format in the queryable "adjacencyList" state,
+    // the open batch of every key in the operator until it is sealed, at the latest by the next slide. Checkpoints keep
+    // the unsealed edges in the operator state of initializeState, see snapshotOpenBatches.
+    public class CompactALdecoupled extends KeyedProcessFunction<Integer, TemporalEdge, Tuple4<Integer, Integer[], Long, Long>>
+            implements CheckpointedFunction {
+
+        private transient ValueState<Integer> edgeCountSinceTimestamp;
+        private transient ValueState<Long> lastTimestamp;
+        private transient ValueState<Long> nextOutputTimestamp;
+        private transient MapState<Long, SealedAdjacencyBatch> sealedBatches;
+        private transient HashMap<Integer, CompactAdjacencyList> adjacencyLists;
+        private transient ListState<Tuple3<Integer, Long, long[]>> openBatches;
+        private final ExpiringBatches expiringBatches = new ExpiringBatches(windowSize, slide);
+        private final AtomicLong removalTimeCounter = new AtomicLong(0);
+        private final AtomicLong totalRemovalTime = new AtomicLong(0);
+
+        @Override
+        public void initializeState(FunctionInitializationContext context) throws Exception {
+            openBatches = getCompactOpenBatchesState(context);
+        }
+
+        @Override
+        public void snapshotState(FunctionSnapshotContext context) throws Exception {
+            snapshotOpenBatches(adjacencyLists, openBatches);
+        }
+
+        @Override
+        public void open(Configuration parameters) throws Exception {
+            System.out.println("Thread \t"+Thread.currentThread().getId()+"\t opens at: \t"+System.currentTimeMillis());
+            MapStateDescriptor<Long, SealedAdjacencyBatch> descriptor = new MapStateDescriptor<>(
+                    "adjacencyList",
+                    LongSerializer.INSTANCE,
+                    new SealedBatchSerializer()
+            );
+            descriptor.setQueryable("adjacencyList");
+            sealedBatches = getRuntimeContext().getMapState(descriptor);
+            adjacencyLists = new HashMap<>();
+            restoreOpenBatches(openBatches, getRuntimeContext(), adjacencyLists, sealedBatches, expiringBatches);
+            ValueStateDescriptor<Integer> descriptor2 = new ValueStateDescriptor<Integer>(
+                    "edgeCountSinceTimestamp", Integer.class);
+            edgeCountSinceTimestamp = getRuntimeContext().getState(descriptor2);
+            ValueStateDescriptor<Long> descriptor3 = new ValueStateDescriptor<Long>(
+                    "lastTimestamp", Long.class);
+            lastTimestamp = getRuntimeContext().getState(descriptor3);
+            ValueStateDescriptor<Long> descriptor4 = new ValueStateDescriptor<Long>(
+                    "nextOutputTimestamp", Long.class);
+            nextOutputTimestamp = getRuntimeContext().getState(descriptor4);
+        }
+
+        @Override
+        public void close() {
+            System.out.println("Thread \t"+Thread.currentThread().getId()+"\t closes at: \t"+System.currentTimeMillis());
+            System.out.println("Thread \t"+Thread.currentThread().getId()+"\t  total removal time was \t"+totalRemovalTime.get());
+        }
+
+        @Override
+        public void processElement(TemporalEdge edge, Context context, Collector<Tuple4<Integer, Integer[], Long, Long>> collector) throws Exception {
+            if(nextOutputTimestamp.value() == null && slide != null) {
+                nextOutputTimestamp.update(firstTimestamp + slide);
+                context.timerService().registerProcessingTimeTimer(nextOutputTimestamp.value());
+            } else if (nextOutputTimestamp.value()== null && slide == null) {
+                nextOutputTimestamp.update(firstTimestamp + 10000L);
+                context.timerService().registerProcessingTimeTimer(nextOutputTimestamp.value());
+            }
+
+            if(lastTimestamp.value() == null) {
+                lastTimestamp.update(firstTimestamp);
+                edgeCountSinceTimestamp.update(0);
+            }
+
+            if(edgeCountSinceTimestamp.value() == batchSize) {
+                edgeCountSinceTimestamp.update(0);
+                long newtimestamp = context.timerService().currentProcessingTime();
+                if(newtimestamp == lastTimestamp.value()) {
+                    newtimestamp++;
+                }
+                lastTimestamp.update(newtimestamp);
+            }
+
+            long currentTime = lastTimestamp.value();
+            long validTo = currentTime + windowSize;
+
+            if(edgeCountSinceTimestamp.value() == 0) {
+                if(!lazyPurging && slide != null) {
+                    context.timerService().registerProcessingTimeTimer(lastTimestamp.value() + windowSize);
+                } else {
+                    expiringBatches.add(lastTimestamp.value() + windowSize);
+                }
+            }
+
+            adjacencyLists.computeIfAbsent(context.getCurrentKey(), k -> new CompactAdjacencyList(sealedBatches))
+                    .addEdge(validTo, TopologyEdge.sourceVertexOf(edge), TopologyEdge.targetVertexOf(edge));
+
+            edgeCountSinceTimestamp.update(edgeCountSinceTimestamp.value()+1);
+        }
+
+        @Override
+        public void onTimer(long timestamp, OnTimerContext ctx, Collector<Tuple4<Integer, Integer[], Long, Long>> out) throws Exception {
+            CompactAdjacencyList adjacencyList = adjacencyLists.computeIfAbsent(ctx.getCurrentKey(),
+                    k -> new CompactAdjacencyList(sealedBatches));
+            if(slide != null) {
+                long start = System.currentTimeMillis();
+                if (lazyPurging) {
+                    for (long validTo : expiringBatches.expire(timestamp)) {
+                        adjacencyList.remove(validTo);
+                    }
+                } else {
+                    adjacencyList.remove(timestamp);
+                }
+                long removalTime = (System.currentTimeMillis()-start);
+                removalTimeCounter.getAndAdd(removalTime);
+                totalRemovalTime.getAndAdd(removalTime);
+            }
+
+            if(timestamp == nextOutputTimestamp.value()) {
+                // The slide ends the current batch, so its edges are in the state before it is output.
+                adjacencyList.seal();
+                removalTimeCounter.set(0);
+                edgeCountSinceTimestamp.update(0);
+                long newtimestamp = timestamp;
+                if(newtimestamp == lastTimestamp.value()) {
+                    newtimestamp++;
+                }
+                lastTimestamp.update(newtimestamp);
+
+                if(slide != null) {
+                    nextOutputTimestamp.update(timestamp + slide);
+                    ctx.timerService().registerProcessingTimeTimer(timestamp + slide);
+                    out.collect(Tuple4.of(ctx.getCurrentKey(), keys, timestamp, timestamp + windowSize));
+                } else {
+                    if(expiringBatches.getLastBatchTimestamp() < (timestamp-60000L)) {
+                        out.collect(Tuple4.of(ctx.getCurrentKey(), keys, 0L, Long.MAX_VALUE));
+                        System.out.println("Thread \t"+Thread.currentThread().getId()+"\t its last batchtimestamp was \t"+expiringBatches.getLastBatchTimestamp());
+                        System.out.println("Thread \t"+Thread.currentThread().getId()+"\t  total removal time was \t"+totalRemovalTime.get());
+                        System.out.println("Thread \t"+Thread.currentThread().getId()+"\t had edgeCount: \t "+adjacencyList.getEdgeCount()+
+                                " datastructure compactAL");
+                    } else {
+                        nextOutputTimestamp.update(timestamp+60000L);
+                        ctx.timerService().registerProcessingTimeTimer(nextOutputTimestamp.value());
+                    }
+                }
+            }
+        }
+    }
+
+    // Compact adjacency list with Algorithm onTimer. The algorithm gets the CompactAdjacencyList as its localState,
+    // the other partitions are read through Queryable State like AL partitions.
+    public class CompactALwithAlg extends KeyedProcessFunction<Integer, TemporalEdge, String>
+            implements CheckpointedFunction {
+
+        private transient ValueState<Integer> edgeCountSinceTimestamp;
+        private transient ValueState<Long> lastTimestamp;
+        private transient ValueState<Long> nextOutputTimestamp;
+        private transient MapState<Long, SealedAdjacencyBatch> sealedBatches;
+        private transient HashMap<Integer, CompactAdjacencyList> adjacencyLists;
+        private transient ListState<Tuple3<Integer, Long, long[]>> openBatches;
+        private final ExpiringBatches expiringBatches = new ExpiringBatches(windowSize, slide);
+        private final AtomicLong removalTimeCounter = new AtomicLong(0);
+        private final AtomicLong totalRemovalTime = new AtomicLong(0);
+
+        @Override
+        public void initializeState(FunctionInitializationContext context) throws Exception {
+            openBatches = getCompactOpenBatchesState(context);
+        }
+
+        @Override
+        public void snapshotState(FunctionSnapshotContext context) throws Exception {
+            snapshotOpenBatches(adjacencyLists, openBatches);
+        }
+
+        @Override
+        public void open(Configuration parameters) throws Exception {
+            System.out.println("Thread \t"+Thread.currentThread().getId()+"\t opens at: \t"+System.currentTimeMillis());
+            ParallelRange.retain();
+            MapStateDescriptor<Long, SealedAdjacencyBatch> descriptor = new MapStateDescriptor<>(
+                    "adjacencyList",
+                    LongSerializer.INSTANCE,
+                    new SealedBatchSerializer()
+            );
+            descriptor.setQueryable("adjacencyList");
+            sealedBatches = getRuntimeContext().getMapState(descriptor);
+            adjacencyLists = new HashMap<>();
+            restoreOpenBatches(openBatches, getRuntimeContext(), adjacencyLists, sealedBatches, expiringBatches);
+            ValueStateDescriptor<Integer> descriptor2 = new ValueStateDescriptor<Integer>(
+                    "edgeCountSinceTimestamp", Integer.class);
+            edgeCountSinceTimestamp = getRuntimeContext().getState(descriptor2);
+            ValueStateDescriptor<Long> descriptor3 = new ValueStateDescriptor<Long>(
+                    "lastTimestamp", Long.class);
+            lastTimestamp = getRuntimeContext().getState(descriptor3);
+            ValueStateDescriptor<Long> descriptor4 = new ValueStateDescriptor<Long>(
+                    "nextOutputTimestamp", Long.class);
+            nextOutputTimestamp = getRuntimeContext().getState(descriptor4);
+        }
+
+        @Override
+        public void close() {
+            ParallelRange.release();
+            QS.close();
+        }
+
+        @Override
+        public void processElement(TemporalEdge edge, Context context, Collector<String> collector) throws Exception {
+            if(edgeCountSinceTimestamp.value() == null) {
+                edgeCountSinceTimestamp.update(0);
+            }
+
+            if(nextOutputTimestamp.value() == null && slide != null) {
+                nextOutputTimestamp.update(firstTimestamp + slide);
+                context.timerService().registerProcessingTimeTimer(nextOutputTimestamp.value());
+            } else if (nextOutputTimestamp.value()== null && slide == null) {
+                nextOutputTimestamp.update(firstTimestamp + 10000L);
+                context.timerService().registerProcessingTimeTimer(nextOutputTimestamp.value());
+            }
+
+            if(lastTimestamp.value() == null) {
+                lastTimestamp.update(firstTimestamp);
+            }
+
+            if(edgeCountSinceTimestamp.value() == batchSize) {
+                edgeCountSinceTimestamp.update(0);
+                long newtimestamp = context.timerService().currentProcessingTime();
+                if(newtimestamp == lastTimestamp.value()) {
+                    newtimestamp++;
+                }
+                lastTimestamp.update(newtimestamp);
+            }
+
+            long currentTime = lastTimestamp.value();
+            long validTo = currentTime + windowSize;
+            CompactAdjacencyList adjacencyList = adjacencyLists.computeIfAbsent(context.getCurrentKey(),
+                    k -> new CompactAdjacencyList(sealedBatches));
+
+            if(edgeCountSinceTimestamp.value() == 0) {
+                if(!lazyPurging && slide != null) {
+                    context.timerService().registerProcessingTimeTimer(lastTimestamp.value() + windowSize);
+                } else {
+                    expiringBatches.add(lastTimestamp.value() + windowSize);
+                }
+            }
+
+            adjacencyList.addEdge(validTo, TopologyEdge.sourceVertexOf(edge), TopologyEdge.targetVertexOf(edge));
+            edgeCountSinceTimestamp.update(edgeCountSinceTimestamp.value()+1);
+        }
+
+        @Override
+        public void onTimer(long timestamp, OnTimerContext ctx, Collector<String> out) {
+            CompactAdjacencyList adjacencyList = adjacencyLists.computeIfAbsent(ctx.getCurrentKey(),
+                    k -> new CompactAdjacencyList(sealedBatches));
+            if(slide != null) {
+                long start = System.currentTimeMillis();
+                try {
+                    if (lazyPurging) {
+                        for (long validTo : expiringBatches.expire(timestamp)) {
+                            adjacencyList.remove(validTo);
+                        }
+                    } else {
+                        adjacencyList.remove(timestamp);
+                    }
+                } catch (Exception e) {
+                    e.printStackTrace();
+                }
+                long removalTime = (System.currentTimeMillis()-start);
+                removalTimeCounter.getAndAdd(removalTime);
+                totalRemovalTime.getAndAdd(removalTime);
+            }
+
+            try {
+                if(timestamp == nextOutputTimestamp.value()) {
+                    // The slide ends the current batch, the algorithm and the queries see its edges.
+                    adjacencyList.seal();
+                    removalTimeCounter.set(0);
+                    edgeCountSinceTimestamp.update(0);
+                    long newtimestamp = timestamp;
+                    if(newtimestamp == lastTimestamp.value()) {
+                        newtimestamp++;
+                    }
+                    lastTimestamp.update(newtimestamp);
+
+                    if(!QS.isInitilized()) {
+                        FileReader fr = new FileReader("/share/hadoop/annemarie/tempJobId");
+                        BufferedReader bf = new BufferedReader(fr);
+                        QS.initialize(JobID.fromHexString(bf.readLine()));
+                        bf.close();
+                        fr.close();
+                    }
+
+                    if(slide != null) {
+                        nextOutputTimestamp.update(timestamp + slide);
+                        ctx.timerService().registerProcessingTimeTimer(timestamp + slide);
+                        long current = ctx.timerService().currentProcessingTime();
+                        out.collect(ctx.getCurrentKey()+"\t :We started the onTimer \t"+(current-timestamp)+ " \t ms too late. If this is big, consider " +
+                                "increasing slide, decreasing input rate or using a faster algorithm.");
+                        try {
+                            out.collect(ctx.getCurrentKey()+"\t :AlgResult at time '" + timestamp + " : " +
+                                    algorithm.doAlgorithm(adjacencyList, QS, ctx.getCurrentKey(), keys,
+                                            timestamp, timestamp + windowSize));
+                        } catch (Exception e) {
+                            e.printStackTrace();
+                        }
+                        out.collect(ctx.getCurrentKey()+"\t :Alg took \t" + (ctx.timerService().currentProcessingTime() - current) + "\t ms");
+                    } else {
+                        if(expiringBatches.getLastBatchTimestamp() < (timestamp-60000L)) {
+                            System.out.println("Thread \t"+Thread.currentThread().getId()+"\t its last batchtimestamp was \t"+expiringBatches.getLastBatchTimestamp());
+                            System.out.println("Thread \t"+Thread.currentThread().getId()+"\t  total removal time was \t"+totalRemovalTime.get());
+                            System.out.println("Thread \t"+Thread.currentThread().getId()+"\t had edgeCount: \t "+adjacencyList.getEdgeCount()+
+                                    " datastructure compactAL");
+                            out.collect(ctx.getCurrentKey()+"\t :AlgResult at time \t" + timestamp + " \t: " +
+                                    algorithm.doAlgorithm(adjacencyList, QS, ctx.getCurrentKey(), keys,
+                                            0, Long.MAX_VALUE));
+                            out.collect(ctx.getCurrentKey()+"\t :Alg took \t" + (ctx.timerService().currentProcessingTime() - timestamp));
+                        } else {
+                            nextOutputTimestamp.update(timestamp+60000L);
+                            ctx.timerService().registerProcessingTimeTimer(nextOutputTimestamp.value());
+                        }
+                    }
+                }
+            } catch (Exception e) {
+                e.printStackTrace();
+            }
+        }
+    }
+
+    // Tiered adjacency list decoupled. Like compactAL, but a batch is sealed into a segment file as soon as it has
+    // batchSize edges, so only the open batch of every key is on the heap. The queryable "adjacencyList" only holds the
+    // segment of every batch, see TieredAdjacencyList. Meant for the heap state backend.
+    public class TieredALdecoupled extends KeyedProcessFunction<Integer, TemporalEdge, Tuple4<Integer, Integer[], Long, Long>>
+            implements CheckpointedFunction, CheckpointListener {
+
+        private transient ValueState<Integer> edgeCountSinceTimestamp;
+        private transient ValueState<Long> lastTimestamp;
+        private transient ValueState<Long> nextOutputTimestamp;
+        private transient TieredPartitions tiered;
+        private final ExpiringBatches expiringBatches = new ExpiringBatches(windowSize, slide);
+        private final AtomicLong removalTimeCounter = new AtomicLong(0);
+        private final AtomicLong totalRemovalTime = new AtomicLong(0);
+
+        @Override
+        public void open(Configuration parameters) throws Exception {
+            System.out.println("Thread \t"+Thread.currentThread().getId()+"\t opens at: \t"+System.currentTimeMillis());
+            tiered = new TieredPartitions(getRuntimeContext());
+            ValueStateDescriptor<Integer> descriptor2 = new ValueStateDescriptor<Integer>(
+                    "edgeCountSinceTimestamp", Integer.class);
+            edgeCountSinceTimestamp = getRuntimeContext().getState(descriptor2);
+            ValueStateDescriptor<Long> descriptor3 = new ValueStateDescriptor<Long>(
+                    "lastTimestamp", Long.class);
+            lastTimestamp = getRuntimeContext().getState(descriptor3);
+            ValueStateDescriptor<Long> descriptor4 = new ValueStateDescriptor<Long>(
+                    "nextOutputTimestamp", Long.class);
+            nextOutputTimestamp = getRuntimeContext().getState(descriptor4);
+        }
+
+        @Override
+        public void close() throws Exception {
+            System.out.println("Thread \t"+Thread.currentThread().getId()+"\t closes at: \t"+System.currentTimeMillis());
+            System.out.println("Thread \t"+Thread.currentThread().getId()+"\t  total removal time was \t"+totalRemovalTime.get());
+            if(tiered != null) {
+                tiered.close();
+            }
+        }
+
+        @Override
+        public void initializeState(FunctionInitializationContext context) {
+        }
+
+        @Override
+        public void snapshotState(FunctionSnapshotContext context) {
+            tiered.segments.checkpointStarted(context.getCheckpointId());
+        }
+
+        @Override
+        public void notifyCheckpointComplete(long checkpointId) throws Exception {
+            tiered.segments.checkpointComplete(checkpointId);
+        }
+
+        @Override
+        public void processElement(TemporalEdge edge, Context context, Collector<Tuple4<Integer, Integer[], Long, Long>> collector) throws Exception {
+            TieredAdjacencyList adjacencyList = tiered.get(context.getCurrentKey());
+            if(nextOutputTimestamp.value() == null && slide != null) {
+                nextOutputTimestamp.update(firstTimestamp + slide);
+                context.timerService().registerProcessingTimeTimer(nextOutputTimestamp.value());
+            } else if (nextOutputTimestamp.value()== null && slide == null) {
+                nextOutputTimestamp.update(firstTimestamp + 10000L);
+                context.timerService().registerProcessingTimeTimer(nextOutputTimestamp.value());
+            }
+
+            if(lastTimestamp.value() == null) {
+                lastTimestamp.update(firstTimestamp);
+                edgeCountSinceTimestamp.update(0);
+            }
+
+            if(edgeCountSinceTimestamp.value() == batchSize) {
+                adjacencyList.seal();
+                edgeCountSinceTimestamp.update(0);
+                long newtimestamp = context.timerService().currentProcessingTime();
+                if(newtimestamp == lastTimestamp.value()) {
+                    newtimestamp++;
+                }
+                lastTimestamp.update(newtimestamp);
+            }
+
+            long currentTime = lastTimestamp.value();
+            long validTo = currentTime + windowSize;
+
+            if(edgeCountSinceTimestamp.value() == 0) {
+                if(!lazyPurging && slide != null) {
+                    context.timerService().registerProcessingTimeTimer(lastTimestamp.value() + windowSize);
+                } else {
+                    expiringBatches.add(lastTimestamp.value() + windowSize);
+                }
+            }
+
+            adjacencyList.addEdge(validTo, TopologyEdge.sourceVertexOf(edge), TopologyEdge.targetVertexOf(edge));
+            edgeCountSinceTimestamp.update(edgeCountSinceTimestamp.value()+1);
+        }
+
+        @Override
+        public void onTimer(long timestamp, OnTimerContext ctx, Collector<Tuple4<Integer, Integer[], Long, Long>> out) throws Exception {
+            TieredAdjacencyList adjacencyList = tiered.get(ctx.getCurrentKey());
+            if(slide != null) {
+                long start = System.currentTimeMillis();
+                if (lazyPurging) {
+                    for (long validTo : expiringBatches.expire(timestamp)) {
+                        adjacencyList.remove(validTo);
+                    }
+                } else {
+                    adjacencyList.remove(timestamp);
+                }
+                long removalTime = (System.currentTimeMillis()-start);
+                removalTimeCounter.getAndAdd(removalTime);
+                totalRemovalTime.getAndAdd(removalTime);
+            }
+
+            if(timestamp == nextOutputTimestamp.value()) {
+                // The slide ends the current batch, so its edges are in the state before it is output.
+                adjacencyList.seal();
+                removalTimeCounter.set(0);
+                edgeCountSinceTimestamp.update(0);
+                long newtimestamp = timestamp;
+                if(newtimestamp == lastTimestamp.value()) {
+                    newtimestamp++;
+                }
+                lastTimestamp.update(newtimestamp);
+
+                if(slide != null) {
+                    nextOutputTimestamp.update(timestamp + slide);
+                    ctx.timerService().registerProcessingTimeTimer(timestamp + slide);
+                    out.collect(Tuple4.of(ctx.getCurrentKey(), keys, timestamp, timestamp + windowSize));
+                } else {
+                    if(expiringBatches.getLastBatchTimestamp() < (timestamp-60000L)) {
+                        out.collect(Tuple4.of(ctx.getCurrentKey(), keys, 0L, Long.MAX_VALUE));
+                        System.out.println("Thread \t"+Thread.currentThread().getId()+"\t its last batchtimestamp was \t"+expiringBatches.getLastBatchTimestamp());
+                        System.out.println("Thread \t"+Thread.currentThread().getId()+"\t  total removal time was \t"+totalRemovalTime.get());
+                        System.out.println("Thread \t"+Thread.currentThread().getId()+"\t had edgeCount: \t "+adjacencyList.getEdgeCount()+
+                                " datastructure tieredAL");
+                    } else {
+                        nextOutputTimestamp.update(timestamp+60000L);
+                        ctx.timerService().registerProcessingTimeTimer(nextOutputTimestamp.value());
+                    }
+                }
+            }
+        }
+    }
+
+    // Tiered adjacency list with Algorithm onTimer. The algorithm gets the TieredAdjacencyList as its localState,
+    // the other partitions are read through Queryable State like AL partitions.
+    public class TieredALwithAlg extends KeyedProcessFunction<Integer, TemporalEdge, String>
+            implements CheckpointedFunction, CheckpointListener {
+
+        private transient ValueState<Integer> edgeCountSinceTimestamp;
+        private transient ValueState<Long> lastTimestamp;
+        private transient ValueState<Long> nextOutputTimestamp;
+        private transient TieredPartitions tiered;
+        private final ExpiringBatches expiringBatches = new ExpiringBatches(windowSize, slide);
+        private final AtomicLong removalTimeCounter = new AtomicLong(0);
+        private final AtomicLong totalRemovalTime = new AtomicLong(0);
+
+        @Override
+        public void open(Configuration parameters) throws Exception {
+            System.out.println("Thread \t"+Thread.currentThread().getId()+"\t opens at: \t"+System.currentTimeMillis());
+            ParallelRange.retain();
+            tiered = new TieredPartitions(getRuntimeContext());
+            ValueStateDescriptor<Integer> descriptor2 = new ValueStateDescriptor<Integer>(
+                    "edgeCountSinceTimestamp", Integer.class);
+            edgeCountSinceTimestamp = getRuntimeContext().getState(descriptor2);
+            ValueStateDescriptor<Long> descriptor3 = new ValueStateDescriptor<Long>(
+                    "lastTimestamp", Long.class);
+            lastTimestamp = getRuntimeContext().getState(descriptor3);
+            ValueStateDescriptor<Long> descriptor4 = new ValueStateDescriptor<Long>(
+                    "nextOutputTimestamp", Long.class);
+            nextOutputTimestamp = getRuntimeContext().getState(descriptor4);
+        }
+
+        @Override
+        public void close() throws Exception {
+            ParallelRange.release();
+            QS.close();
+            if(tiered != null) {
+                tiered.close();
+            }
+        }
+
+        @Override
+        public void initializeState(FunctionInitializationContext context) {
+        }
+
+        @Override
+        public void snapshotState(FunctionSnapshotContext context) {
+            tiered.segments.checkpointStarted(context.getCheckpointId());
+        }
+
+        @Override
+        public void notifyCheckpointComplete(long checkpointId) throws Exception {
+            tiered.segments.checkpointComplete(checkpointId);
+        }
+
+        @Override
+        public void processElement(TemporalEdge edge, Context context, Collector<String> collector) throws Exception {
+            TieredAdjacencyList adjacencyList = tiered.get(context.getCurrentKey());
+            if(nextOutputTimestamp.value() == null && slide != null) {
+                nextOutputTimestamp.update(firstTimestamp + slide);
+                context.timerService().registerProcessingTimeTimer(nextOutputTimestamp.value());
+            } else if (nextOutputTimestamp.value()== null && slide == null) {
+                nextOutputTimestamp.update(firstTimestamp + 10000L);
+                context.timerService().registerProcessingTimeTimer(nextOutputTimestamp.value());
+            }
+
+            if(lastTimestamp.value() == null) {
+                lastTimestamp.update(firstTimestamp);
+                edgeCountSinceTimestamp.update(0);
+            }
+
+            if(edgeCountSinceTimestamp.value() == batchSize) {
+                adjacencyList.seal();
+                edgeCountSinceTimestamp.update(0);
+                long newtimestamp = context.timerService().currentProcessingTime();
+                if(newtimestamp == lastTimestamp.value()) {
+                    newtimestamp++;
+                }
+                lastTimestamp.update(newtimestamp);
+            }
+
+            long currentTime = lastTimestamp.value();
+            long validTo = currentTime + windowSize;
+
+            if(edgeCountSinceTimestamp.value() == 0) {
+                if(!lazyPurging && slide != null) {
+                    context.timerService().registerProcessingTimeTimer(lastTimestamp.value() + windowSize);
+                } else {
+                    expiringBatches.add(lastTimestamp.value() + windowSize);
+                }
+            }
+
+            adjacencyList.addEdge(validTo, TopologyEdge.sourceVertexOf(edge), TopologyEdge.targetVertexOf(edge));
+            edgeCountSinceTimestamp.update(edgeCountSinceTimestamp.value()+1);
+        }
+
+        @Override
+        public void onTimer(long timestamp, OnTimerContext ctx, Collector<String> out) {
+            try {
+                TieredAdjacencyList adjacencyList = tiered.get(ctx.getCurrentKey());
+                if(slide != null) {
+                    long start = System.currentTimeMillis();
+                    if (lazyPurging) {
+                        for (long validTo : expiringBatches.expire(timestamp)) {
+                            adjacencyList.remove(validTo);
+                        }
+                    } else {
+                        adjacencyList.remove(timestamp);
+                    }
+                    long removalTime = (System.currentTimeMillis()-start);
+                    removalTimeCounter.getAndAdd(removalTime);
+                    totalRemovalTime.getAndAdd(removalTime);
+                }
+
+                if(timestamp == nextOutputTimestamp.value()) {
+                    // The slide ends the current batch, so its edges are in the state before the algorithm runs.
+                    adjacencyList.seal();
+                    removalTimeCounter.set(0);
+                    edgeCountSinceTimestamp.update(0);
+                    long newtimestamp = timestamp;
+                    if(newtimestamp == lastTimestamp.value()) {
+                        newtimestamp++;
+                    }
+                    lastTimestamp.update(newtimestamp);
+                    initializeQS();
+
+                    if(slide != null) {
+                        nextOutputTimestamp.update(timestamp + slide);
+                        ctx.timerService().registerProcessingTimeTimer(timestamp + slide);
+                        long current = ctx.timerService().currentProcessingTime();
+                        out.collect(ctx.getCurrentKey()+"\t :We started the onTimer \t"+(current-timestamp)+ " \t ms too late. If this is big, consider " +
+                                "increasing slide, decreasing input rate or using a faster algorithm.");
+                        try {
+                            out.collect(ctx.getCurrentKey()+"\t :AlgResult at time '" + timestamp + " : " +
+                                    algorithm.doAlgorithm(adjacencyList, QS, ctx.getCurrentKey(), keys,
+                                            timestamp, timestamp + windowSize));
+                        } catch (Exception e) {
+                            e.printStackTrace();
+                        }
+                        out.collect(ctx.getCurrentKey()+"\t :Alg took \t" + (ctx.timerService().currentProcessingTime() - current) + "\t ms");
+                    } else {
+                        if(expiringBatches.getLastBatchTimestamp() < (timestamp-60000L)) {
+                            System.out.println("Thread \t"+Thread.currentThread().getId()+"\t its last batchtimestamp was \t"+expiringBatches.getLastBatchTimestamp());
+                            System.out.println("Thread \t"+Thread.currentThread().getId()+"\t  total removal time was \t"+totalRemovalTime.get());
+                            System.out.println("Thread \t"+Thread.currentThread().getId()+"\t had edgeCount: \t "+adjacencyList.getEdgeCount()+
+                                    " datastructure tieredAL");
+                            out.collect(ctx.getCurrentKey()+"\t :AlgResult at time \t" + timestamp + " \t: " +
+                                    algorithm.doAlgorithm(adjacencyList, QS, ctx.getCurrentKey(), keys,
+                                            0, Long.MAX_VALUE));
+                            out.collect(ctx.getCurrentKey()+"\t :Alg took \t" + (ctx.timerService().currentProcessingTime() - timestamp));
+                        } else {
+                            nextOutputTimestamp.update(timestamp+60000L);
+                            ctx.timerService().registerProcessingTimeTimer(nextOutputTimestamp.value());
+                        }
+                    }
+                }
+            } catch (Exception e) {
+                e.printStackTrace();
+            }
+        }
+    }
+
+    // Flat adjacency list decoupled. The window is kept in a FlatAdjacencyState, keyed state with one neighbour
+    // block per (validTo, source) instead of one HashMap per batch, so with RocksDB a write only touches the blocks of
+    // the sources in it. Edges are buffered like in ALdecoupled and written per batchSize edges. The algorithms read
+    // the partitions through the queryable "adjacencyBlocks", see QueryState.readFlatLayout().
+    public class FlatALdecoupled extends KeyedProcessFunction<Integer, TemporalEdge, Tuple4<Integer, Integer[], Long, Long>>
+            implements CheckpointedFunction {
+
+        private transient FlatAdjacencyState adjacencyState;
+        private transient BufferedIngest ingest;
+        private transient ListState<Tuple4<Integer, Long, Long, TemporalEdge[]>> bufferedEdges;
+        private final ExpiringBatches expiringBatches = new ExpiringBatches(windowSize, slide);
+
+        @Override
+        public void initializeState(FunctionInitializationContext context) throws Exception {
+            bufferedEdges = getBufferedEdgesState(context);
+        }
+
+        @Override
+        public void snapshotState(FunctionSnapshotContext context) throws Exception {
+            ingest.snapshot();
+        }
+
+        @Override
+        public void open(Configuration parameters) throws Exception {
+            System.out.println("Thread \t"+Thread.currentThread().getId()+"\t opens at: \t"+System.currentTimeMillis());
+            adjacencyState = new FlatAdjacencyState(getRuntimeContext());
+            ingest = new BufferedIngest(getRuntimeContext(), expiringBatches, bufferedEdges);
+        }
+
+        @Override
+        public void close() {
+            System.out.println("Thread \t"+Thread.currentThread().getId()+"\t closes at: \t"+System.currentTimeMillis());
+            System.out.println("Thread \t"+Thread.currentThread().getId()+"\t  total removal time was \t"+ingest.totalRemovalTime.get());
+        }
+
+        @Override
+        public void processElement(TemporalEdge edge, Context context, Collector<Tuple4<Integer, Integer[], Long, Long>> collector) throws Exception {
+            ingest.add(context.getCurrentKey(), edge, context.timerService(),
+                    (key, buffer) -> flushFlat(adjacencyState, buffer));
+        }
+
+        @Override
+        public void onTimer(long timestamp, OnTimerContext ctx, Collector<Tuple4<Integer, Integer[], Long, Long>> out) throws Exception {
+            EdgeBatchBuffer buffer = ingest.flushForOutput(ctx.getCurrentKey(), timestamp,
+                    (key, toFlush) -> flushFlat(adjacencyState, toFlush));
+            ingest.purge(timestamp, adjacencyState::remove);
+            if(buffer != null) {
+                Tuple2<Long, Long> window = ingest.endSlide(ctx.getCurrentKey(), buffer, timestamp, ctx.timerService());
+                if(window != null) {
+                    out.collect(Tuple4.of(ctx.getCurrentKey(), keys, window.f0, window.f1));
+                }
+                if(window != null && slide == null) {
+                    System.out.println("Thread \t"+Thread.currentThread().getId()+"\t had edgeCount: \t "+adjacencyState.getEdgeCount()+
+                            " datastructure flatAL");
+                }
+            }
+        }
+    }
+
+    // Flat adjacency list with Algorithm onTimer. The algorithm gets the FlatAdjacencyState as its localState.
+    public class FlatALwithAlg extends KeyedProcessFunction<Integer, TemporalEdge, String>
+            implements CheckpointedFunction {
+
+        private transient FlatAdjacencyState adjacencyState;
+        private transient BufferedIngest ingest;
+        private transient ListState<Tuple4<Integer, Long, Long, TemporalEdge[]>> bufferedEdges;
+        private final ExpiringBatches expiringBatches = new ExpiringBatches(windowSize, slide);
+
+        @Override
+        public void initializeState(FunctionInitializationContext context) throws Exception {
+            bufferedEdges = getBufferedEdgesState(context);
+        }
+
+        @Override
+        public void snapshotState(FunctionSnapshotContext context) throws Exception {
+            ingest.snapshot();
+        }
+
+        @Override
+        public void open(Configuration parameters) throws Exception {
+            System.out.println("Thread \t"+Thread.currentThread().getId()+"\t opens at: \t"+System.currentTimeMillis());
+            ParallelRange.retain();
+            adjacencyState = new FlatAdjacencyState(getRuntimeContext());
+            ingest = new BufferedIngest(getRuntimeContext(), expiringBatches, bufferedEdges);
+        }
+
+        @Override
+        public void close() {
+            ParallelRange.release();
+            QS.close();
+        }
+
+        @Override
+        public void processElement(TemporalEdge edge, Context context, Collector<String> collector) throws Exception {
+            ingest.add(context.getCurrentKey(), edge, context.timerService(),
+                    (key, buffer) -> flushFlat(adjacencyState, buffer));
+        }
+
+        @Override
+        public void onTimer(long timestamp, OnTimerContext ctx, Collector<String> out) throws Exception {
+            EdgeBatchBuffer buffer = ingest.flushForOutput(ctx.getCurrentKey(), timestamp,
+                    (key, toFlush) -> flushFlat(adjacencyState, toFlush));
+            ingest.purge(timestamp, adjacencyState::remove);
+            if(buffer == null) {
+                return;
+            }
+            initializeQS();
+            Tuple2<Long, Long> window = ingest.endSlide(ctx.getCurrentKey(), buffer, timestamp, ctx.timerService());
+            if(window == null) {
+                return;
+            }
+            if(slide != null) {
+                long current = ctx.timerService().currentProcessingTime();
+                out.collect(ctx.getCurrentKey()+"\t :We started the onTimer \t"+(current-timestamp)+ " \t ms too late. If this is big, consider " +
+                        "increasing slide, decreasing input rate or using a faster algorithm.");
+                try {
+                    out.collect(ctx.getCurrentKey()+"\t :AlgResult at time '" + timestamp + " : " +
+                            algorithm.doAlgorithm(adjacencyState, QS, ctx.getCurrentKey(), keys,
+                                    window.f0, window.f1));
+                } catch (Exception e) {
+                    e.printStackTrace();
+                }
+                out.collect(ctx.getCurrentKey()+"\t :Alg took \t" + (ctx.timerService().currentProcessingTime() - current) + "\t ms");
+            } else {
+                System.out.println("Thread \t"+Thread.currentThread().getId()+"\t had edgeCount: \t "+adjacencyState.getEdgeCount()+
+                        " datastructure flatAL");
+                out.collect(ctx.getCurrentKey()+"\t :AlgResult at time \t" + timestamp + " \t: " +
+                        algorithm.doAlgorithm(adjacencyState, QS, ctx.getCurrentKey(), keys,
+                                window.f0, window.f1));
+                out.collect(ctx.getCurrentKey()+"\t :Alg took \t" + (ctx.timerService().currentProcessingTime() - timestamp));
+            }
+        }
+    }
+
+    // Incremental triangle count. Keeps the window of the partition in an IncrementalTriangleCount, which updates
+    // the number of triangles when a batch is added or purged, and outputs that number every slide instead of
+    // running an algorithm on the whole window. It is the single-partition baseline, see the constructor. Its
+    // window is operator-local and not queryable, unlike the sealed batches of compactAL. Checkpoints keep the
+    // batches of the window, the count is rebuilt from them on a restore.
+    public class IncrementalTC extends KeyedProcessFunction<Integer, TemporalEdge, String>
+            implements CheckpointedFunction {
+
+        private transient ValueState<Integer> edgeCountSinceTimestamp;
+        private transient ValueState<Long> lastTimestamp;
+        private transient ValueState<Long> nextOutputTimestamp;
+        private transient HashMap<Integer, IncrementalTriangleCount> triangleCounts;
+        private final ExpiringBatches expiringBatches = new ExpiringBatches(windowSize, slide);
+        // In nanoseconds, single inserts are too fast to measure in milliseconds.
+        private final AtomicLong totalInsertTime = new AtomicLong(0);
+        // In milliseconds.
+        private final AtomicLong totalRemovalTime = new AtomicLong(0);
+        private final AtomicLong lateEdges = new AtomicLong(0);
+        // {key, validTo, edges} of every batch in the window, of all keys.
+        private transient ListState<Tuple3<Integer, Long, long[]>> windowBatches;
+        // {totalInsertTime, totalRemovalTime, lateEdges} of every subtask.
+        private transient ListState<long[]> counters;
+
+        @Override
+        public void initializeState(FunctionInitializationContext context) throws Exception {
+            windowBatches = context.getOperatorStateStore().getUnionListState(new ListStateDescriptor<>(
+                    "incrementalTCBatches",
+                    TypeInformation.of(new TypeHint<Tuple3<Integer, Long, long[]>>() {
+                    })
+            ));
+            counters = context.getOperatorStateStore().getListState(new ListStateDescriptor<>(
+                    "incrementalTCCounters", long[].class));
+            for(long[] restored : counters.get()) {
+                totalInsertTime.addAndGet(restored[0]);
+                totalRemovalTime.addAndGet(restored[1]);
+                lateEdges.addAndGet(restored[2]);
+            }
+        }
+
+        @Override
+        public void snapshotState(FunctionSnapshotContext context) throws Exception {
+            windowBatches.clear();
+            for(Map.Entry<Integer, IncrementalTriangleCount> entry : triangleCounts.entrySet()) {
+                for(Map.Entry<Long, long[]> batch : entry.getValue().getBatches().entrySet()) {
+                    windowBatches.add(Tuple3.of(entry.getKey(), batch.getKey(), batch.getValue()));
+                }
+            }
+            counters.clear();
+            counters.add(new long[]{totalInsertTime.get(), totalRemovalTime.get(), lateEdges.get()});
+        }
+
+        @Override
+        public void open(Configuration parameters) throws Exception {
+            System.out.println("Thread \t"+Thread.currentThread().getId()+"\t opens at: \t"+System.currentTimeMillis());
+            triangleCounts = new HashMap<>();
+            // Every subtask gets the batches of all keys, it keeps those of its own keys.
+            RuntimeContext context = getRuntimeContext();
+            for(Tuple3<Integer, Long, long[]> restored : windowBatches.get()) {
+                if(KeyGroupRangeAssignment.assignKeyToParallelOperator(restored.f0,
+                        context.getMaxNumberOfParallelSubtasks(), context.getNumberOfParallelSubtasks())
+                        != context.getIndexOfThisSubtask()) {
+                    continue;
+                }
+                triangleCounts.computeIfAbsent(restored.f0, k -> new IncrementalTriangleCount())
+                        .addBatch(restored.f1, restored.f2);
+                // The timers of active purging are restored by Flink, the other ways purge from expiringBatches.
+                if(lazyPurging || slide == null || eventTime) {
+                    expiringBatches.add(restored.f1);
+                }
+            }
+            ValueStateDescriptor<Integer> descriptor2 = new ValueStateDescriptor<Integer>(
+                    "edgeCountSinceTimestamp", Integer.class);
+            edgeCountSinceTimestamp = getRuntimeContext().getState(descriptor2);
+            ValueStateDescriptor<Long> descriptor3 = new ValueStateDescriptor<Long>(
+                    "lastTimestamp", Long.class);
+            lastTimestamp = getRuntimeContext().getState(descriptor3);
+            ValueStateDescriptor<Long> descriptor4 = new ValueStateDescriptor<Long>(
+                    "nextOutputTimestamp", Long.class);
+            nextOutputTimestamp = getRuntimeContext().getState(descriptor4);
+        }
+
+        @Override
+        public void close() {
+            System.out.println("Thread \t"+Thread.currentThread().getId()+"\t closes at: \t"+System.currentTimeMillis());
+            System.out.println("Thread \t"+Thread.currentThread().getId()+"\t total insert time was \t"+(totalInsertTime.get()/1000000L));
+            System.out.println("Thread \t"+Thread.currentThread().getId()+"\t  total removal time was \t"+totalRemovalTime.get());
+            if(eventTime) {
+                System.out.println("Thread \t"+Thread.currentThread().getId()+"\t dropped late edges: \t"+lateEdges.get());
+            }
+        }
+
+        @Override
+        public void processElement(TemporalEdge edge, Context context, Collector<String> collector) throws Exception {
+            if(eventTime) {
+                long batchStart = eventTimeBatch(edge);
+                if(batchStart <= context.timerService().currentWatermark()) {
+                    lateEdges.incrementAndGet();
+                    return;
+                }
+                long validTo = batchStart + windowSize;
+                IncrementalTriangleCount triangleCount = triangleCounts.computeIfAbsent(context.getCurrentKey(),
+                        k -> new IncrementalTriangleCount());
+                if(!triangleCount.contains(validTo)) {
+                    context.timerService().registerEventTimeTimer(batchStart);
+                    expiringBatches.add(validTo);
+                }
+                triangleCount.addEdge(validTo, TopologyEdge.sourceVertexOf(edge), TopologyEdge.targetVertexOf(edge));
+                return;
+            }
+            if(edgeCountSinceTimestamp.value() == null) {
+                edgeCountSinceTimestamp.update(0);
+            }
+
+            if(nextOutputTimestamp.value() == null && slide != null) {
+                nextOutputTimestamp.update(firstTimestamp + slide);
+                context.timerService().registerProcessingTimeTimer(nextOutputTimestamp.value());
+            } else if (nextOutputTimestamp.value()== null && slide == null) {
+                nextOutputTimestamp.update(firstTimestamp + 10000L);
+                context.timerService().registerProcessingTimeTimer(nextOutputTimestamp.value());
+            }
+
+            if(lastTimestamp.value() == null) {
+                lastTimestamp.update(firstTimestamp);
+            }
+
+            if(edgeCountSinceTimestamp.value() == batchSize) {
+                edgeCountSinceTimestamp.update(0);
+                long newtimestamp = context.timerService().currentProcessingTime();
+                if(newtimestamp == lastTimestamp.value()) {
+                    newtimestamp++;
+                }
+                lastTimestamp.update(newtimestamp);
+            }
+
+            long currentTime = lastTimestamp.value();
+            long validTo = currentTime + windowSize;
+            IncrementalTriangleCount triangleCount = triangleCounts.computeIfAbsent(context.getCurrentKey(),
+                    k -> new IncrementalTriangleCount());
+
+            if(edgeCountSinceTimestamp.value() == 0 || !triangleCount.contains(validTo)) {
+                if(!lazyPurging && slide != null) {
+                    context.timerService().registerProcessingTimeTimer(lastTimestamp.value() + windowSize);
+                } else {
+                    expiringBatches.add(lastTimestamp.value() + windowSize);
+                }
+            }
+
+            long start = System.nanoTime();
+            triangleCount.addEdge(validTo, TopologyEdge.sourceVertexOf(edge), TopologyEdge.targetVertexOf(edge));
+            totalInsertTime.getAndAdd(System.nanoTime()-start);
+            edgeCountSinceTimestamp.update(edgeCountSinceTimestamp.value()+1);
+        }
+
+        @Override
+        public void onTimer(long timestamp, OnTimerContext ctx, Collector<String> out) throws Exception {
+            IncrementalTriangleCount triangleCount = triangleCounts.computeIfAbsent(ctx.getCurrentKey(),
+                    k -> new IncrementalTriangleCount());
+            if(slide != null) {
+                long start = System.currentTimeMillis();
+                if (lazyPurging || eventTime) {
+                    for (long validTo : expiringBatches.expire(timestamp)) {
+                        triangleCount.remove(validTo);
+                    }
+                } else {
+                    triangleCount.remove(timestamp);
+                }
+                totalRemovalTime.getAndAdd(System.currentTimeMillis()-start);
+            }
+
+            if(eventTime) {
+                registerNextEventTimeOutput(timestamp, ctx.timerService(), expiringBatches);
+                out.collect(ctx.getCurrentKey()+"\t :AlgResult at time '" + timestamp + " : In partition " +
+                        ctx.getCurrentKey() + " we found " + triangleCount.getTriangles() + " triangles in " +
+                        triangleCount.getEdgeCount() + " edges");
+                return;
+            }
+
+            if(timestamp == nextOutputTimestamp.value()) {
+                edgeCountSinceTimestamp.update(0);
+                long newtimestamp = timestamp;
+                if(newtimestamp == lastTimestamp.value()) {
+                    newtimestamp++;
+                }
+                lastTimestamp.update(newtimestamp);
+
+                if(slide != null) {
+                    nextOutputTimestamp.update(timestamp + slide);
+                    ctx.timerService().registerProcessingTimeTimer(timestamp + slide);
+                    out.collect(ctx.getCurrentKey()+"\t :AlgResult at time '" + timestamp + " : In partition " +
+                            ctx.getCurrentKey() + " we found " + triangleCount.getTriangles() + " triangles in " +
+                            triangleCount.getEdgeCount() + " edges");
+                } else {
+                    if(expiringBatches.getLastBatchTimestamp() < (timestamp-60000L)) {
+                        System.out.println("Thread \t"+Thread.currentThread().getId()+"\t its last batchtimestamp was \t"+expiringBatches.getLastBatchTimestamp());
+                        System.out.println("Thread \t"+Thread.currentThread().getId()+"\t total insert time was \t"+(totalInsertTime.get()/1000000L));
+                        out.collect(ctx.getCurrentKey()+"\t :AlgResult at time \t" + timestamp + " \t: In partition " +
+                                ctx.getCurrentKey() + " we found " + triangleCount.getTriangles() + " triangles in " +
+                                triangleCount.getEdgeCount() + " edges");
+                    } else {
+                        nextOutputTimestamp.update(timestamp+60000L);
+                        ctx.timerService().registerProcessingTimeTimer(nextOutputTimestamp.value());
+                    }
+                }
+            }
+        }
+    }
 }
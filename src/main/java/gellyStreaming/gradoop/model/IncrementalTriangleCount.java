@@ -0,0 +1,141 @@
+package gellyStreaming.gradoop.model;
+
+import it.unimi.dsi.fastutil.longs.Long2IntMap;
+import it.unimi.dsi.fastutil.longs.Long2IntOpenHashMap;
+import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
+import it.unimi.dsi.fastutil.longs.LongArrayList;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Window of one partition for the "incrementalTC" strategy, together with the number of triangles in it.
+ *
+ * The window is kept as an undirected graph, every neighbour with the number of times the edge was added by a
+ * batch that is still in the window. Only when an edge appears (its count goes from 0 to 1) or disappears
+ * (from 1 to 0) the triangle count changes, by the number of common neighbours of both ends. So adding and
+ * purging a batch costs time in the size of the batch and the degrees of its vertices, not in the size of
+ * the window, and the count is always up to date.
+ *
+ * Edges are remembered per batch (validTo) only to be able to take them out again, and to write the window to a
+ * checkpoint: adding the batches of getBatches again with addBatch restores the window and its count. Self loops are
+ * left out.
+ */
+public class IncrementalTriangleCount {
+
+    private final Long2ObjectOpenHashMap<Long2IntOpenHashMap> neighbours = new Long2ObjectOpenHashMap<>();
+    private final HashMap<Long, LongArrayList> batches = new HashMap<>();
+    private long triangles = 0;
+    private long edgeCount = 0;
+
+    public void addEdge(long validTo, long src, long trg) {
+        // The batch is made even for a self loop, so contains() tells whether a batch has started.
+        LongArrayList batch = batches.computeIfAbsent(validTo, k -> new LongArrayList());
+        if (src == trg) {
+            return;
+        }
+        batch.add(src);
+        batch.add(trg);
+        if (increment(src, trg) == 1) {
+            increment(trg, src);
+            triangles += commonNeighbours(src, trg);
+            edgeCount++;
+        } else {
+            increment(trg, src);
+        }
+    }
+
+    // Purges the batch with this validTo and subtracts the triangles of the edges that are no longer in the window.
+    public void remove(long validTo) {
+        LongArrayList batch = batches.remove(validTo);
+        if (batch == null) {
+            return;
+        }
+        long[] edges = batch.elements();
+        for (int i = 0; i < batch.size(); i += 2) {
+            long src = edges[i];
+            long trg = edges[i + 1];
+            decrement(trg, src);
+            if (decrement(src, trg) == 0) {
+                triangles -= commonNeighbours(src, trg);
+                edgeCount--;
+            }
+        }
+    }
+
+    // Adds a batch of getBatches, src and trg of every edge one after another.
+    public void addBatch(long validTo, long[] edges) {
+        batches.computeIfAbsent(validTo, k -> new LongArrayList());
+        for (int i = 0; i < edges.length; i += 2) {
+            addEdge(validTo, edges[i], edges[i + 1]);
+        }
+    }
+
+    // The edges of every batch by validTo, see addBatch.
+    public HashMap<Long, long[]> getBatches() {
+        HashMap<Long, long[]> copy = new HashMap<>();
+        for (Map.Entry<Long, LongArrayList> batch : batches.entrySet()) {
+            copy.put(batch.getKey(), batch.getValue().toLongArray());
+        }
+        return copy;
+    }
+
+    public boolean contains(long validTo) {
+        return batches.containsKey(validTo);
+    }
+
+    public long getTriangles() {
+        return triangles;
+    }
+
+    // Distinct undirected edges in the window.
+    public long getEdgeCount() {
+        return edgeCount;
+    }
+
+    public int getBatchCount() {
+        return batches.size();
+    }
+
+    private int increment(long vertex, long neighbour) {
+        Long2IntOpenHashMap counts = neighbours.get(vertex);
+        if (counts == null) {
+            counts = new Long2IntOpenHashMap();
+            neighbours.put(vertex, counts);
+        }
+        return counts.addTo(neighbour, 1) + 1;
+    }
+
+    private int decrement(long vertex, long neighbour) {
+        Long2IntOpenHashMap counts = neighbours.get(vertex);
+        int count = counts.addTo(neighbour, -1) - 1;
+        if (count == 0) {
+            counts.remove(neighbour);
+            if (counts.isEmpty()) {
+                neighbours.remove(vertex);
+            }
+        }
+        return count;
+    }
+
+    // Walks the smaller neighbourhood and looks every vertex up in the larger one.
+    private long commonNeighbours(long u, long v) {
+        Long2IntOpenHashMap uNeighbours = neighbours.get(u);
+        Long2IntOpenHashMap vNeighbours = neighbours.get(v);
+        if (uNeighbours == null || vNeighbours == null) {
+            return 0;
+        }
+        if (uNeighbours.size() > vNeighbours.size()) {
+            Long2IntOpenHashMap swap = uNeighbours;
+            uNeighbours = vNeighbours;
+            vNeighbours = swap;
+        }
+        long common = 0;
+        for (Long2IntMap.Entry entry : uNeighbours.long2IntEntrySet()) {
+            if (vNeighbours.containsKey(entry.getLongKey())) {
+                common++;
+            }
+        }
+        return common;
+    }
+}
@@ -0,0 +1,291 @@
+package gellyStreaming.gradoop.model;
+
+import org.apache.flink.api.common.state.MapState;
+import org.gradoop.common.model.impl.id.GradoopId;
+import org.gradoop.temporal.model.impl.pojo.TemporalEdge;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.AbstractMap;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+/**
+ * The published batches of the AL partitions in this JVM, per partition key, so algorithms of the same TaskManager
+ * read them directly instead of through the queryable state proxy, see QueryState.enableLocalPartitionAccess().
+ *
+ * The AL operators register every version of a batch they publish and unregister it when it is purged, the same as
+ * for the EdgeProbeServer, which answers from a registry too. Published versions are never changed again (see
+ * GraphState.copyOnWrite), so readers need no locks and nothing is copied or serialized.
+ *
+ * Partitions of the primitive layouts (tieredAL) register their SealedAdjacencyBatch instead, they are read through
+ * a PrimitiveAdjacencyList that builds the HashMap of a batch only when get() asks for it.
+ *
+ * Registries are shared per scope, one per QueryState and so per job. The operators acquire() the registry of their
+ * scope when they open and release() it when they close, the registry is dropped once the last of them closed.
+ */
+public class LocalPartitionRegistry {
+
+    private static final HashMap<String, LocalPartitionRegistry> scopes = new HashMap<>();
+
+    private final ConcurrentHashMap<Integer, ConcurrentSkipListMap<Long, HashMap<GradoopId, HashMap<GradoopId, TemporalEdge>>>> partitions =
+            new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<Integer, ConcurrentSkipListMap<Long, SealedAdjacencyBatch>> sealedPartitions =
+            new ConcurrentHashMap<>();
+    private int users = 0;
+
+    public static synchronized LocalPartitionRegistry acquire(String scope) {
+        LocalPartitionRegistry registry = scopes.computeIfAbsent(scope, s -> new LocalPartitionRegistry());
+        registry.users++;
+        return registry;
+    }
+
+    public static synchronized void release(String scope) {
+        LocalPartitionRegistry registry = scopes.get(scope);
+        if (registry != null && --registry.users == 0) {
+            scopes.remove(scope);
+        }
+    }
+
+    // The registry of the scope, null if no operator of it runs in this JVM.
+    public static synchronized LocalPartitionRegistry lookup(String scope) {
+        return scopes.get(scope);
+    }
+
+    public void register(int key, long validTo, HashMap<GradoopId, HashMap<GradoopId, TemporalEdge>> batch) {
+        partitions.computeIfAbsent(key, k -> new ConcurrentSkipListMap<>()).put(validTo, batch);
+    }
+
+    /**
+     * Registers all batches of a partition at once, for a partition restored from a checkpoint. Readers see the
+     * partition with all or none of them.
+     */
+    public void registerAll(int key, Map<Long, HashMap<GradoopId, HashMap<GradoopId, TemporalEdge>>> batches) {
+        partitions.compute(key, (k, existing) -> {
+            ConcurrentSkipListMap<Long, HashMap<GradoopId, HashMap<GradoopId, TemporalEdge>>> partition =
+                    new ConcurrentSkipListMap<>(batches);
+            if (existing != null) {
+                partition.putAll(existing);
+            }
+            return partition;
+        });
+    }
+
+    public void registerSealed(int key, long validTo, SealedAdjacencyBatch batch) {
+        sealedPartitions.computeIfAbsent(key, k -> new ConcurrentSkipListMap<>()).put(validTo, batch);
+    }
+
+    public void unregister(int key, long validTo) {
+        ConcurrentSkipListMap<Long, HashMap<GradoopId, HashMap<GradoopId, TemporalEdge>>> partition = partitions.get(key);
+        if (partition != null) {
+            partition.remove(validTo);
+        }
+        ConcurrentSkipListMap<Long, SealedAdjacencyBatch> sealedPartition = sealedPartitions.get(key);
+        if (sealedPartition != null) {
+            sealedPartition.remove(validTo);
+        }
+    }
+
+    // Drops the partition, when its operator closes.
+    public void unregisterAll(int key) {
+        partitions.remove(key);
+        sealedPartitions.remove(key);
+    }
+
+    // True if the partition is in this JVM, in either layout.
+    public boolean contains(int key) {
+        return partitions.containsKey(key) || sealedPartitions.containsKey(key);
+    }
+
+    // Live batches of the partition by validTo, null if it isn't in this JVM.
+    public ConcurrentSkipListMap<Long, HashMap<GradoopId, HashMap<GradoopId, TemporalEdge>>> getBatches(int key) {
+        return partitions.get(key);
+    }
+
+    /**
+     * @return The batches of the partition as they are now, as a read-only MapState like the one Queryable State
+     * gives, or null if the partition isn't in this JVM. The adjacency lists are the published ones and must not
+     * be changed.
+     */
+    public MapState<Long, HashMap<GradoopId, HashMap<GradoopId, TemporalEdge>>> getState(int key) {
+        ConcurrentSkipListMap<Long, SealedAdjacencyBatch> sealedPartition = sealedPartitions.get(key);
+        if (sealedPartition != null) {
+            return new SealedState(new TreeMap<>(sealedPartition));
+        }
+        ConcurrentSkipListMap<Long, HashMap<GradoopId, HashMap<GradoopId, TemporalEdge>>> partition = partitions.get(key);
+        return partition == null ? null : new ReadOnlyState<>(new TreeMap<>(partition));
+    }
+
+    // Read-only view of the sealed batches of a partition. A get() builds the HashMap of the batch every time.
+    private static class SealedState implements PrimitiveAdjacencyList {
+
+        private final Map<Long, SealedAdjacencyBatch> batches;
+
+        private SealedState(Map<Long, SealedAdjacencyBatch> batches) {
+            this.batches = Collections.unmodifiableMap(batches);
+        }
+
+        @Override
+        public void forEachSource(long validTo, SourceVisitor visitor) throws Exception {
+            SealedAdjacencyBatch batch = batches.get(validTo);
+            if (batch != null) {
+                batch.forEachSource(visitor);
+            }
+        }
+
+        @Override
+        public HashMap<GradoopId, HashMap<GradoopId, TemporalEdge>> get(Long validTo) throws Exception {
+            SealedAdjacencyBatch batch = batches.get(validTo);
+            return batch == null ? null : SealedAdjacencyBatch.toAdjacencyList(batch);
+        }
+
+        @Override
+        public void put(Long validTo, HashMap<GradoopId, HashMap<GradoopId, TemporalEdge>> batch) {
+            throw new UnsupportedOperationException("Partitions of other tasks are read-only.");
+        }
+
+        @Override
+        public void putAll(Map<Long, HashMap<GradoopId, HashMap<GradoopId, TemporalEdge>>> map) {
+            throw new UnsupportedOperationException("Partitions of other tasks are read-only.");
+        }
+
+        @Override
+        public void remove(Long validTo) {
+            throw new UnsupportedOperationException("Partitions of other tasks are read-only.");
+        }
+
+        @Override
+        public boolean contains(Long validTo) {
+            return batches.containsKey(validTo);
+        }
+
+        @Override
+        public Iterable<Map.Entry<Long, HashMap<GradoopId, HashMap<GradoopId, TemporalEdge>>>> entries() {
+            return this::iterator;
+        }
+
+        @Override
+        public Iterable<Long> keys() {
+            return batches.keySet();
+        }
+
+        @Override
+        public Iterable<HashMap<GradoopId, HashMap<GradoopId, TemporalEdge>>> values() {
+            return () -> {
+                Iterator<Map.Entry<Long, HashMap<GradoopId, HashMap<GradoopId, TemporalEdge>>>> entries = iterator();
+                return new Iterator<>() {
+                    @Override
+                    public boolean hasNext() {
+                        return entries.hasNext();
+                    }
+
+                    @Override
+                    public HashMap<GradoopId, HashMap<GradoopId, TemporalEdge>> next() {
+                        return entries.next().getValue();
+                    }
+                };
+            };
+        }
+
+        @Override
+        public Iterator<Map.Entry<Long, HashMap<GradoopId, HashMap<GradoopId, TemporalEdge>>>> iterator() {
+            Iterator<Map.Entry<Long, SealedAdjacencyBatch>> entries = batches.entrySet().iterator();
+            return new Iterator<>() {
+                @Override
+                public boolean hasNext() {
+                    return entries.hasNext();
+                }
+
+                @Override
+                public Map.Entry<Long, HashMap<GradoopId, HashMap<GradoopId, TemporalEdge>>> next() {
+                    Map.Entry<Long, SealedAdjacencyBatch> entry = entries.next();
+                    try {
+                        return new AbstractMap.SimpleImmutableEntry<>(entry.getKey(),
+                                SealedAdjacencyBatch.toAdjacencyList(entry.getValue()));
+                    } catch (IOException e) {
+                        throw new UncheckedIOException("Could not read batch " + entry.getKey() + ".", e);
+                    }
+                }
+            };
+        }
+
+        @Override
+        public boolean isEmpty() {
+            return batches.isEmpty();
+        }
+
+        @Override
+        public void clear() {
+            throw new UnsupportedOperationException("Partitions of other tasks are read-only.");
+        }
+    }
+
+    static class ReadOnlyState<K, V> implements MapState<K, V> {
+
+        private final Map<K, V> map;
+
+        ReadOnlyState(Map<K, V> map) {
+            this.map = Collections.unmodifiableMap(map);
+        }
+
+        @Override
+        public V get(K key) {
+            return map.get(key);
+        }
+
+        @Override
+        public void put(K key, V value) {
+            throw new UnsupportedOperationException("Partitions of other tasks are read-only.");
+        }
+
+        @Override
+        public void putAll(Map<K, V> map) {
+            throw new UnsupportedOperationException("Partitions of other tasks are read-only.");
+        }
+
+        @Override
+        public void remove(K key) {
+            throw new UnsupportedOperationException("Partitions of other tasks are read-only.");
+        }
+
+        @Override
+        public boolean contains(K key) {
+            return map.containsKey(key);
+        }
+
+        @Override
+        public Iterable<Map.Entry<K, V>> entries() {
+            return map.entrySet();
+        }
+
+        @Override
+        public Iterable<K> keys() {
+            return map.keySet();
+        }
+
+        @Override
+        public Iterable<V> values() {
+            return map.values();
+        }
+
+        @Override
+        public Iterator<Map.Entry<K, V>> iterator() {
+            return map.entrySet().iterator();
+        }
+
+        @Override
+        public boolean isEmpty() {
+            return map.isEmpty();
+        }
+
+        @Override
+        public void clear() {
+            throw new UnsupportedOperationException("Partitions of other tasks are read-only.");
+        }
+    }
+}
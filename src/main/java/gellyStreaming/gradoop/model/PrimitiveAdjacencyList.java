@@ -0,0 +1,32 @@
+package gellyStreaming.gradoop.model;
+
+import org.apache.flink.api.common.state.MapState;
+import org.gradoop.common.model.impl.id.GradoopId;
+import org.gradoop.temporal.model.impl.pojo.TemporalEdge;
+
+import java.io.IOException;
+import java.util.HashMap;
+
+/**
+ * Window of a partition whose batches are not kept as HashMaps, like the compactAL layout. It is a
+ * MapState<validTo, adjacency list>, so every AL algorithm runs on it, but a get() has to build the HashMap of the
+ * batch. Algorithms that only need the topology should walk the batches with forEachSource() instead, which hands
+ * out the sorted neighbours of every source as primitives without building anything.
+ */
+public interface PrimitiveAdjacencyList extends MapState<Long, HashMap<GradoopId, HashMap<GradoopId, TemporalEdge>>> {
+
+    /**
+     * Calls the visitor once for every source vertex of the batch with this validTo, nothing if there is no such
+     * batch.
+     */
+    void forEachSource(long validTo, SourceVisitor visitor) throws Exception;
+
+    interface SourceVisitor {
+
+        /**
+         * @param neighbours Holds the distinct neighbours of source, sorted, at [offset, offset + degree). The array
+         *                   may be reused for the next source, so it must not be kept.
+         */
+        void visit(long source, long[] neighbours, int offset, int degree) throws IOException;
+    }
+}
@@ -0,0 +1,45 @@
+package gellyStreaming.gradoop.model;
+
+import java.io.Serializable;
+
+/**
+ * Retry policy for Queryable State requests. A failed request is tried again after
+ * initialDelay * multiplier^(failedTries - 1) milliseconds, capped at maxDelay, until maxTries tries failed.
+ *
+ * The AL strategies publish copy-on-write versions of their batches, so a request no longer fails because the owning
+ * task changes the state while it is serialized. Failures left are mostly state that is not there yet or a lost
+ * connection, which usually resolve within a few milliseconds, so the default starts small.
+ */
+public class QSBackoff implements Serializable {
+
+    private final int maxTries;
+    private final long initialDelay;
+    private final long maxDelay;
+    private final double multiplier;
+
+    public QSBackoff(int maxTries, long initialDelay, long maxDelay, double multiplier) {
+        if (maxTries < 1 || initialDelay < 0 || maxDelay < initialDelay || multiplier < 1) {
+            throw new IllegalArgumentException("Invalid backoff: maxTries " + maxTries + ", initialDelay " +
+                    initialDelay + ", maxDelay " + maxDelay + ", multiplier " + multiplier);
+        }
+        this.maxTries = maxTries;
+        this.initialDelay = initialDelay;
+        this.maxDelay = maxDelay;
+        this.multiplier = multiplier;
+    }
+
+    // 10 tries, waiting 10, 20, 40, ... ms up to 1 second, about as long as the old fixed sleeps took.
+    public static QSBackoff defaultBackoff() {
+        return new QSBackoff(10, 10, 1000, 2.);
+    }
+
+    public int getMaxTries() {
+        return maxTries;
+    }
+
+    // Milliseconds to wait before the next try, after failedTries tries failed.
+    public long getDelay(int failedTries) {
+        double delay = initialDelay * Math.pow(multiplier, Math.max(failedTries - 1, 0));
+        return (long) Math.min(delay, maxDelay);
+    }
+}
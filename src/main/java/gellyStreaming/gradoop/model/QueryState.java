@@ -4,24 +4,51 @@ import org.apache.flink.api.common.ExecutionConfig;
 import org.apache.flink.api.common.JobID;
 import org.apache.flink.api.common.state.MapState;
 import org.apache.flink.api.common.state.MapStateDescriptor;
+import org.apache.flink.api.common.state.ValueState;
+import org.apache.flink.api.common.state.ValueStateDescriptor;
 import org.apache.flink.api.common.typeinfo.TypeHint;
 import org.apache.flink.api.common.typeinfo.TypeInformation;
 import org.apache.flink.api.java.tuple.Tuple1;
 import org.apache.flink.api.java.tuple.Tuple2;
 import org.apache.flink.queryablestate.client.QueryableStateClient;
 import org.apache.flink.runtime.taskmanager.TaskManagerLocation;
+import gellyStreaming.gradoop.util.CountingEdgeBloomFilter;
+import gellyStreaming.gradoop.util.EdgeBloomFilter;
+import gellyStreaming.gradoop.util.GradoopIdUtil;
 import org.gradoop.common.model.impl.id.GradoopId;
 import org.gradoop.temporal.model.impl.pojo.TemporalEdge;
 
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
 import java.io.Serializable;
 import java.net.InetAddress;
+import java.net.Socket;
 import java.net.UnknownHostException;
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.UUID;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+import java.util.function.Supplier;
 
 public class QueryState implements Serializable {
 
@@ -30,8 +57,35 @@ public class QueryState implements Serializable {
 
     private final MapStateDescriptor<GradoopId, HashMap<GradoopId, TemporalEdge>> descriptor;
     private final MapStateDescriptor<Long, HashMap<GradoopId, HashMap<GradoopId, TemporalEdge>>> descriptorAL;
+    private final ValueStateDescriptor<String> descriptorProbeEndpoint;
+    private final ValueStateDescriptor<EdgeBloomFilter> descriptorBloomFilter;
+    private final MapStateDescriptor<Tuple2<Long, Long>, long[]> descriptorFlatBlocks;
     private transient JobID jobID;
     private transient boolean initilized = false;
+    // If true, the AL operators start an EdgeProbeServer and edge probes are answered by the owning task.
+    private boolean probePushDown = false;
+    private transient ConcurrentHashMap<Integer, ProbeConnection> probeConnections;
+    // Retries and concurrency of the asynchronous requests, see fanOut.
+    private QSBackoff backoff = QSBackoff.defaultBackoff();
+    private int maxInFlight = 8;
+    private transient ScheduledExecutorService asyncExecutor;
+    // Size of the edge bloom filters of the AL operators, 0 if they don't keep any.
+    private int bloomFilterBits = 0;
+    private int bloomFilterHashes = 0;
+    private long bloomFilterEdgesPerBatch = 0;
+    private double bloomFilterFalsePositiveRate = 0;
+    // If true, the AL batches are serialized with all edge data instead of only their topology.
+    private boolean keepEdgeData = false;
+
+    private long remoteNeighbourCacheCapacity = 0;
+
+    private boolean localPartitionAccess = false;
+    // If true, the partitions are flatAL ones, which are read from their neighbour blocks.
+    private boolean flatLayout = false;
+    // Same in all tasks of the job, as they all get this QueryState serialized with the GraphState.
+    private final String partitionScope = UUID.randomUUID().toString();
+    // Shared by all tasks of the job through this QueryState, connections to their probe servers start with it.
+    private final String probeSecret = UUID.randomUUID().toString();
 
     public QueryState() {
         initilized = false;
@@ -49,17 +103,157 @@ public class QueryState implements Serializable {
                         }).createSerializer(executionConfig)
                 );
 
-        // Only using this descriptor, since AL is the best format for triangle counting.
+        // Only using this descriptor, since AL is the best format for triangle counting. The batches are read with
+        // the same serializer the AL operators write them with, with or without edge data.
         this.descriptorAL =
                 new MapStateDescriptor<>(
                         "adjacencyList",
                         TypeInformation.of(new TypeHint<Long>() {
                         }).createSerializer(executionConfig),
-                        TypeInformation.of(new TypeHint<HashMap<GradoopId, HashMap<GradoopId, TemporalEdge>>>() {
+                        new AdjacencyBatchSerializer()
+                );
+
+        this.descriptorFlatBlocks = FlatAdjacencyState.blocksDescriptor();
+
+        this.descriptorProbeEndpoint = new ValueStateDescriptor<>("probeEndpoint", String.class);
+
+        this.descriptorBloomFilter =
+                new ValueStateDescriptor<>(
+                        "edgeBloomFilter",
+                        TypeInformation.of(new TypeHint<EdgeBloomFilter>() {
                         }).createSerializer(executionConfig)
                 );
     }
 
+    // Has to be called before building the GraphState, since the AL operators check it when they open.
+    public void enableProbePushDown() {
+        this.probePushDown = true;
+    }
+
+    public boolean isProbePushDownEnabled() {
+        return probePushDown;
+    }
+
+    public void setBackoff(QSBackoff backoff) {
+        this.backoff = backoff;
+    }
+
+    public QSBackoff getBackoff() {
+        return backoff;
+    }
+
+    // Maximum number of remote partitions a single fanOut has a request outstanding to.
+    public void setMaxInFlight(int maxInFlight) {
+        if (maxInFlight < 1) {
+            throw new IllegalArgumentException("maxInFlight has to be at least 1, got " + maxInFlight);
+        }
+        this.maxInFlight = maxInFlight;
+    }
+
+    public int getMaxInFlight() {
+        return maxInFlight;
+    }
+
+    // Has to be called before building the GraphState. Checkpoints and queryable state then carry the ids, labels,
+    // properties and graph ids of the edges in the AL state, see AdjacencyBatchSerializer.
+    public void keepEdgeData() {
+        this.keepEdgeData = true;
+    }
+
+    public boolean isKeepEdgeData() {
+        return keepEdgeData;
+    }
+
+    // Has to be called before building the GraphState. The AL operators then keep a bloom filter of the edges in
+    // their window. expectedEdgesPerBatch is the number of distinct edges one partition adds to the batch of one
+    // slide, the GraphState sizes the filters with sizeEdgeBloomFilters from it.
+    public void enableEdgeBloomFilter(long expectedEdgesPerBatch, double falsePositiveRate) {
+        if (expectedEdgesPerBatch < 1 || falsePositiveRate <= 0 || falsePositiveRate >= 1) {
+            throw new IllegalArgumentException("A bloom filter needs expected edges and a false positive rate.");
+        }
+        this.bloomFilterEdgesPerBatch = expectedEdgesPerBatch;
+        this.bloomFilterFalsePositiveRate = falsePositiveRate;
+    }
+
+    // Sizes the filter of a partition for the batches of one window. Remote filters are checked one by one, the
+    // false positive rate is so split over the other partitions.
+    void sizeEdgeBloomFilters(long batchesPerWindow, int numPartitions) {
+        if (bloomFilterEdgesPerBatch == 0) {
+            return;
+        }
+        long expectedEdges = bloomFilterEdgesPerBatch * Math.max(1, batchesPerWindow);
+        double falsePositiveRate = bloomFilterFalsePositiveRate / Math.max(1, numPartitions - 1);
+        this.bloomFilterBits = EdgeBloomFilter.optimalNumBits(expectedEdges, falsePositiveRate);
+        this.bloomFilterHashes = EdgeBloomFilter.optimalNumHashes(expectedEdges, bloomFilterBits);
+    }
+
+    public boolean isEdgeBloomFilterEnabled() {
+        return bloomFilterBits > 0;
+    }
+
+    // Needs enableProbePushDown(). getALVerticesFromToAllPartitions then asks the probe servers of the partitions and
+    // caches what they answer for sealed batches in the RemoteNeighbourCache of the TaskManager, which holds at
+    // most about capacity neighbours.
+    public void enableRemoteNeighbourCache(long capacity) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("The cache capacity has to be at least 1, got " + capacity);
+        }
+        this.remoteNeighbourCacheCapacity = capacity;
+    }
+
+    public boolean isRemoteNeighbourCacheEnabled() {
+        return probePushDown && remoteNeighbourCacheCapacity > 0;
+    }
+
+    public RemoteNeighbourCache getRemoteNeighbourCache() {
+        return RemoteNeighbourCache.shared(jobID, remoteNeighbourCacheCapacity);
+    }
+
+    // Has to be called before building the GraphState. The AL partitions of the job in the same TaskManager are then
+    // read from its LocalPartitionRegistry instead of through the queryable state proxy.
+    public void enableLocalPartitionAccess() {
+        this.localPartitionAccess = true;
+    }
+
+    public boolean isLocalPartitionAccessEnabled() {
+        return localPartitionAccess;
+    }
+
+    // Set by the GraphState for the flatAL strategy, its partitions have no "adjacencyList" but their queryable
+    // "adjacencyBlocks" are read as one.
+    public void readFlatLayout() {
+        this.flatLayout = true;
+    }
+
+    public String getPartitionScope() {
+        return partitionScope;
+    }
+
+    String getProbeSecret() {
+        return probeSecret;
+    }
+
+    // The partition as it is now if it is in this JVM, otherwise null.
+    private MapState<Long, HashMap<GradoopId, HashMap<GradoopId, TemporalEdge>>> localALState(Integer key) {
+        if (!localPartitionAccess) {
+            return null;
+        }
+        LocalPartitionRegistry registry = LocalPartitionRegistry.lookup(partitionScope);
+        return registry == null ? null : registry.getState(key);
+    }
+
+    private boolean isLocalPartition(Integer key) {
+        if (!localPartitionAccess) {
+            return false;
+        }
+        LocalPartitionRegistry registry = LocalPartitionRegistry.lookup(partitionScope);
+        return registry != null && registry.contains(key);
+    }
+
+    public CountingEdgeBloomFilter newCountingEdgeBloomFilter() {
+        return new CountingEdgeBloomFilter(bloomFilterBits, bloomFilterHashes);
+    }
+
 
     public void initialize(JobID jobID) {
 
@@ -89,6 +283,28 @@ public class QueryState implements Serializable {
         return initilized;
     }
 
+    /**
+     * Stops the retries and closes the probe connections and the client, called by the operators in close. A later
+     * query needs initialize again.
+     */
+    public synchronized void close() {
+        if (asyncExecutor != null) {
+            asyncExecutor.shutdownNow();
+            asyncExecutor = null;
+        }
+        if (probeConnections != null) {
+            for (ProbeConnection connection : probeConnections.values()) {
+                connection.close();
+            }
+            probeConnections.clear();
+        }
+        if (client != null) {
+            client.shutdownAndHandle();
+            client = null;
+        }
+        initilized = false;
+    }
+
     public HashMap<GradoopId, TemporalEdge> getSrcVertex(Integer key, GradoopId srcVertex) throws Exception {
 
         CompletableFuture<MapState<GradoopId, HashMap<GradoopId, TemporalEdge>>> resultFuture =
@@ -166,13 +382,7 @@ public class QueryState implements Serializable {
 
     public MapState<Long, HashMap<GradoopId, HashMap<GradoopId, TemporalEdge>>> getALState(Integer key) throws Exception {
         CompletableFuture<MapState<Long, HashMap<GradoopId, HashMap<GradoopId, TemporalEdge>>>> resultFuture =
-                client.getKvState(
-                        jobID,
-                        "adjacencyList",
-                        key,
-                        new TypeHint<Integer>() {
-                        },
-                        descriptorAL);
+                requestALState(key);
         AtomicReference<Boolean> results = new AtomicReference<>(false);
         final Tuple1<MapState<Long, HashMap<GradoopId, HashMap<GradoopId, TemporalEdge>>>> def = new Tuple1<>();
         try {
@@ -192,13 +402,7 @@ public class QueryState implements Serializable {
     public HashMap<GradoopId, HashMap<GradoopId, TemporalEdge>> getALVerticesFromTo(
             Integer key, GradoopId[] vertexIds, long From, long To) throws Exception {
         CompletableFuture<MapState<Long, HashMap<GradoopId, HashMap<GradoopId, TemporalEdge>>>> resultFuture =
-                client.getKvState(
-                        jobID,
-                        "adjacencyList",
-                        key,
-                        new TypeHint<Integer>() {
-                        },
-                        descriptorAL);
+                requestALState(key);
         AtomicReference<Boolean> results = new AtomicReference<>(false);
         final Tuple1<MapState<Long, HashMap<GradoopId, HashMap<GradoopId, TemporalEdge>>>> def = new Tuple1<>();
         final Tuple1<HashMap<GradoopId, HashMap<GradoopId, TemporalEdge>>> toReturn = Tuple1.of(new HashMap<>());
@@ -231,13 +435,7 @@ public class QueryState implements Serializable {
     public Tuple2<HashMap<GradoopId, HashMap<GradoopId, TemporalEdge>>, Integer> getALVerticesFromToPlusTotal(
             Integer key, GradoopId[] vertexIds, long From, long To) throws Exception {
         CompletableFuture<MapState<Long, HashMap<GradoopId, HashMap<GradoopId, TemporalEdge>>>> resultFuture =
-                client.getKvState(
-                        jobID,
-                        "adjacencyList",
-                        key,
-                        new TypeHint<Integer>() {
-                        },
-                        descriptorAL);
+                requestALState(key);
         AtomicReference<Boolean> results = new AtomicReference<>(false);
         final Tuple1<MapState<Long, HashMap<GradoopId, HashMap<GradoopId, TemporalEdge>>>> def = new Tuple1<>();
         final Tuple2<HashMap<GradoopId, HashMap<GradoopId, TemporalEdge>>, Integer> toReturn = Tuple2.of(new HashMap<>(),0);
@@ -273,13 +471,7 @@ public class QueryState implements Serializable {
     public Boolean[] ALcontainsEdgesFromTo(
             Integer key, LinkedList<GradoopId> src, LinkedList<GradoopId> trg, long From, long To) throws Exception {
         CompletableFuture<MapState<Long, HashMap<GradoopId, HashMap<GradoopId, TemporalEdge>>>> resultFuture =
-                client.getKvState(
-                        jobID,
-                        "adjacencyList",
-                        key,
-                        new TypeHint<Integer>() {
-                        },
-                        descriptorAL);
+                requestALState(key);
         AtomicReference<Boolean> results = new AtomicReference<>(false);
         Boolean[] contains = new Boolean[src.size()];
         for(int j = 0; j < contains.length; j++) {
@@ -313,13 +505,7 @@ public class QueryState implements Serializable {
     public HashSet<GradoopId> getALVertexListFromTo(
             Integer key, long From, long To) throws Exception {
         CompletableFuture<MapState<Long, HashMap<GradoopId, HashMap<GradoopId, TemporalEdge>>>> resultFuture =
-                client.getKvState(
-                        jobID,
-                        "adjacencyList",
-                        key,
-                        new TypeHint<Integer>() {
-                        },
-                        descriptorAL);
+                requestALState(key);
         AtomicReference<Boolean> results = new AtomicReference<>(false);
         final Tuple1<MapState<Long, HashMap<GradoopId, HashMap<GradoopId, TemporalEdge>>>> def = new Tuple1<>();
         final Tuple1<HashSet<GradoopId>> vertices = Tuple1.of(new HashSet<>());
@@ -344,13 +530,7 @@ public class QueryState implements Serializable {
 
     public Boolean getALEdgeFromTo(Integer key, GradoopId srcVertex, GradoopId trgVertex, Long from, Long to) throws Exception {
         CompletableFuture<MapState<Long, HashMap<GradoopId, HashMap<GradoopId, TemporalEdge>>>> resultFuture =
-                client.getKvState(
-                        jobID,
-                        "adjacencyList",
-                        key,
-                        new TypeHint<Integer>() {
-                        },
-                        descriptorAL);
+                requestALState(key);
         AtomicReference<Boolean> results = new AtomicReference<>(false);
         AtomicReference<Boolean> exists = new AtomicReference<>(null);
         try {
@@ -405,4 +585,526 @@ public class QueryState implements Serializable {
         }
     }
 
+    // Same answers as ALcontainsEdgesFromTo, but the probes run inside the task owning the partition and only
+    // two bitsets come back. Requires enableProbePushDown() before the GraphState was built.
+    public Boolean[] ALcontainsEdgesFromToPushDown(
+            Integer key, LinkedList<GradoopId> src, LinkedList<GradoopId> trg, long From, long To) throws Exception {
+        long[] srcIds = new long[src.size()];
+        long[] trgIds = new long[trg.size()];
+        int index = 0;
+        for (GradoopId id : src) {
+            srcIds[index++] = GradoopIdUtil.toLong(id);
+        }
+        index = 0;
+        for (GradoopId id : trg) {
+            trgIds[index++] = GradoopIdUtil.toLong(id);
+        }
+        return toContains(pushDownProbe(key, srcIds, trgIds, From, To), srcIds.length);
+    }
+
+    private long[][] pushDownProbe(Integer key, long[] srcIds, long[] trgIds, long From, long To) throws Exception {
+        ProbeConnection connection = getProbeConnection(key);
+        try {
+            return connection.probe(key, srcIds, trgIds, From, To);
+        } catch (IOException e) {
+            // Endpoint might have moved after a restart, look it up again on the next try.
+            connection.close();
+            probeConnections.remove(key, connection);
+            throw e;
+        }
+    }
+
+    private ProbeConnection getProbeConnection(Integer key) throws Exception {
+        synchronized (this) {
+            if (probeConnections == null) {
+                probeConnections = new ConcurrentHashMap<>();
+            }
+        }
+        ProbeConnection connection = probeConnections.get(key);
+        if (connection == null) {
+            ProbeConnection newConnection = new ProbeConnection(getProbeEndpoint(key), probeSecret);
+            connection = probeConnections.putIfAbsent(key, newConnection);
+            if (connection == null) {
+                connection = newConnection;
+            } else {
+                newConnection.close();
+            }
+        }
+        return connection;
+    }
+
+    /**
+     * getALVerticesFromTo through the probe server of the partition and the RemoteNeighbourCache. Vertices are
+     * only asked for the batches after the ones the cache has for them, which after the first slide usually are
+     * just the newest. What the answer has for sealed batches is cached.
+     */
+    private HashMap<GradoopId, HashMap<GradoopId, TemporalEdge>> cachedVerticesFromTo(
+            Integer key, GradoopId[] vertexIds, long From, long To) throws Exception {
+        RemoteNeighbourCache cache = getRemoteNeighbourCache();
+        HashMap<GradoopId, HashMap<GradoopId, TemporalEdge>> vertices = new HashMap<>();
+        // Vertices by the validTo they have to be asked from.
+        HashMap<Long, List<Integer>> toFetch = new HashMap<>();
+        long[] ids = new long[vertexIds.length];
+        for (int i = 0; i < vertexIds.length; i++) {
+            ids[i] = GradoopIdUtil.toLong(vertexIds[i]);
+            long cachedUntil = cache.cachedUntil(key, ids[i], From);
+            addNeighbours(vertices, vertexIds[i], cache.get(key, ids[i], From, Math.min(cachedUntil, To + 1)));
+            if (cachedUntil <= To) {
+                toFetch.computeIfAbsent(cachedUntil, k -> new ArrayList<>()).add(i);
+            }
+        }
+        for (Long fetchFrom : toFetch.keySet()) {
+            List<Integer> indices = toFetch.get(fetchFrom);
+            long[] fetchIds = new long[indices.size()];
+            for (int i = 0; i < fetchIds.length; i++) {
+                fetchIds[i] = ids[indices.get(i)];
+            }
+            ProbeConnection connection = getProbeConnection(key);
+            Tuple2<Long, List<TreeMap<Long, long[]>>> answer;
+            try {
+                answer = connection.neighbours(key, fetchIds, fetchFrom, To);
+            } catch (IOException e) {
+                connection.close();
+                probeConnections.remove(key, connection);
+                throw e;
+            }
+            long sealedUntil = Math.min(answer.f0, To + 1);
+            for (int i = 0; i < fetchIds.length; i++) {
+                TreeMap<Long, long[]> batches = answer.f1.get(i);
+                cache.put(key, fetchIds[i], fetchFrom, sealedUntil, batches);
+                addNeighbours(vertices, vertexIds[indices.get(i)], batches);
+            }
+        }
+        return vertices;
+    }
+
+    private static void addNeighbours(HashMap<GradoopId, HashMap<GradoopId, TemporalEdge>> vertices, GradoopId id,
+                                      TreeMap<Long, long[]> batches) {
+        for (Map.Entry<Long, long[]> batch : batches.entrySet()) {
+            HashMap<GradoopId, TemporalEdge> neighbours = vertices.computeIfAbsent(id, k -> new HashMap<>());
+            for (long neighbour : batch.getValue()) {
+                GradoopId trg = GradoopIdUtil.fromLong(neighbour);
+                neighbours.put(trg, new TemporalEdge(null, null, id, trg, null, null, null, batch.getKey()));
+            }
+        }
+    }
+
+    // Turns the found and srcKnown bitsets of a push down probe into the answers of ALcontainsEdgesFromTo.
+    private static Boolean[] toContains(long[][] answer, int n) {
+        Boolean[] contains = new Boolean[n];
+        for (int i = 0; i < contains.length; i++) {
+            if ((answer[0][i >>> 6] & (1L << i)) != 0) {
+                contains[i] = true;
+            } else if ((answer[1][i >>> 6] & (1L << i)) != 0) {
+                contains[i] = false;
+            } else {
+                contains[i] = null;
+            }
+        }
+        return contains;
+    }
+
+    public String getProbeEndpoint(Integer key) throws Exception {
+        CompletableFuture<ValueState<String>> resultFuture =
+                client.getKvState(
+                        jobID,
+                        "probeEndpoint",
+                        key,
+                        new TypeHint<Integer>() {
+                        },
+                        descriptorProbeEndpoint);
+        String endpoint = resultFuture.get().value();
+        if (endpoint == null) {
+            throw new Exception("Partition " + key + " has no probe endpoint (yet).");
+        }
+        return endpoint;
+    }
+
+    /**
+     * Sends a request to every partition in allKeys except localKey at the same time and hands each answer
+     * to merge as soon as it arrives, so the call takes about as long as the slowest partition instead of
+     * the sum of all of them. At most maxInFlight requests are outstanding at any moment. Calls to merge never
+     * overlap, so it can update plain collections. A partition that still fails after the tries of the
+     * backoff is reported and left out, the same as the blocking retry loops did.
+     *
+     * @return The number of partitions whose answer got merged.
+     */
+    public <T> int fanOut(Integer localKey, Integer[] allKeys, Function<Integer, CompletableFuture<T>> request,
+                           BiConsumer<Integer, T> merge) throws InterruptedException {
+        Semaphore inFlight = new Semaphore(maxInFlight);
+        Object mergeLock = new Object();
+        AtomicInteger merged = new AtomicInteger(0);
+        List<CompletableFuture<Void>> pending = new ArrayList<>(allKeys.length);
+        for (Integer key : allKeys) {
+            if (key.equals(localKey)) {
+                continue;
+            }
+            inFlight.acquire();
+            CompletableFuture<T> answerFuture;
+            try {
+                answerFuture = request.apply(key);
+            } catch (RuntimeException e) {
+                // Reported and released below like a request that failed later on.
+                answerFuture = CompletableFuture.failedFuture(e);
+            }
+            pending.add(answerFuture.handle((answer, error) -> {
+                inFlight.release();
+                if (error != null) {
+                    System.out.println("ERROR, failed using QS on partition " + key + ". " + error);
+                } else {
+                    synchronized (mergeLock) {
+                        merge.accept(key, answer);
+                        merged.getAndIncrement();
+                    }
+                }
+                return null;
+            }));
+        }
+        for (CompletableFuture<Void> future : pending) {
+            try {
+                future.get();
+            } catch (ExecutionException e) {
+                System.out.println("Merging a QS answer failed. " + e.getCause());
+            }
+        }
+        return merged.get();
+    }
+
+    /**
+     * The edge bloom filters of all remote partitions. An edge for which EdgeBloomFilter.mightContainAny gives false
+     * is in none of their windows, so it doesn't need to be probed.
+     *
+     * @return The filters, or null if filters are not enabled or a partition didn't answer, in which case
+     * every edge has to be probed.
+     */
+    public EdgeBloomFilter[] getEdgeBloomFilterAllPartitions(Integer localKey, Integer[] allKeys)
+            throws InterruptedException {
+        if (!isEdgeBloomFilterEnabled()) {
+            return null;
+        }
+        List<EdgeBloomFilter> filters = new ArrayList<>(allKeys.length);
+        int answered = fanOut(localKey, allKeys, this::getEdgeBloomFilterAsync,
+                (key, filter) -> {
+                    if (filter != null) {
+                        filters.add(filter);
+                    }
+                });
+        int remotePartitions = 0;
+        for (Integer key : allKeys) {
+            if (!key.equals(localKey)) {
+                remotePartitions++;
+            }
+        }
+        return answered == remotePartitions ? filters.toArray(new EdgeBloomFilter[0]) : null;
+    }
+
+    public CompletableFuture<EdgeBloomFilter> getEdgeBloomFilterAsync(Integer key) {
+        return withBackoff(() -> client.getKvState(
+                jobID,
+                "edgeBloomFilter",
+                key,
+                new TypeHint<Integer>() {
+                },
+                descriptorBloomFilter).thenApply(state -> {
+            try {
+                return state.value();
+            } catch (Exception e) {
+                throw new CompletionException(e);
+            }
+        }));
+    }
+
+    // ALcontainsEdgesFromTo on all remote partitions. An edge is true if any partition has it, false if a
+    // partition knows the source but none has the edge, and null if no partition knows the source.
+    public Boolean[] ALcontainsEdgesFromToAllPartitions(Integer localKey, Integer[] allKeys,
+            LinkedList<GradoopId> src, LinkedList<GradoopId> trg, long From, long To) throws InterruptedException {
+        GradoopId[] srcIds = src.toArray(new GradoopId[0]);
+        GradoopId[] trgIds = trg.toArray(new GradoopId[0]);
+        Boolean[] contains = new Boolean[srcIds.length];
+        fanOut(localKey, allKeys, key -> ALcontainsEdgesFromToAsync(key, srcIds, trgIds, From, To),
+                (key, answer) -> {
+                    for (int i = 0; i < contains.length; i++) {
+                        if (answer[i] != null && answer[i]) {
+                            contains[i] = true;
+                        } else if (answer[i] != null && contains[i] == null) {
+                            contains[i] = false;
+                        }
+                    }
+                });
+        return contains;
+    }
+
+    // getALVerticesFromTo on all remote partitions, with the neighbours of a vertex merged over the partitions.
+    // Goes through the RemoteNeighbourCache if it is enabled, for partitions in other TaskManagers.
+    public HashMap<GradoopId, HashMap<GradoopId, TemporalEdge>> getALVerticesFromToAllPartitions(
+            Integer localKey, Integer[] allKeys, GradoopId[] vertexIds, long From, long To) throws InterruptedException {
+        HashMap<GradoopId, HashMap<GradoopId, TemporalEdge>> vertices = new HashMap<>();
+        fanOut(localKey, allKeys, key -> isRemoteNeighbourCacheEnabled() && !isLocalPartition(key)
+                        ? getALVerticesFromToCachedAsync(key, vertexIds, From, To)
+                        : getALVerticesFromToAsync(key, vertexIds, From, To),
+                (key, answer) -> {
+                    for (GradoopId id : answer.keySet()) {
+                        if (!vertices.containsKey(id)) {
+                            vertices.put(id, new HashMap<>());
+                        }
+                        vertices.get(id).putAll(answer.get(id));
+                    }
+                });
+        return vertices;
+    }
+
+    public CompletableFuture<MapState<Long, HashMap<GradoopId, HashMap<GradoopId, TemporalEdge>>>> getALStateAsync(
+            Integer key) {
+        return withBackoff(() -> requestALState(key));
+    }
+
+    public CompletableFuture<Boolean[]> ALcontainsEdgesFromToAsync(
+            Integer key, GradoopId[] src, GradoopId[] trg, long From, long To) {
+        if (probePushDown && !isLocalPartition(key)) {
+            long[] srcIds = new long[src.length];
+            long[] trgIds = new long[trg.length];
+            for (int i = 0; i < src.length; i++) {
+                srcIds[i] = GradoopIdUtil.toLong(src[i]);
+                trgIds[i] = GradoopIdUtil.toLong(trg[i]);
+            }
+            return withBackoff(() -> CompletableFuture.supplyAsync(() -> {
+                try {
+                    return toContains(pushDownProbe(key, srcIds, trgIds, From, To), srcIds.length);
+                } catch (Exception e) {
+                    throw new CompletionException(e);
+                }
+            }, getAsyncExecutor()));
+        }
+        return withBackoff(() -> requestALState(key).thenApplyAsync(state -> {
+            try {
+                return containsEdges(state, src, trg, From, To);
+            } catch (Exception e) {
+                throw new CompletionException(e);
+            }
+        }, getAsyncExecutor()));
+    }
+
+    public CompletableFuture<HashMap<GradoopId, HashMap<GradoopId, TemporalEdge>>> getALVerticesFromToAsync(
+            Integer key, GradoopId[] vertexIds, long From, long To) {
+        return withBackoff(() -> requestALState(key).thenApplyAsync(state -> {
+            try {
+                return verticesFromTo(state, vertexIds, From, To);
+            } catch (Exception e) {
+                throw new CompletionException(e);
+            }
+        }, getAsyncExecutor()));
+    }
+
+    public CompletableFuture<HashMap<GradoopId, HashMap<GradoopId, TemporalEdge>>> getALVerticesFromToCachedAsync(
+            Integer key, GradoopId[] vertexIds, long From, long To) {
+        return withBackoff(() -> CompletableFuture.supplyAsync(() -> {
+            try {
+                return cachedVerticesFromTo(key, vertexIds, From, To);
+            } catch (Exception e) {
+                throw new CompletionException(e);
+            }
+        }, getAsyncExecutor()));
+    }
+
+    // A single try, the callers put the backoff around the request and the work on its answer together. Partitions
+    // in this JVM are answered right away if local partition access is enabled.
+    private CompletableFuture<MapState<Long, HashMap<GradoopId, HashMap<GradoopId, TemporalEdge>>>> requestALState(
+            Integer key) {
+        MapState<Long, HashMap<GradoopId, HashMap<GradoopId, TemporalEdge>>> local = localALState(key);
+        if (local != null) {
+            return CompletableFuture.completedFuture(local);
+        }
+        if (flatLayout) {
+            return client.getKvState(
+                    jobID,
+                    "adjacencyBlocks",
+                    key,
+                    new TypeHint<Integer>() {
+                    },
+                    descriptorFlatBlocks).thenApply(blocks -> {
+                try {
+                    return FlatAdjacencyState.readBatches(blocks);
+                } catch (Exception e) {
+                    throw new CompletionException(e);
+                }
+            });
+        }
+        return client.getKvState(
+                jobID,
+                "adjacencyList",
+                key,
+                new TypeHint<Integer>() {
+                },
+                descriptorAL);
+    }
+
+    private static Boolean[] containsEdges(MapState<Long, HashMap<GradoopId, HashMap<GradoopId, TemporalEdge>>> state,
+                                           GradoopId[] src, GradoopId[] trg, long From, long To) throws Exception {
+        Boolean[] contains = new Boolean[src.length];
+        for (long timestamp : state.keys()) {
+            if (timestamp <= To && timestamp >= From) {
+                HashMap<GradoopId, HashMap<GradoopId, TemporalEdge>> batch = state.get(timestamp);
+                for (int i = 0; i < src.length; i++) {
+                    HashMap<GradoopId, TemporalEdge> neighbours = batch.get(src[i]);
+                    if (neighbours != null && neighbours.containsKey(trg[i])) {
+                        contains[i] = true;
+                    } else if (neighbours != null && contains[i] == null) {
+                        contains[i] = false;
+                    }
+                }
+            }
+        }
+        return contains;
+    }
+
+    private static HashMap<GradoopId, HashMap<GradoopId, TemporalEdge>> verticesFromTo(
+            MapState<Long, HashMap<GradoopId, HashMap<GradoopId, TemporalEdge>>> state, GradoopId[] vertexIds,
+            long From, long To) throws Exception {
+        HashMap<GradoopId, HashMap<GradoopId, TemporalEdge>> vertices = new HashMap<>();
+        for (long timestamp : state.keys()) {
+            if (timestamp <= To && timestamp >= From) {
+                HashMap<GradoopId, HashMap<GradoopId, TemporalEdge>> batch = state.get(timestamp);
+                for (GradoopId id : vertexIds) {
+                    HashMap<GradoopId, TemporalEdge> neighbours = batch.get(id);
+                    if (neighbours != null) {
+                        if (!vertices.containsKey(id)) {
+                            vertices.put(id, new HashMap<>());
+                        }
+                        vertices.get(id).putAll(neighbours);
+                    }
+                }
+            }
+        }
+        return vertices;
+    }
+
+    // Runs attempt until it succeeds or the backoff gives up. Retries are scheduled, no thread sleeps meanwhile.
+    private <T> CompletableFuture<T> withBackoff(Supplier<CompletableFuture<T>> attempt) {
+        CompletableFuture<T> result = new CompletableFuture<>();
+        tryAttempt(attempt, 0, result);
+        return result;
+    }
+
+    private <T> void tryAttempt(Supplier<CompletableFuture<T>> attempt, int failedTries, CompletableFuture<T> result) {
+        CompletableFuture<T> future;
+        try {
+            future = attempt.get();
+        } catch (RuntimeException e) {
+            future = CompletableFuture.failedFuture(e);
+        }
+        future.whenComplete((answer, error) -> {
+            if (error == null) {
+                result.complete(answer);
+            } else if (failedTries + 1 >= backoff.getMaxTries()) {
+                result.completeExceptionally(error);
+            } else {
+                getAsyncExecutor().schedule(() -> tryAttempt(attempt, failedTries + 1, result),
+                        backoff.getDelay(failedTries + 1), TimeUnit.MILLISECONDS);
+            }
+        });
+    }
+
+    private synchronized ScheduledExecutorService getAsyncExecutor() {
+        if (asyncExecutor == null) {
+            ScheduledThreadPoolExecutor executor = new ScheduledThreadPoolExecutor(maxInFlight, runnable -> {
+                Thread thread = new Thread(runnable, "QueryState-async");
+                thread.setDaemon(true);
+                return thread;
+            });
+            executor.setRemoveOnCancelPolicy(true);
+            asyncExecutor = executor;
+        }
+        return asyncExecutor;
+    }
+
+    // One open connection to the EdgeProbeServer of a remote partition.
+    private static class ProbeConnection {
+        private final Socket socket;
+        private final DataInputStream in;
+        private final DataOutputStream out;
+
+        ProbeConnection(String endpoint, String secret) throws IOException {
+            int split = endpoint.lastIndexOf(':');
+            this.socket = new Socket(endpoint.substring(0, split), Integer.parseInt(endpoint.substring(split + 1)));
+            socket.setTcpNoDelay(true);
+            this.in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+            this.out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+            out.writeUTF(secret);
+            out.flush();
+            if (in.readByte() != EdgeProbeServer.STATUS_OK) {
+                String error = in.readUTF();
+                close();
+                throw new IOException("Probe server " + endpoint + " refused the connection. " + error);
+            }
+        }
+
+        synchronized long[][] probe(int key, long[] src, long[] trg, long from, long to) throws IOException {
+            out.writeByte(EdgeProbeServer.OP_PROBE);
+            out.writeInt(key);
+            out.writeLong(from);
+            out.writeLong(to);
+            out.writeInt(src.length);
+            for (int i = 0; i < src.length; i++) {
+                out.writeLong(src[i]);
+                out.writeLong(trg[i]);
+            }
+            out.flush();
+            if (in.readByte() != EdgeProbeServer.STATUS_OK) {
+                throw new IOException("Probe server could not answer the probes for key " + key + ". "
+                        + in.readUTF());
+            }
+            int n = in.readInt();
+            long[] found = new long[(n + 63) / 64];
+            long[] srcKnown = new long[(n + 63) / 64];
+            for (int i = 0; i < found.length; i++) {
+                found[i] = in.readLong();
+            }
+            for (int i = 0; i < srcKnown.length; i++) {
+                srcKnown[i] = in.readLong();
+            }
+            return new long[][]{found, srcKnown};
+        }
+
+        // {sealedBefore, per vertex its neighbours per batch}, see EdgeProbeServer.
+        synchronized Tuple2<Long, List<TreeMap<Long, long[]>>> neighbours(int key, long[] vertices, long from, long to)
+                throws IOException {
+            out.writeByte(EdgeProbeServer.OP_NEIGHBOURS);
+            out.writeInt(key);
+            out.writeLong(from);
+            out.writeLong(to);
+            out.writeInt(vertices.length);
+            for (long vertex : vertices) {
+                out.writeLong(vertex);
+            }
+            out.flush();
+            if (in.readByte() != EdgeProbeServer.STATUS_OK) {
+                throw new IOException("Probe server could not answer the neighbours for key " + key + ". "
+                        + in.readUTF());
+            }
+            long sealedBefore = in.readLong();
+            int n = in.readInt();
+            List<TreeMap<Long, long[]>> neighbours = new ArrayList<>(n);
+            for (int i = 0; i < n; i++) {
+                TreeMap<Long, long[]> batches = new TreeMap<>();
+                int batchCount = in.readInt();
+                for (int b = 0; b < batchCount; b++) {
+                    long validTo = in.readLong();
+                    long[] targets = new long[in.readInt()];
+                    for (int j = 0; j < targets.length; j++) {
+                        targets[j] = in.readLong();
+                    }
+                    batches.put(validTo, targets);
+                }
+                neighbours.add(batches);
+            }
+            return Tuple2.of(sealedBefore, neighbours);
+        }
+
+        void close() {
+            try {
+                socket.close();
+            } catch (IOException ignored) { }
+        }
+    }
+
 }
@@ -0,0 +1,176 @@
+package gellyStreaming.gradoop.model;
+
+import org.apache.flink.api.common.JobID;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.TreeMap;
+
+/**
+ * Neighbours remote partitions gave for a vertex, per batch, shared by all subtasks and algorithm runs of a
+ * TaskManager, see shared(). An entry for (partition, vertex) covers the batches with validTo in
+ * [coveredFrom, coveredUntil) and holds the neighbours of the vertex in each of them that has any. Only sealed
+ * batches are covered, the owning task never adds to those again, so an entry stays right until its batches are
+ * purged. A later slide then only has to ask the partition for the batches from coveredUntil on.
+ *
+ * Windows only move forward, so a lookup from a given from drops the batches before it, which are purged by then.
+ * Entries are evicted least recently used first once the size of all entries, their neighbours plus one each,
+ * exceeds the capacity.
+ */
+public class RemoteNeighbourCache {
+
+    private static RemoteNeighbourCache shared;
+    private static JobID sharedJob;
+
+    private final long capacity;
+    private final LinkedHashMap<Key, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private long size = 0;
+    private long hits = 0;
+    private long misses = 0;
+
+    public RemoteNeighbourCache(long capacity) {
+        this.capacity = capacity;
+    }
+
+    // The cache of this TaskManager, a new one when the job changes, so partition keys of jobs don't mix.
+    public static synchronized RemoteNeighbourCache shared(JobID job, long capacity) {
+        if (shared == null || !Objects.equals(sharedJob, job)) {
+            shared = new RemoteNeighbourCache(capacity);
+            sharedJob = job;
+        }
+        return shared;
+    }
+
+    /**
+     * @return The validTo up to which (exclusive) the batches of the partition from from on are cached for the
+     * vertex, from if nothing is.
+     */
+    public synchronized long cachedUntil(int partition, long vertex, long from) {
+        Entry entry = entries.get(new Key(partition, vertex));
+        if (entry == null || entry.coveredFrom > from || entry.coveredUntil <= from) {
+            misses++;
+            return from;
+        }
+        trim(entry, from);
+        hits++;
+        return entry.coveredUntil;
+    }
+
+    // Neighbours of the vertex in the cached batches with validTo in [from, until), by validTo.
+    public synchronized TreeMap<Long, long[]> get(int partition, long vertex, long from, long until) {
+        Entry entry = entries.get(new Key(partition, vertex));
+        if (entry == null || from >= until) {
+            return new TreeMap<>();
+        }
+        return new TreeMap<>(entry.batches.subMap(from, until));
+    }
+
+    /**
+     * Caches the neighbours of the vertex in the sealed batches with validTo in [fetchedFrom, fetchedUntil), which
+     * were all fetched, batches without neighbours included as absent. Extends the entry if it ends at fetchedFrom.
+     */
+    public synchronized void put(int partition, long vertex, long fetchedFrom, long fetchedUntil,
+                                 Map<Long, long[]> batches) {
+        if (fetchedUntil <= fetchedFrom) {
+            return;
+        }
+        Key key = new Key(partition, vertex);
+        Entry entry = entries.get(key);
+        if (entry == null || entry.coveredUntil < fetchedFrom || entry.coveredFrom > fetchedFrom) {
+            if (entry != null) {
+                size -= entry.size;
+            }
+            entry = new Entry(fetchedFrom);
+            entries.put(key, entry);
+            size += entry.size;
+        }
+        for (Map.Entry<Long, long[]> batch : batches.entrySet()) {
+            if (batch.getKey() >= fetchedFrom && batch.getKey() < fetchedUntil
+                    && entry.batches.put(batch.getKey(), batch.getValue()) == null) {
+                entry.size += batch.getValue().length;
+                size += batch.getValue().length;
+            }
+        }
+        entry.coveredUntil = Math.max(entry.coveredUntil, fetchedUntil);
+        evict();
+    }
+
+    public synchronized long getHits() {
+        return hits;
+    }
+
+    public synchronized long getMisses() {
+        return misses;
+    }
+
+    // Size of all entries, the measure the capacity bounds.
+    public synchronized long size() {
+        return size;
+    }
+
+    public synchronized void clear() {
+        entries.clear();
+        size = 0;
+    }
+
+    private void trim(Entry entry, long from) {
+        if (entry.coveredFrom >= from) {
+            return;
+        }
+        Iterator<Map.Entry<Long, long[]>> purged = entry.batches.headMap(from).entrySet().iterator();
+        while (purged.hasNext()) {
+            long[] neighbours = purged.next().getValue();
+            entry.size -= neighbours.length;
+            size -= neighbours.length;
+            purged.remove();
+        }
+        entry.coveredFrom = from;
+    }
+
+    private void evict() {
+        Iterator<Entry> eldest = entries.values().iterator();
+        while (size > capacity && eldest.hasNext()) {
+            size -= eldest.next().size;
+            eldest.remove();
+        }
+    }
+
+    private static class Key {
+        private final int partition;
+        private final long vertex;
+
+        private Key(int partition, long vertex) {
+            this.partition = partition;
+            this.vertex = vertex;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            Key other = (Key) o;
+            return partition == other.partition && vertex == other.vertex;
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * partition + Long.hashCode(vertex);
+        }
+    }
+
+    private static class Entry {
+        private long coveredFrom;
+        private long coveredUntil;
+        // Cached neighbours plus one, so entries of vertices without any still count.
+        private long size = 1;
+        private final TreeMap<Long, long[]> batches = new TreeMap<>();
+
+        private Entry(long coveredFrom) {
+            this.coveredFrom = coveredFrom;
+            this.coveredUntil = coveredFrom;
+        }
+    }
+}
@@ -0,0 +1,42 @@
+package gellyStreaming.gradoop.model;
+
+import gellyStreaming.gradoop.util.GradoopIdUtil;
+import org.gradoop.common.model.impl.id.GradoopId;
+import org.gradoop.temporal.model.impl.pojo.TemporalEdge;
+
+import java.io.IOException;
+import java.util.HashMap;
+
+/**
+ * One batch (all edges sharing one validTo) of a primitive adjacency layout that gets no more edges. Sealed batches
+ * are immutable, so queryable state requests and checkpoints can read them from other threads while the operator
+ * goes on, see SealedBatchSerializer.
+ */
+public interface SealedAdjacencyBatch {
+
+    long getValidTo();
+
+    int getVertexCount();
+
+    long getEdgeCount();
+
+    // Visits the sources of the batch in ascending order.
+    void forEachSource(PrimitiveAdjacencyList.SourceVisitor visitor) throws IOException;
+
+    // The batch as the HashMap of an AL batch, with edges that only carry source, target and validTo.
+    static HashMap<GradoopId, HashMap<GradoopId, TemporalEdge>> toAdjacencyList(SealedAdjacencyBatch batch)
+            throws IOException {
+        long validTo = batch.getValidTo();
+        HashMap<GradoopId, HashMap<GradoopId, TemporalEdge>> adjacencyList = new HashMap<>();
+        batch.forEachSource((source, neighbours, offset, degree) -> {
+            GradoopId src = GradoopIdUtil.fromLong(source);
+            HashMap<GradoopId, TemporalEdge> targets = new HashMap<>();
+            for (int i = offset; i < offset + degree; i++) {
+                GradoopId trg = GradoopIdUtil.fromLong(neighbours[i]);
+                targets.put(trg, new TemporalEdge(null, null, src, trg, null, null, null, validTo));
+            }
+            adjacencyList.put(src, targets);
+        });
+        return adjacencyList;
+    }
+}
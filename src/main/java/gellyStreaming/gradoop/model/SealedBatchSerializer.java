@@ -0,0 +1,123 @@
+package gellyStreaming.gradoop.model;
+
+import it.unimi.dsi.fastutil.longs.LongArrayList;
+import org.apache.flink.api.common.typeutils.SimpleTypeSerializerSnapshot;
+import org.apache.flink.api.common.typeutils.TypeSerializerSnapshot;
+import org.apache.flink.api.common.typeutils.base.TypeSerializerSingleton;
+import org.apache.flink.core.memory.DataInputView;
+import org.apache.flink.core.memory.DataOutputView;
+
+import java.io.IOException;
+
+/**
+ * Serializer for the sealed batches of the primitive layouts in the "adjacencyList" MapState. It writes the same
+ * bytes as the AdjacencyBatchSerializer without edge data, so queryable state clients read these partitions with
+ * the AL descriptor, as HashMaps, and don't have to know the layout. Every edge is written with validFrom
+ * Long.MIN_VALUE, the primitive layouts don't keep it.
+ *
+ * Batches are read back as CompactAdjacencyBatch, whatever they were written from. Batches are immutable, so
+ * copies are the batch itself.
+ */
+public class SealedBatchSerializer extends TypeSerializerSingleton<SealedAdjacencyBatch> {
+
+    @Override
+    public boolean isImmutableType() {
+        return true;
+    }
+
+    @Override
+    public SealedAdjacencyBatch createInstance() {
+        return CompactAdjacencyBatch.fromEdges(Long.MIN_VALUE, new long[0], new long[0], 0);
+    }
+
+    @Override
+    public SealedAdjacencyBatch copy(SealedAdjacencyBatch from) {
+        return from;
+    }
+
+    @Override
+    public SealedAdjacencyBatch copy(SealedAdjacencyBatch from, SealedAdjacencyBatch reuse) {
+        return from;
+    }
+
+    @Override
+    public int getLength() {
+        return -1;
+    }
+
+    @Override
+    public void serialize(SealedAdjacencyBatch batch, DataOutputView target) throws IOException {
+        target.writeByte(AdjacencyBatchSerializer.VERTEX_IDS);
+        AdjacencyBatchSerializer.writeVarLong(target, batch.getVertexCount());
+        long validTo = batch.getValidTo();
+        // previous source, previous validFrom, previous validTo, as the AdjacencyBatchSerializer keeps them.
+        long[] previous = {0, 0, 0};
+        batch.forEachSource((source, neighbours, offset, degree) -> {
+            AdjacencyBatchSerializer.writeVarLong(target, source - previous[0]);
+            previous[0] = source;
+            AdjacencyBatchSerializer.writeVarLong(target, degree);
+            long previousTarget = 0;
+            for (int i = offset; i < offset + degree; i++) {
+                AdjacencyBatchSerializer.writeVarLong(target, neighbours[i] - previousTarget);
+                previousTarget = neighbours[i];
+                AdjacencyBatchSerializer.writeVarLong(target, AdjacencyBatchSerializer.zigZag(Long.MIN_VALUE - previous[1]));
+                AdjacencyBatchSerializer.writeVarLong(target, AdjacencyBatchSerializer.zigZag(validTo - previous[2]));
+                previous[1] = Long.MIN_VALUE;
+                previous[2] = validTo;
+            }
+        });
+    }
+
+    @Override
+    public SealedAdjacencyBatch deserialize(DataInputView source) throws IOException {
+        int flags = source.readByte();
+        if ((flags & AdjacencyBatchSerializer.VERTEX_IDS) == 0 || (flags & AdjacencyBatchSerializer.EDGE_DATA) != 0) {
+            throw new IOException("Only batches with vertex ids and without edge data can be read as a sealed batch.");
+        }
+        int numSources = (int) AdjacencyBatchSerializer.readVarLong(source);
+        long[] vertices = new long[numSources];
+        int[] offsets = new int[numSources + 1];
+        LongArrayList neighbours = new LongArrayList();
+        long previousSource = 0;
+        long validTo = Long.MIN_VALUE;
+        long previousTo = 0;
+        for (int i = 0; i < numSources; i++) {
+            previousSource += AdjacencyBatchSerializer.readVarLong(source);
+            vertices[i] = previousSource;
+            offsets[i] = neighbours.size();
+            int numNeighbours = (int) AdjacencyBatchSerializer.readVarLong(source);
+            long previousTarget = 0;
+            for (int j = 0; j < numNeighbours; j++) {
+                previousTarget += AdjacencyBatchSerializer.readVarLong(source);
+                neighbours.add(previousTarget);
+                AdjacencyBatchSerializer.readVarLong(source);
+                previousTo += AdjacencyBatchSerializer.unZigZag(AdjacencyBatchSerializer.readVarLong(source));
+                validTo = previousTo;
+            }
+        }
+        offsets[numSources] = neighbours.size();
+        return new CompactAdjacencyBatch(validTo, vertices, offsets, neighbours.toLongArray());
+    }
+
+    @Override
+    public SealedAdjacencyBatch deserialize(SealedAdjacencyBatch reuse, DataInputView source) throws IOException {
+        return deserialize(source);
+    }
+
+    @Override
+    public void copy(DataInputView source, DataOutputView target) throws IOException {
+        serialize(deserialize(source), target);
+    }
+
+    @Override
+    public TypeSerializerSnapshot<SealedAdjacencyBatch> snapshotConfiguration() {
+        return new SealedBatchSerializerSnapshot();
+    }
+
+    public static final class SealedBatchSerializerSnapshot extends SimpleTypeSerializerSnapshot<SealedAdjacencyBatch> {
+
+        public SealedBatchSerializerSnapshot() {
+            super(SealedBatchSerializer::new);
+        }
+    }
+}
@@ -0,0 +1,97 @@
+package gellyStreaming.gradoop.model;
+
+import org.apache.flink.api.java.tuple.Tuple2;
+import org.apache.flink.configuration.ConfigurationUtils;
+import org.apache.flink.configuration.GlobalConfiguration;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayDeque;
+
+/**
+ * The segment files of the tieredAL partitions of one subtask, in a directory of its own under one of the
+ * TaskManager's temporary directories (io.tmp.dirs), the disks Flink spills to.
+ *
+ * Purged segments may still be needed by a snapshot: the heap state backend can write the values of a checkpoint
+ * after the operator went on, and a value of a segment batch is read from its file. A segment purged while a
+ * checkpoint is running is so only deleted once a checkpoint at least as new completed, the others right away.
+ *
+ * The directory with all segments in it is deleted on close(), which Flink also calls when the task fails or is
+ * cancelled. A directory that is left behind by an earlier attempt of the same subtask is deleted when the next one
+ * opens it.
+ */
+public class SegmentStore implements Closeable {
+
+    private final File directory;
+    private long lastStartedCheckpoint = -1;
+    private long lastCompletedCheckpoint = -1;
+    // Purged segments with the checkpoint that may still read them.
+    private final ArrayDeque<Tuple2<Long, File>> retired = new ArrayDeque<>();
+
+    public SegmentStore(File directory) throws IOException {
+        this.directory = directory;
+        deleteDirectory();
+        Files.createDirectories(directory.toPath());
+    }
+
+    /**
+     * Store of a subtask in one of the temporary directories of the TaskManager, from its flink-conf.yaml. The
+     * subtasks of a TaskManager are spread over its directories.
+     */
+    public static SegmentStore forSubtask(String name, int subtask) throws IOException {
+        String[] tmpDirectories = ConfigurationUtils.parseTempDirectories(GlobalConfiguration.loadConfiguration());
+        return new SegmentStore(new File(tmpDirectories[subtask % tmpDirectories.length], name + "-" + subtask));
+    }
+
+    public File newSegment(long validTo) throws IOException {
+        return File.createTempFile("batch-" + validTo + "-", ".gal", directory);
+    }
+
+    // Deletes a purged segment as soon as no running checkpoint can read it anymore.
+    public void retire(File segment) throws IOException {
+        if (lastStartedCheckpoint > lastCompletedCheckpoint) {
+            retired.add(Tuple2.of(lastStartedCheckpoint, segment));
+        } else {
+            Files.deleteIfExists(segment.toPath());
+        }
+    }
+
+    // Has to be called when the snapshot of a checkpoint starts, before the keyed state is written.
+    public void checkpointStarted(long checkpointId) {
+        lastStartedCheckpoint = Math.max(lastStartedCheckpoint, checkpointId);
+    }
+
+    public void checkpointComplete(long checkpointId) throws IOException {
+        lastCompletedCheckpoint = Math.max(lastCompletedCheckpoint, checkpointId);
+        while (!retired.isEmpty() && retired.peek().f0 <= checkpointId) {
+            Files.deleteIfExists(retired.poll().f1.toPath());
+        }
+    }
+
+    // Number of purged segments that are kept for a running checkpoint.
+    public int getRetiredCount() {
+        return retired.size();
+    }
+
+    public File getDirectory() {
+        return directory;
+    }
+
+    @Override
+    public void close() throws IOException {
+        retired.clear();
+        deleteDirectory();
+    }
+
+    private void deleteDirectory() throws IOException {
+        File[] files = directory.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                Files.deleteIfExists(file.toPath());
+            }
+        }
+        Files.deleteIfExists(directory.toPath());
+    }
+}
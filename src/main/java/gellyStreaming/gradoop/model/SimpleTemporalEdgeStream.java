@@ -9,9 +9,11 @@ import org.apache.flink.api.java.tuple.Tuple1;
 import org.apache.flink.api.java.tuple.Tuple2;
 import org.apache.flink.api.java.tuple.Tuple3;
 import org.apache.flink.graph.EdgeDirection;
+import org.apache.flink.streaming.api.TimeCharacteristic;
 import org.apache.flink.streaming.api.datastream.DataStream;
 import org.apache.flink.streaming.api.datastream.DataStreamSink;
 import org.apache.flink.streaming.api.environment.StreamExecutionEnvironment;
+import org.apache.flink.streaming.api.functions.timestamps.BoundedOutOfOrdernessTimestampExtractor;
 import org.apache.flink.streaming.api.windowing.assigners.SlidingEventTimeWindows;
 import org.apache.flink.streaming.api.windowing.time.Time;
 import org.apache.flink.util.Collector;
@@ -265,6 +267,11 @@ public class SimpleTemporalEdgeStream extends GradoopGraphStream<TemporalGraphHe
     }
 
     public static TemporalEdge reverseEdge(TemporalEdge temporalEdge) {
+            if (temporalEdge instanceof TopologyEdge) {
+                TopologyEdge edge = (TopologyEdge) temporalEdge;
+                return new TopologyEdge(edge.getTargetVertex(), edge.getSourceVertex(), edge.getValidFrom(),
+                        edge.getValidTo(), edge.getPartition());
+            }
             String label = temporalEdge.getLabel();
             GradoopId newSrc = temporalEdge.getTargetId();
             GradoopId newTrg = temporalEdge.getSourceId();
@@ -395,6 +402,10 @@ public class SimpleTemporalEdgeStream extends GradoopGraphStream<TemporalGraphHe
     static class getPartitionId implements KeySelector<TemporalEdge, Integer> {
         @Override
         public Integer getKey(TemporalEdge temporalEdge) throws Exception {
+            // Topology-only edges carry their partition in a field, no need to make their properties.
+            if (temporalEdge instanceof TopologyEdge) {
+                return ((TopologyEdge) temporalEdge).getPartition();
+            }
             return temporalEdge.getPropertyValue("partitionID").getInt();
         }
     }
@@ -424,5 +435,39 @@ public class SimpleTemporalEdgeStream extends GradoopGraphStream<TemporalGraphHe
                 algorithm);
     }
 
+    /**
+     * Builds the state in event time, see GraphState. The validFrom of the edges is used as their timestamp, with
+     * watermarks that allow edges to be up to maxOutOfOrderness ms out of order. This switches the environment to
+     * event time, processing time timers keep working.
+     */
+    public GraphState buildState(QueryState QS,
+                                 String strategy,
+                                 Long windowSize,
+                                 Long slide,
+                                 Integer numPartitions,
+                                 Boolean lazyPurging,
+                                 int batchSize,
+                                 Algorithm algorithm,
+                                 long maxOutOfOrderness) {
+        this.context.setStreamTimeCharacteristic(TimeCharacteristic.EventTime);
+        DataStream<TemporalEdge> timestampedEdges = this.edges.assignTimestampsAndWatermarks(
+                new BoundedOutOfOrdernessTimestampExtractor<TemporalEdge>(Time.milliseconds(maxOutOfOrderness)) {
+                    @Override
+                    public long extractTimestamp(TemporalEdge edge) {
+                        return edge.getValidFrom();
+                    }
+                });
+        return new GraphState(QS,
+                timestampedEdges.keyBy(new getPartitionId()),
+                strategy,
+                windowSize,
+                slide,
+                numPartitions,
+                lazyPurging,
+                batchSize,
+                algorithm,
+                true);
+    }
+
 
 }
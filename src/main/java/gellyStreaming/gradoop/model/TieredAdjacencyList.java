@@ -0,0 +1,379 @@
+package gellyStreaming.gradoop.model;
+
+import gellyStreaming.gradoop.util.BinaryAdjacencyFile;
+import it.unimi.dsi.fastutil.longs.LongArrays;
+import org.apache.flink.api.common.state.MapState;
+import org.gradoop.common.model.impl.id.GradoopId;
+import org.gradoop.temporal.model.impl.pojo.TemporalEdge;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Window of one partition for the "tieredAL" strategy. Only the batch that is being filled is kept on the heap, in
+ * two growable long[]. Once it is sealed it is written to a segment, a BinaryAdjacencyFile of the SegmentStore, and
+ * the keyed "adjacencyList" MapState only gets a SegmentBatch, the file and its counts. The window can so be as large
+ * as the local disk, while the heap only holds the edges of the open batch.
+ *
+ * The partition is queryable and part of checkpoints like a compactAL one, the SealedBatchSerializer reads the
+ * segments when a batch is requested or snapshotted. That only keeps the heap small with the heap state backend,
+ * RocksDB would serialize every segment into its own files on put. Batches restored from a checkpoint come back as
+ * CompactAdjacencyBatch and are written to segments again by sealRestored(). Purging a batch retires its segment.
+ *
+ * Sealed batches are also registered in the LocalPartitionRegistry, if there is one, so the algorithms of the same
+ * TaskManager read them without the queryable state proxy. The MapState is the one of the current key, so a
+ * TieredAdjacencyList must only be used for its own key.
+ */
+public class TieredAdjacencyList implements PrimitiveAdjacencyList {
+
+    private static final int INITIAL_OPEN_CAPACITY = 1024;
+
+    private final int key;
+    private final MapState<Long, SealedAdjacencyBatch> sealedBatches;
+    private final SegmentStore segments;
+    private final LocalPartitionRegistry partitions;
+    private Long openValidTo = null;
+    private long[] openSrc = new long[INITIAL_OPEN_CAPACITY];
+    private long[] openTrg = new long[INITIAL_OPEN_CAPACITY];
+    private int openSize = 0;
+    // The batch get() built last, and its validTo.
+    private Long materializedValidTo = null;
+    private HashMap<GradoopId, HashMap<GradoopId, TemporalEdge>> materialized = null;
+
+    /**
+     * @param partitions The registry the sealed batches are published in, null if the algorithms don't read local
+     *                   partitions directly.
+     */
+    public TieredAdjacencyList(int key, MapState<Long, SealedAdjacencyBatch> sealedBatches, SegmentStore segments,
+                               LocalPartitionRegistry partitions) {
+        this.key = key;
+        this.sealedBatches = sealedBatches;
+        this.segments = segments;
+        this.partitions = partitions;
+    }
+
+    public void addEdge(long validTo, long src, long trg) throws Exception {
+        if (openValidTo == null || openValidTo != validTo) {
+            seal();
+            openValidTo = validTo;
+        }
+        append(src, trg);
+    }
+
+    /**
+     * Writes the batch that is being filled to its segment. Adding to the validTo of a sealed batch again writes a
+     * new segment with the edges of both and retires the old one.
+     */
+    public void seal() throws Exception {
+        if (openValidTo == null) {
+            return;
+        }
+        SealedAdjacencyBatch existing = sealedBatches.get(openValidTo);
+        if (existing != null) {
+            existing.forEachSource((source, neighbours, offset, degree) -> {
+                for (int i = offset; i < offset + degree; i++) {
+                    append(source, neighbours[i]);
+                }
+            });
+        }
+        if (openSize > 0) {
+            publish(writeSegment(openValidTo));
+            retire(existing);
+        }
+        if (openValidTo.equals(materializedValidTo)) {
+            materialized = null;
+            materializedValidTo = null;
+        }
+        resetOpen();
+    }
+
+    /**
+     * Writes the batches of the partition that are not in a segment, the ones restored from a checkpoint, to
+     * segments, and registers all of them. Has to be called before the first edge of the partition is added.
+     */
+    public void sealRestored() throws Exception {
+        List<SealedAdjacencyBatch> batches = new ArrayList<>();
+        for (SealedAdjacencyBatch batch : sealedBatches.values()) {
+            batches.add(batch);
+        }
+        for (SealedAdjacencyBatch batch : batches) {
+            if (batch instanceof SegmentBatch) {
+                if (partitions != null) {
+                    partitions.registerSealed(key, batch.getValidTo(), batch);
+                }
+                continue;
+            }
+            batch.forEachSource((source, neighbours, offset, degree) -> {
+                for (int i = offset; i < offset + degree; i++) {
+                    append(source, neighbours[i]);
+                }
+            });
+            publish(writeSegment(batch.getValidTo()));
+            resetOpen();
+        }
+    }
+
+    private void publish(SegmentBatch batch) throws Exception {
+        sealedBatches.put(batch.getValidTo(), batch);
+        if (partitions != null) {
+            partitions.registerSealed(key, batch.getValidTo(), batch);
+        }
+    }
+
+    private void retire(SealedAdjacencyBatch batch) throws IOException {
+        if (batch instanceof SegmentBatch) {
+            segments.retire(((SegmentBatch) batch).file);
+        }
+    }
+
+    private void resetOpen() {
+        openValidTo = null;
+        openSize = 0;
+        if (openSrc.length > INITIAL_OPEN_CAPACITY) {
+            openSrc = new long[INITIAL_OPEN_CAPACITY];
+            openTrg = new long[INITIAL_OPEN_CAPACITY];
+        }
+    }
+
+    private void append(long src, long trg) {
+        if (openSize == openSrc.length) {
+            openSrc = Arrays.copyOf(openSrc, openSize * 2);
+            openTrg = Arrays.copyOf(openTrg, openSize * 2);
+        }
+        openSrc[openSize] = src;
+        openTrg[openSize] = trg;
+        openSize++;
+    }
+
+    // Sorts the open edges and writes one block per source, duplicate edges once.
+    private SegmentBatch writeSegment(long validTo) throws IOException {
+        LongArrays.radixSort(openSrc, openTrg, 0, openSize);
+        File file = segments.newSegment(validTo);
+        long[] neighbours = new long[16];
+        long vertexCount;
+        long edgeCount;
+        try (BinaryAdjacencyFile.Writer writer = new BinaryAdjacencyFile.Writer(file.getPath(), false)) {
+            for (int from = 0; from < openSize; ) {
+                int degree = 0;
+                int to = from;
+                while (to < openSize && openSrc[to] == openSrc[from]) {
+                    if (degree == 0 || neighbours[degree - 1] != openTrg[to]) {
+                        if (degree == neighbours.length) {
+                            neighbours = Arrays.copyOf(neighbours, degree * 2);
+                        }
+                        neighbours[degree++] = openTrg[to];
+                    }
+                    to++;
+                }
+                writer.add(openSrc[from], neighbours, degree);
+                from = to;
+            }
+            vertexCount = writer.getVertexCount();
+            edgeCount = writer.getEdgeCount();
+        }
+        return new SegmentBatch(file, validTo, (int) vertexCount, edgeCount);
+    }
+
+    /**
+     * @return The sealed batch with this validTo, sealing it first if it is still being filled, or null if there is
+     * no such batch.
+     */
+    public SealedAdjacencyBatch getBatch(long validTo) throws Exception {
+        if (openValidTo != null && openValidTo == validTo) {
+            seal();
+        }
+        return sealedBatches.get(validTo);
+    }
+
+    @Override
+    public void forEachSource(long validTo, SourceVisitor visitor) throws Exception {
+        SealedAdjacencyBatch batch = getBatch(validTo);
+        if (batch != null) {
+            batch.forEachSource(visitor);
+        }
+    }
+
+    public long getEdgeCount() throws Exception {
+        long count = openSize;
+        for (SealedAdjacencyBatch batch : sealedBatches.values()) {
+            count += batch.getEdgeCount();
+        }
+        return count;
+    }
+
+    private List<Long> validTos() throws Exception {
+        List<Long> validTos = new ArrayList<>();
+        for (Long validTo : sealedBatches.keys()) {
+            validTos.add(validTo);
+        }
+        if (openValidTo != null && !sealedBatches.contains(openValidTo)) {
+            validTos.add(openValidTo);
+        }
+        return validTos;
+    }
+
+    @Override
+    public HashMap<GradoopId, HashMap<GradoopId, TemporalEdge>> get(Long validTo) throws Exception {
+        SealedAdjacencyBatch batch = getBatch(validTo);
+        if (batch == null) {
+            return null;
+        }
+        if (!validTo.equals(materializedValidTo)) {
+            materialized = SealedAdjacencyBatch.toAdjacencyList(batch);
+            materializedValidTo = validTo;
+        }
+        return materialized;
+    }
+
+    @Override
+    public void put(Long validTo, HashMap<GradoopId, HashMap<GradoopId, TemporalEdge>> adjacencyList) {
+        throw new UnsupportedOperationException("The tiered adjacency list is filled through addEdge().");
+    }
+
+    @Override
+    public void putAll(Map<Long, HashMap<GradoopId, HashMap<GradoopId, TemporalEdge>>> map) {
+        throw new UnsupportedOperationException("The tiered adjacency list is filled through addEdge().");
+    }
+
+    @Override
+    public void remove(Long validTo) throws Exception {
+        if (openValidTo != null && openValidTo.equals(validTo)) {
+            resetOpen();
+        }
+        if (validTo.equals(materializedValidTo)) {
+            materialized = null;
+            materializedValidTo = null;
+        }
+        SealedAdjacencyBatch batch = sealedBatches.get(validTo);
+        if (batch == null) {
+            return;
+        }
+        if (partitions != null) {
+            partitions.unregister(key, validTo);
+        }
+        sealedBatches.remove(validTo);
+        retire(batch);
+    }
+
+    @Override
+    public boolean contains(Long validTo) throws Exception {
+        return (openValidTo != null && openValidTo.equals(validTo)) || sealedBatches.contains(validTo);
+    }
+
+    @Override
+    public Iterable<Map.Entry<Long, HashMap<GradoopId, HashMap<GradoopId, TemporalEdge>>>> entries() {
+        return this::iterator;
+    }
+
+    @Override
+    public Iterable<Long> keys() throws Exception {
+        return validTos();
+    }
+
+    @Override
+    public Iterable<HashMap<GradoopId, HashMap<GradoopId, TemporalEdge>>> values() throws Exception {
+        List<HashMap<GradoopId, HashMap<GradoopId, TemporalEdge>>> values = new ArrayList<>();
+        for (Long validTo : validTos()) {
+            values.add(get(validTo));
+        }
+        return values;
+    }
+
+    @Override
+    public Iterator<Map.Entry<Long, HashMap<GradoopId, HashMap<GradoopId, TemporalEdge>>>> iterator() {
+        Iterator<Long> validTos;
+        try {
+            validTos = validTos().iterator();
+        } catch (Exception e) {
+            throw new RuntimeException("Could not read the batches of the partition.", e);
+        }
+        return new Iterator<>() {
+            @Override
+            public boolean hasNext() {
+                return validTos.hasNext();
+            }
+
+            @Override
+            public Map.Entry<Long, HashMap<GradoopId, HashMap<GradoopId, TemporalEdge>>> next() {
+                Long validTo = validTos.next();
+                try {
+                    return new AbstractMap.SimpleImmutableEntry<>(validTo, get(validTo));
+                } catch (Exception e) {
+                    throw new RuntimeException("Could not read batch " + validTo + ".", e);
+                }
+            }
+        };
+    }
+
+    @Override
+    public boolean isEmpty() throws Exception {
+        return openValidTo == null && sealedBatches.isEmpty();
+    }
+
+    // Drops all batches of the partition and retires their segments.
+    @Override
+    public void clear() {
+        try {
+            for (Long validTo : validTos()) {
+                remove(validTo);
+            }
+        } catch (Exception e) {
+            throw new RuntimeException("Could not clear the partition.", e);
+        }
+    }
+
+    /**
+     * A sealed batch in its segment file. It only keeps the file and its counts, forEachSource() opens the file for
+     * the time of the call. Batches so hold no file handle or mapping while they are in the window, and queryable
+     * state and snapshots can read them from their own threads.
+     */
+    public static final class SegmentBatch implements SealedAdjacencyBatch {
+
+        private final File file;
+        private final long validTo;
+        private final int vertexCount;
+        private final long edgeCount;
+
+        private SegmentBatch(File file, long validTo, int vertexCount, long edgeCount) {
+            this.file = file;
+            this.validTo = validTo;
+            this.vertexCount = vertexCount;
+            this.edgeCount = edgeCount;
+        }
+
+        public File getFile() {
+            return file;
+        }
+
+        @Override
+        public long getValidTo() {
+            return validTo;
+        }
+
+        @Override
+        public int getVertexCount() {
+            return vertexCount;
+        }
+
+        @Override
+        public long getEdgeCount() {
+            return edgeCount;
+        }
+
+        @Override
+        public void forEachSource(SourceVisitor visitor) throws IOException {
+            try (BinaryAdjacencyFile.Reader reader = new BinaryAdjacencyFile.Reader(file.getPath())) {
+                while (reader.next()) {
+                    visitor.visit(reader.getVertexId(), reader.getNeighbours(), 0, reader.getDegree());
+                }
+            }
+        }
+    }
+}
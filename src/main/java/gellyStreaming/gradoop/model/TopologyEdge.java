@@ -0,0 +1,183 @@
+package gellyStreaming.gradoop.model;
+
+import gellyStreaming.gradoop.util.GradoopIdUtil;
+import org.gradoop.common.model.impl.id.GradoopId;
+import org.gradoop.common.model.impl.id.GradoopIdSet;
+import org.gradoop.common.model.impl.properties.Properties;
+import org.gradoop.common.model.impl.properties.PropertyValue;
+import org.gradoop.temporal.model.impl.pojo.TemporalEdge;
+
+/**
+ * TemporalEdge that only holds the topology: source and target vertex number, validFrom, validTo and partition.
+ *
+ * The stream builders in makeSimpleTemporalEdgeStream give every edge a new GradoopId, a GradoopIdSet and a
+ * Properties map with partitionID, sourceVertexId and targetVertexId, and all of it ends up in the state. This edge
+ * leaves those out. The id, properties and graph ids are only made when an operator asks for them, the properties
+ * then hold the same three values as those of the stream builders. Source and target ids are made from the vertex
+ * numbers on every call and are not kept, so an edge in the state stays the size of its fields.
+ *
+ * Fields have getters and setters so Flink can serialize it as a POJO.
+ */
+public class TopologyEdge extends TemporalEdge {
+
+    private long sourceVertex;
+    private long targetVertex;
+    private int partition;
+
+    public TopologyEdge() {
+    }
+
+    public TopologyEdge(long sourceVertex, long targetVertex, long validFrom, long validTo, int partition) {
+        this.sourceVertex = sourceVertex;
+        this.targetVertex = targetVertex;
+        this.partition = partition;
+        setValidFrom(validFrom);
+        setValidTo(validTo);
+    }
+
+    // Source vertex number of an edge, without making a GradoopId for a TopologyEdge.
+    public static long sourceVertexOf(TemporalEdge edge) {
+        return edge instanceof TopologyEdge ? ((TopologyEdge) edge).sourceVertex : GradoopIdUtil.toLong(edge.getSourceId());
+    }
+
+    // Target vertex number of an edge, without making a GradoopId for a TopologyEdge.
+    public static long targetVertexOf(TemporalEdge edge) {
+        return edge instanceof TopologyEdge ? ((TopologyEdge) edge).targetVertex : GradoopIdUtil.toLong(edge.getTargetId());
+    }
+
+    public long getSourceVertex() {
+        return sourceVertex;
+    }
+
+    public void setSourceVertex(long sourceVertex) {
+        this.sourceVertex = sourceVertex;
+    }
+
+    public long getTargetVertex() {
+        return targetVertex;
+    }
+
+    public void setTargetVertex(long targetVertex) {
+        this.targetVertex = targetVertex;
+    }
+
+    public int getPartition() {
+        return partition;
+    }
+
+    public void setPartition(int partition) {
+        this.partition = partition;
+        if (properties != null) {
+            properties.set("partitionID", partition);
+        }
+    }
+
+    @Override
+    public GradoopId getSourceId() {
+        return GradoopIdUtil.fromLong(sourceVertex);
+    }
+
+    @Override
+    public void setSourceId(GradoopId sourceId) {
+        sourceVertex = vertexOf(sourceId);
+    }
+
+    @Override
+    public GradoopId getTargetId() {
+        return GradoopIdUtil.fromLong(targetVertex);
+    }
+
+    @Override
+    public void setTargetId(GradoopId targetId) {
+        targetVertex = vertexOf(targetId);
+    }
+
+    @Override
+    public GradoopId getId() {
+        if (id == null) {
+            id = GradoopId.get();
+        }
+        return id;
+    }
+
+    @Override
+    public GradoopIdSet getGraphIds() {
+        if (super.getGraphIds() == null) {
+            setGraphIds(new GradoopIdSet());
+        }
+        return super.getGraphIds();
+    }
+
+    @Override
+    public Properties getProperties() {
+        if (properties == null) {
+            properties = Properties.create();
+            properties.set("partitionID", partition);
+            properties.set("sourceVertexId", sourceVertex);
+            properties.set("targetVertexId", targetVertex);
+        }
+        return properties;
+    }
+
+    @Override
+    public Iterable<String> getPropertyKeys() {
+        return getProperties().getKeys();
+    }
+
+    @Override
+    public PropertyValue getPropertyValue(String key) {
+        return getProperties().get(key);
+    }
+
+    @Override
+    public void setProperty(String key, Object value) {
+        getProperties().set(key, value);
+    }
+
+    @Override
+    public void setProperty(String key, PropertyValue value) {
+        getProperties().set(key, value);
+    }
+
+    @Override
+    public PropertyValue removeProperty(String key) {
+        return getProperties().remove(key);
+    }
+
+    @Override
+    public int getPropertyCount() {
+        return getProperties().size();
+    }
+
+    @Override
+    public boolean hasProperty(String key) {
+        return getProperties().containsKey(key);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        // Like all EPGM elements, equal when the ids are.
+        if (this == o) {
+            return true;
+        }
+        return o instanceof TemporalEdge && getId().equals(((TemporalEdge) o).getId());
+    }
+
+    @Override
+    public int hashCode() {
+        return getId().hashCode();
+    }
+
+    @Override
+    public String toString() {
+        return "(" + sourceVertex + ")-[" + partition + "]->(" + targetVertex + ") [" + getValidFrom() + ", "
+                + getValidTo() + "]";
+    }
+
+    private static long vertexOf(GradoopId vertexId) {
+        if (!GradoopIdUtil.isVertexId(vertexId)) {
+            throw new IllegalArgumentException("A TopologyEdge only connects vertex ids, got " + vertexId);
+        }
+        return GradoopIdUtil.toLong(vertexId);
+    }
+}
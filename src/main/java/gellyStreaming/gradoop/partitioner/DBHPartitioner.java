@@ -51,14 +51,15 @@ public class DBHPartitioner<K, V> implements Partitioner<K> {
 
         int machine_id = -1;
 
-        StoredVertex first_vertex = currentState.getRecord(source);
-        StoredVertex second_vertex = currentState.getRecord(target);
+        ReplicaTable replicas = currentState.getReplicaTable();
+        int first_vertex = currentState.getRecord(source);
+        int second_vertex = currentState.getRecord(target);
 
         int shard_u = Math.abs((int) ( (int) source*seed*shrink) % k);
         int shard_v = Math.abs((int) ( (int) target*seed*shrink) % k);
 
-        int degree_u = first_vertex.getDegree() +1;
-        int degree_v = second_vertex.getDegree() +1;
+        int degree_u = replicas.getDegree(first_vertex) +1;
+        int degree_v = replicas.getDegree(second_vertex) +1;
 
         if (degree_v<degree_u){
             machine_id = shard_v;
@@ -88,23 +89,19 @@ public class DBHPartitioner<K, V> implements Partitioner<K> {
         if (currentState.getClass() == StoredVertexPartitionState.class){
             StoredVertexPartitionState cord_state = currentState;
             //NEW UPDATE RECORDS RULE TO UPFDATE THE SIZE OF THE PARTITIONS EXPRESSED AS THE NUMBER OF VERTICES THEY CONTAINS
-            if (!first_vertex.hasReplicaInPartition(machine_id)){ first_vertex.addPartition(machine_id); cord_state.incrementMachineLoadVertices(machine_id);}
-            if (!second_vertex.hasReplicaInPartition(machine_id)){ second_vertex.addPartition(machine_id); cord_state.incrementMachineLoadVertices(machine_id);}
+            if (replicas.addPartition(first_vertex, machine_id)){ cord_state.incrementMachineLoadVertices(machine_id);}
+            if (replicas.addPartition(second_vertex, machine_id)){ cord_state.incrementMachineLoadVertices(machine_id);}
         } else {
             //1-UPDATE RECORDS
-            if (!first_vertex.hasReplicaInPartition(machine_id)){
-                first_vertex.addPartition(machine_id);
-            }
-            if (!second_vertex.hasReplicaInPartition(machine_id)){
-                second_vertex.addPartition(machine_id);
-            }
+            replicas.addPartition(first_vertex, machine_id);
+            replicas.addPartition(second_vertex, machine_id);
         }
 
         //3-UPDATE DEGREES
 
         //System.out.println("source:"+source+" target:"+target+" machineid:"+machine_id);
-        first_vertex.incrementDegree();
-        second_vertex.incrementDegree();
+        replicas.incrementDegree(first_vertex);
+        replicas.incrementDegree(second_vertex);
 
         /*
         Mind that this uses custom keys to ensure that all partitions get keyed to different keygroups
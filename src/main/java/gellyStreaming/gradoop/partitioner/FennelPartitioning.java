@@ -1,12 +1,16 @@
 package gellyStreaming.gradoop.partitioner;
 
+import gellyStreaming.gradoop.util.BinaryAdjacencyFile;
+import gellyStreaming.gradoop.util.BinaryAdjacencySource;
 import gellyStreaming.gradoop.util.KeyGen;
 import org.apache.flink.api.common.functions.FilterFunction;
 import org.apache.flink.api.common.functions.FlatMapFunction;
 import org.apache.flink.api.common.functions.MapFunction;
 import org.apache.flink.api.common.functions.Partitioner;
+import org.apache.flink.api.common.functions.RichFlatMapFunction;
 import org.apache.flink.api.java.functions.KeySelector;
 import org.apache.flink.api.java.tuple.Tuple2;
+import org.apache.flink.configuration.Configuration;
 import org.apache.flink.graph.Edge;
 import org.apache.flink.runtime.state.KeyGroupRangeAssignment;
 import org.apache.flink.streaming.api.datastream.DataStream;
@@ -36,23 +40,55 @@ public class FennelPartitioning implements Serializable {
             StreamExecutionEnvironment env,
             String inputPath, Integer numberOfPartitions,
             int vertexCount, int edgeCount) {
+        return getFennelPartitionedEdges(env, inputPath, numberOfPartitions, vertexCount, edgeCount, true);
+    }
+
+    // Without trackQuality only the balance is reported, not the replication factor, see PartitionQuality.
+    public DataStream<Tuple2<Edge<Long, String>, Integer>> getFennelPartitionedEdges(
+            StreamExecutionEnvironment env,
+            String inputPath, Integer numberOfPartitions,
+            int vertexCount, int edgeCount, boolean trackQuality) {
         System.out.println("Started Fennel partitioning at \t "+System.currentTimeMillis());
         env.setParallelism(1);
         DataStream<Tuple2<Long, List<Long>>> input = getVertices(env, inputPath);
         CustomKeySelector2<Long, Long> keySelector = new CustomKeySelector2<>(0);
-        partitioner = new FennelPartitioner<>(keySelector, numberOfPartitions, vertexCount, edgeCount);
+        FennelPartitioner<Long, Long> fennelPartitioner =
+                new FennelPartitioner<>(keySelector, numberOfPartitions, vertexCount, edgeCount);
+        partitioner = fennelPartitioner;
         final Partitioner<Long> partitioner1 = partitioner;
+        final List<Integer> keys = new ArrayList<>();
+        for (int key : fennelPartitioner.keys) {
+            keys.add(key);
+        }
         DataStream<Tuple2<Edge<Long, String>, Integer>> stream =  input
-                .flatMap(new FlatMapFunction<Tuple2<Long, List<Long>>, Tuple2<Edge<Long, String>, Integer>>() {
+                .flatMap(new RichFlatMapFunction<Tuple2<Long, List<Long>>, Tuple2<Edge<Long, String>, Integer>>() {
+                    // Same report as the ParallelFennelPartitioner, to compare both.
+                    final PartitionQuality quality = new PartitionQuality(numberOfPartitions, trackQuality);
+                    transient PartitionerMetrics metrics;
+
+                    @Override
+                    public void open(Configuration parameters) {
+                        metrics = new PartitionerMetrics(getRuntimeContext().getMetricGroup(),
+                                "fennel \t" + fennelPartitioner.score, quality);
+                    }
 
                     @Override
                     public void flatMap(Tuple2<Long, List<Long>> vertexList, Collector<Tuple2<Edge<Long, String>, Integer>> collector) throws Exception {
                         Long keyEdge = keySelector.getKey(vertexList);
                         Long srcId = vertexList.f0;
                         int machineId = partitioner1.partition(keyEdge, numberOfPartitions);
+                        int partition = keys.indexOf(machineId);
                         for(Long neighbour : vertexList.f1) {
                             collector.collect(Tuple2.of(new Edge<Long, String>(srcId, neighbour, ""),machineId));
+                            quality.addEdge(srcId, neighbour, partition);
                         }
+                        metrics.assigned();
+                    }
+
+                    @Override
+                    public void close() {
+                        System.out.println("Fennel partitioning finished at \t" + System.currentTimeMillis() + "\t "
+                                + metrics.summary());
                     }
                 });
         env.setParallelism(numberOfPartitions);
@@ -65,7 +101,39 @@ public class FennelPartitioning implements Serializable {
                 });
     }
 
+    public DataStream<Tuple2<Edge<Long, String>, Integer>> getParallelFennelPartitionedEdges(
+            StreamExecutionEnvironment env,
+            String inputPath, Integer numberOfPartitions,
+            int vertexCount, int edgeCount, int syncInterval) {
+        return getParallelFennelPartitionedEdges(env, inputPath, numberOfPartitions, vertexCount, edgeCount,
+                syncInterval, true);
+    }
+
+    /**
+     * Same as getFennelPartitionedEdges, but reads and partitions with the parallelism of the environment, see
+     * ParallelFennelPartitioner. Every syncInterval vertices a subtask shares its assignments with the others.
+     */
+    public DataStream<Tuple2<Edge<Long, String>, Integer>> getParallelFennelPartitionedEdges(
+            StreamExecutionEnvironment env,
+            String inputPath, Integer numberOfPartitions,
+            int vertexCount, int edgeCount, int syncInterval, boolean trackQuality) {
+        System.out.println("Started parallel Fennel partitioning at \t "+System.currentTimeMillis());
+        return getVertices(env, inputPath)
+                .flatMap(new ParallelFennelPartitioner(numberOfPartitions, vertexCount, edgeCount, syncInterval,
+                        trackQuality))
+                .keyBy(new KeySelector<Tuple2<Edge<Long, String>, Integer>, Object>() {
+                    @Override
+                    public Object getKey(Tuple2<Edge<Long, String>, Integer> edgeIntegerTuple2) throws Exception {
+                        return edgeIntegerTuple2.f1;
+                    }
+                });
+    }
+
+    // Reads the adjacency lists of ELtoAL, as text lines "src:[a, b, c]" or as a BinaryAdjacencyFile.
     public DataStream<Tuple2<Long, List<Long>>> getVertices(StreamExecutionEnvironment env, String inputPath) {
+        if (BinaryAdjacencyFile.isBinary(inputPath)) {
+            return env.addSource(BinaryAdjacencySource.vertices(inputPath));
+        }
 
         return env.readTextFile(inputPath)
                 .filter(new FilterFunction<String>() {
@@ -103,18 +171,14 @@ public class FennelPartitioning implements Serializable {
     private static class FennelPartitioner<K, EV> implements Serializable, Partitioner<K> {
         private final long serialVersionUID = 1L;
         private final CustomKeySelector2<K, EV> keySelector;
-        private final double alpha;  //parameters for formula
-        private final double gamma;
-        private final double loadlimit;
+        private final FennelScore score;
         private StoredVertexPartitionState currentState;
         private final int[] keys;
 
 
         public FennelPartitioner(CustomKeySelector2<K, EV> keySelector, int numPartitions, int numVertices, int numEdges) {
             this.keySelector = keySelector;
-            this.alpha = ((Math.pow(numPartitions, 0.5) * Math.pow(numVertices, 1.5)) + numEdges) / Math.pow(numVertices, 1.5);
-            this.gamma = 1.5;
-            this.loadlimit = (numPartitions * 1.1 + numVertices) / numPartitions;
+            this.score = new FennelScore(numPartitions, numVertices, numEdges);
             this.currentState = new StoredVertexPartitionState(numPartitions);
             KeyGen keyGenerator = new KeyGen(numPartitions,
                     KeyGroupRangeAssignment.computeDefaultMaxParallelism(numPartitions));
@@ -140,64 +204,19 @@ public class FennelPartitioning implements Serializable {
 
             int machine_id = -1;
 
-            StoredVertex first_vertex = currentState.getRecord(source);
-            StoredVertex[] n_vertices = new StoredVertex[neighbours.size()];
-
-            for(int i=0;i<neighbours.size();i++) {
-                n_vertices[i]= currentState.getRecord((Long) neighbours.get(i));
-            }
-
-            LinkedList<Integer> candidates = new LinkedList<>();
-            double MAX_SCORE =  Double.NEGATIVE_INFINITY;
-            for (int p = 0; p < numPartitions; p++) {
-                int occurences=0;
-                for(int i=0; i < neighbours.size(); i++) {
-                    if(n_vertices[i].hasReplicaInPartition(p)) {
-                        occurences++;
-                    }
-                }
-                double SCORE_m = -1;
-                if(currentState.getMachineVerticesLoad(p) <= loadlimit) {
-                    SCORE_m = (double) occurences - alpha * gamma * Math.pow((double) currentState.getMachineVerticesLoad(p), gamma - 1);
-                }
-
-                else if(currentState.getMachineVerticesLoad(p) > loadlimit) {
-                    SCORE_m = Double.NaN;
-                }
-
-                if (SCORE_m > MAX_SCORE) {
-                    MAX_SCORE = SCORE_m;
-                    candidates.clear();
-                    candidates.add(p);
-                } else if (SCORE_m == MAX_SCORE) {
-                    candidates.add(p);
-                }
-            }
-
-            if (candidates.isEmpty()) {
-                System.out.println("ERROR: GreedyObjectiveFunction.performStep -> candidates.isEmpty()");
-                System.out.println("MAX_SCORE: " + MAX_SCORE);
-                System.exit(-1);
+            ReplicaTable replicas = currentState.getReplicaTable();
+            int first_vertex = currentState.getRecord(source);
+            // Replicas of the neighbours per partition, in one pass over their bitmasks.
+            int[] occurences = score.newHistogram();
+            for (int i = 0; i < neighbours.size(); i++) {
+                replicas.countReplicas(currentState.getRecord((Long) neighbours.get(i)), occurences);
             }
+            machine_id = score.choose();
 
-            //*** PICK A RANDOM ELEMENT FROM CANDIDATES
-            Random r = new Random();
-            int choice = r.nextInt(candidates.size());
-            machine_id = candidates.get(choice);
-
-            if (currentState.getClass() == StoredVertexPartitionState.class) {
-                StoredVertexPartitionState cord_state = (StoredVertexPartitionState) currentState;
-                //NEW UPDATE RECORDS RULE TO UPDATE THE SIZE OF THE PARTITIONS EXPRESSED AS THE NUMBER OF VERTICES THEY CONTAINS
-                if (!first_vertex.hasReplicaInPartition(machine_id)) {
-                    first_vertex.addPartition(machine_id);
-                    cord_state.incrementMachineLoadVertices(machine_id);
-                }
-
-            } else {
-                //1-UPDATE RECORDS
-                if (!first_vertex.hasReplicaInPartition(machine_id)) {
-                    first_vertex.addPartition(machine_id);
-                }
+            //NEW UPDATE RECORDS RULE TO UPDATE THE SIZE OF THE PARTITIONS EXPRESSED AS THE NUMBER OF VERTICES THEY CONTAINS
+            if (replicas.addPartition(first_vertex, machine_id)) {
+                currentState.incrementMachineLoadVertices(machine_id);
+                score.addLoad(machine_id);
             }
             return keys[machine_id];
         }
@@ -0,0 +1,100 @@
+package gellyStreaming.gradoop.partitioner;
+
+import java.io.Serializable;
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * The Fennel objective for one vertex: the number of its neighbours in a partition, minus alpha * gamma * load^(gamma-1)
+ * of that partition. Partitions with more vertices than the load limit are not considered.
+ *
+ * The caller fills the histogram of neighbour partitions in one pass over the neighbours, then best() scores all
+ * partitions from it in O(numPartitions). Loads are kept here as a plain array and the load penalty of a partition
+ * is only recomputed when its load changes, so scoring takes no locks and no Math.pow per partition.
+ * Not thread safe, every partitioner instance has its own.
+ */
+public class FennelScore implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    private final double alpha;
+    private final double gamma;
+    private final double loadlimit;
+    private final int[] histogram;
+    private final long[] loads;
+    private final double[] penalties;
+    private final Random random = new Random();
+
+    public FennelScore(int numPartitions, int numVertices, int numEdges) {
+        this.alpha = ((Math.pow(numPartitions, 0.5) * Math.pow(numVertices, 1.5)) + numEdges) / Math.pow(numVertices, 1.5);
+        this.gamma = 1.5;
+        this.loadlimit = (numPartitions * 1.1 + numVertices) / numPartitions;
+        this.histogram = new int[numPartitions];
+        this.loads = new long[numPartitions];
+        this.penalties = new double[numPartitions];
+    }
+
+    // Cleared histogram for the next vertex, histogram[p] is the number of its neighbours in partition p.
+    public int[] newHistogram() {
+        Arrays.fill(histogram, 0);
+        return histogram;
+    }
+
+    // Partition with the highest score, a random one of them on a tie. -1 if all partitions are over the load limit.
+    public int best() {
+        int best = -1;
+        int candidates = 0;
+        double maxScore = Double.NEGATIVE_INFINITY;
+        for (int p = 0; p < histogram.length; p++) {
+            if (loads[p] > loadlimit) {
+                continue;
+            }
+            double score = histogram[p] - penalties[p];
+            if (score > maxScore) {
+                maxScore = score;
+                best = p;
+                candidates = 1;
+            } else if (score == maxScore && random.nextInt(++candidates) == 0) {
+                best = p;
+            }
+        }
+        return best;
+    }
+
+    // Partition a vertex goes to: the best one, or the least loaded one if all partitions are over the load limit,
+    // which happens when the vertex count the limit was computed from is too low.
+    public int choose() {
+        int best = best();
+        return best == -1 ? getLeastLoaded() : best;
+    }
+
+    public void addLoad(int partition) {
+        setLoad(partition, loads[partition] + 1);
+    }
+
+    public void setLoad(int partition, long load) {
+        if (loads[partition] != load) {
+            loads[partition] = load;
+            penalties[partition] = alpha * gamma * Math.pow(load, gamma - 1);
+        }
+    }
+
+    public long getLoad(int partition) {
+        return loads[partition];
+    }
+
+    public int getLeastLoaded() {
+        int least = 0;
+        for (int p = 1; p < loads.length; p++) {
+            if (loads[p] < loads[least]) {
+                least = p;
+            }
+        }
+        return least;
+    }
+
+    @Override
+    public String toString() {
+        return "alpha \t" + alpha + "\t gamma \t" + gamma + "\t loadlimit \t" + loadlimit;
+    }
+}
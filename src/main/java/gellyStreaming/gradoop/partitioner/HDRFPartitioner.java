@@ -0,0 +1,113 @@
+package gellyStreaming.gradoop.partitioner;
+
+import gellyStreaming.gradoop.util.KeyGen;
+import org.apache.flink.api.common.functions.Partitioner;
+import org.apache.flink.runtime.state.KeyGroupRangeAssignment;
+
+import java.util.Random;
+
+/**
+ * High-Degree Replicated First (Petroni et al., CIKM 2015) edge partitioner.
+ *
+ * An edge (u, v) goes to the partition with the highest replication score plus lambda times the balance score.
+ * The replication score counts 1 + (1 - theta) for each end that already has a replica in the partition, where theta
+ * is the share of that end in the partial degrees of u and v. So the edge follows its lower degree end and high degree
+ * vertices are the ones that get replicated, which on skewed graphs leaves far fewer replicas than DBH. The balance
+ * score is (maxLoad - load) / (epsilon + maxLoad - minLoad) over the edges per partition.
+ *
+ * Like DBHPartitioner it gets the target of the edge through the CustomKeySelector and returns the KeyGen key of the
+ * partition.
+ */
+public class HDRFPartitioner<K, V> implements Partitioner<K> {
+    private static final long serialVersionUID = 1L;
+    private static final double EPSILON = 1.0;
+    // Slightly above 1, with 1 a stream of edges around one hub keeps going to the same partition.
+    static final double DEFAULT_LAMBDA = 1.1;
+    private final CustomKeySelector<K, V> keySelector;
+    private final double lambda;
+    private final ReplicaTable replicas;
+    private final long[] loads;
+    private final int[] keys;
+    private final Random random = new Random();
+
+    public HDRFPartitioner(CustomKeySelector<K, V> keySelector, int k) {
+        this(keySelector, k, DEFAULT_LAMBDA);
+    }
+
+    public HDRFPartitioner(CustomKeySelector<K, V> keySelector, int k, double lambda) {
+        this.keySelector = keySelector;
+        this.lambda = lambda;
+        this.replicas = new ReplicaTable(k);
+        this.loads = new long[k];
+        KeyGen keyGenerator = new KeyGen(k,
+                KeyGroupRangeAssignment.computeDefaultMaxParallelism(k));
+        keys = new int[k];
+        for (int i = 0; i < k ; i++)
+            keys[i] = keyGenerator.next(i);
+    }
+
+    @Override
+    public int partition(K key, int numPartitions) {
+        long target = 0L;
+        try {
+            Object target2 = keySelector.getValue(key);
+            if(target2 != null) {
+                target = (long) target2;
+            }
+        } catch (Exception e) {
+            e.printStackTrace();
+        }
+        long source = (long) key;
+
+        int u = replicas.getOrAdd(source);
+        int v = replicas.getOrAdd(target);
+        replicas.incrementDegree(u);
+        replicas.incrementDegree(v);
+        int machine_id = choose(replicas, u, v, loads, lambda, null, random);
+        replicas.addPartition(u, machine_id);
+        replicas.addPartition(v, machine_id);
+        loads[machine_id]++;
+        return keys[machine_id];
+    }
+
+    /**
+     * Partition with the highest HDRF score for the edge between slots u and v, a random one of them on a tie.
+     * Only the given candidates are scored, all partitions if candidates is null.
+     */
+    static int choose(ReplicaTable replicas, int u, int v, long[] loads, double lambda, int[] candidates,
+                      Random random) {
+        long maxLoad = Long.MIN_VALUE;
+        long minLoad = Long.MAX_VALUE;
+        for (long load : loads) {
+            maxLoad = Math.max(maxLoad, load);
+            minLoad = Math.min(minLoad, load);
+        }
+        double degreeU = replicas.getDegree(u);
+        double degreeV = replicas.getDegree(v);
+        double thetaU = degreeU / (degreeU + degreeV);
+        double thetaV = 1 - thetaU;
+
+        int best = -1;
+        int ties = 0;
+        double maxScore = Double.NEGATIVE_INFINITY;
+        int count = candidates == null ? loads.length : candidates.length;
+        for (int i = 0; i < count; i++) {
+            int p = candidates == null ? i : candidates[i];
+            double score = lambda * (maxLoad - loads[p]) / (EPSILON + maxLoad - minLoad);
+            if (replicas.hasReplicaInPartition(u, p)) {
+                score += 1 + (1 - thetaU);
+            }
+            if (replicas.hasReplicaInPartition(v, p)) {
+                score += 1 + (1 - thetaV);
+            }
+            if (score > maxScore) {
+                maxScore = score;
+                best = p;
+                ties = 1;
+            } else if (score == maxScore && random.nextInt(++ties) == 0) {
+                best = p;
+            }
+        }
+        return best;
+    }
+}
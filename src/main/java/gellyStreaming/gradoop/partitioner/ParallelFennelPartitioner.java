@@ -0,0 +1,138 @@
+package gellyStreaming.gradoop.partitioner;
+
+import gellyStreaming.gradoop.util.KeyGen;
+import it.unimi.dsi.fastutil.longs.Long2LongOpenHashMap;
+import org.apache.flink.api.common.functions.RichFlatMapFunction;
+import org.apache.flink.api.java.tuple.Tuple2;
+import org.apache.flink.configuration.Configuration;
+import org.apache.flink.graph.Edge;
+import org.apache.flink.runtime.state.KeyGroupRangeAssignment;
+import org.apache.flink.util.Collector;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Fennel for adjacency lists that runs with any parallelism, instead of in one instance at parallelism 1.
+ *
+ * Every subtask scores its vertices with the same formula as FennelPartitioning, against a SharedFennelView of the
+ * assignments and vertex loads of all subtasks in its JVM. Its own assignments and load changes are kept locally and
+ * published to the view every syncInterval vertices, after which it reads the loads of the others back. In between
+ * the subtasks do not see each others decisions, a larger syncInterval means less contention but more stale scores.
+ *
+ * With trackQuality the last subtask in a TaskManager to close prints the replication factor and balance of the
+ * partitioning done by the subtasks in it, see PartitionQuality.
+ * The output is the same as that of the sequential partitioners: every edge with the key of its partition.
+ */
+public class ParallelFennelPartitioner
+        extends RichFlatMapFunction<Tuple2<Long, List<Long>>, Tuple2<Edge<Long, String>, Integer>> {
+
+    private final String viewId = UUID.randomUUID().toString();
+    private final int numPartitions;
+    private final int syncInterval;
+    private final int numVertices;
+    private final int numEdges;
+    private final int[] keys;
+    private final boolean trackQuality;
+
+    private transient SharedFennelView view;
+    private transient Long2LongOpenHashMap assigned;
+    private transient FennelScore score;
+    private transient long[] loadDeltas;
+    private transient PartitionQuality quality;
+    private transient PartitionerMetrics metrics;
+    private transient long processed;
+
+    public ParallelFennelPartitioner(int numPartitions, int numVertices, int numEdges, int syncInterval) {
+        this(numPartitions, numVertices, numEdges, syncInterval, true);
+    }
+
+    public ParallelFennelPartitioner(int numPartitions, int numVertices, int numEdges, int syncInterval,
+                                     boolean trackQuality) {
+        if (numPartitions > 64) {
+            throw new IllegalArgumentException("ParallelFennelPartitioner supports up to 64 partitions, got "
+                    + numPartitions);
+        }
+        this.numPartitions = numPartitions;
+        this.syncInterval = syncInterval;
+        this.numVertices = numVertices;
+        this.numEdges = numEdges;
+        this.trackQuality = trackQuality;
+        KeyGen keyGenerator = new KeyGen(numPartitions,
+                KeyGroupRangeAssignment.computeDefaultMaxParallelism(numPartitions));
+        this.keys = new int[numPartitions];
+        for (int i = 0; i < numPartitions; i++)
+            keys[i] = keyGenerator.next(i);
+    }
+
+    @Override
+    public void open(Configuration parameters) {
+        view = SharedFennelView.register(viewId, numPartitions);
+        assigned = new Long2LongOpenHashMap();
+        score = new FennelScore(numPartitions, numVertices, numEdges);
+        loadDeltas = new long[numPartitions];
+        quality = new PartitionQuality(numPartitions, trackQuality);
+        PartitionQuality.register(viewId, numPartitions, trackQuality);
+        metrics = new PartitionerMetrics(getRuntimeContext().getMetricGroup(), "parallel fennel \t" + score, quality);
+        processed = 0;
+        view.readLoads(score);
+    }
+
+    @Override
+    public void flatMap(Tuple2<Long, List<Long>> vertexList, Collector<Tuple2<Edge<Long, String>, Integer>> collector) {
+        long source = vertexList.f0;
+        List<Long> neighbours = vertexList.f1;
+        int[] histogram = score.newHistogram();
+        for (Long neighbour : neighbours) {
+            long partitions = partitionsOf(neighbour);
+            while (partitions != 0) {
+                histogram[Long.numberOfTrailingZeros(partitions)]++;
+                partitions &= partitions - 1;
+            }
+        }
+        int machineId = score.choose();
+
+        long bit = 1L << machineId;
+        if ((partitionsOf(source) & bit) == 0) {
+            assigned.put(source, assigned.get(source) | bit);
+            score.addLoad(machineId);
+            loadDeltas[machineId]++;
+        }
+        int key = keys[machineId];
+        for (Long neighbour : neighbours) {
+            collector.collect(Tuple2.of(new Edge<>(source, neighbour, ""), key));
+            quality.addEdge(source, neighbour, machineId);
+        }
+        metrics.assigned();
+        if (++processed % syncInterval == 0) {
+            sync();
+        }
+    }
+
+    @Override
+    public void close() {
+        if (view == null) {
+            return;
+        }
+        sync();
+        view.unregister(viewId);
+        PartitionQuality total = PartitionQuality.mergeSubtask(viewId, quality);
+        if (total != null) {
+            System.out.println("Parallel Fennel partitioning finished at \t" + System.currentTimeMillis()
+                    + "\t in TaskManager \t" + PartitionQuality.getTaskManagerName() + "\t " + total);
+        }
+        view = null;
+    }
+
+    private long partitionsOf(long vertex) {
+        return assigned.get(vertex) | view.getAssignments(vertex);
+    }
+
+    private void sync() {
+        view.publish(assigned, loadDeltas);
+        assigned.clear();
+        Arrays.fill(loadDeltas, 0);
+        view.readLoads(score);
+    }
+}
@@ -0,0 +1,190 @@
+package gellyStreaming.gradoop.partitioner;
+
+import it.unimi.dsi.fastutil.longs.Long2LongMap;
+import it.unimi.dsi.fastutil.longs.Long2LongOpenHashMap;
+
+import java.io.Serializable;
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Replication factor and balance of a partitioning, to compare partitioners.
+ *
+ * Every vertex keeps a bitmask of the partitions that hold at least one of its edges, the replication factor is the
+ * average number of partitions per vertex. The balance is the largest number of edges in a partition divided by the
+ * average, 1.0 is perfectly balanced. Partitions are numbered 0 to numPartitions-1. The bitmask only fits 64
+ * partitions, with more or without trackReplicas only the balance is tracked and the replication factor is NaN.
+ *
+ * The total of several subtasks (register and mergeSubtask) only covers the subtasks in one TaskManager, so it is
+ * reported per TaskManager. The edges per partition of the whole job are the sum of the partitioner metrics of all
+ * subtasks, see PartitionerMetrics.
+ */
+public class PartitionQuality implements Serializable {
+
+    private static final ConcurrentHashMap<String, Report> REPORTS = new ConcurrentHashMap<>();
+
+    // The total of the subtasks of a report in this JVM, and how many of them are still open.
+    private static class Report {
+        private final PartitionQuality total;
+        private int open = 0;
+
+        Report(PartitionQuality total) {
+            this.total = total;
+        }
+    }
+
+    private Long2LongOpenHashMap presence = new Long2LongOpenHashMap();
+    private final long[] edgeLoads;
+    // Vertices with at least one edge per partition, and their sum, kept up to date for the metric gauges.
+    private final long[] vertexLoads;
+    private long replicas = 0;
+    private final boolean trackReplicas;
+
+    public PartitionQuality(int numPartitions) {
+        this(numPartitions, true);
+    }
+
+    public PartitionQuality(int numPartitions, boolean trackReplicas) {
+        this.edgeLoads = new long[numPartitions];
+        this.vertexLoads = new long[numPartitions];
+        this.trackReplicas = trackReplicas && numPartitions <= 64;
+    }
+
+    public void addEdge(long src, long trg, int partition) {
+        if (trackReplicas) {
+            addReplicas(src, 1L << partition);
+            addReplicas(trg, 1L << partition);
+        }
+        edgeLoads[partition]++;
+    }
+
+    // Adds the edges seen by another instance, for example another subtask of a parallel partitioner.
+    public synchronized void merge(PartitionQuality other) {
+        if (trackReplicas) {
+            for (Long2LongMap.Entry entry : other.presence.long2LongEntrySet()) {
+                addReplicas(entry.getLongKey(), entry.getLongValue());
+            }
+        }
+        for (int i = 0; i < edgeLoads.length; i++) {
+            edgeLoads[i] += other.edgeLoads[i];
+        }
+    }
+
+    private void addReplicas(long vertex, long partitions) {
+        long old = presence.get(vertex);
+        long added = partitions & ~old;
+        if (added != 0) {
+            presence.put(vertex, old | added);
+            replicas += Long.bitCount(added);
+            while (added != 0) {
+                vertexLoads[Long.numberOfTrailingZeros(added)]++;
+                added &= added - 1;
+            }
+        }
+    }
+
+    // Called by every subtask of the report in open, see mergeSubtask.
+    public static void register(String reportId, int numPartitions, boolean trackReplicas) {
+        REPORTS.compute(reportId, (id, report) -> {
+            if (report == null) {
+                report = new Report(new PartitionQuality(numPartitions, trackReplicas));
+            }
+            report.open++;
+            return report;
+        });
+    }
+
+    /**
+     * Adds the quality of a registered subtask to the total of the subtasks of the report in this JVM, in close.
+     * Returns the total when this was the last open subtask in this JVM, else null. The subtask may hand over its
+     * vertices instead of copying them, so it can not be used afterwards.
+     */
+    public static PartitionQuality mergeSubtask(String reportId, PartitionQuality subtask) {
+        PartitionQuality[] done = new PartitionQuality[1];
+        REPORTS.computeIfPresent(reportId, (id, report) -> {
+            report.total.takeOver(subtask);
+            if (--report.open > 0) {
+                return report;
+            }
+            done[0] = report.total;
+            return null;
+        });
+        return done[0];
+    }
+
+    // Merges other, the first subtask hands over its vertices as they are.
+    private void takeOver(PartitionQuality other) {
+        if (!presence.isEmpty() || replicas != 0 || trackReplicas != other.trackReplicas) {
+            merge(other);
+            return;
+        }
+        presence = other.presence;
+        replicas = other.replicas;
+        other.presence = new Long2LongOpenHashMap();
+        other.replicas = 0;
+        for (int i = 0; i < edgeLoads.length; i++) {
+            edgeLoads[i] += other.edgeLoads[i];
+            vertexLoads[i] = other.vertexLoads[i];
+        }
+    }
+
+    // The host of this TaskManager, to label the totals of mergeSubtask.
+    public static String getTaskManagerName() {
+        try {
+            return InetAddress.getLocalHost().getHostName();
+        } catch (UnknownHostException e) {
+            return "unknown host";
+        }
+    }
+
+    public double getReplicationFactor() {
+        if (!trackReplicas) {
+            return Double.NaN;
+        }
+        if (presence.isEmpty()) {
+            return 0.0;
+        }
+        return (double) replicas / presence.size();
+    }
+
+    public double getBalance() {
+        long max = 0;
+        for (long load : edgeLoads) {
+            max = Math.max(max, load);
+        }
+        long edges = getEdgeCount();
+        return edges == 0 ? 0.0 : max / ((double) edges / edgeLoads.length);
+    }
+
+    public long getEdgeCount() {
+        long edges = 0;
+        for (long load : edgeLoads) {
+            edges += load;
+        }
+        return edges;
+    }
+
+    public long getEdgeLoad(int partition) {
+        return edgeLoads[partition];
+    }
+
+    // Always 0 with more than 64 partitions.
+    public long getVertexLoad(int partition) {
+        return vertexLoads[partition];
+    }
+
+    public int getNumPartitions() {
+        return edgeLoads.length;
+    }
+
+    public int getVertexCount() {
+        return presence.size();
+    }
+
+    @Override
+    public String toString() {
+        return "replication factor \t" + getReplicationFactor() + "\t balance \t" + getBalance() + "\t over \t"
+                + getVertexCount() + "\t vertices and \t" + getEdgeCount() + "\t edges";
+    }
+}
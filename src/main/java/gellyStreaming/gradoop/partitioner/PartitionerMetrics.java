@@ -0,0 +1,65 @@
+package gellyStreaming.gradoop.partitioner;
+
+import org.apache.flink.metrics.Counter;
+import org.apache.flink.metrics.Gauge;
+import org.apache.flink.metrics.MeterView;
+import org.apache.flink.metrics.MetricGroup;
+
+import java.util.Arrays;
+
+/**
+ * Flink metrics of a partitioner subtask, under the group "partitioner" of its operator:
+ * assignments and assignmentsPerSecond, replicationFactor and loadImbalance (max / average edges per partition), and
+ * per partition the number of edges and vertices under partition.<p>. The numbers come from the PartitionQuality the
+ * partitioner fills, the gauges only read it. summary() gives the same numbers once the partitioner is done. Without
+ * a PartitionQuality only the assignments are reported.
+ */
+public class PartitionerMetrics {
+
+    private final String partitionerName;
+    private final PartitionQuality quality;
+    private final Counter assignments;
+    private final long start;
+
+    public PartitionerMetrics(MetricGroup operatorGroup, String partitionerName, PartitionQuality quality) {
+        this.partitionerName = partitionerName;
+        this.quality = quality;
+        this.start = System.currentTimeMillis();
+        MetricGroup group = operatorGroup.addGroup("partitioner");
+        this.assignments = group.counter("assignments");
+        group.meter("assignmentsPerSecond", new MeterView(assignments, 60));
+        if (quality == null) {
+            return;
+        }
+        group.gauge("replicationFactor", (Gauge<Double>) quality::getReplicationFactor);
+        group.gauge("loadImbalance", (Gauge<Double>) quality::getBalance);
+        for (int p = 0; p < quality.getNumPartitions(); p++) {
+            int partition = p;
+            MetricGroup partitionGroup = group.addGroup("partition", String.valueOf(p));
+            partitionGroup.gauge("edges", (Gauge<Long>) () -> quality.getEdgeLoad(partition));
+            partitionGroup.gauge("vertices", (Gauge<Long>) () -> quality.getVertexLoad(partition));
+        }
+    }
+
+    // One vertex (vertex partitioners) or edge (edge partitioners) was assigned.
+    public void assigned() {
+        assignments.inc();
+    }
+
+    public String summary() {
+        long time = Math.max(1, System.currentTimeMillis() - start);
+        String rate = partitionerName + "\t assignments \t" + assignments.getCount() + "\t in \t" + time
+                + "\t ms, per second \t" + (assignments.getCount() * 1000 / time);
+        if (quality == null) {
+            return rate;
+        }
+        long[] edges = new long[quality.getNumPartitions()];
+        long[] vertices = new long[quality.getNumPartitions()];
+        for (int p = 0; p < edges.length; p++) {
+            edges[p] = quality.getEdgeLoad(p);
+            vertices[p] = quality.getVertexLoad(p);
+        }
+        return rate + "\t " + quality + "\t edges per partition \t"
+                + Arrays.toString(edges) + "\t vertices per partition \t" + Arrays.toString(vertices);
+    }
+}
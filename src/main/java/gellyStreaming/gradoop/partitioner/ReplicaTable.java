@@ -0,0 +1,147 @@
+package gellyStreaming.gradoop.partitioner;
+
+import it.unimi.dsi.fastutil.longs.Long2IntOpenHashMap;
+import it.unimi.dsi.fastutil.longs.LongAVLTreeSet;
+import it.unimi.dsi.fastutil.longs.LongSortedSet;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * Partitions and degree of every vertex seen by a partitioner, in primitive arrays.
+ *
+ * A vertex gets a slot the first time it is seen, through an open addressing long to int map. Its partitions are a
+ * bitmask of one long per 64 partitions at masks[slot * words], its degree is degrees[slot]. That is about 20 to
+ * 30 bytes per vertex for up to 64 partitions, where an object per vertex with a TreeSet of partitions took hundreds,
+ * and scoring goes through the bitmasks instead of TreeSet lookups.
+ */
+public class ReplicaTable implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    private final int numPartitions;
+    private final int words;
+    private final Long2IntOpenHashMap slots;
+    private long[] masks;
+    private int[] degrees;
+    private int size = 0;
+
+    public ReplicaTable(int numPartitions) {
+        this(numPartitions, 1024);
+    }
+
+    public ReplicaTable(int numPartitions, int expectedVertices) {
+        this.numPartitions = numPartitions;
+        this.words = (numPartitions + 63) >>> 6;
+        this.slots = new Long2IntOpenHashMap(expectedVertices);
+        this.slots.defaultReturnValue(-1);
+        int capacity = Math.max(16, expectedVertices);
+        this.masks = new long[capacity * words];
+        this.degrees = new int[capacity];
+    }
+
+    // Slot of the vertex, -1 if it was never added.
+    public int find(long vertex) {
+        return slots.get(vertex);
+    }
+
+    // Slot of the vertex, a new one without partitions if it was not seen before.
+    public int getOrAdd(long vertex) {
+        int slot = slots.get(vertex);
+        if (slot == -1) {
+            slot = size++;
+            if (slot == degrees.length) {
+                degrees = Arrays.copyOf(degrees, degrees.length * 2);
+                masks = Arrays.copyOf(masks, degrees.length * words);
+            }
+            slots.put(vertex, slot);
+        }
+        return slot;
+    }
+
+    public boolean hasReplicaInPartition(int slot, int partition) {
+        return (masks[slot * words + (partition >>> 6)] & (1L << partition)) != 0;
+    }
+
+    // Returns false if the vertex already had a replica in the partition.
+    public boolean addPartition(int slot, int partition) {
+        if (partition < 0 || partition >= numPartitions) {
+            throw new IllegalArgumentException("No partition " + partition + " in a table of " + numPartitions);
+        }
+        int index = slot * words + (partition >>> 6);
+        long bit = 1L << partition;
+        if ((masks[index] & bit) != 0) {
+            return false;
+        }
+        masks[index] |= bit;
+        return true;
+    }
+
+    // Adds one to counts[p] for every partition p the vertex has a replica in.
+    public void countReplicas(int slot, int[] counts) {
+        for (int w = 0; w < words; w++) {
+            long mask = masks[slot * words + w];
+            while (mask != 0) {
+                counts[(w << 6) + Long.numberOfTrailingZeros(mask)]++;
+                mask &= mask - 1;
+            }
+        }
+    }
+
+    // Lowest partition of the vertex, -1 if it has none.
+    public int getFirstPartition(int slot) {
+        for (int w = 0; w < words; w++) {
+            long mask = masks[slot * words + w];
+            if (mask != 0) {
+                return (w << 6) + Long.numberOfTrailingZeros(mask);
+            }
+        }
+        return -1;
+    }
+
+    public int getReplicas(int slot) {
+        int replicas = 0;
+        for (int w = 0; w < words; w++) {
+            replicas += Long.bitCount(masks[slot * words + w]);
+        }
+        return replicas;
+    }
+
+    public Iterator<Byte> getPartitions(int slot) {
+        List<Byte> partitions = new ArrayList<>(getReplicas(slot));
+        for (int p = 0; p < numPartitions; p++) {
+            if (hasReplicaInPartition(slot, p)) {
+                partitions.add((byte) p);
+            }
+        }
+        return partitions.iterator();
+    }
+
+    public int getDegree(int slot) {
+        return degrees[slot];
+    }
+
+    public void incrementDegree(int slot) {
+        degrees[slot]++;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    // Sum of the replicas of all vertices, where a vertex without a partition counts as one.
+    public long getTotalReplicas() {
+        long total = 0;
+        for (int slot = 0; slot < size; slot++) {
+            total += Math.max(1, getReplicas(slot));
+        }
+        return total;
+    }
+
+    public LongSortedSet getVertexIds() {
+        return new LongAVLTreeSet(slots.keySet());
+    }
+}
@@ -0,0 +1,65 @@
+package gellyStreaming.gradoop.partitioner;
+
+import it.unimi.dsi.fastutil.longs.Long2LongMap;
+import it.unimi.dsi.fastutil.longs.Long2LongOpenHashMap;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Assignments and partition loads shared by the subtasks of a ParallelFennelPartitioner in one JVM.
+ *
+ * The subtasks do not write here for every vertex, they publish what they assigned since their last sync and read
+ * the loads back every syncInterval vertices. With several TaskManagers every JVM has its own view, so the view is
+ * sharded by TaskManager and the subtasks only see the assignments made in their own JVM.
+ */
+class SharedFennelView {
+
+    private static final ConcurrentHashMap<String, SharedFennelView> VIEWS = new ConcurrentHashMap<>();
+
+    // Vertex to bitmask of the partitions it was assigned to.
+    private final ConcurrentHashMap<Long, Long> assignments = new ConcurrentHashMap<>();
+    private final AtomicLongArray vertexLoads;
+    private final AtomicInteger users = new AtomicInteger(0);
+
+    private SharedFennelView(int numPartitions) {
+        this.vertexLoads = new AtomicLongArray(numPartitions);
+    }
+
+    static SharedFennelView register(String viewId, int numPartitions) {
+        SharedFennelView view = VIEWS.computeIfAbsent(viewId, id -> new SharedFennelView(numPartitions));
+        view.users.incrementAndGet();
+        return view;
+    }
+
+    // The last subtask to leave removes the view.
+    void unregister(String viewId) {
+        if (users.decrementAndGet() == 0) {
+            VIEWS.remove(viewId, this);
+        }
+    }
+
+    long getAssignments(long vertex) {
+        Long partitions = assignments.get(vertex);
+        return partitions == null ? 0L : partitions;
+    }
+
+    void publish(Long2LongOpenHashMap assigned, long[] loadDeltas) {
+        for (Long2LongMap.Entry entry : assigned.long2LongEntrySet()) {
+            assignments.merge(entry.getLongKey(), entry.getLongValue(), (a, b) -> a | b);
+        }
+        for (int i = 0; i < loadDeltas.length; i++) {
+            if (loadDeltas[i] != 0) {
+                vertexLoads.addAndGet(i, loadDeltas[i]);
+            }
+        }
+    }
+
+    // Sets the loads of score to those of all subtasks, the loads are only kept there and here.
+    void readLoads(FennelScore score) {
+        for (int i = 0; i < vertexLoads.length(); i++) {
+            score.setLoad(i, vertexLoads.get(i));
+        }
+    }
+}
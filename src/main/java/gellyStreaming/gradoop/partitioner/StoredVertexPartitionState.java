@@ -1,10 +1,8 @@
 package gellyStreaming.gradoop.partitioner;
 
 import java.io.Serializable;
-import java.util.HashMap;
 import java.util.Iterator;
 import java.util.SortedSet;
-import java.util.TreeSet;
 import java.util.concurrent.atomic.AtomicInteger;
 
 /**
@@ -12,7 +10,7 @@ import java.util.concurrent.atomic.AtomicInteger;
  */
 public class StoredVertexPartitionState implements Serializable{
 
-    public  HashMap<Long, StoredVertex> record_map;
+    private final ReplicaTable replicas;
     private AtomicInteger[] machines_load_edges;
     private AtomicInteger[] machines_load_vertices;
 
@@ -21,7 +19,7 @@ public class StoredVertexPartitionState implements Serializable{
 
     public StoredVertexPartitionState(int k) {
 
-        record_map = new HashMap<Long,StoredVertex>();
+        replicas = new ReplicaTable(k);
         machines_load_edges = new AtomicInteger[k];
         for (int i = 0; i<machines_load_edges.length;i++){
             machines_load_edges[i] = new AtomicInteger(0);
@@ -38,8 +36,9 @@ public class StoredVertexPartitionState implements Serializable{
     }
 
     public Iterator<Byte> getPartitions(Long x) {
-        if(record_map.containsKey(x)) {
-            return record_map.get(x).getPartitions();
+        int slot = replicas.find(x);
+        if(slot != -1) {
+            return replicas.getPartitions(slot);
         } else {
             return null;
         }
@@ -57,30 +56,22 @@ public class StoredVertexPartitionState implements Serializable{
         return result;
     }
 
-    public StoredVertex getRecord(Long x){
-        if (!record_map.containsKey(x)){
-            record_map.put(x, new StoredVertex());
-        }
-        return record_map.get(x);
+    // Slot of the vertex in the replica table, see ReplicaTable for its partitions and degree.
+    public int getRecord(long x){
+        return replicas.getOrAdd(x);
+    }
+
+    public ReplicaTable getReplicaTable() {
+        return replicas;
     }
 
     public int getNumVertices(){
-        return record_map.size();
+        return replicas.size();
     }
 
 
     public int getTotalReplicas(){
-        int result = 0;
-        for (long x : record_map.keySet()){
-            int r = record_map.get(x).getReplicas();
-            if (r>0){
-                result += record_map.get(x).getReplicas();
-            }
-            else{
-                result++;
-            }
-        }
-        return result;
+        return (int) replicas.getTotalReplicas();
     }
 
 
@@ -129,7 +120,7 @@ public class StoredVertexPartitionState implements Serializable{
 
     public SortedSet<Long> getVertexIds() {
         //if (GLOBALS.OUTPUT_FILE_NAME!=null){ out.close(); }
-        return new TreeSet<Long>(record_map.keySet());
+        return replicas.getVertexIds();
     }
 }
 
@@ -0,0 +1,233 @@
+package gellyStreaming.gradoop.partitioner;
+
+import gellyStreaming.gradoop.util.BinaryAdjacencyFile;
+import gellyStreaming.gradoop.util.EdgeListInputFormat;
+import gellyStreaming.gradoop.util.KeyGen;
+import it.unimi.dsi.fastutil.longs.Long2IntOpenHashMap;
+import it.unimi.dsi.fastutil.longs.Long2LongMap;
+import it.unimi.dsi.fastutil.longs.Long2LongOpenHashMap;
+import org.apache.flink.api.common.functions.Partitioner;
+import org.apache.flink.runtime.state.KeyGroupRangeAssignment;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Two-phase streaming edge partitioner, after 2PS (Mayer et al., ICDE 2022).
+ *
+ * Phase one clusters the vertices. It reads the edge file once for the degrees and once more for a streaming
+ * clustering: every vertex starts in its own cluster with its degree as volume, and for an edge (u, v) the end in the
+ * cluster with the smaller volume moves to the other cluster, as long as no cluster grows over 2|E|/k. The clusters
+ * are then mapped to partitions from large to small, each to the partition with the least volume so far.
+ *
+ * Phase two assigns the edges of the stream. An edge whose ends are mapped to the same partition goes there, else it
+ * goes to the better of the two partitions by the HDRF score. A partition with more than 5% above the average number
+ * of edges is skipped, when all candidates are skipped HDRF picks from all partitions.
+ *
+ * Phase one runs on the first edge. The first subtask in a JVM computes it, the others in that JVM wait for it and
+ * share the result, which is kept as long as the classes of the job are loaded. It is deterministic for a file, so
+ * the subtasks in other TaskManagers compute the same clusters and mapping without sharing anything. The file has the
+ * format of getEdgePartitionedStream: one edge per line, src and trg separated by whitespace, or a
+ * BinaryAdjacencyFile.
+ */
+public class TwoPhasePartitioner<K, V> implements Partitioner<K> {
+    private static final long serialVersionUID = 1L;
+    private static final double BALANCE = 1.05;
+    private final CustomKeySelector<K, V> keySelector;
+    private final int k;
+    private final String filepath;
+    private final ReplicaTable replicas;
+    private final long[] loads;
+    private final int[] keys;
+    private final Random random = new Random();
+    private long edges = 0;
+    private transient Clustering clustering;
+
+    // Clusterings by number of partitions and file, shared by the subtasks in a JVM.
+    private static final ConcurrentHashMap<String, Clustering> CLUSTERINGS = new ConcurrentHashMap<>();
+
+    // The result of phase one, only read once it is computed.
+    private static class Clustering {
+        // Vertex to its cluster, -1 for a vertex that is still in its own cluster.
+        final Long2LongOpenHashMap clusters;
+        final Long2IntOpenHashMap clusterPartitions;
+
+        Clustering(Long2LongOpenHashMap clusters, Long2IntOpenHashMap clusterPartitions) {
+            this.clusters = clusters;
+            this.clusterPartitions = clusterPartitions;
+        }
+
+        long clusterOf(long vertex) {
+            return TwoPhasePartitioner.clusterOf(clusters, vertex);
+        }
+    }
+
+    public TwoPhasePartitioner(CustomKeySelector<K, V> keySelector, int k, String filepath) {
+        this.keySelector = keySelector;
+        this.k = k;
+        this.filepath = filepath;
+        this.replicas = new ReplicaTable(k);
+        this.loads = new long[k];
+        KeyGen keyGenerator = new KeyGen(k,
+                KeyGroupRangeAssignment.computeDefaultMaxParallelism(k));
+        keys = new int[k];
+        for (int i = 0; i < k ; i++)
+            keys[i] = keyGenerator.next(i);
+    }
+
+    @Override
+    public int partition(K key, int numPartitions) {
+        if (clustering == null) {
+            clustering = CLUSTERINGS.computeIfAbsent(k + "@" + filepath, id -> cluster());
+        }
+        long target = 0L;
+        try {
+            Object target2 = keySelector.getValue(key);
+            if(target2 != null) {
+                target = (long) target2;
+            }
+        } catch (Exception e) {
+            e.printStackTrace();
+        }
+        long source = (long) key;
+
+        int u = replicas.getOrAdd(source);
+        int v = replicas.getOrAdd(target);
+        replicas.incrementDegree(u);
+        replicas.incrementDegree(v);
+
+        double capacity = BALANCE * (edges + 1) / k + 1;
+        int partitionU = clustering.clusterPartitions.get(clustering.clusterOf(source));
+        int partitionV = clustering.clusterPartitions.get(clustering.clusterOf(target));
+        int machine_id;
+        if (partitionU == partitionV && partitionU != -1 && loads[partitionU] < capacity) {
+            machine_id = partitionU;
+        } else {
+            int[] candidates = candidates(capacity, partitionU, partitionV);
+            machine_id = HDRFPartitioner.choose(replicas, u, v, loads, HDRFPartitioner.DEFAULT_LAMBDA,
+                    candidates.length == 0 ? null : candidates, random);
+        }
+        replicas.addPartition(u, machine_id);
+        replicas.addPartition(v, machine_id);
+        loads[machine_id]++;
+        edges++;
+        return keys[machine_id];
+    }
+
+    private int[] candidates(double capacity, int partitionU, int partitionV) {
+        boolean useU = partitionU != -1 && loads[partitionU] < capacity;
+        boolean useV = partitionV != -1 && partitionV != partitionU && loads[partitionV] < capacity;
+        if (useU && useV) {
+            return new int[]{partitionU, partitionV};
+        } else if (useU) {
+            return new int[]{partitionU};
+        } else if (useV) {
+            return new int[]{partitionV};
+        }
+        return new int[0];
+    }
+
+    private static long clusterOf(Long2LongOpenHashMap clusters, long vertex) {
+        long cluster = clusters.get(vertex);
+        return cluster == -1 ? vertex : cluster;
+    }
+
+    private Clustering cluster() {
+        long start = System.currentTimeMillis();
+        Long2LongOpenHashMap degrees = new Long2LongOpenHashMap();
+        long[] edgeCount = new long[1];
+        readEdges((src, trg) -> {
+            degrees.addTo(src, 1);
+            degrees.addTo(trg, 1);
+            edgeCount[0]++;
+        });
+
+        Long2LongOpenHashMap clusters = new Long2LongOpenHashMap(degrees.size());
+        clusters.defaultReturnValue(-1);
+        // Every vertex starts as its own cluster, named after the vertex.
+        Long2LongOpenHashMap volumes = new Long2LongOpenHashMap(degrees);
+        long maxVolume = Math.max(1, 2 * edgeCount[0] / k);
+        readEdges((src, trg) -> {
+            long clusterU = clusterOf(clusters, src);
+            long clusterV = clusterOf(clusters, trg);
+            if (clusterU == clusterV) {
+                return;
+            }
+            long volumeU = volumes.get(clusterU);
+            long volumeV = volumes.get(clusterV);
+            if (volumeU > maxVolume || volumeV > maxVolume) {
+                return;
+            }
+            long degreeU = degrees.get(src);
+            long degreeV = degrees.get(trg);
+            if (volumeU <= volumeV && volumeV + degreeU <= maxVolume) {
+                clusters.put(src, clusterV);
+                volumes.addTo(clusterU, -degreeU);
+                volumes.addTo(clusterV, degreeU);
+            } else if (volumeV < volumeU && volumeU + degreeV <= maxVolume) {
+                clusters.put(trg, clusterU);
+                volumes.addTo(clusterV, -degreeV);
+                volumes.addTo(clusterU, degreeV);
+            }
+        });
+
+        // Largest clusters first, each to the partition with the least volume.
+        long[][] bySize = new long[volumes.size()][];
+        int n = 0;
+        for (Long2LongMap.Entry entry : volumes.long2LongEntrySet()) {
+            if (entry.getLongValue() > 0) {
+                bySize[n++] = new long[]{entry.getLongKey(), entry.getLongValue()};
+            }
+        }
+        bySize = Arrays.copyOf(bySize, n);
+        Arrays.sort(bySize, (a, b) -> Long.compare(b[1], a[1]));
+        Long2IntOpenHashMap clusterPartitions = new Long2IntOpenHashMap(n);
+        clusterPartitions.defaultReturnValue(-1);
+        long[] partitionVolumes = new long[k];
+        for (long[] cluster : bySize) {
+            int least = 0;
+            for (int p = 1; p < k; p++) {
+                if (partitionVolumes[p] < partitionVolumes[least]) {
+                    least = p;
+                }
+            }
+            clusterPartitions.put(cluster[0], least);
+            partitionVolumes[least] += cluster[1];
+        }
+        System.out.println("2PS clustering of \t" + edgeCount[0] + "\t edges into \t" + n + "\t clusters took \t"
+                + (System.currentTimeMillis() - start) + "\t ms");
+        return new Clustering(clusters, clusterPartitions);
+    }
+
+    private void readEdges(EdgeListInputFormat.EdgeConsumer consumer) {
+        if (BinaryAdjacencyFile.isBinary(filepath)) {
+            readBinaryEdges(consumer);
+            return;
+        }
+        try {
+            EdgeListInputFormat.readAll(filepath, consumer);
+        } catch (IOException e) {
+            throw new UncheckedIOException("2PS could not read " + filepath, e);
+        }
+    }
+
+    // The same edges as the source of the stream reads from the file, see BinaryAdjacencySource.
+    private void readBinaryEdges(EdgeListInputFormat.EdgeConsumer consumer) {
+        try (BinaryAdjacencyFile.Reader reader = new BinaryAdjacencyFile.Reader(filepath)) {
+            while (reader.next()) {
+                long source = reader.getVertexId();
+                long[] neighbours = reader.getNeighbours();
+                for (int i = 0; i < reader.getDegree(); i++) {
+                    if (!reader.isUndirected() || source <= neighbours[i]) {
+                        consumer.accept(source, neighbours[i]);
+                    }
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("2PS could not read " + filepath, e);
+        }
+    }
+}
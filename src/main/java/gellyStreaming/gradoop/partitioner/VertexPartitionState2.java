@@ -4,13 +4,13 @@ import gellyStreaming.gradoop.util.KeyGen;
 import org.apache.flink.runtime.state.KeyGroupRangeAssignment;
 
 import java.io.Serializable;
-import java.util.HashMap;
 import java.util.concurrent.atomic.AtomicInteger;
 
 public class VertexPartitionState2 implements Serializable {
 
     int[] keys;
-    HashMap<Long, Integer> state;
+    // Every vertex has one partition, the only replica in its bitmask.
+    ReplicaTable state;
     AtomicInteger[] sizePartitions;
 
     public VertexPartitionState2(int numPartitions) {
@@ -20,7 +20,7 @@ public class VertexPartitionState2 implements Serializable {
         for (int i = 0; i < numPartitions ; i++) {
             keys[i] = keyGenerator.next(i);
         }
-        state = new HashMap<>();
+        state = new ReplicaTable(numPartitions);
         sizePartitions = new AtomicInteger[numPartitions];
         for(int i = 0; i < numPartitions; i++) {
             sizePartitions[i] = new AtomicInteger(0);
@@ -30,7 +30,8 @@ public class VertexPartitionState2 implements Serializable {
 
     public int[] getPartition(long sourceVertex, long targetVertex) throws Exception {
         int partition1 = -1;
-        if(!state.containsKey(sourceVertex)) {
+        int sourceSlot = state.getOrAdd(sourceVertex);
+        if(state.getFirstPartition(sourceSlot) == -1) {
             int smallest = Integer.MAX_VALUE;
             for(int i = 0; i < sizePartitions.length; i++) {
                 if(sizePartitions[i].get() < smallest) {
@@ -41,14 +42,15 @@ public class VertexPartitionState2 implements Serializable {
             if(partition1 == -1) {
                 throw new Exception();
             }
-            state.put(sourceVertex, partition1);
+            state.addPartition(sourceSlot, partition1);
         } else {
-            partition1 = state.get(sourceVertex);
+            partition1 = state.getFirstPartition(sourceSlot);
         }
         sizePartitions[partition1].getAndIncrement();
 
         int partition2 = -1;
-        if(!state.containsKey(targetVertex)) {
+        int targetSlot = state.getOrAdd(targetVertex);
+        if(state.getFirstPartition(targetSlot) == -1) {
             int smallest = Integer.MAX_VALUE;
             for(int i = 0; i < sizePartitions.length; i++) {
                 if(sizePartitions[i].get() < smallest) {
@@ -59,9 +61,9 @@ public class VertexPartitionState2 implements Serializable {
             if(sizePartitions[partition2].get()*1.0/sizePartitions[partition1].get()>0.5) {
                 partition2 = partition1;
             }
-            state.put(targetVertex, partition2);
+            state.addPartition(targetSlot, partition2);
         } else {
-            partition2 = state.get(targetVertex);
+            partition2 = state.getFirstPartition(targetSlot);
         }
         if(partition1 != partition2) {
             sizePartitions[partition2].getAndIncrement();
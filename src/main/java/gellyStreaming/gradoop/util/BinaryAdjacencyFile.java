@@ -0,0 +1,307 @@
+package gellyStreaming.gradoop.util;
+
+import it.unimi.dsi.fastutil.longs.LongArrayList;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.LongBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Binary adjacency list file, the replacement of the text lines "src:[a, b, c]" written by ELtoAL.
+ *
+ * Layout, all numbers big endian:
+ * - header of HEADER_SIZE bytes: magic "GALB", version, flags (UNDIRECTED), an unused int, the number of vertices,
+ *   the number of neighbour entries and the file position of the index.
+ * - one block per vertex: its id as zigzag varint, its degree as varint, then its neighbours in ascending order,
+ *   the first as zigzag varint and the others as varint of the difference to the one before.
+ * - the index: the file position of every block, plus the position of the index itself as end of the last block.
+ *
+ * The Reader maps the file in windows and decodes the blocks of a range of vertices into a reused long[], without
+ * making strings or boxing. An undirected file has every edge in the lists of both of its ends, like the text files
+ * ELtoAL writes with makeUndirected. A third column of timestamps in the edge list is not kept.
+ */
+public class BinaryAdjacencyFile {
+
+    public static final int MAGIC = 0x47414C42;
+    public static final int VERSION = 1;
+    public static final int UNDIRECTED = 1;
+    static final int HEADER_SIZE = 40;
+
+    // True if the file starts with the magic number, so the callers of the text readers can take both formats.
+    public static boolean isBinary(String path) {
+        try (FileChannel channel = FileChannel.open(Path.of(path), StandardOpenOption.READ)) {
+            ByteBuffer magic = ByteBuffer.allocate(4);
+            while (magic.hasRemaining() && channel.read(magic) >= 0) {
+            }
+            return !magic.hasRemaining() && magic.getInt(0) == MAGIC;
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Writes the blocks as they are added, the index and header on close. Vertices can come in any order, but each
+     * only once, and their neighbours have to be sorted without duplicates.
+     */
+    public static class Writer implements Closeable {
+        private final FileChannel channel;
+        private final ByteBuffer buffer = ByteBuffer.allocateDirect(1 << 20);
+        private final LongArrayList offsets = new LongArrayList();
+        private final int flags;
+        private long position = HEADER_SIZE;
+        private long edgeCount = 0;
+
+        public Writer(String path, boolean undirected) throws IOException {
+            this.channel = FileChannel.open(Path.of(path), StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                    StandardOpenOption.TRUNCATE_EXISTING);
+            this.flags = undirected ? UNDIRECTED : 0;
+            channel.position(HEADER_SIZE);
+        }
+
+        public void add(long vertex, long[] neighbours, int degree) throws IOException {
+            offsets.add(position + buffer.position());
+            putVarLong(zigzag(vertex));
+            putVarLong(degree);
+            long previous = 0;
+            for (int i = 0; i < degree; i++) {
+                long neighbour = neighbours[i];
+                if (i == 0) {
+                    putVarLong(zigzag(neighbour));
+                } else if (neighbour > previous) {
+                    putVarLong(neighbour - previous);
+                } else {
+                    throw new IllegalArgumentException("Neighbours of " + vertex + " are not sorted or not distinct: "
+                            + previous + ", " + neighbour);
+                }
+                previous = neighbour;
+            }
+            edgeCount += degree;
+        }
+
+        public long getVertexCount() {
+            return offsets.size();
+        }
+
+        public long getEdgeCount() {
+            return edgeCount;
+        }
+
+        @Override
+        public void close() throws IOException {
+            try {
+                long indexPosition = position + buffer.position();
+                offsets.add(indexPosition);
+                for (int i = 0; i < offsets.size(); i++) {
+                    if (buffer.remaining() < Long.BYTES) {
+                        flush();
+                    }
+                    buffer.putLong(offsets.getLong(i));
+                }
+                flush();
+                ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+                header.putInt(MAGIC).putInt(VERSION).putInt(flags).putInt(0)
+                        .putLong(offsets.size() - 1).putLong(edgeCount).putLong(indexPosition).flip();
+                channel.position(0);
+                while (header.hasRemaining()) {
+                    channel.write(header);
+                }
+            } finally {
+                channel.close();
+            }
+        }
+
+        private void putVarLong(long value) throws IOException {
+            if (buffer.remaining() < 10) {
+                flush();
+            }
+            while ((value & ~0x7FL) != 0) {
+                buffer.put((byte) ((value & 0x7F) | 0x80));
+                value >>>= 7;
+            }
+            buffer.put((byte) value);
+        }
+
+        private void flush() throws IOException {
+            buffer.flip();
+            position += buffer.remaining();
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            buffer.clear();
+        }
+    }
+
+    /**
+     * Reads the blocks of a range of vertices, by default all of them. next() moves to the next vertex, whose id,
+     * degree and neighbours are then available. The neighbours array is reused for the next vertex.
+     */
+    public static class Reader implements Closeable {
+        // Bytes of blocks and entries of the index mapped at a time, a block larger than the window gets its own.
+        private static final long DATA_WINDOW = 64L << 20;
+        private static final long INDEX_WINDOW = 1L << 20;
+
+        private final FileChannel channel;
+        private final boolean undirected;
+        private final long vertexCount;
+        private final long edgeCount;
+        private final long indexPosition;
+        private MappedByteBuffer data;
+        private long dataStart;
+        private long dataEnd;
+        private LongBuffer index;
+        private long indexStart;
+        private long indexEnd;
+        private long current;
+        private long end;
+        private long vertexId;
+        private int degree;
+        private long[] neighbours = new long[16];
+
+        public Reader(String path) throws IOException {
+            this.channel = FileChannel.open(Path.of(path), StandardOpenOption.READ);
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+            while (header.hasRemaining() && channel.read(header) >= 0) {
+            }
+            header.flip();
+            if (header.remaining() < HEADER_SIZE || header.getInt() != MAGIC) {
+                channel.close();
+                throw new IOException(path + " is not a binary adjacency file");
+            }
+            int version = header.getInt();
+            if (version != VERSION) {
+                channel.close();
+                throw new IOException(path + " has version " + version + ", expected " + VERSION);
+            }
+            this.undirected = (header.getInt() & UNDIRECTED) != 0;
+            header.getInt();
+            this.vertexCount = header.getLong();
+            this.edgeCount = header.getLong();
+            this.indexPosition = header.getLong();
+            setRange(0, vertexCount);
+        }
+
+        public long getVertexCount() {
+            return vertexCount;
+        }
+
+        // Number of neighbour entries, twice the number of edges in an undirected file.
+        public long getEdgeCount() {
+            return edgeCount;
+        }
+
+        public boolean isUndirected() {
+            return undirected;
+        }
+
+        // Only the vertices from index from (inclusive) to index to (exclusive) are read.
+        public void setRange(long from, long to) {
+            this.current = from - 1;
+            this.end = to;
+        }
+
+        /**
+         * First vertex of split number split out of splits, where splits are cut at equal shares of the block bytes,
+         * so they get about the same number of neighbours instead of the same number of vertices.
+         */
+        public long splitStart(int split, int splits) throws IOException {
+            if (split <= 0) {
+                return 0;
+            }
+            if (split >= splits) {
+                return vertexCount;
+            }
+            long target = HEADER_SIZE + (indexPosition - HEADER_SIZE) * split / splits;
+            long low = 0;
+            long high = vertexCount;
+            while (low < high) {
+                long middle = (low + high) >>> 1;
+                if (offset(middle) < target) {
+                    low = middle + 1;
+                } else {
+                    high = middle;
+                }
+            }
+            return low;
+        }
+
+        public boolean next() throws IOException {
+            if (current + 1 >= end) {
+                current = end;
+                return false;
+            }
+            current++;
+            long start = offset(current);
+            long stop = offset(current + 1);
+            if (start < dataStart || stop > dataEnd) {
+                dataStart = start;
+                dataEnd = Math.min(indexPosition, Math.max(stop, start + DATA_WINDOW));
+                data = channel.map(FileChannel.MapMode.READ_ONLY, dataStart, dataEnd - dataStart);
+            }
+            data.position((int) (start - dataStart));
+            vertexId = unzigzag(getVarLong());
+            degree = (int) getVarLong();
+            if (neighbours.length < degree) {
+                neighbours = new long[Math.max(degree, neighbours.length * 2)];
+            }
+            long neighbour = 0;
+            for (int i = 0; i < degree; i++) {
+                neighbour = i == 0 ? unzigzag(getVarLong()) : neighbour + getVarLong();
+                neighbours[i] = neighbour;
+            }
+            return true;
+        }
+
+        public long getVertexId() {
+            return vertexId;
+        }
+
+        public int getDegree() {
+            return degree;
+        }
+
+        // Neighbours of the current vertex in ascending order, only the first getDegree() entries are valid.
+        public long[] getNeighbours() {
+            return neighbours;
+        }
+
+        @Override
+        public void close() throws IOException {
+            channel.close();
+        }
+
+        private long offset(long vertex) throws IOException {
+            if (vertex < indexStart || vertex >= indexEnd) {
+                indexStart = vertex;
+                indexEnd = Math.min(vertexCount + 1, vertex + INDEX_WINDOW);
+                index = channel.map(FileChannel.MapMode.READ_ONLY, indexPosition + indexStart * Long.BYTES,
+                        (indexEnd - indexStart) * Long.BYTES).asLongBuffer();
+            }
+            return index.get((int) (vertex - indexStart));
+        }
+
+        private long getVarLong() {
+            long value = 0;
+            int shift = 0;
+            byte b;
+            do {
+                b = data.get();
+                value |= (long) (b & 0x7F) << shift;
+                shift += 7;
+            } while (b < 0);
+            return value;
+        }
+    }
+
+    private static long zigzag(long value) {
+        return (value << 1) ^ (value >> 63);
+    }
+
+    private static long unzigzag(long value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+}
@@ -0,0 +1,100 @@
+package gellyStreaming.gradoop.util;
+
+import it.unimi.dsi.fastutil.longs.LongArrayList;
+import org.apache.flink.api.common.typeinfo.TypeHint;
+import org.apache.flink.api.common.typeinfo.TypeInformation;
+import org.apache.flink.api.java.tuple.Tuple2;
+import org.apache.flink.api.java.typeutils.ResultTypeQueryable;
+import org.apache.flink.graph.Edge;
+import org.apache.flink.streaming.api.functions.source.RichParallelSourceFunction;
+
+import java.util.List;
+
+/**
+ * Parallel source over a BinaryAdjacencyFile. Every subtask maps the file itself and reads its own range of vertices,
+ * cut at equal shares of the file so the subtasks read about the same number of neighbours.
+ *
+ * vertices() emits (vertex, neighbours) like the text readers of the adjacency lists. edges() emits the edges as
+ * Edge(src, trg, NO_TIMESTAMP) like the reader of the edge lists, from an undirected file only the ones with
+ * src <= trg so every edge comes once.
+ */
+public abstract class BinaryAdjacencySource<T> extends RichParallelSourceFunction<T> implements ResultTypeQueryable<T> {
+
+    private final String path;
+    private volatile boolean isRunning = true;
+
+    private BinaryAdjacencySource(String path) {
+        this.path = path;
+    }
+
+    public static BinaryAdjacencySource<Tuple2<Long, List<Long>>> vertices(String path) {
+        return new VertexSource(path);
+    }
+
+    public static BinaryAdjacencySource<Edge<Long, Long>> edges(String path) {
+        return new EdgeSource(path);
+    }
+
+    @Override
+    public void run(SourceContext<T> sourceContext) throws Exception {
+        int subtask = getRuntimeContext().getIndexOfThisSubtask();
+        int subtasks = getRuntimeContext().getNumberOfParallelSubtasks();
+        try (BinaryAdjacencyFile.Reader reader = new BinaryAdjacencyFile.Reader(path)) {
+            reader.setRange(reader.splitStart(subtask, subtasks), reader.splitStart(subtask + 1, subtasks));
+            while (isRunning && reader.next()) {
+                synchronized (sourceContext.getCheckpointLock()) {
+                    emit(reader, sourceContext);
+                }
+            }
+        }
+    }
+
+    @Override
+    public void cancel() {
+        isRunning = false;
+    }
+
+    abstract void emit(BinaryAdjacencyFile.Reader reader, SourceContext<T> sourceContext);
+
+    private static class VertexSource extends BinaryAdjacencySource<Tuple2<Long, List<Long>>> {
+
+        VertexSource(String path) {
+            super(path);
+        }
+
+        @Override
+        void emit(BinaryAdjacencyFile.Reader reader, SourceContext<Tuple2<Long, List<Long>>> sourceContext) {
+            // The neighbours stay unboxed in the list, they are only boxed when they are read from it.
+            sourceContext.collect(Tuple2.of(reader.getVertexId(),
+                    new LongArrayList(reader.getNeighbours(), 0, reader.getDegree())));
+        }
+
+        @Override
+        public TypeInformation<Tuple2<Long, List<Long>>> getProducedType() {
+            return TypeInformation.of(new TypeHint<Tuple2<Long, List<Long>>>() {});
+        }
+    }
+
+    private static class EdgeSource extends BinaryAdjacencySource<Edge<Long, Long>> {
+
+        EdgeSource(String path) {
+            super(path);
+        }
+
+        @Override
+        void emit(BinaryAdjacencyFile.Reader reader, SourceContext<Edge<Long, Long>> sourceContext) {
+            long source = reader.getVertexId();
+            long[] neighbours = reader.getNeighbours();
+            for (int i = 0; i < reader.getDegree(); i++) {
+                if (!reader.isUndirected() || source <= neighbours[i]) {
+                    sourceContext.collect(new Edge<>(source, neighbours[i], EdgeLineParser.NO_TIMESTAMP));
+                }
+            }
+        }
+
+        @Override
+        public TypeInformation<Edge<Long, Long>> getProducedType() {
+            return TypeInformation.of(new TypeHint<Edge<Long, Long>>() {});
+        }
+    }
+}
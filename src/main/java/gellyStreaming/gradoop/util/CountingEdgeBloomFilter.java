@@ -0,0 +1,49 @@
+package gellyStreaming.gradoop.util;
+
+/**
+ * Keeps an EdgeBloomFilter up to date while edges enter and leave the window. Every bit has a counter of the
+ * edges setting it, a bit is cleared when its counter drops back to 0. Counters saturate at 255 and then stay
+ * set, which can only cause false positives.
+ *
+ * Only the filter itself is published through queryable state, the counters stay in the operator.
+ */
+public class CountingEdgeBloomFilter {
+
+    private static final int SATURATED = 255;
+
+    private final EdgeBloomFilter filter;
+    private final byte[] counts;
+
+    public CountingEdgeBloomFilter(int numBits, int numHashes) {
+        this.filter = new EdgeBloomFilter(numBits, numHashes);
+        this.counts = new byte[filter.getNumBits()];
+    }
+
+    // Edges have to be added once per batch they are in, and removed once when that batch is purged.
+    public void add(long src, long trg) {
+        for (int index : filter.bitIndexes(src, trg)) {
+            int count = counts[index] & 0xff;
+            if (count < SATURATED) {
+                counts[index] = (byte) (count + 1);
+            }
+            filter.setBit(index);
+        }
+    }
+
+    public void remove(long src, long trg) {
+        for (int index : filter.bitIndexes(src, trg)) {
+            int count = counts[index] & 0xff;
+            if (count == SATURATED || count == 0) {
+                continue;
+            }
+            counts[index] = (byte) (count - 1);
+            if (count == 1) {
+                filter.clearBit(index);
+            }
+        }
+    }
+
+    public EdgeBloomFilter getFilter() {
+        return filter;
+    }
+}
@@ -1,15 +1,23 @@
 package gellyStreaming.gradoop.util;
 
 import java.io.*;
-import java.util.Arrays;
-import java.util.HashMap;
-import java.util.HashSet;
 
+/**
+ * Converts an edge list into adjacency lists, sorted by vertex id. The edges are sorted externally by EdgeListSorter,
+ * so the memory needed does not grow with the graph: at most threads + 1 runs of runEdges edges (16 bytes each) are
+ * in memory, the runs are spilled to the directory of the output.
+ *
+ * Arguments: inputEL outputAL makeUndirected [format] [runEdges] [threads], format "text" for lines
+ * "src:[a, b, c]" or "binary" for a BinaryAdjacencyFile.
+ */
 public class ELtoAL {
     public static void main(String[] args) throws IOException {
         String inputEL;
         String outputAL;
         String makeUndirected;
+        String format = "text";
+        int runEdges = 1 << 24;
+        int threads = Runtime.getRuntime().availableProcessors();
         if(args.length == 0) {
             inputEL = "src/main/resources/email-Eu-core.txt";
             outputAL = "resources/AL/email-Eu-core";
@@ -18,38 +26,43 @@ public class ELtoAL {
             inputEL = args[0];
             outputAL = args[1];
             makeUndirected = args[2];
-        }
-        HelpState state = new HelpState(Boolean.parseBoolean(makeUndirected));
-        FileReader fr = new FileReader(inputEL);
-        BufferedReader br = new BufferedReader(fr);
-        String line;
-        long counter = 0;
-        while ((line = br.readLine()) != null) {
-            if(!line.startsWith("#")) {
-                String[] fields = line.split("\\s");
-                long src = Long.parseLong(fields[0]);
-                long trg = Long.parseLong(fields[1]);
-                state.addEdge(src, trg);
-                counter++;
+            if (args.length > 3) {
+                format = args[3];
+            }
+            if (args.length > 4) {
+                runEdges = Integer.parseInt(args[4]);
+            }
+            if (args.length > 5) {
+                threads = Integer.parseInt(args[5]);
             }
         }
-        br.close();
-        fr.close();
-        System.out.println("edges read: "+counter);
-
-        HashMap<Long, HashSet<Long>> stateFinal = state.returnState();
-
-        File output = new File(outputAL);
-        try (BufferedWriter bf = new BufferedWriter(new FileWriter(output))) {
-            for (long src : stateFinal.keySet()) {
-                bf.write(src + ":" + Arrays.toString(stateFinal.get(src).toArray()));
-                bf.newLine();
+        boolean undirected = Boolean.parseBoolean(makeUndirected);
+        File output = new File(outputAL).getAbsoluteFile();
+        EdgeListSorter sorter = new EdgeListSorter(output.getParentFile(), runEdges, threads);
+        long start = System.currentTimeMillis();
+        if (format.equals("binary")) {
+            try (BinaryAdjacencyFile.Writer writer = new BinaryAdjacencyFile.Writer(outputAL, undirected)) {
+                sorter.sort(inputEL, undirected, writer::add);
+            }
+        } else {
+            try (BufferedWriter bf = new BufferedWriter(new FileWriter(output))) {
+                sorter.sort(inputEL, undirected, (src, neighbours, degree) -> {
+                    bf.write(Long.toString(src));
+                    bf.write(":[");
+                    for (int i = 0; i < degree; i++) {
+                        if (i > 0) {
+                            bf.write(", ");
+                        }
+                        bf.write(Long.toString(neighbours[i]));
+                    }
+                    bf.write(']');
+                    bf.newLine();
+                });
             }
-            bf.flush();
-        } catch (IOException e) {
-            e.printStackTrace();
         }
-        System.out.println("number of vertices: \t"+state.getNumberVertices());
-        System.out.println("number of edges: \t"+state.getNumberEdges());
+        System.out.println("edges read: "+sorter.getEdgesRead());
+        System.out.println("number of vertices: \t"+sorter.getVertices());
+        System.out.println("number of edges: \t"+sorter.getNeighbourEntries());
+        System.out.println("conversion took \t"+(System.currentTimeMillis() - start)+"\t ms");
     }
 }
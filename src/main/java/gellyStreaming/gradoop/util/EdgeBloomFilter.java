@@ -0,0 +1,144 @@
+package gellyStreaming.gradoop.util;
+
+import java.io.Serializable;
+
+/**
+ * Bloom filter over directed edges (src, trg), with vertex ids as given by GradoopIdUtil.toLong. The AL
+ * operators keep one per partition for the edges in their window and publish a copy of it as the queryable state
+ * "edgeBloomFilter" after every flush and purge, so a remote partition can rule out most edges before probing for
+ * them. The operators maintain it through a CountingEdgeBloomFilter, so purged edges are taken out again.
+ *
+ * Filters of the same size can be merged with union, which gives the filter of all their edges together. The
+ * union of filters that are each sized for one partition has a much higher false positive rate though, so the
+ * filters of remote partitions are checked one by one with mightContainAny.
+ */
+public class EdgeBloomFilter implements Serializable {
+
+    private final long[] bits;
+    private final int numHashes;
+
+    public EdgeBloomFilter(int numBits, int numHashes) {
+        if (numBits < 1 || numHashes < 1) {
+            throw new IllegalArgumentException("A bloom filter needs at least one bit and one hash function.");
+        }
+        this.bits = new long[(numBits + 63) / 64];
+        this.numHashes = numHashes;
+    }
+
+    private EdgeBloomFilter(long[] bits, int numHashes) {
+        this.bits = bits;
+        this.numHashes = numHashes;
+    }
+
+    // Number of bits for the expected number of edges and false positive rate, rounded up to whole longs.
+    public static int optimalNumBits(long expectedEdges, double falsePositiveRate) {
+        double bits = -expectedEdges * Math.log(falsePositiveRate) / (Math.log(2) * Math.log(2));
+        return (int) Math.min(Integer.MAX_VALUE - 63, Math.max(64, Math.ceil(bits / 64) * 64));
+    }
+
+    public static int optimalNumHashes(long expectedEdges, int numBits) {
+        return Math.max(1, (int) Math.round((double) numBits / expectedEdges * Math.log(2)));
+    }
+
+    public void add(long src, long trg) {
+        for (int index : bitIndexes(src, trg)) {
+            setBit(index);
+        }
+    }
+
+    // False means the edge was never added, true means it probably was.
+    public boolean mightContain(long src, long trg) {
+        long hash = hash(src, trg);
+        int hash1 = (int) hash;
+        int hash2 = (int) (hash >>> 32);
+        int numBits = getNumBits();
+        for (int i = 1; i <= numHashes; i++) {
+            int index = bitIndex(hash1, hash2, i, numBits);
+            if ((bits[index >>> 6] & (1L << index)) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // The bits an edge sets, one per hash function.
+    public int[] bitIndexes(long src, long trg) {
+        long hash = hash(src, trg);
+        int hash1 = (int) hash;
+        int hash2 = (int) (hash >>> 32);
+        int numBits = getNumBits();
+        int[] indexes = new int[numHashes];
+        for (int i = 1; i <= numHashes; i++) {
+            indexes[i - 1] = bitIndex(hash1, hash2, i, numBits);
+        }
+        return indexes;
+    }
+
+    void setBit(int index) {
+        bits[index >>> 6] |= 1L << index;
+    }
+
+    void clearBit(int index) {
+        bits[index >>> 6] &= ~(1L << index);
+    }
+
+    // Adds all edges of other to this filter. Both filters need the same number of bits and hash functions.
+    public EdgeBloomFilter union(EdgeBloomFilter other) {
+        if (other.bits.length != bits.length || other.numHashes != numHashes) {
+            throw new IllegalArgumentException("Only bloom filters of the same size can be merged.");
+        }
+        for (int i = 0; i < bits.length; i++) {
+            bits[i] |= other.bits[i];
+        }
+        return this;
+    }
+
+    // A copy that doesn't change with this filter, to publish a version of it.
+    public EdgeBloomFilter copy() {
+        return new EdgeBloomFilter(bits.clone(), numHashes);
+    }
+
+    // False means none of the filters has the edge. A null array has no filters, so every edge might be in it.
+    public static boolean mightContainAny(EdgeBloomFilter[] filters, long src, long trg) {
+        if (filters == null) {
+            return true;
+        }
+        for (EdgeBloomFilter filter : filters) {
+            if (filter.mightContain(src, trg)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    public int getNumBits() {
+        return bits.length * 64;
+    }
+
+    public int getNumHashes() {
+        return numHashes;
+    }
+
+    // Double hashing as in Kirsch and Mitzenmacher, hash1 + i * hash2 for the i-th hash function.
+    private static int bitIndex(int hash1, int hash2, int i, int numBits) {
+        int combined = hash1 + i * hash2;
+        if (combined < 0) {
+            combined = ~combined;
+        }
+        return combined % numBits;
+    }
+
+    // Murmur3 finalizer on both ids, so (a, b) and (b, a) end up on unrelated bits.
+    private static long hash(long src, long trg) {
+        return mix(mix(src) + trg);
+    }
+
+    private static long mix(long h) {
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+}
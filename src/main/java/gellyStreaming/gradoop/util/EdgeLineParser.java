@@ -0,0 +1,94 @@
+package gellyStreaming.gradoop.util;
+
+import java.io.IOException;
+
+/**
+ * Parses one line of an edge list file, "src trg [timestamp]", straight from the bytes. Columns are separated by
+ * spaces, tabs or commas, blank lines and lines starting with "#" are no edge, columns after the third are ignored,
+ * as is a third column that is not an integer. Shared by the EdgeListInputFormat and the EdgeListScanner, so jobs and
+ * tools read the same edges out of a file.
+ */
+public class EdgeLineParser {
+
+    // Timestamp of an edge whose line has none.
+    public static final long NO_TIMESTAMP = Long.MIN_VALUE;
+
+    private int position;
+    private long src;
+    private long trg;
+    private long timestamp;
+
+    /**
+     * Parses the line in bytes[offset, end), without the '\n' that ends it.
+     *
+     * @return false if the line has no edge.
+     */
+    public boolean parse(byte[] bytes, int offset, int end) throws IOException {
+        position = offset;
+        skipBlanks(bytes, end);
+        if (position == end || bytes[position] == '#' || bytes[position] == '\r') {
+            return false;
+        }
+        src = parseLong(bytes, offset, end);
+        skipBlanks(bytes, end);
+        trg = parseLong(bytes, offset, end);
+        skipBlanks(bytes, end);
+        timestamp = NO_TIMESTAMP;
+        if (position < end && (bytes[position] == '-' || isDigit(bytes[position]))) {
+            long value = parseLong(bytes, offset, end);
+            // Weights like 0.0714 are not a timestamp.
+            if (position == end || isBlank(bytes[position]) || bytes[position] == '\r') {
+                timestamp = value;
+            }
+        }
+        return true;
+    }
+
+    public long getSource() {
+        return src;
+    }
+
+    public long getTarget() {
+        return trg;
+    }
+
+    // Third column of the line, if it has one.
+    public boolean hasTimestamp() {
+        return timestamp != NO_TIMESTAMP;
+    }
+
+    // NO_TIMESTAMP if the line has none.
+    public long getTimestamp() {
+        return timestamp;
+    }
+
+    private void skipBlanks(byte[] bytes, int end) {
+        while (position < end && isBlank(bytes[position])) {
+            position++;
+        }
+    }
+
+    private long parseLong(byte[] bytes, int offset, int end) throws IOException {
+        boolean negative = position < end && bytes[position] == '-';
+        if (negative) {
+            position++;
+        }
+        if (position == end || !isDigit(bytes[position])) {
+            throw new IOException("Expected a number at byte " + (position - offset) + " of the line, found '"
+                    + (position == end ? "end of line" : String.valueOf((char) bytes[position])) + "'");
+        }
+        long value = 0;
+        while (position < end && isDigit(bytes[position])) {
+            value = value * 10 + (bytes[position++] - '0');
+        }
+        return negative ? -value : value;
+    }
+
+    private static boolean isBlank(byte b) {
+        return b == ' ' || b == '\t' || b == ',';
+    }
+
+    private static boolean isDigit(byte b) {
+        return b >= '0' && b <= '9';
+    }
+}
@@ -0,0 +1,96 @@
+package gellyStreaming.gradoop.util;
+
+import org.apache.flink.api.common.io.DelimitedInputFormat;
+import org.apache.flink.api.common.typeinfo.TypeHint;
+import org.apache.flink.api.common.typeinfo.TypeInformation;
+import org.apache.flink.api.java.typeutils.ResultTypeQueryable;
+import org.apache.flink.configuration.Configuration;
+import org.apache.flink.core.fs.FileInputSplit;
+import org.apache.flink.core.fs.Path;
+import org.apache.flink.graph.Edge;
+
+import java.io.IOException;
+
+/**
+ * Edge list files as a FileInputFormat, in place of readTextFile with a split and two parseLongs per line. The lines
+ * are parsed by an EdgeLineParser, the same as the EdgeListScanner reads them.
+ *
+ * Files are read through Flink's FileSystem, so every path Flink can read works, and cut into FileInputSplits by byte
+ * ranges for the parallel readers. DelimitedInputFormat hands every line of a split to readRecord as a range of its
+ * read buffer, which is parsed without a String. Read with StreamExecutionEnvironment.readFile, the reader tasks
+ * checkpoint the splits they still have to read and the offset in the current one, and go on from there after a
+ * restore.
+ *
+ * Emits Edge(src, trg, timestamp) with the third column as value, EdgeLineParser.NO_TIMESTAMP for lines without one,
+ * like the edges of getEdgePartitionedStream. The record that is passed in is reused.
+ */
+public class EdgeListInputFormat extends DelimitedInputFormat<Edge<Long, Long>>
+        implements ResultTypeQueryable<Edge<Long, Long>> {
+
+    private static final long serialVersionUID = 1L;
+
+    private transient EdgeLineParser parser;
+
+    public EdgeListInputFormat(Path filePath) {
+        super(filePath, null);
+    }
+
+    public interface EdgeConsumer {
+        void accept(long src, long trg);
+    }
+
+    // Reads all edges of the file in order, outside of a job, as the clustering of 2PS does.
+    public static void readAll(String path, EdgeConsumer consumer) throws IOException {
+        EdgeListInputFormat format = new EdgeListInputFormat(new Path(path));
+        format.configure(new Configuration());
+        Edge<Long, Long> edge = new Edge<>();
+        for (FileInputSplit split : format.createInputSplits(1)) {
+            format.open(split);
+            try {
+                while (!format.reachedEnd()) {
+                    if (format.nextRecord(edge) != null) {
+                        consumer.accept(edge.getSource(), edge.getTarget());
+                    }
+                }
+            } finally {
+                format.close();
+            }
+        }
+    }
+
+    @Override
+    public Edge<Long, Long> nextRecord(Edge<Long, Long> record) throws IOException {
+        // The readers of Flink stop at a null record, so skipped lines are read past here.
+        Edge<Long, Long> edge;
+        do {
+            edge = super.nextRecord(record);
+        } while (edge == null && !reachedEnd());
+        return edge;
+    }
+
+    // Null for a line without an edge.
+    @Override
+    public Edge<Long, Long> readRecord(Edge<Long, Long> reuse, byte[] bytes, int offset, int numBytes)
+            throws IOException {
+        if (parser == null) {
+            parser = new EdgeLineParser();
+        }
+        try {
+            if (!parser.parse(bytes, offset, offset + numBytes)) {
+                return null;
+            }
+        } catch (IOException e) {
+            throw new IOException(e.getMessage() + " in " + getFilePaths()[0], e);
+        }
+        Edge<Long, Long> edge = reuse != null ? reuse : new Edge<>();
+        edge.setSource(parser.getSource());
+        edge.setTarget(parser.getTarget());
+        edge.setValue(parser.getTimestamp());
+        return edge;
+    }
+
+    @Override
+    public TypeInformation<Edge<Long, Long>> getProducedType() {
+        return TypeInformation.of(new TypeHint<Edge<Long, Long>>() {});
+    }
+}
@@ -0,0 +1,141 @@
+package gellyStreaming.gradoop.util;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Reads the edges of an edge list file straight from the bytes without a String per line. The lines are parsed by an
+ * EdgeLineParser, the same as the EdgeListInputFormat reads them.
+ *
+ * A scanner reads the lines that start in the byte range [start, end) of the file, so consecutive ranges of one file
+ * read every line exactly once, whatever the ranges cut through.
+ *
+ * It reads local files only, for tools like the EdgeListSorter. Jobs read edge lists with the EdgeListInputFormat.
+ */
+public class EdgeListScanner implements Closeable {
+
+    private static final int BUFFER_SIZE = 1 << 20;
+
+    private final FileChannel channel;
+    private final EdgeLineParser parser = new EdgeLineParser();
+    private final long end;
+    private ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+    // File position of the first byte of the buffer, the bytes [position, limit) are not read yet.
+    private long bufferStart;
+    private int position = 0;
+    private int limit = 0;
+    private boolean endOfFile = false;
+
+    public EdgeListScanner(String path) throws IOException {
+        this(path, 0, Long.MAX_VALUE);
+    }
+
+    public EdgeListScanner(String path, long start, long end) throws IOException {
+        this.channel = FileChannel.open(Path.of(path), StandardOpenOption.READ);
+        this.end = end;
+        if (start > 0) {
+            // The line that starts in the range before ends at or after its last byte, skip the rest of it.
+            bufferStart = start - 1;
+            channel.position(bufferStart);
+            position = Math.min(lineEnd() + 1, limit);
+        }
+    }
+
+    public static long fileSize(String path) throws IOException {
+        try (FileChannel channel = FileChannel.open(Path.of(path), StandardOpenOption.READ)) {
+            return channel.size();
+        }
+    }
+
+    // Moves to the next edge, false at the end of the range.
+    public boolean next() throws IOException {
+        while ((position < limit || fill()) && bufferStart + position < end) {
+            int lineEnd = lineEnd();
+            boolean edge;
+            try {
+                edge = parser.parse(buffer.array(), position, lineEnd);
+            } catch (IOException e) {
+                throw new IOException(e.getMessage() + " starting at byte " + (bufferStart + position), e);
+            }
+            position = Math.min(lineEnd + 1, limit);
+            if (edge) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    public long getSource() {
+        return parser.getSource();
+    }
+
+    public long getTarget() {
+        return parser.getTarget();
+    }
+
+    // Third column of the line, if it has one.
+    public boolean hasTimestamp() {
+        return parser.hasTimestamp();
+    }
+
+    public long getTimestamp() {
+        return parser.getTimestamp();
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    // Index of the '\n' that ends the line at position, or limit if the file ends before. Reads on until the buffer
+    // holds the whole line.
+    private int lineEnd() throws IOException {
+        int from = position;
+        while (true) {
+            byte[] bytes = buffer.array();
+            for (int i = from; i < limit; i++) {
+                if (bytes[i] == '\n') {
+                    return i;
+                }
+            }
+            from = limit - position;
+            if (!fill()) {
+                return limit;
+            }
+        }
+    }
+
+    // Moves the bytes that are not read yet to the front of the buffer, which grows for lines that don't fit, and
+    // reads the file on behind them. False at the end of the file.
+    private boolean fill() throws IOException {
+        if (endOfFile) {
+            return false;
+        }
+        int remaining = limit - position;
+        if (remaining == buffer.capacity()) {
+            ByteBuffer larger = ByteBuffer.allocate(2 * buffer.capacity());
+            larger.put(buffer.array(), position, remaining);
+            buffer = larger;
+        } else {
+            System.arraycopy(buffer.array(), position, buffer.array(), 0, remaining);
+            buffer.clear();
+            buffer.position(remaining);
+        }
+        bufferStart += position;
+        position = 0;
+        int read;
+        do {
+            read = channel.read(buffer);
+        } while (read == 0);
+        limit = buffer.position();
+        if (read < 0) {
+            endOfFile = true;
+            return false;
+        }
+        return true;
+    }
+}
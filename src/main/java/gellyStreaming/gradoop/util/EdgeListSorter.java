@@ -0,0 +1,336 @@
+package gellyStreaming.gradoop.util;
+
+import it.unimi.dsi.fastutil.longs.LongArrays;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Turns an edge list of "src trg" lines into sorted adjacency lists in bounded memory, for ELtoAL.
+ *
+ * The edges are read by an EdgeListScanner into primitive arrays of runEdges edges. Full arrays are radix
+ * sorted and spilled to a run file by a pool of threads while the next array is filled, so at most threads + 1 arrays
+ * are in memory. The runs are then merged, at most MAX_FAN_IN at a time, and the adjacency lists are handed out in
+ * order of vertex id with their neighbours sorted and without duplicates. With makeUndirected every edge is also
+ * added in the other direction.
+ */
+public class EdgeListSorter {
+
+    public interface AdjacencyConsumer {
+        // neighbours is reused for the next vertex, only its first degree entries are valid.
+        void accept(long vertex, long[] neighbours, int degree) throws IOException;
+    }
+
+    private static final int MAX_FAN_IN = 128;
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    private final File tempDir;
+    private final int runEdges;
+    private final int threads;
+    private long edgesRead;
+    private long vertices;
+    private long neighbourEntries;
+
+    public EdgeListSorter(File tempDir, int runEdges, int threads) {
+        this.tempDir = tempDir;
+        this.runEdges = runEdges;
+        this.threads = Math.max(1, threads);
+    }
+
+    public void sort(String inputEL, boolean makeUndirected, AdjacencyConsumer consumer) throws IOException {
+        edgesRead = 0;
+        vertices = 0;
+        neighbourEntries = 0;
+        List<File> runs = writeRuns(inputEL, makeUndirected);
+        try {
+            while (runs.size() > MAX_FAN_IN) {
+                List<File> merged = new ArrayList<>();
+                for (int i = 0; i < runs.size(); i += MAX_FAN_IN) {
+                    List<File> group = runs.subList(i, Math.min(runs.size(), i + MAX_FAN_IN));
+                    File run = File.createTempFile("edges", ".run", tempDir);
+                    try (DataOutputStream out = new DataOutputStream(
+                            new BufferedOutputStream(new FileOutputStream(run), BUFFER_SIZE))) {
+                        merge(group, (src, trg) -> {
+                            out.writeLong(src);
+                            out.writeLong(trg);
+                        });
+                    }
+                    delete(group);
+                    merged.add(run);
+                }
+                runs = merged;
+            }
+            AdjacencyWriter writer = new AdjacencyWriter(consumer);
+            merge(runs, writer);
+            writer.finish();
+        } finally {
+            delete(runs);
+        }
+    }
+
+    public long getEdgesRead() {
+        return edgesRead;
+    }
+
+    public long getVertices() {
+        return vertices;
+    }
+
+    public long getNeighbourEntries() {
+        return neighbourEntries;
+    }
+
+    private List<File> writeRuns(String inputEL, boolean makeUndirected) throws IOException {
+        int pairsPerEdge = makeUndirected ? 2 : 1;
+        int capacity = Math.max(pairsPerEdge, runEdges / pairsPerEdge * pairsPerEdge);
+        BlockingQueue<long[][]> free = new ArrayBlockingQueue<>(threads + 1);
+        for (int i = 0; i <= threads; i++) {
+            free.add(new long[][]{new long[capacity], new long[capacity]});
+        }
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        List<Future<File>> runs = new ArrayList<>();
+        boolean written = false;
+        try (EdgeListScanner parser = new EdgeListScanner(inputEL)) {
+            long[][] buffer = free.take();
+            int size = 0;
+            while (parser.next()) {
+                edgesRead++;
+                buffer[0][size] = parser.getSource();
+                buffer[1][size++] = parser.getTarget();
+                if (makeUndirected) {
+                    buffer[0][size] = parser.getTarget();
+                    buffer[1][size++] = parser.getSource();
+                }
+                if (size == capacity) {
+                    runs.add(pool.submit(spill(buffer, size, free)));
+                    buffer = free.take();
+                    size = 0;
+                }
+            }
+            if (size > 0) {
+                runs.add(pool.submit(spill(buffer, size, free)));
+            }
+            List<File> files = new ArrayList<>();
+            for (Future<File> run : runs) {
+                files.add(run.get());
+            }
+            written = true;
+            return files;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while sorting " + inputEL, e);
+        } catch (ExecutionException e) {
+            throw new IOException("Could not write a run of " + inputEL, e.getCause());
+        } finally {
+            pool.shutdownNow();
+            if (!written) {
+                deleteSpilled(pool, runs);
+            }
+        }
+    }
+
+    // After a parse error or an interrupt: waits for the spills that are still running and deletes all runs that
+    // were written. Spills that did not start yet write nothing.
+    private static void deleteSpilled(ExecutorService pool, List<Future<File>> runs) {
+        boolean interrupted = Thread.interrupted();
+        try {
+            pool.awaitTermination(1, TimeUnit.MINUTES);
+        } catch (InterruptedException e) {
+            interrupted = true;
+        }
+        List<File> spilled = new ArrayList<>();
+        for (Future<File> run : runs) {
+            if (run.isDone() && !run.isCancelled()) {
+                try {
+                    spilled.add(run.get());
+                } catch (InterruptedException | ExecutionException ignored) {
+                    // A failed spill deletes its own run.
+                }
+            }
+        }
+        delete(spilled);
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    // Sorts the first size edges of buffer, writes them to a run without duplicates and gives the buffer back.
+    private Callable<File> spill(long[][] buffer, int size, BlockingQueue<long[][]> free) {
+        return () -> {
+            try {
+                LongArrays.radixSort(buffer[0], buffer[1], 0, size);
+                File run = File.createTempFile("edges", ".run", tempDir);
+                try (DataOutputStream out = new DataOutputStream(
+                        new BufferedOutputStream(new FileOutputStream(run), BUFFER_SIZE))) {
+                    for (int i = 0; i < size; i++) {
+                        if (i == 0 || buffer[0][i] != buffer[0][i - 1] || buffer[1][i] != buffer[1][i - 1]) {
+                            out.writeLong(buffer[0][i]);
+                            out.writeLong(buffer[1][i]);
+                        }
+                    }
+                } catch (IOException e) {
+                    delete(List.of(run));
+                    throw e;
+                }
+                return run;
+            } finally {
+                free.add(buffer);
+            }
+        };
+    }
+
+    private interface PairConsumer {
+        void accept(long src, long trg) throws IOException;
+    }
+
+    // k-way merge of sorted runs with a binary heap of run indices, duplicates across runs are dropped.
+    private static void merge(List<File> runs, PairConsumer consumer) throws IOException {
+        int k = runs.size();
+        DataInputStream[] inputs = new DataInputStream[k];
+        long[] srcs = new long[k];
+        long[] trgs = new long[k];
+        int[] heap = new int[k];
+        int heapSize = 0;
+        try {
+            for (int i = 0; i < k; i++) {
+                inputs[i] = new DataInputStream(new BufferedInputStream(new FileInputStream(runs.get(i)), BUFFER_SIZE));
+                if (read(inputs[i], srcs, trgs, i)) {
+                    heap[heapSize] = i;
+                    siftUp(heap, heapSize++, srcs, trgs);
+                }
+            }
+            boolean first = true;
+            long lastSrc = 0;
+            long lastTrg = 0;
+            while (heapSize > 0) {
+                int run = heap[0];
+                long src = srcs[run];
+                long trg = trgs[run];
+                if (first || src != lastSrc || trg != lastTrg) {
+                    consumer.accept(src, trg);
+                    first = false;
+                    lastSrc = src;
+                    lastTrg = trg;
+                }
+                if (!read(inputs[run], srcs, trgs, run)) {
+                    heap[0] = heap[--heapSize];
+                }
+                siftDown(heap, heapSize, srcs, trgs);
+            }
+        } finally {
+            for (DataInputStream input : inputs) {
+                if (input != null) {
+                    input.close();
+                }
+            }
+        }
+    }
+
+    private static boolean read(DataInputStream input, long[] srcs, long[] trgs, int run) throws IOException {
+        try {
+            srcs[run] = input.readLong();
+        } catch (EOFException e) {
+            return false;
+        }
+        trgs[run] = input.readLong();
+        return true;
+    }
+
+    private static boolean less(int a, int b, long[] srcs, long[] trgs) {
+        return srcs[a] < srcs[b] || (srcs[a] == srcs[b] && trgs[a] < trgs[b]);
+    }
+
+    private static void siftUp(int[] heap, int i, long[] srcs, long[] trgs) {
+        while (i > 0) {
+            int parent = (i - 1) / 2;
+            if (!less(heap[i], heap[parent], srcs, trgs)) {
+                return;
+            }
+            int swap = heap[i];
+            heap[i] = heap[parent];
+            heap[parent] = swap;
+            i = parent;
+        }
+    }
+
+    private static void siftDown(int[] heap, int size, long[] srcs, long[] trgs) {
+        int i = 0;
+        while (true) {
+            int smallest = i;
+            int left = 2 * i + 1;
+            int right = left + 1;
+            if (left < size && less(heap[left], heap[smallest], srcs, trgs)) {
+                smallest = left;
+            }
+            if (right < size && less(heap[right], heap[smallest], srcs, trgs)) {
+                smallest = right;
+            }
+            if (smallest == i) {
+                return;
+            }
+            int swap = heap[i];
+            heap[i] = heap[smallest];
+            heap[smallest] = swap;
+            i = smallest;
+        }
+    }
+
+    private static void delete(List<File> runs) {
+        for (File run : runs) {
+            if (!run.delete() && run.exists()) {
+                System.out.println("Could not delete run \t" + run);
+            }
+        }
+    }
+
+    // Groups the sorted edges by source.
+    private class AdjacencyWriter implements PairConsumer {
+        private final AdjacencyConsumer consumer;
+        private long[] neighbours = new long[16];
+        private int degree = 0;
+        private long vertex;
+
+        AdjacencyWriter(AdjacencyConsumer consumer) {
+            this.consumer = consumer;
+        }
+
+        @Override
+        public void accept(long src, long trg) throws IOException {
+            if (degree > 0 && src != vertex) {
+                finish();
+            }
+            vertex = src;
+            if (degree == neighbours.length) {
+                neighbours = Arrays.copyOf(neighbours, degree * 2);
+            }
+            neighbours[degree++] = trg;
+        }
+
+        void finish() throws IOException {
+            if (degree > 0) {
+                consumer.accept(vertex, neighbours, degree);
+                vertices++;
+                neighbourEntries += degree;
+                degree = 0;
+            }
+        }
+    }
+}
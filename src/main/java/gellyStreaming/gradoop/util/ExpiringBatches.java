@@ -0,0 +1,69 @@
+package gellyStreaming.gradoop.util;
+
+import it.unimi.dsi.fastutil.longs.LongRBTreeSet;
+import it.unimi.dsi.fastutil.longs.LongSortedSet;
+
+import java.io.Serializable;
+
+/**
+ * The validTo of the batches of an operator that are purged lazily, at the slide timers instead of by a timer per
+ * batch. They are kept sorted, so a slide timer only takes out the batches that expire, also when event time input
+ * adds them out of order. This is only an index over the validTo keys, the batches themselves stay in the state of
+ * the operator and are removed from it one by one.
+ *
+ * Without a slide nothing is purged, it then only remembers the last batch, which is used to detect that the input
+ * has ended.
+ */
+public class ExpiringBatches implements Serializable {
+
+    private static final long[] NONE = new long[0];
+
+    private final long windowSize;
+    private final Long slide;
+    private final LongRBTreeSet validTos = new LongRBTreeSet();
+    private long lastValidTo = Long.MIN_VALUE;
+
+    public ExpiringBatches(long windowSize, Long slide) {
+        if (slide != null && slide <= 0) {
+            throw new IllegalArgumentException("The slide has to be positive.");
+        }
+        this.windowSize = windowSize;
+        this.slide = slide;
+    }
+
+    public void add(long validTo) {
+        lastValidTo = validTo;
+        if (slide != null) {
+            validTos.add(validTo);
+        }
+    }
+
+    /**
+     * Takes the batches with validTo <= timestamp out and returns their validTo in ascending order. Called with the
+     * timestamp of a slide timer these are the batches of that slide, and those of earlier slides if their timers
+     * were missed.
+     */
+    public long[] expire(long timestamp) {
+        if (validTos.isEmpty() || validTos.firstLong() > timestamp) {
+            return NONE;
+        }
+        LongSortedSet expired = timestamp == Long.MAX_VALUE ? validTos : validTos.headSet(timestamp + 1);
+        long[] expiredValidTos = expired.toLongArray();
+        expired.clear();
+        return expiredValidTos;
+    }
+
+    public boolean isEmpty() {
+        return validTos.isEmpty();
+    }
+
+    // Batches that have not expired yet.
+    public int size() {
+        return validTos.size();
+    }
+
+    // Start timestamp of the last batch that was added, or Long.MIN_VALUE if there was none.
+    public long getLastBatchTimestamp() {
+        return lastValidTo == Long.MIN_VALUE ? Long.MIN_VALUE : lastValidTo - windowSize;
+    }
+}
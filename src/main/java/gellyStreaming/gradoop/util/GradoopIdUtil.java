@@ -17,4 +17,27 @@ public class GradoopIdUtil {
         String substring = s.substring(0,8);
         return Long.parseLong(substring, 16);
     }
+
+    // Same result as getLong, but reads the first 4 bytes of the id directly instead of going through its
+    // hex string. Vertex ids are made with new GradoopId(vertexId, 0, (short) 0, 0), so these bytes hold the vertex.
+    public static long toLong(GradoopId gradoopId) {
+        byte[] bytes = gradoopId.toByteArray();
+        return ((bytes[0] & 0xffL) << 24) | ((bytes[1] & 0xffL) << 16) | ((bytes[2] & 0xffL) << 8) | (bytes[3] & 0xffL);
+    }
+
+    // True if the id was made from a vertex number, so fromLong(toLong(gradoopId)) gives it back.
+    public static boolean isVertexId(GradoopId gradoopId) {
+        byte[] bytes = gradoopId.toByteArray();
+        for (int i = 4; i < bytes.length; i++) {
+            if (bytes[i] != 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // Inverse of toLong, gives the same GradoopId as the stream builders in makeSimpleTemporalEdgeStream.
+    public static GradoopId fromLong(long vertexId) {
+        return new GradoopId((int) vertexId, 0, (short) 0, 0);
+    }
 }
@@ -0,0 +1,137 @@
+package gellyStreaming.gradoop.util;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveTask;
+import java.util.function.BinaryOperator;
+
+/**
+ * Runs the loops of the algorithms on a bounded ForkJoinPool. A range of work items is split in halves until
+ * chunks are small enough, idle workers steal the halves that are still waiting, so vertices with a lot of
+ * work don't hold up the others. Every chunk computes its own partial result, which are combined at the end,
+ * so workers don't share counters.
+ *
+ * There is one pool per parallelism, shared by all partitions running in the same TaskManager, so the
+ * algorithms of all slots together use at most that many extra threads. The operators running algorithms retain the
+ * pools in open and release them in close, the pools are shut down when the last operator of the TaskManager closed.
+ * Work that blocks, like waiting for queryable state, goes through block, so the pool adds a thread in the meantime.
+ */
+public class ParallelRange {
+
+    // Chunks per worker thread, more chunks balance better but cost more splitting.
+    private static final int CHUNKS_PER_THREAD = 64;
+
+    private static final ConcurrentHashMap<Integer, ForkJoinPool> pools = new ConcurrentHashMap<>();
+
+    // Operators that may still run an algorithm on the pools.
+    private static int users = 0;
+
+    public interface RangeFunction<T> {
+        T apply(int from, int to);
+    }
+
+    public interface BlockingCall<T> {
+        T call() throws InterruptedException;
+    }
+
+    public static ForkJoinPool getPool(int parallelism) {
+        return pools.computeIfAbsent(parallelism, ForkJoinPool::new);
+    }
+
+    public static synchronized void retain() {
+        users++;
+    }
+
+    // Shuts the pools down once no operator uses them anymore, a later retain starts new ones.
+    public static synchronized void release() {
+        if (users > 0 && --users == 0) {
+            List<ForkJoinPool> closed = new ArrayList<>(pools.values());
+            pools.clear();
+            for (ForkJoinPool pool : closed) {
+                pool.shutdown();
+            }
+        }
+    }
+
+    /**
+     * Runs call, which may block for a while. On a pool worker the pool may start another worker until it returns,
+     * so the other chunks and the other partitions sharing the pool don't wait for it.
+     */
+    public static <T> T block(BlockingCall<T> call) throws InterruptedException {
+        if (ForkJoinTask.inForkJoinPool()) {
+            BlockingTask<T> task = new BlockingTask<>(call);
+            ForkJoinPool.managedBlock(task);
+            return task.result;
+        }
+        return call.call();
+    }
+
+    /**
+     * Applies function to consecutive chunks of [0, size) and combines the results. With parallelism 1 the
+     * whole range is done by the calling thread.
+     */
+    public static <T> T reduce(int parallelism, int size, RangeFunction<T> function, BinaryOperator<T> combine) {
+        if (parallelism <= 1 || size <= 1) {
+            return function.apply(0, size);
+        }
+        int chunkSize = Math.max(1, size / (parallelism * CHUNKS_PER_THREAD));
+        return getPool(parallelism).invoke(new RangeTask<>(0, size, chunkSize, function, combine));
+    }
+
+    public static long sum(int parallelism, int size, RangeFunction<Long> function) {
+        return reduce(parallelism, size, function, Long::sum);
+    }
+
+    private static class RangeTask<T> extends RecursiveTask<T> {
+        private final int from;
+        private final int to;
+        private final int chunkSize;
+        private final RangeFunction<T> function;
+        private final BinaryOperator<T> combine;
+
+        RangeTask(int from, int to, int chunkSize, RangeFunction<T> function, BinaryOperator<T> combine) {
+            this.from = from;
+            this.to = to;
+            this.chunkSize = chunkSize;
+            this.function = function;
+            this.combine = combine;
+        }
+
+        @Override
+        protected T compute() {
+            if (to - from <= chunkSize) {
+                return function.apply(from, to);
+            }
+            int middle = (from + to) >>> 1;
+            RangeTask<T> left = new RangeTask<>(from, middle, chunkSize, function, combine);
+            left.fork();
+            T right = new RangeTask<>(middle, to, chunkSize, function, combine).compute();
+            return combine.apply(left.join(), right);
+        }
+    }
+
+    private static class BlockingTask<T> implements ForkJoinPool.ManagedBlocker {
+        private final BlockingCall<T> call;
+        private boolean done = false;
+        private T result;
+
+        BlockingTask(BlockingCall<T> call) {
+            this.call = call;
+        }
+
+        @Override
+        public boolean block() throws InterruptedException {
+            result = call.call();
+            done = true;
+            return true;
+        }
+
+        @Override
+        public boolean isReleasable() {
+            return done;
+        }
+    }
+}
@@ -2,29 +2,121 @@ package gellyStreaming.gradoop.util;
 
 import gellyStreaming.gradoop.partitioner.CustomKeySelector;
 import gellyStreaming.gradoop.partitioner.DBHPartitioner;
-import org.apache.flink.api.common.functions.MapFunction;
+import gellyStreaming.gradoop.partitioner.HDRFPartitioner;
+import gellyStreaming.gradoop.partitioner.PartitionQuality;
+import gellyStreaming.gradoop.partitioner.PartitionerMetrics;
+import gellyStreaming.gradoop.partitioner.TwoPhasePartitioner;
 import org.apache.flink.api.common.functions.Partitioner;
+import org.apache.flink.api.common.functions.RichMapFunction;
 import org.apache.flink.api.java.tuple.Tuple2;
+import org.apache.flink.configuration.Configuration;
 import org.apache.flink.graph.Edge;
+import org.apache.flink.runtime.state.KeyGroupRangeAssignment;
 import org.apache.flink.streaming.api.datastream.DataStream;
 
 import java.io.Serializable;
+import java.util.HashMap;
+import java.util.UUID;
 
 public class PartitionEdges<K, V> implements Serializable {
 
     public final DataStream<Tuple2<Edge<K, V>, Integer>> getPartitionedEdges(DataStream<Edge<K, V>> input, Integer numberOfPartitions) {
+        return getPartitionedEdges(input, numberOfPartitions, "dbh", null, false);
+    }
+
+    public final DataStream<Tuple2<Edge<K, V>, Integer>> getPartitionedEdges(DataStream<Edge<K, V>> input,
+                                                                           Integer numberOfPartitions,
+                                                                           String partitionerName,
+                                                                           String filepath) {
+        return getPartitionedEdges(input, numberOfPartitions, partitionerName, filepath, true);
+    }
+
+    /**
+     * Partitions the edges with "dbh", "hdrf" or "2ps". 2PS clusters the graph in the file at filepath before the first
+     * edge, the others do not use it. Every subtask reports its assignments as Flink metrics (see PartitionerMetrics)
+     * and prints them when it closes. With trackQuality it also keeps the partitions of every vertex it saw, to report
+     * the replication factor, balance and partition loads, and the last subtask in a TaskManager prints those of all
+     * subtasks in it.
+     */
+    public final DataStream<Tuple2<Edge<K, V>, Integer>> getPartitionedEdges(DataStream<Edge<K, V>> input,
+                                                                           Integer numberOfPartitions,
+                                                                           String partitionerName,
+                                                                           String filepath,
+                                                                           boolean trackQuality) {
+        String reportId = UUID.randomUUID().toString();
         return input
-                .map(new MapFunction<Edge<K, V>, Tuple2<Edge<K,V>,Integer>>() {
+                .map(new RichMapFunction<Edge<K, V>, Tuple2<Edge<K,V>,Integer>>() {
                     final CustomKeySelector<K, V> keySelector = new CustomKeySelector<>(0);
-                    final Partitioner<K> partitioner = new DBHPartitioner<>(keySelector, numberOfPartitions);
-            @Override
-            public Tuple2<Edge<K, V>, Integer> map(Edge<K, V> edge) throws Exception {
-                K keyEdge = keySelector.getKey(edge);
-                int machineId = partitioner.partition(keyEdge, numberOfPartitions);
-                return Tuple2.of(edge, machineId);
-            }
-        });
+                    final Partitioner<K> partitioner = getPartitioner(keySelector, numberOfPartitions, partitionerName,
+                            filepath);
+                    final PartitionQuality quality = trackQuality ? new PartitionQuality(numberOfPartitions) : null;
+                    final HashMap<Integer, Integer> partitionOfKey = partitionsOfKeys(numberOfPartitions);
+                    transient PartitionerMetrics metrics;
+
+                    @Override
+                    public void open(Configuration parameters) {
+                        metrics = new PartitionerMetrics(getRuntimeContext().getMetricGroup(), partitionerName,
+                                quality);
+                        if (quality != null) {
+                            PartitionQuality.register(reportId, numberOfPartitions, true);
+                        }
+                    }
+
+                    @Override
+                    public Tuple2<Edge<K, V>, Integer> map(Edge<K, V> edge) throws Exception {
+                        K keyEdge = keySelector.getKey(edge);
+                        int machineId = partitioner.partition(keyEdge, numberOfPartitions);
+                        if (quality != null) {
+                            quality.addEdge((Long) edge.getSource(), (Long) edge.getTarget(),
+                                    partitionOfKey.get(machineId));
+                        }
+                        metrics.assigned();
+                        return Tuple2.of(edge, machineId);
+                    }
+
+                    @Override
+                    public void close() {
+                        System.out.println("Thread \t" + Thread.currentThread().getId() + "\t partitioned with \t"
+                                + metrics.summary());
+                        if (quality == null) {
+                            return;
+                        }
+                        PartitionQuality total = PartitionQuality.mergeSubtask(reportId, quality);
+                        if (total != null) {
+                            System.out.println("Partitioned with \t" + partitionerName + "\t finished at \t"
+                                    + System.currentTimeMillis() + "\t in TaskManager \t"
+                                    + PartitionQuality.getTaskManagerName() + "\t " + total);
+                        }
+                    }
+                });
     }
-}
 
+    private static <K, V> Partitioner<K> getPartitioner(CustomKeySelector<K, V> keySelector, int numberOfPartitions,
+                                                        String partitionerName, String filepath) {
+        switch (partitionerName) {
+            case "dbh":
+                return new DBHPartitioner<>(keySelector, numberOfPartitions);
+            case "hdrf":
+                return new HDRFPartitioner<>(keySelector, numberOfPartitions);
+            case "2ps":
+                if (filepath == null) {
+                    throw new IllegalArgumentException("2ps needs the path of the edge file for its clustering");
+                }
+                return new TwoPhasePartitioner<>(keySelector, numberOfPartitions, filepath);
+            default:
+                throw new IllegalArgumentException("Unknown edge partitioner " + partitionerName
+                        + ", use dbh, hdrf or 2ps");
+        }
+    }
 
+    // The partitioners return the KeyGen key of a partition, the quality report needs its number.
+    private static HashMap<Integer, Integer> partitionsOfKeys(int numberOfPartitions) {
+        KeyGen keyGenerator = new KeyGen(numberOfPartitions,
+                KeyGroupRangeAssignment.computeDefaultMaxParallelism(numberOfPartitions));
+        HashMap<Integer, Integer> partitionOfKey = new HashMap<>();
+        for (int i = 0; i < numberOfPartitions; i++) {
+            partitionOfKey.put(keyGenerator.next(i), i);
+        }
+        return partitionOfKey;
+    }
+}
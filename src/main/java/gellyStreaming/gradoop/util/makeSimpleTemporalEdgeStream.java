@@ -1,18 +1,26 @@
 package gellyStreaming.gradoop.util;
 
 import gellyStreaming.gradoop.model.SimpleTemporalEdgeStream;
+import gellyStreaming.gradoop.model.TopologyEdge;
 import gellyStreaming.gradoop.partitioner.CustomKeySelector2;
-import gellyStreaming.gradoop.partitioner.StoredVertex;
+import gellyStreaming.gradoop.partitioner.FennelScore;
+import gellyStreaming.gradoop.partitioner.ParallelFennelPartitioner;
+import gellyStreaming.gradoop.partitioner.PartitionQuality;
+import gellyStreaming.gradoop.partitioner.PartitionerMetrics;
+import gellyStreaming.gradoop.partitioner.ReplicaTable;
 import gellyStreaming.gradoop.partitioner.StoredVertexPartitionState;
 import org.apache.flink.api.common.functions.FilterFunction;
 import org.apache.flink.api.common.functions.FlatMapFunction;
 import org.apache.flink.api.common.functions.MapFunction;
 import org.apache.flink.api.common.functions.Partitioner;
+import org.apache.flink.api.common.functions.RichFlatMapFunction;
 import org.apache.flink.api.java.tuple.Tuple2;
+import org.apache.flink.configuration.Configuration;
 import org.apache.flink.graph.Edge;
 import org.apache.flink.runtime.state.KeyGroupRangeAssignment;
 import org.apache.flink.streaming.api.datastream.DataStream;
 import org.apache.flink.streaming.api.environment.StreamExecutionEnvironment;
+import org.apache.flink.streaming.api.functions.source.FileProcessingMode;
 import org.apache.flink.streaming.api.functions.source.ParallelSourceFunction;
 import org.apache.flink.streaming.api.functions.source.SourceFunction;
 import org.apache.flink.util.Collector;
@@ -37,13 +45,66 @@ public class makeSimpleTemporalEdgeStream implements Serializable {
                                                                       Integer vertexCount,
                                                                       Integer edgeCount,
                                                                       Boolean makeInf) {
+        return getVertexPartitionedStream(env, numberOfPartitions, filepath, vertexCount, edgeCount, makeInf, false);
+    }
+
+    /**
+     * With topologyOnly the edges are TopologyEdges, which only keep src, trg, validFrom, validTo and partition and
+     * make their id and properties when asked for them.
+     */
+    public static SimpleTemporalEdgeStream getVertexPartitionedStream(StreamExecutionEnvironment env,
+                                                                      Integer numberOfPartitions,
+                                                                      String filepath,
+                                                                      Integer vertexCount,
+                                                                      Integer edgeCount,
+                                                                      Boolean makeInf,
+                                                                      boolean topologyOnly) {
+        return getVertexPartitionedStream(env, numberOfPartitions, filepath, vertexCount, edgeCount, makeInf,
+                topologyOnly, 0);
+    }
+
+    /**
+     * With a fennelSyncInterval above 0 the adjacency lists are read and partitioned with the parallelism of the job
+     * by a ParallelFennelPartitioner, whose subtasks share their assignments every fennelSyncInterval vertices.
+     * Otherwise a single Fennel partitioner runs at parallelism 1.
+     */
+    public static SimpleTemporalEdgeStream getVertexPartitionedStream(StreamExecutionEnvironment env,
+                                                                      Integer numberOfPartitions,
+                                                                      String filepath,
+                                                                      Integer vertexCount,
+                                                                      Integer edgeCount,
+                                                                      Boolean makeInf,
+                                                                      boolean topologyOnly,
+                                                                      int fennelSyncInterval) {
+        return getVertexPartitionedStream(env, numberOfPartitions, filepath, vertexCount, edgeCount, makeInf,
+                topologyOnly, fennelSyncInterval, true);
+    }
+
+    // Without trackQuality the Fennel partitioners only report the balance, not the replication factor, see
+    // PartitionQuality.
+    public static SimpleTemporalEdgeStream getVertexPartitionedStream(StreamExecutionEnvironment env,
+                                                                      Integer numberOfPartitions,
+                                                                      String filepath,
+                                                                      Integer vertexCount,
+                                                                      Integer edgeCount,
+                                                                      Boolean makeInf,
+                                                                      boolean topologyOnly,
+                                                                      int fennelSyncInterval,
+                                                                      boolean trackQuality) {
         long currentTime = System.currentTimeMillis();
         final boolean cont = makeInf;
+        if (topologyOnly) {
+            // Registered, so the serializer of TemporalEdge writes a tag instead of the class name for each edge.
+            env.getConfig().registerPojoType(TopologyEdge.class);
+        }
+
         KeyGen keyGenerator = new KeyGen(numberOfPartitions, KeyGroupRangeAssignment.computeDefaultMaxParallelism(numberOfPartitions));
         int[] keys = new int[numberOfPartitions];
         for (int i = 0; i < numberOfPartitions; i++)
             keys[i] = keyGenerator.next(i);
-        env.setParallelism(1);
+        if (fennelSyncInterval <= 0) {
+            env.setParallelism(1);
+        }
         DataStream<Tuple2<Long, List<Long>>> vertices = null;
         try {
             vertices = getVertices(env, filepath);
@@ -51,21 +112,44 @@ public class makeSimpleTemporalEdgeStream implements Serializable {
             e.printStackTrace();
         }
 
-        DataStream<Tuple2<Edge<Long, String>, Integer>> edges = vertices.flatMap(new FlatMapFunction<Tuple2<Long, List<Long>>, Tuple2<Edge<Long, String>, Integer>>() {
-            CustomKeySelector2 keySelector = new CustomKeySelector2(0);
-            FennelPartitioner fennel = new FennelPartitioner(keySelector, numberOfPartitions, vertexCount, edgeCount);
+        DataStream<Tuple2<Edge<Long, String>, Integer>> edges;
+        if (fennelSyncInterval > 0) {
+            edges = vertices.flatMap(new ParallelFennelPartitioner(numberOfPartitions, vertexCount, edgeCount,
+                    fennelSyncInterval, trackQuality));
+        } else {
+            edges = vertices.flatMap(new RichFlatMapFunction<Tuple2<Long, List<Long>>, Tuple2<Edge<Long, String>, Integer>>() {
+                CustomKeySelector2 keySelector = new CustomKeySelector2(0);
+                FennelPartitioner fennel = new FennelPartitioner(keySelector, numberOfPartitions, vertexCount, edgeCount);
+                // Same report as the ParallelFennelPartitioner, to compare both.
+                PartitionQuality quality = new PartitionQuality(numberOfPartitions, trackQuality);
+                transient PartitionerMetrics metrics;
 
-            @Override
-            public void flatMap(Tuple2<Long, List<Long>> vertexList, Collector<Tuple2<Edge<Long, String>, Integer>> collector) throws Exception {
-                Long keyEdge = (long) keySelector.getKey(vertexList);
-                Long srcId = vertexList.f0;
-                int machineId = fennel.partition(keyEdge, numberOfPartitions);
-                int partition = keys[machineId];
-                for (Long neighbour : vertexList.f1) {
-                    collector.collect(Tuple2.of(new Edge<Long, String>(srcId, neighbour, ""), partition));
+                @Override
+                public void open(Configuration parameters) {
+                    metrics = new PartitionerMetrics(getRuntimeContext().getMetricGroup(),
+                            "fennel \t" + fennel.score, quality);
+                }
+
+                @Override
+                public void flatMap(Tuple2<Long, List<Long>> vertexList, Collector<Tuple2<Edge<Long, String>, Integer>> collector) throws Exception {
+                    Long keyEdge = (long) keySelector.getKey(vertexList);
+                    Long srcId = vertexList.f0;
+                    int machineId = fennel.partition(keyEdge, numberOfPartitions);
+                    int partition = keys[machineId];
+                    for (Long neighbour : vertexList.f1) {
+                        collector.collect(Tuple2.of(new Edge<Long, String>(srcId, neighbour, ""), partition));
+                        quality.addEdge(srcId, neighbour, machineId);
+                    }
+                    metrics.assigned();
                 }
-            }
-        });
+
+                @Override
+                public void close() {
+                    System.out.println("Fennel partitioning finished at \t" + System.currentTimeMillis() + "\t "
+                            + metrics.summary());
+                }
+            });
+        }
 
 
         env.setParallelism(numberOfPartitions);
@@ -74,6 +158,10 @@ public class makeSimpleTemporalEdgeStream implements Serializable {
         GradoopIdSet graphId = new GradoopIdSet();
         DataStream<TemporalEdge> tempEdges = edges.map(
                 (MapFunction<Tuple2<Edge<Long, String>, Integer>, TemporalEdge>) edge -> {
+                    if (topologyOnly) {
+                        return new TopologyEdge(edge.f0.getSource(), edge.f0.getTarget(), currentTime,
+                                Long.MAX_VALUE, edge.f1);
+                    }
                     Map<String, Object> properties = new HashMap<>();
                     properties.put("partitionID", edge.f1);
                     properties.put("sourceVertexId", edge.f0.getSource());
@@ -125,34 +213,70 @@ public class makeSimpleTemporalEdgeStream implements Serializable {
                                                                     Integer numberOfPartitions,
                                                                     String filepath,
                                                                     Boolean makeInf) {
+        return getEdgePartitionedStream(env, numberOfPartitions, filepath, makeInf, false);
+    }
+
+    // See getVertexPartitionedStream for topologyOnly.
+    public static SimpleTemporalEdgeStream getEdgePartitionedStream(StreamExecutionEnvironment env,
+                                                                    Integer numberOfPartitions,
+                                                                    String filepath,
+                                                                    Boolean makeInf,
+                                                                    boolean topologyOnly) {
+        return getEdgePartitionedStream(env, numberOfPartitions, filepath, makeInf, topologyOnly, "dbh");
+    }
+
+    // The edges are partitioned by "dbh", "hdrf" or "2ps", see PartitionEdges.
+    public static SimpleTemporalEdgeStream getEdgePartitionedStream(StreamExecutionEnvironment env,
+                                                                    Integer numberOfPartitions,
+                                                                    String filepath,
+                                                                    Boolean makeInf,
+                                                                    boolean topologyOnly,
+                                                                    String edgePartitioner) {
+        return getEdgePartitionedStream(env, numberOfPartitions, filepath, makeInf, topologyOnly, edgePartitioner,
+                true);
+    }
+
+    // Without trackQuality the partitioner only reports its assignments, see PartitionEdges.
+    public static SimpleTemporalEdgeStream getEdgePartitionedStream(StreamExecutionEnvironment env,
+                                                                    Integer numberOfPartitions,
+                                                                    String filepath,
+                                                                    Boolean makeInf,
+                                                                    boolean topologyOnly,
+                                                                    String edgePartitioner,
+                                                                    boolean trackQuality) {
         boolean cont = makeInf;
         env.setParallelism(numberOfPartitions);
-        DataStream<Edge<Long, String>> edges;
+        if (topologyOnly) {
+            // Registered, so the serializer of TemporalEdge writes a tag instead of the class name for each edge.
+            env.getConfig().registerPojoType(TopologyEdge.class);
+        }
 
-            edges = env.readTextFile(filepath)
-                    .filter(new FilterFunction<String>() {
-                        @Override
-                        public boolean filter(String s) {
-                            return !s.isBlank() && !s.startsWith("#");
-                        }
-                    })
-                    .map(new MapFunction<String, Edge<Long, String>>() {
-                        @Override
-                        public Edge<Long, String> map(String s) {
-                            String[] fields = s.split("\\s");
-                            long src = Long.parseLong(fields[0]);
-                            long trg = Long.parseLong(fields[1]);
-                            return new Edge<>(src, trg, null);
-                        }
-                    });
-        //}
-        DataStream<Tuple2<Edge<Long, String>, Integer>> partitionedStream =
-                new PartitionEdges<Long, String>().getPartitionedEdges(edges, numberOfPartitions);
+        DataStream<Edge<Long, Long>> edges;
+        if (BinaryAdjacencyFile.isBinary(filepath)) {
+            edges = env.addSource(BinaryAdjacencySource.edges(filepath));
+        } else {
+            // An optional third column is the timestamp of the edge, used as its validFrom. The file is read once.
+            // The checkpoints keep the split and offset of every reader, but Flink 1.10 only checkpoints while all
+            // tasks run: once the monitoring source has handed out all splits it finishes, and there are no
+            // checkpoints for the rest of the job.
+            edges = env.readFile(new EdgeListInputFormat(new org.apache.flink.core.fs.Path(filepath)), filepath,
+                    FileProcessingMode.PROCESS_ONCE, 60000L);
+        }
+        DataStream<Tuple2<Edge<Long, Long>, Integer>> partitionedStream =
+                new PartitionEdges<Long, Long>().getPartitionedEdges(edges, numberOfPartitions, edgePartitioner,
+                        filepath, trackQuality);
         GradoopIdSet graphId = new GradoopIdSet();
         long currentTime = System.currentTimeMillis();
-        DataStream<TemporalEdge> tempEdges = partitionedStream.map(new MapFunction<Tuple2<Edge<Long, String>, Integer>, TemporalEdge>() {
+        DataStream<TemporalEdge> tempEdges = partitionedStream.map(new MapFunction<Tuple2<Edge<Long, Long>, Integer>, TemporalEdge>() {
             @Override
-            public TemporalEdge map(Tuple2<Edge<Long, String>, Integer> edge) throws Exception {
+            public TemporalEdge map(Tuple2<Edge<Long, Long>, Integer> edge) throws Exception {
+                // Edges without a timestamp get the one the stream was made at.
+                long validFrom = edge.f0.getValue() == EdgeLineParser.NO_TIMESTAMP ? currentTime
+                        : edge.f0.getValue();
+                if (topologyOnly) {
+                    return new TopologyEdge(edge.f0.getSource(), edge.f0.getTarget(), validFrom, Long.MAX_VALUE,
+                            edge.f1);
+                }
                 Map<String, Object> properties = new HashMap<>();
                 properties.put("sourceVertexId", edge.f0.getSource());
                 properties.put("targetVertexId", edge.f0.getTarget());
@@ -164,7 +288,7 @@ public class makeSimpleTemporalEdgeStream implements Serializable {
                         new GradoopId(edge.f0.getTarget().intValue(), 0, (short) 0, 0), //trg
                         Properties.createFromMap(properties),
                         graphId,
-                        currentTime, //validFrom
+                        validFrom, //validFrom
                         Long.MAX_VALUE //validTo
                 );
             }
@@ -205,22 +329,12 @@ public class makeSimpleTemporalEdgeStream implements Serializable {
     private static class FennelPartitioner<T> implements Serializable, Partitioner<T> {
         private static final long serialVersionUID = 1L;
         CustomKeySelector2 keySelector;
-        private double k;  //no. of partitions
-        private double alpha = 0.0;  //parameters for formula
-        private double gamma = 0.0;
-        private double loadlimit = 0.0;     //k*v+n/n
-        private double n = 0.0;        // no of vertices
-        private double m = 0.0;        //no. of edges
+        private final FennelScore score;
         StoredVertexPartitionState currentState;
 
         public FennelPartitioner(CustomKeySelector2 keySelector, int k, int n, int m) {
             this.keySelector = keySelector;
-            this.k = (double) k;
-            this.n = (double) n;
-            this.m = (double) m;
-            this.alpha = ((Math.pow(k, 0.5) * Math.pow(n, 1.5)) + m) / Math.pow(n, 1.5);
-            this.gamma = 1.5;
-            this.loadlimit = (k * 1.1 + n) / k;
+            this.score = new FennelScore(k, n, m);
             this.currentState = new StoredVertexPartitionState(k);
         }
 
@@ -240,79 +354,29 @@ public class makeSimpleTemporalEdgeStream implements Serializable {
             int machine_id = -1;
 
 
-            StoredVertex first_vertex = currentState.getRecord(source);
-            StoredVertex[] n_vertices = new StoredVertex[neighbours.size()];
-
+            ReplicaTable replicas = currentState.getReplicaTable();
+            int first_vertex = currentState.getRecord(source);
+            // Replicas of the neighbours per partition, in one pass over their bitmasks.
+            int[] occurences = score.newHistogram();
             for (int i = 0; i < neighbours.size(); i++) {
-                n_vertices[i] = currentState.getRecord((Long) neighbours.get(i));
-
+                replicas.countReplicas(currentState.getRecord((Long) neighbours.get(i)), occurences);
             }
+            machine_id = score.choose();
 
-            LinkedList<Integer> candidates = new LinkedList<Integer>();
-            double MAX_SCORE = Double.NEGATIVE_INFINITY;
-
-            for (int p = 0; p < numPartitions; p++) {
-
-                int occurences = 0;
-                for (int i = 0; i < neighbours.size(); i++) {
-
-                    if (n_vertices[i].hasReplicaInPartition(p)) {
-                        occurences++;
-                    }
-
-                }
-                double SCORE_m = -1;
-                if (currentState.getMachineVerticesLoad(p) <= loadlimit) {
-                    SCORE_m = (double) occurences - alpha * gamma * Math.pow((double) currentState.getMachineVerticesLoad(p), gamma - 1);
-                } else if (currentState.getMachineVerticesLoad(p) > loadlimit) {
-                    SCORE_m = Double.NaN;
-                }
-
-                if (SCORE_m > MAX_SCORE) {
-                    MAX_SCORE = SCORE_m;
-                    candidates.clear();
-                    candidates.add(p);
-                } else if (SCORE_m == MAX_SCORE) {
-                    candidates.add(p);
-                }
-
-            }
-
-
-            if (candidates.isEmpty()) {
-                System.out.println("ERROR: GreedyObjectiveFunction.performStep -> candidates.isEmpty()");
-                System.out.println("MAX_SCORE: " + MAX_SCORE);
-                System.exit(-1);
-            }
-
-            //*** PICK A RANDOM ELEMENT FROM CANDIDATES
-            Random r = new Random();
-            int choice = r.nextInt(candidates.size());
-            machine_id = candidates.get(choice);
-
-
-            if (currentState.getClass() == StoredVertexPartitionState.class) {
-                StoredVertexPartitionState cord_state = (StoredVertexPartitionState) currentState;
-                //NEW UPDATE RECORDS RULE TO UPDATE THE SIZE OF THE PARTITIONS EXPRESSED AS THE NUMBER OF VERTICES THEY CONTAINS
-                if (!first_vertex.hasReplicaInPartition(machine_id)) {
-                    first_vertex.addPartition(machine_id);
-                    cord_state.incrementMachineLoadVertices(machine_id);
-                }
-
-            } else {
-                //1-UPDATE RECORDS
-                if (!first_vertex.hasReplicaInPartition(machine_id)) {
-                    first_vertex.addPartition(machine_id);
-                }
-
+            //NEW UPDATE RECORDS RULE TO UPDATE THE SIZE OF THE PARTITIONS EXPRESSED AS THE NUMBER OF VERTICES THEY CONTAINS
+            if (replicas.addPartition(first_vertex, machine_id)) {
+                currentState.incrementMachineLoadVertices(machine_id);
+                score.addLoad(machine_id);
             }
             return machine_id;
         }
     }
 
+    // Reads the adjacency lists of ELtoAL, as text lines "src:[a, b, c]" or as a BinaryAdjacencyFile.
     public static DataStream<Tuple2<Long, List<Long>>> getVertices(StreamExecutionEnvironment env, String filepath) throws IOException {
-
-        List<Tuple2<Long, List<Long>>> vertices = new ArrayList<>();
+        if (BinaryAdjacencyFile.isBinary(filepath)) {
+            return env.addSource(BinaryAdjacencySource.vertices(filepath));
+        }
 
         return env.readTextFile(filepath)
                 .map(new MapFunction<String, Tuple2<Long, List<Long>>>() {
@@ -0,0 +1,61 @@
+package gellyStreamingMaster.Gradoop;
+
+import org.apache.flink.api.common.ExecutionConfig;
+import org.apache.flink.api.common.TaskInfo;
+import org.apache.flink.api.common.functions.util.RuntimeUDFContext;
+import org.apache.flink.metrics.groups.UnregisteredMetricsGroup;
+import org.apache.flink.streaming.api.functions.source.SourceFunction;
+import org.apache.flink.streaming.api.watermark.Watermark;
+
+import java.util.HashMap;
+import java.util.function.Consumer;
+
+/**
+ * Runs rich functions and sources outside of a job, as subtask subtask of subtasks.
+ */
+public class FunctionTestUtils {
+
+    public static RuntimeUDFContext runtimeContext(String name, int subtasks, int subtask) {
+        return runtimeContext(name, subtasks, subtask, new ExecutionConfig());
+    }
+
+    public static RuntimeUDFContext runtimeContext(String name, int subtasks, int subtask, ExecutionConfig config) {
+        return new RuntimeUDFContext(new TaskInfo(name, subtasks, subtask, subtasks, 0),
+                FunctionTestUtils.class.getClassLoader(), config, new HashMap<>(), new HashMap<>(),
+                new UnregisteredMetricsGroup());
+    }
+
+    /**
+     * @return A SourceContext that hands every record to collect, right away.
+     */
+    public static <T> SourceFunction.SourceContext<T> collectingContext(Consumer<T> collect) {
+        return new SourceFunction.SourceContext<T>() {
+            @Override
+            public void collect(T record) {
+                collect.accept(record);
+            }
+
+            @Override
+            public void collectWithTimestamp(T record, long timestamp) {
+                collect(record);
+            }
+
+            @Override
+            public void emitWatermark(Watermark mark) {
+            }
+
+            @Override
+            public void markAsTemporarilyIdle() {
+            }
+
+            @Override
+            public Object getCheckpointLock() {
+                return this;
+            }
+
+            @Override
+            public void close() {
+            }
+        };
+    }
+}
@@ -0,0 +1,70 @@
+package gellyStreamingMaster.Gradoop;
+
+import org.apache.flink.api.common.state.MapState;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+
+// MapState on a HashMap, as the heap backend would give for one key.
+class HeapMapState<K, V> implements MapState<K, V> {
+
+    final HashMap<K, V> map = new HashMap<>();
+    int puts = 0;
+
+    @Override
+    public V get(K key) {
+        return map.get(key);
+    }
+
+    @Override
+    public void put(K key, V value) {
+        puts++;
+        map.put(key, value);
+    }
+
+    @Override
+    public void putAll(Map<K, V> map) {
+        map.forEach(this::put);
+    }
+
+    @Override
+    public void remove(K key) {
+        map.remove(key);
+    }
+
+    @Override
+    public boolean contains(K key) {
+        return map.containsKey(key);
+    }
+
+    @Override
+    public Iterable<Map.Entry<K, V>> entries() {
+        return map.entrySet();
+    }
+
+    @Override
+    public Iterable<K> keys() {
+        return map.keySet();
+    }
+
+    @Override
+    public Iterable<V> values() {
+        return map.values();
+    }
+
+    @Override
+    public Iterator<Map.Entry<K, V>> iterator() {
+        return map.entrySet().iterator();
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return map.isEmpty();
+    }
+
+    @Override
+    public void clear() {
+        map.clear();
+    }
+}
@@ -0,0 +1,95 @@
+package gellyStreamingMaster.Gradoop;
+
+import gellyStreaming.gradoop.model.AdjacencyBatchSerializer;
+import gellyStreaming.gradoop.util.GradoopIdUtil;
+import org.apache.flink.api.common.ExecutionConfig;
+import org.apache.flink.api.common.typeinfo.TypeHint;
+import org.apache.flink.api.common.typeinfo.TypeInformation;
+import org.apache.flink.api.common.typeutils.TypeSerializer;
+import org.apache.flink.core.memory.DataInputDeserializer;
+import org.apache.flink.core.memory.DataOutputSerializer;
+import org.gradoop.common.model.impl.id.GradoopId;
+import org.gradoop.common.model.impl.id.GradoopIdSet;
+import org.gradoop.common.model.impl.properties.Properties;
+import org.gradoop.temporal.model.impl.pojo.TemporalEdge;
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class TestAdjacencyBatchSerializer {
+
+    @Test
+    public void testTopologyRoundTripIsSmaller() throws Exception {
+        /*
+         * A batch as the AL operators build it, written with the default serializer and with the batch serializer.
+         */
+        HashMap<GradoopId, HashMap<GradoopId, TemporalEdge>> batch = randomBatch(new Random(3), 500, 2000, 4000L);
+
+        DataOutputSerializer compact = new DataOutputSerializer(1024);
+        new AdjacencyBatchSerializer().serialize(batch, compact);
+        HashMap<GradoopId, HashMap<GradoopId, TemporalEdge>> read = new AdjacencyBatchSerializer().deserialize(
+                new DataInputDeserializer(compact.getSharedBuffer(), 0, compact.length()));
+
+        assertEquals(batch.keySet(), read.keySet());
+        for (GradoopId source : batch.keySet()) {
+            assertEquals(batch.get(source).keySet(), read.get(source).keySet());
+            for (GradoopId target : batch.get(source).keySet()) {
+                TemporalEdge edge = read.get(source).get(target);
+                assertEquals(source, edge.getSourceId());
+                assertEquals(target, edge.getTargetId());
+                assertEquals(batch.get(source).get(target).getValidFrom(), edge.getValidFrom());
+                assertEquals(Long.valueOf(4000L), edge.getValidTo());
+                assertNull(edge.getProperties());
+            }
+        }
+
+        TypeSerializer<HashMap<GradoopId, HashMap<GradoopId, TemporalEdge>>> defaultSerializer =
+                TypeInformation.of(new TypeHint<HashMap<GradoopId, HashMap<GradoopId, TemporalEdge>>>() {
+                }).createSerializer(new ExecutionConfig());
+        DataOutputSerializer full = new DataOutputSerializer(1024);
+        defaultSerializer.serialize(batch, full);
+        assertTrue(compact.length() * 5 < full.length());
+    }
+
+    @Test
+    public void testEdgeDataAndOtherIds() throws Exception {
+        /*
+         * Random GradoopIds, which are written as 12 bytes, and the full edges.
+         */
+        HashMap<GradoopId, HashMap<GradoopId, TemporalEdge>> batch = new HashMap<>();
+        GradoopId source = GradoopId.get();
+        GradoopId target = GradoopIdUtil.fromLong(7);
+        TemporalEdge edge = new TemporalEdge(GradoopId.get(), "label", source, target, Properties.create(),
+                new GradoopIdSet(), 1L, 2L);
+        batch.computeIfAbsent(source, k -> new HashMap<>()).put(target, edge);
+
+        DataOutputSerializer out = new DataOutputSerializer(256);
+        new AdjacencyBatchSerializer(true).serialize(batch, out);
+        // A serializer without edge data reads it as well.
+        HashMap<GradoopId, HashMap<GradoopId, TemporalEdge>> read = new AdjacencyBatchSerializer().deserialize(
+                new DataInputDeserializer(out.getSharedBuffer(), 0, out.length()));
+        TemporalEdge readEdge = read.get(source).get(target);
+        assertEquals(edge.getId(), readEdge.getId());
+        assertEquals("label", readEdge.getLabel());
+        assertEquals(Long.valueOf(2L), readEdge.getValidTo());
+    }
+
+    private static HashMap<GradoopId, HashMap<GradoopId, TemporalEdge>> randomBatch(Random random, int vertices,
+                                                                                   int edges, long validTo) {
+        HashMap<GradoopId, HashMap<GradoopId, TemporalEdge>> batch = new HashMap<>();
+        for (int i = 0; i < edges; i++) {
+            GradoopId source = GradoopIdUtil.fromLong(random.nextInt(vertices));
+            GradoopId target = GradoopIdUtil.fromLong(random.nextInt(vertices));
+            Properties properties = Properties.create();
+            properties.set("partitionID", 1);
+            batch.computeIfAbsent(source, k -> new HashMap<>()).put(target, new TemporalEdge(GradoopId.get(), null,
+                    source, target, properties, new GradoopIdSet(), validTo - 1000 + random.nextInt(10), validTo));
+        }
+        return batch;
+    }
+}
@@ -0,0 +1,104 @@
+package gellyStreamingMaster.Gradoop;
+
+import gellyStreaming.gradoop.util.BinaryAdjacencyFile;
+import gellyStreaming.gradoop.util.BinaryAdjacencySource;
+import org.apache.flink.graph.Edge;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class TestBinaryAdjacencyFile {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testWriteAndRead() throws Exception {
+        String path = folder.newFile("graph.bal").getPath();
+        try (BinaryAdjacencyFile.Writer writer = new BinaryAdjacencyFile.Writer(path, false)) {
+            writer.add(-5, new long[]{-7, 3, 1L << 40}, 3);
+            writer.add(2, new long[]{}, 0);
+            writer.add(1L << 40, new long[]{-5, 2, 3, 4, 1000}, 5);
+        }
+        assertTrue(BinaryAdjacencyFile.isBinary(path));
+
+        try (BinaryAdjacencyFile.Reader reader = new BinaryAdjacencyFile.Reader(path)) {
+            assertEquals(3, reader.getVertexCount());
+            assertEquals(8, reader.getEdgeCount());
+            assertFalse(reader.isUndirected());
+            assertTrue(reader.next());
+            assertEquals(-5, reader.getVertexId());
+            assertArrayEquals(new long[]{-7, 3, 1L << 40}, Arrays.copyOf(reader.getNeighbours(), reader.getDegree()));
+            assertTrue(reader.next());
+            assertEquals(2, reader.getVertexId());
+            assertEquals(0, reader.getDegree());
+            assertTrue(reader.next());
+            assertEquals(1L << 40, reader.getVertexId());
+            assertArrayEquals(new long[]{-5, 2, 3, 4, 1000}, Arrays.copyOf(reader.getNeighbours(), reader.getDegree()));
+            assertFalse(reader.next());
+        }
+    }
+
+    @Test
+    public void testTextFileIsNotBinary() throws Exception {
+        File text = folder.newFile("graph.txt");
+        Files.writeString(text.toPath(), "1:[2, 3]\n");
+        assertFalse(BinaryAdjacencyFile.isBinary(text.getPath()));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testUnsortedNeighbours() throws Exception {
+        try (BinaryAdjacencyFile.Writer writer = new BinaryAdjacencyFile.Writer(folder.newFile().getPath(), false)) {
+            writer.add(1, new long[]{3, 2}, 2);
+        }
+    }
+
+    @Test
+    public void testSubtasksReadAllEdgesOnce() throws Exception {
+        /*
+         * An undirected star around vertex 0 and a path over 1..99. The edge sources of 3 subtasks together have to
+         * emit every edge once, although vertex 0 alone holds about a third of the neighbours.
+         */
+        String path = folder.newFile("star.bal").getPath();
+        Set<List<Long>> expected = new HashSet<>();
+        try (BinaryAdjacencyFile.Writer writer = new BinaryAdjacencyFile.Writer(path, true)) {
+            long[] hub = new long[99];
+            for (int i = 0; i < 99; i++) {
+                hub[i] = i + 1;
+                expected.add(Arrays.asList(0L, i + 1L));
+            }
+            writer.add(0, hub, 99);
+            for (long vertex = 1; vertex < 100; vertex++) {
+                long[] neighbours = vertex == 99 ? new long[]{0, 98} : vertex == 1 ? new long[]{0, 2}
+                        : new long[]{0, vertex - 1, vertex + 1};
+                writer.add(vertex, neighbours, neighbours.length);
+                if (vertex < 99) {
+                    expected.add(Arrays.asList(vertex, vertex + 1));
+                }
+            }
+        }
+
+        List<List<Long>> emitted = new ArrayList<>();
+        for (int subtask = 0; subtask < 3; subtask++) {
+            BinaryAdjacencySource<Edge<Long, Long>> source = BinaryAdjacencySource.edges(path);
+            source.setRuntimeContext(FunctionTestUtils.runtimeContext("source", 3, subtask));
+            source.run(FunctionTestUtils.collectingContext(
+                    edge -> emitted.add(Arrays.asList(edge.getSource(), edge.getTarget()))));
+        }
+        assertEquals(expected.size(), emitted.size());
+        assertEquals(expected, new HashSet<>(emitted));
+    }
+}
@@ -0,0 +1,170 @@
+package gellyStreamingMaster.Gradoop;
+
+import gellyStreaming.gradoop.model.AdjacencyBatchSerializer;
+import gellyStreaming.gradoop.model.CompactAdjacencyBatch;
+import gellyStreaming.gradoop.model.CompactAdjacencyList;
+import gellyStreaming.gradoop.model.SealedAdjacencyBatch;
+import gellyStreaming.gradoop.model.SealedBatchSerializer;
+import gellyStreaming.gradoop.util.GradoopIdUtil;
+import org.apache.flink.core.memory.DataInputDeserializer;
+import org.apache.flink.core.memory.DataOutputSerializer;
+import org.gradoop.common.model.impl.id.GradoopId;
+import org.gradoop.temporal.model.impl.pojo.TemporalEdge;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class TestCompactAdjacencyList {
+
+    @Test
+    public void testBatchesMatchAdjacencyList() throws Exception {
+        /*
+         * Two batches, with a duplicate edge in the first one, read back through the MapState view.
+         */
+        HeapMapState<Long, SealedAdjacencyBatch> sealedBatches = new HeapMapState<>();
+        CompactAdjacencyList adjacencyList = new CompactAdjacencyList(sealedBatches);
+        adjacencyList.addEdge(100L, 3, 1);
+        adjacencyList.addEdge(100L, 1, 2);
+        adjacencyList.addEdge(100L, 1, 3);
+        adjacencyList.addEdge(100L, 1, 2);
+        adjacencyList.addEdge(200L, 2, 4);
+
+        assertTrue(adjacencyList.contains(100L));
+        assertTrue(adjacencyList.contains(200L));
+        // Only the batch that was left is in the state, the open one is not sealed yet.
+        assertEquals(1, sealedBatches.map.size());
+        assertEquals(4, adjacencyList.getEdgeCount());
+
+        CompactAdjacencyBatch batch = adjacencyList.getBatch(100L);
+        assertEquals(100L, batch.getValidTo());
+        assertEquals(2, batch.getVertexCount());
+        assertEquals(3, batch.getEdgeCount());
+        assertEquals(1L, batch.getVertex(0));
+        assertEquals(2, batch.getDegree(0));
+        assertEquals(2L, batch.getNeighbour(0, 0));
+        assertEquals(3L, batch.getNeighbour(0, 1));
+        assertTrue(batch.containsEdge(3, 1));
+        assertFalse(batch.containsEdge(3, 2));
+        assertEquals(-1, batch.indexOf(2));
+
+        HashMap<GradoopId, HashMap<GradoopId, TemporalEdge>> batch200 = adjacencyList.get(200L);
+        assertEquals(1, batch200.size());
+        assertTrue(batch200.get(GradoopIdUtil.fromLong(2)).containsKey(GradoopIdUtil.fromLong(4)));
+        // Built once, until the batch changes.
+        assertSame(batch200, adjacencyList.get(200L));
+        assertEquals(2, sealedBatches.map.size());
+
+        adjacencyList.remove(100L);
+        assertFalse(adjacencyList.contains(100L));
+        assertEquals(1, adjacencyList.getEdgeCount());
+    }
+
+    @Test
+    public void testSealingAgainMergesTheBatch() throws Exception {
+        /*
+         * Edges for a batch that was sealed already, as when the algorithm sealed it before the slide ended. The
+         * sealed version is replaced, not changed, and the cached HashMap of it is dropped.
+         */
+        HeapMapState<Long, SealedAdjacencyBatch> sealedBatches = new HeapMapState<>();
+        CompactAdjacencyList adjacencyList = new CompactAdjacencyList(sealedBatches);
+        adjacencyList.addEdge(100L, 1, 2);
+        CompactAdjacencyBatch first = adjacencyList.getBatch(100L);
+        HashMap<GradoopId, HashMap<GradoopId, TemporalEdge>> firstMap = adjacencyList.get(100L);
+        adjacencyList.addEdge(100L, 1, 3);
+        adjacencyList.addEdge(100L, 5, 1);
+        adjacencyList.seal();
+
+        assertEquals(1, first.getEdgeCount());
+        assertEquals(3, adjacencyList.getBatch(100L).getEdgeCount());
+        assertNotSame(firstMap, adjacencyList.get(100L));
+        assertEquals(2, adjacencyList.get(100L).size());
+
+        List<Long> visited = new ArrayList<>();
+        adjacencyList.forEachSource(100L, (source, neighbours, offset, degree) -> {
+            visited.add(source);
+            for (int i = offset; i < offset + degree; i++) {
+                visited.add(neighbours[i]);
+            }
+        });
+        assertEquals(List.of(1L, 2L, 3L, 5L, 1L), visited);
+    }
+
+    @Test
+    public void testSealingAtEverySlideOnlyMergesTheNewEdges() throws Exception {
+        /*
+         * A batch that is sealed twice without changing, the second seal merges the new edges into the sorted ones
+         * without reading the sealed batch back. A checkpoint then only holds the edges added after the last seal,
+         * a restored list merges them with the sealed batch of the keyed state.
+         */
+        HeapMapState<Long, SealedAdjacencyBatch> sealedBatches = new HeapMapState<>();
+        CompactAdjacencyList adjacencyList = new CompactAdjacencyList(sealedBatches);
+        adjacencyList.addEdge(100L, 4, 1);
+        adjacencyList.addEdge(100L, 2, 7);
+        adjacencyList.seal();
+        assertEquals(0, adjacencyList.getUnsealedEdges().length);
+        adjacencyList.addEdge(100L, 3, 5);
+        adjacencyList.addEdge(100L, 2, 6);
+        adjacencyList.addEdge(100L, 4, 1);
+        assertEquals(5, adjacencyList.getEdgeCount());
+        assertArrayEquals(new long[]{3, 5, 2, 6, 4, 1}, adjacencyList.getUnsealedEdges());
+        adjacencyList.seal();
+
+        CompactAdjacencyBatch batch = adjacencyList.getBatch(100L);
+        assertEquals(4, batch.getEdgeCount());
+        assertEquals(3, batch.getVertexCount());
+        assertEquals(6L, batch.getNeighbour(0, 0));
+        assertEquals(7L, batch.getNeighbour(0, 1));
+        assertTrue(batch.containsEdge(3, 5));
+        assertTrue(batch.containsEdge(4, 1));
+
+        adjacencyList.addEdge(100L, 9, 2);
+        long[] unsealed = adjacencyList.getUnsealedEdges();
+        assertArrayEquals(new long[]{9, 2}, unsealed);
+        CompactAdjacencyList restored = new CompactAdjacencyList(sealedBatches);
+        restored.restoreUnsealedEdges(100L, unsealed);
+        assertEquals(Long.valueOf(100L), restored.getOpenValidTo());
+        assertEquals(5, restored.getBatch(100L).getEdgeCount());
+        assertTrue(restored.getBatch(100L).containsEdge(2, 7));
+        assertTrue(restored.getBatch(100L).containsEdge(9, 2));
+        assertEquals(1, sealedBatches.map.size());
+    }
+
+    @Test
+    public void testSerializedAsAdjacencyListBatch() throws Exception {
+        /*
+         * Queryable state clients read the batches with the AdjacencyBatchSerializer, checkpoints read them back
+         * with the SealedBatchSerializer.
+         */
+        CompactAdjacencyBatch batch = CompactAdjacencyBatch.fromEdges(4000L,
+                new long[]{7, 3, 3, 900000}, new long[]{1, 9, 2, 7}, 4);
+        DataOutputSerializer out = new DataOutputSerializer(64);
+        new SealedBatchSerializer().serialize(batch, out);
+
+        HashMap<GradoopId, HashMap<GradoopId, TemporalEdge>> read = new AdjacencyBatchSerializer().deserialize(
+                new DataInputDeserializer(out.getSharedBuffer(), 0, out.length()));
+        assertEquals(3, read.size());
+        assertEquals(2, read.get(GradoopIdUtil.fromLong(3)).size());
+        TemporalEdge edge = read.get(GradoopIdUtil.fromLong(900000)).get(GradoopIdUtil.fromLong(7));
+        assertEquals(Long.valueOf(4000L), edge.getValidTo());
+
+        CompactAdjacencyBatch restored = (CompactAdjacencyBatch) new SealedBatchSerializer().deserialize(
+                new DataInputDeserializer(out.getSharedBuffer(), 0, out.length()));
+        assertEquals(4000L, restored.getValidTo());
+        assertEquals(3, restored.getVertexCount());
+        assertEquals(4, restored.getEdgeCount());
+        assertTrue(restored.containsEdge(3, 9));
+        assertTrue(restored.containsEdge(900000, 7));
+        assertFalse(restored.containsEdge(7, 3));
+    }
+
+    @Test
+    public void testGradoopIdLongConversion() {
+        GradoopId id = new GradoopId(2147483647, 0, (short) 0, 0);
+        assertEquals((long) GradoopIdUtil.getLong(id), GradoopIdUtil.toLong(id));
+        assertEquals(id, GradoopIdUtil.fromLong(GradoopIdUtil.toLong(id)));
+    }
+}
@@ -0,0 +1,73 @@
+package gellyStreamingMaster.Gradoop;
+
+import gellyStreaming.gradoop.util.CountingEdgeBloomFilter;
+import gellyStreaming.gradoop.util.EdgeBloomFilter;
+import org.junit.Test;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class TestEdgeBloomFilter {
+
+    @Test
+    public void testAddedEdgesAreFoundAndRemovedOnesCleared() {
+        int numBits = EdgeBloomFilter.optimalNumBits(1000, 0.01);
+        CountingEdgeBloomFilter counting = new CountingEdgeBloomFilter(numBits,
+                EdgeBloomFilter.optimalNumHashes(1000, numBits));
+        for (long i = 0; i < 1000; i++) {
+            counting.add(i, i + 1);
+        }
+        EdgeBloomFilter filter = counting.getFilter();
+        int falsePositives = 0;
+        for (long i = 0; i < 1000; i++) {
+            assertTrue(filter.mightContain(i, i + 1));
+            if (filter.mightContain(i + 1, i)) {
+                falsePositives++;
+            }
+        }
+        assertTrue("Too many false positives: " + falsePositives, falsePositives < 50);
+
+        // Edge 5->6 is in two batches, purging one batch keeps it in the filter.
+        counting.add(5, 6);
+        for (long i = 0; i < 1000; i++) {
+            counting.remove(i, i + 1);
+        }
+        assertTrue(filter.mightContain(5, 6));
+        counting.remove(5, 6);
+        for (long i = 0; i < 1000; i++) {
+            assertFalse(filter.mightContain(i, i + 1));
+        }
+    }
+
+    @Test
+    public void testUnion() {
+        EdgeBloomFilter first = new EdgeBloomFilter(1024, 3);
+        EdgeBloomFilter second = new EdgeBloomFilter(1024, 3);
+        first.add(1, 2);
+        second.add(3, 4);
+        first.union(second);
+        assertTrue(first.mightContain(1, 2));
+        assertTrue(first.mightContain(3, 4));
+    }
+
+    @Test
+    public void testPublishedCopyAndRemoteFilters() {
+        /*
+         * A published copy keeps the edges it had while the counting filter goes on, and the filters of the remote
+         * partitions are checked one by one.
+         */
+        CountingEdgeBloomFilter counting = new CountingEdgeBloomFilter(1024, 3);
+        counting.add(1, 2);
+        EdgeBloomFilter published = counting.getFilter().copy();
+        counting.remove(1, 2);
+        counting.add(7, 8);
+        assertTrue(published.mightContain(1, 2));
+        assertFalse(counting.getFilter().mightContain(1, 2));
+
+        EdgeBloomFilter[] remote = {published, counting.getFilter()};
+        assertTrue(EdgeBloomFilter.mightContainAny(remote, 1, 2));
+        assertTrue(EdgeBloomFilter.mightContainAny(remote, 7, 8));
+        assertFalse(EdgeBloomFilter.mightContainAny(new EdgeBloomFilter[0], 1, 2));
+        assertTrue(EdgeBloomFilter.mightContainAny(null, 1, 2));
+    }
+}
@@ -0,0 +1,164 @@
+package gellyStreamingMaster.Gradoop;
+
+import gellyStreaming.gradoop.util.EdgeLineParser;
+import gellyStreaming.gradoop.util.EdgeListInputFormat;
+import gellyStreaming.gradoop.util.EdgeListScanner;
+import org.apache.flink.configuration.Configuration;
+import org.apache.flink.core.fs.FileInputSplit;
+import org.apache.flink.core.fs.Path;
+import org.apache.flink.graph.Edge;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class TestEdgeListInputFormat {
+
+    private static final String EDGES = "# src trg\n1 2\n\n3\t4 1589000000\r\n# 5 6\n-7,8\n  9 10 0.0714 2009\n11 12";
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testScanner() throws Exception {
+        File input = folder.newFile("edges.txt");
+        Files.writeString(input.toPath(), EDGES);
+        assertEquals(Arrays.asList("1 2", "3 4 1589000000", "-7 8", "9 10", "11 12"), scan(input, 0, input.length()));
+    }
+
+    @Test
+    public void testRangesReadEveryLineOnce() throws Exception {
+        // Two ranges cut at every byte of the file, together they always read all edges once and in order.
+        File input = folder.newFile("edges.txt");
+        Files.writeString(input.toPath(), EDGES);
+        List<String> all = scan(input, 0, input.length());
+        for (long cut = 0; cut <= input.length(); cut++) {
+            List<String> edges = scan(input, 0, cut);
+            edges.addAll(scan(input, cut, input.length()));
+            assertEquals("cut at " + cut, all, edges);
+        }
+    }
+
+    @Test
+    public void testScannerReadsLinesAcrossItsBuffer() throws Exception {
+        /*
+         * A file larger than the buffer of the scanner, so lines are cut by the end of the buffer, and one line longer
+         * than the buffer. The scanner reads the same edges as the format.
+         */
+        File input = folder.newFile("large.txt");
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < 150000; i++) {
+            text.append(i).append('\t').append(i * 31 % 150000).append(' ').append(1589000000L + i).append('\n');
+        }
+        text.append("1 2 3");
+        for (int i = 0; i < (1 << 20); i++) {
+            text.append(" 4");
+        }
+        text.append("\n5 6\n");
+        Files.writeString(input.toPath(), text);
+
+        List<String> read = new ArrayList<>();
+        EdgeListInputFormat.readAll(input.getPath(), (src, trg) -> read.add(src + " " + trg));
+        List<String> scanned = new ArrayList<>();
+        try (EdgeListScanner scanner = new EdgeListScanner(input.getPath())) {
+            while (scanner.next()) {
+                scanned.add(scanner.getSource() + " " + scanner.getTarget());
+                assertTrue(scanner.hasTimestamp() || scanner.getSource() == 5);
+            }
+        }
+        assertEquals(150002, scanned.size());
+        assertEquals(read, scanned);
+    }
+
+    @Test
+    public void testSplitsReadEveryLineOnce() throws Exception {
+        /*
+         * The format reads the lines like the scanner, with the third column as value and NO_TIMESTAMP for lines
+         * without one. However many splits the file is cut into, together they read all edges once and in order.
+         */
+        File input = folder.newFile("edges.txt");
+        Files.writeString(input.toPath(), EDGES);
+        List<String> expected = Arrays.asList("1 2", "3 4 1589000000", "-7 8", "9 10", "11 12");
+        for (int splits = 1; splits <= 24; splits++) {
+            EdgeListInputFormat format = format(input);
+            List<String> edges = new ArrayList<>();
+            FileInputSplit[] inputSplits = format.createInputSplits(splits);
+            assertTrue(inputSplits.length >= Math.min(splits, 2));
+            for (FileInputSplit split : inputSplits) {
+                format.open(split);
+                read(format, edges, Integer.MAX_VALUE);
+                format.close();
+            }
+            assertEquals(splits + " splits", expected, edges);
+        }
+
+        List<String> read = new ArrayList<>();
+        EdgeListInputFormat.readAll(input.getPath(), (src, trg) -> read.add(src + " " + trg));
+        assertEquals(Arrays.asList("1 2", "3 4", "-7 8", "9 10", "11 12"), read);
+    }
+
+    @Test
+    public void testReopenAtCheckpointedOffset() throws Exception {
+        /*
+         * A reader that is restored from the offset of a checkpoint goes on with the next edge after it.
+         */
+        File input = folder.newFile("many.txt");
+        StringBuilder text = new StringBuilder();
+        List<String> expected = new ArrayList<>();
+        for (int i = 0; i < 1000; i++) {
+            text.append(i).append(' ').append(i * 7 % 1000).append('\n');
+            expected.add(i + " " + (i * 7 % 1000));
+        }
+        Files.writeString(input.toPath(), text);
+
+        EdgeListInputFormat format = format(input);
+        FileInputSplit split = format.createInputSplits(1)[0];
+        format.open(split);
+        List<String> edges = new ArrayList<>();
+        read(format, edges, 400);
+        Long offset = format.getCurrentState();
+        format.close();
+
+        EdgeListInputFormat restored = format(input);
+        restored.reopen(split, offset);
+        read(restored, edges, Integer.MAX_VALUE);
+        restored.close();
+        assertEquals(expected, edges);
+    }
+
+    private static EdgeListInputFormat format(File input) {
+        EdgeListInputFormat format = new EdgeListInputFormat(new Path(input.toURI()));
+        format.configure(new Configuration());
+        return format;
+    }
+
+    // Reads up to max edges, with one reused record as the readers of Flink do.
+    private static void read(EdgeListInputFormat format, List<String> edges, int max) throws Exception {
+        Edge<Long, Long> edge = new Edge<>();
+        for (int i = 0; i < max && !format.reachedEnd(); i++) {
+            if (format.nextRecord(edge) != null) {
+                edges.add(edge.getSource() + " " + edge.getTarget()
+                        + (edge.getValue() != EdgeLineParser.NO_TIMESTAMP ? " " + edge.getValue() : ""));
+            }
+        }
+    }
+
+    private static List<String> scan(File input, long start, long end) throws Exception {
+        List<String> edges = new ArrayList<>();
+        try (EdgeListScanner scanner = new EdgeListScanner(input.getPath(), start, end)) {
+            while (scanner.next()) {
+                edges.add(scanner.getSource() + " " + scanner.getTarget()
+                        + (scanner.hasTimestamp() ? " " + scanner.getTimestamp() : ""));
+            }
+        }
+        return edges;
+    }
+}
@@ -0,0 +1,111 @@
+package gellyStreamingMaster.Gradoop;
+
+import gellyStreaming.gradoop.util.EdgeListSorter;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class TestEdgeListSorter {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testSmallEdgeList() throws Exception {
+        File input = folder.newFile("edges.txt");
+        Files.writeString(input.toPath(), "# a comment\n3 1\n1\t2 1589000000\n\n3 1\n-4 3\r\n2 2\n");
+        File temp = folder.newFolder();
+
+        List<String> lists = new ArrayList<>();
+        EdgeListSorter sorter = new EdgeListSorter(temp, 4, 2);
+        sorter.sort(input.getPath(), false, (vertex, neighbours, degree) ->
+                lists.add(vertex + ":" + Arrays.toString(Arrays.copyOf(neighbours, degree))));
+        assertEquals(Arrays.asList("-4:[3]", "1:[2]", "2:[2]", "3:[1]"), lists);
+        assertEquals(5, sorter.getEdgesRead());
+        assertEquals(4, sorter.getNeighbourEntries());
+
+        lists.clear();
+        sorter.sort(input.getPath(), true, (vertex, neighbours, degree) ->
+                lists.add(vertex + ":" + Arrays.toString(Arrays.copyOf(neighbours, degree))));
+        assertEquals(Arrays.asList("-4:[3]", "1:[2, 3]", "2:[1, 2]", "3:[-4, 1]"), lists);
+        // The runs are deleted again.
+        assertEquals(0, temp.list().length);
+    }
+
+    @Test
+    public void testManyRuns() throws Exception {
+        // 3 edges per run of an undirected graph and 2000 edges, so the runs are merged in more than one pass.
+        Random random = new Random(7);
+        TreeMap<Long, TreeSet<Long>> expected = new TreeMap<>();
+        StringBuilder edges = new StringBuilder();
+        for (int i = 0; i < 2000; i++) {
+            long src = random.nextInt(300);
+            long trg = random.nextInt(300);
+            edges.append(src).append(' ').append(trg).append('\n');
+            expected.computeIfAbsent(src, v -> new TreeSet<>()).add(trg);
+            expected.computeIfAbsent(trg, v -> new TreeSet<>()).add(src);
+        }
+        File input = folder.newFile("random.txt");
+        Files.writeString(input.toPath(), edges);
+
+        TreeMap<Long, TreeSet<Long>> sorted = new TreeMap<>();
+        List<Long> order = new ArrayList<>();
+        EdgeListSorter sorter = new EdgeListSorter(folder.newFolder(), 6, 4);
+        sorter.sort(input.getPath(), true, (vertex, neighbours, degree) -> {
+            order.add(vertex);
+            TreeSet<Long> list = new TreeSet<>();
+            for (int i = 0; i < degree; i++) {
+                list.add(neighbours[i]);
+            }
+            assertEquals(degree, list.size());
+            sorted.put(vertex, list);
+        });
+        assertEquals(expected, sorted);
+        assertEquals(new ArrayList<>(expected.keySet()), order);
+        long entries = 0;
+        for (Map.Entry<Long, TreeSet<Long>> entry : expected.entrySet()) {
+            entries += entry.getValue().size();
+        }
+        assertEquals(entries, sorter.getNeighbourEntries());
+    }
+
+    @Test
+    public void testParseErrorDeletesTheSpilledRuns() throws Exception {
+        /*
+         * A broken line after enough edges for several runs, the runs spilled before it are deleted again.
+         */
+        StringBuilder edges = new StringBuilder();
+        for (int i = 0; i < 100; i++) {
+            edges.append(i).append(' ').append(i + 1).append('\n');
+        }
+        edges.append("100 x\n");
+        File input = folder.newFile("broken.txt");
+        Files.writeString(input.toPath(), edges);
+        File temp = folder.newFolder();
+
+        EdgeListSorter sorter = new EdgeListSorter(temp, 4, 2);
+        try {
+            sorter.sort(input.getPath(), false, (vertex, neighbours, degree) -> {
+            });
+            fail("The broken line is not an edge.");
+        } catch (IOException e) {
+            assertTrue(e.getMessage(), e.getMessage().contains("Expected a number"));
+        }
+        assertEquals(0, temp.list().length);
+    }
+}
@@ -0,0 +1,97 @@
+package gellyStreamingMaster.Gradoop;
+
+import gellyStreaming.gradoop.partitioner.CustomKeySelector;
+import gellyStreaming.gradoop.partitioner.HDRFPartitioner;
+import gellyStreaming.gradoop.partitioner.PartitionQuality;
+import gellyStreaming.gradoop.partitioner.TwoPhasePartitioner;
+import gellyStreaming.gradoop.util.KeyGen;
+import org.apache.flink.api.common.functions.Partitioner;
+import org.apache.flink.graph.Edge;
+import org.apache.flink.runtime.state.KeyGroupRangeAssignment;
+import org.junit.Test;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class TestEdgePartitioners {
+
+    private static final int PARTITIONS = 4;
+
+    // 40 cliques of 10 vertices, the edges in random order.
+    private static List<Edge<Long, String>> cliques() {
+        List<Edge<Long, String>> edges = new ArrayList<>();
+        for (long clique = 0; clique < 400; clique += 10) {
+            for (long u = clique; u < clique + 10; u++) {
+                for (long v = u + 1; v < clique + 10; v++) {
+                    edges.add(new Edge<>(u, v, ""));
+                }
+            }
+        }
+        Collections.shuffle(edges, new Random(1));
+        return edges;
+    }
+
+    private static PartitionQuality partition(Partitioner<Long> partitioner, CustomKeySelector<Long, String> keySelector,
+                                              List<Edge<Long, String>> edges) throws Exception {
+        KeyGen keyGenerator = new KeyGen(PARTITIONS, KeyGroupRangeAssignment.computeDefaultMaxParallelism(PARTITIONS));
+        HashMap<Integer, Integer> partitionOfKey = new HashMap<>();
+        for (int i = 0; i < PARTITIONS; i++) {
+            partitionOfKey.put(keyGenerator.next(i), i);
+        }
+        PartitionQuality quality = new PartitionQuality(PARTITIONS);
+        for (Edge<Long, String> edge : edges) {
+            int key = partitioner.partition(keySelector.getKey(edge), PARTITIONS);
+            assertTrue(partitionOfKey.containsKey(key));
+            quality.addEdge(edge.getSource(), edge.getTarget(), partitionOfKey.get(key));
+        }
+        return quality;
+    }
+
+    @Test
+    public void testHDRF() throws Exception {
+        CustomKeySelector<Long, String> keySelector = new CustomKeySelector<>(0);
+        PartitionQuality quality = partition(new HDRFPartitioner<>(keySelector, PARTITIONS), keySelector, cliques());
+        assertEquals(1800, quality.getEdgeCount());
+        assertTrue(quality.getBalance() < 1.1);
+        assertTrue(quality.getReplicationFactor() < PARTITIONS);
+    }
+
+    @Test
+    public void testTwoPhaseFollowsClusters() throws Exception {
+        List<Edge<Long, String>> edges = cliques();
+        File file = File.createTempFile("edges", ".txt");
+        file.deleteOnExit();
+        List<String> lines = new ArrayList<>();
+        lines.add("# src trg");
+        for (Edge<Long, String> edge : edges) {
+            lines.add(edge.getSource() + " " + edge.getTarget());
+        }
+        Files.write(file.toPath(), lines);
+
+        CustomKeySelector<Long, String> keySelector = new CustomKeySelector<>(0);
+        PartitionQuality quality = partition(new TwoPhasePartitioner<>(keySelector, PARTITIONS, file.getPath()),
+                keySelector, edges);
+        assertEquals(1800, quality.getEdgeCount());
+        // Whole cliques fit in a partition, so few vertices are cut.
+        assertTrue(quality.getReplicationFactor() < 1.3);
+        assertTrue(quality.getBalance() < 1.2);
+
+        /*
+         * Another subtask on the same file uses the clustering of the first one instead of reading the file again,
+         * so it still follows the clusters after the file is gone.
+         */
+        assertTrue(file.delete());
+        PartitionQuality shared = partition(new TwoPhasePartitioner<>(keySelector, PARTITIONS, file.getPath()),
+                keySelector, edges);
+        assertEquals(1800, shared.getEdgeCount());
+        assertTrue(shared.getReplicationFactor() < 1.3);
+    }
+}
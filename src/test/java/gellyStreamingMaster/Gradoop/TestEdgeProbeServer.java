@@ -0,0 +1,131 @@
+package gellyStreamingMaster.Gradoop;
+
+import gellyStreaming.gradoop.model.EdgeProbeServer;
+import gellyStreaming.gradoop.model.LocalPartitionRegistry;
+import gellyStreaming.gradoop.util.GradoopIdUtil;
+import org.gradoop.common.model.impl.id.GradoopId;
+import org.gradoop.temporal.model.impl.pojo.TemporalEdge;
+import org.junit.Test;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.util.HashMap;
+import java.util.List;
+import java.util.TreeMap;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class TestEdgeProbeServer {
+
+    @Test
+    public void testProbeAnswers() throws Exception {
+        /*
+         * Edge 1->2 in batch 100, edge 1->3 in batch 200. Probes only look at batches within [from, to].
+         */
+        EdgeProbeServer server = new EdgeProbeServer();
+        try {
+            server.register(7, 100L, batch(1, 2));
+            server.register(7, 200L, batch(1, 3));
+            long[] src = {1, 1, 4, 1};
+            long[] trg = {2, 3, 1, 5};
+
+            long[][] answer = server.probe(7, src, trg, 0L, 150L);
+            assertEquals(0b0001L, answer[0][0]);
+            assertEquals(0b1011L, answer[1][0]);
+
+            answer = server.probe(7, src, trg, 0L, Long.MAX_VALUE);
+            assertEquals(0b0011L, answer[0][0]);
+
+            server.unregister(7, 100L);
+            answer = server.probe(7, src, trg, 0L, 150L);
+            assertEquals(0L, answer[0][0]);
+            assertEquals(0L, answer[1][0]);
+        } finally {
+            server.close();
+        }
+    }
+
+    @Test
+    public void testNeighboursPerBatch() throws Exception {
+        /*
+         * Vertex 1 has neighbours in both batches, vertex 4 in none. Batches before the seal mark are sealed.
+         */
+        EdgeProbeServer server = new EdgeProbeServer();
+        try {
+            server.register(7, 100L, batch(1, 2));
+            server.register(7, 200L, batch(1, 3));
+            assertEquals(Long.MIN_VALUE, server.getSealedBefore(7));
+            server.sealBefore(7, 200L);
+            server.sealBefore(7, 150L);
+            assertEquals(200L, server.getSealedBefore(7));
+
+            List<TreeMap<Long, long[]>> neighbours = server.neighbours(7, new long[]{1, 4}, 100L, 200L);
+            assertEquals(2, neighbours.get(0).size());
+            assertArrayEquals(new long[]{2}, neighbours.get(0).get(100L));
+            assertArrayEquals(new long[]{3}, neighbours.get(0).get(200L));
+            assertTrue(neighbours.get(1).isEmpty());
+
+            neighbours = server.neighbours(7, new long[]{1}, 150L, 300L);
+            assertEquals(1, neighbours.get(0).size());
+            assertTrue(neighbours.get(0).containsKey(200L));
+        } finally {
+            server.close();
+        }
+    }
+
+    @Test
+    public void testConnectionsNeedTheSecret() throws Exception {
+        /*
+         * A connection with the wrong secret is refused, one with the right secret gets its probes answered.
+         */
+        EdgeProbeServer server = new EdgeProbeServer(new LocalPartitionRegistry(), InetAddress.getLoopbackAddress(),
+                "secret");
+        try {
+            server.register(7, 100L, batch(1, 2));
+            String endpoint = server.getEndpoint();
+            assertTrue(endpoint.startsWith(InetAddress.getLoopbackAddress().getHostAddress() + ":"));
+            int port = Integer.parseInt(endpoint.substring(endpoint.lastIndexOf(':') + 1));
+
+            try (Socket socket = new Socket(InetAddress.getLoopbackAddress(), port)) {
+                DataOutputStream out = new DataOutputStream(socket.getOutputStream());
+                DataInputStream in = new DataInputStream(socket.getInputStream());
+                out.writeUTF("guess");
+                assertEquals(EdgeProbeServer.STATUS_ERROR, in.readByte());
+                assertEquals("Wrong secret.", in.readUTF());
+                assertEquals(-1, in.read());
+            }
+
+            try (Socket socket = new Socket(InetAddress.getLoopbackAddress(), port)) {
+                DataOutputStream out = new DataOutputStream(socket.getOutputStream());
+                DataInputStream in = new DataInputStream(socket.getInputStream());
+                out.writeUTF("secret");
+                assertEquals(EdgeProbeServer.STATUS_OK, in.readByte());
+                out.writeByte(EdgeProbeServer.OP_PROBE);
+                out.writeInt(7);
+                out.writeLong(0L);
+                out.writeLong(Long.MAX_VALUE);
+                out.writeInt(1);
+                out.writeLong(1L);
+                out.writeLong(2L);
+                assertEquals(EdgeProbeServer.STATUS_OK, in.readByte());
+                assertEquals(1, in.readInt());
+                assertEquals(1L, in.readLong());
+                assertEquals(1L, in.readLong());
+            }
+        } finally {
+            server.close();
+        }
+    }
+
+    private static HashMap<GradoopId, HashMap<GradoopId, TemporalEdge>> batch(long src, long trg) {
+        HashMap<GradoopId, HashMap<GradoopId, TemporalEdge>> batch = new HashMap<>();
+        HashMap<GradoopId, TemporalEdge> neighbours = new HashMap<>();
+        neighbours.put(GradoopIdUtil.fromLong(trg), null);
+        batch.put(GradoopIdUtil.fromLong(src), neighbours);
+        return batch;
+    }
+}
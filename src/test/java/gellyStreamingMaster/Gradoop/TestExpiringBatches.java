@@ -0,0 +1,58 @@
+package gellyStreamingMaster.Gradoop;
+
+import gellyStreaming.gradoop.util.ExpiringBatches;
+import org.junit.Test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class TestExpiringBatches {
+
+    @Test
+    public void testBatchesExpireAtTheirSlide() {
+        /*
+         * Window 1000, slide 100, starting at 0. Timers fire at multiples of 100, a batch leaves at the first
+         * timer at or after its validTo.
+         */
+        ExpiringBatches expiringBatches = new ExpiringBatches(1000, 100L);
+        expiringBatches.add(1000);
+        expiringBatches.add(1050);
+        expiringBatches.add(1099);
+        expiringBatches.add(1100);
+        expiringBatches.add(1101);
+
+        assertEquals(0, expiringBatches.expire(900).length);
+        assertArrayEquals(new long[]{1000}, expiringBatches.expire(1000));
+        assertArrayEquals(new long[]{1050, 1099, 1100}, expiringBatches.expire(1100));
+        assertEquals(1, expiringBatches.size());
+        assertEquals(101, expiringBatches.getLastBatchTimestamp());
+
+        // A missed timer, the next one takes the batches of both slides.
+        expiringBatches.add(1250);
+        assertArrayEquals(new long[]{1101, 1250}, expiringBatches.expire(1300));
+        assertTrue(expiringBatches.isEmpty());
+    }
+
+    @Test
+    public void testOutOfOrderBatches() {
+        /*
+         * Event time input adds a batch far ahead before an earlier one.
+         */
+        ExpiringBatches expiringBatches = new ExpiringBatches(200, 100L);
+        expiringBatches.add(5000);
+        expiringBatches.add(300);
+        assertArrayEquals(new long[]{300}, expiringBatches.expire(300));
+        assertEquals(0, expiringBatches.expire(4900).length);
+        assertArrayEquals(new long[]{5000}, expiringBatches.expire(Long.MAX_VALUE));
+    }
+
+    @Test
+    public void testWithoutSlideNothingExpires() {
+        ExpiringBatches expiringBatches = new ExpiringBatches(1000, null);
+        assertEquals(Long.MIN_VALUE, expiringBatches.getLastBatchTimestamp());
+        expiringBatches.add(1500);
+        assertEquals(0, expiringBatches.expire(Long.MAX_VALUE).length);
+        assertEquals(500, expiringBatches.getLastBatchTimestamp());
+    }
+}
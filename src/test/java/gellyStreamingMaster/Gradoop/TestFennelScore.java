@@ -0,0 +1,36 @@
+package gellyStreamingMaster.Gradoop;
+
+import gellyStreaming.gradoop.partitioner.FennelScore;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+public class TestFennelScore {
+
+    @Test
+    public void testNeighboursAgainstLoad() {
+        // 2 partitions, 10 vertices and 10 edges: alpha is about 1.73, the load limit 6.1.
+        FennelScore score = new FennelScore(2, 10, 10);
+        int[] histogram = score.newHistogram();
+        histogram[1] = 1;
+        assertEquals(1, score.best());
+
+        // With 1 vertex more the penalty of a partition grows by about 2.6, more than one neighbour.
+        score.addLoad(1);
+        histogram = score.newHistogram();
+        histogram[1] = 1;
+        assertEquals(0, score.best());
+        histogram[1] = 3;
+        assertEquals(1, score.best());
+
+        // A partition over the load limit is never picked, with all of them over it there is no best one.
+        score.setLoad(1, 7);
+        assertEquals(0, score.best());
+        assertEquals(0, score.choose());
+        score.setLoad(0, 8);
+        assertEquals(-1, score.best());
+        assertEquals(1, score.getLeastLoaded());
+        // Then the vertex goes to the least loaded partition.
+        assertEquals(1, score.choose());
+    }
+}
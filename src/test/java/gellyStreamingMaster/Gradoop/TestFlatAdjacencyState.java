@@ -0,0 +1,74 @@
+package gellyStreamingMaster.Gradoop;
+
+import gellyStreaming.gradoop.model.FlatAdjacencyState;
+import gellyStreaming.gradoop.util.GradoopIdUtil;
+import org.apache.flink.api.common.state.MapState;
+import org.apache.flink.api.java.tuple.Tuple2;
+import org.gradoop.common.model.impl.id.GradoopId;
+import org.gradoop.temporal.model.impl.pojo.TemporalEdge;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class TestFlatAdjacencyState {
+
+    @Test
+    public void testBlocksPerSource() throws Exception {
+        /*
+         * Two flushes into batch 100 and one into 200, with duplicates within and across flushes. Every source
+         * gets one block per batch and a flush only writes the blocks that changed.
+         */
+        HeapMapState<Tuple2<Long, Long>, long[]> blocks = new HeapMapState<>();
+        HeapMapState<Tuple2<Long, Integer>, long[]> sourceChunks = new HeapMapState<>();
+        HeapMapState<Long, Integer> batchChunks = new HeapMapState<>();
+        FlatAdjacencyState state = new FlatAdjacencyState(blocks, sourceChunks, batchChunks);
+
+        assertEquals(3, state.addEdges(100L, new long[]{3, 1, 1, 1}, new long[]{1, 3, 2, 2}, 4));
+        assertEquals(1, state.addEdges(100L, new long[]{1, 5, 9}, new long[]{3, 6, 9}, 2));
+        assertEquals(3, blocks.puts);
+        // The second flush only appends its new source 5, it doesn't rewrite 1 and 3.
+        assertEquals(2, sourceChunks.puts);
+        assertArrayEquals(new long[]{5}, sourceChunks.get(Tuple2.of(100L, 1)));
+        assertEquals(1, state.addEdges(200L, new long[]{2}, new long[]{4}, 1));
+
+        assertArrayEquals(new long[]{1, 3, 5}, state.getSources(100L));
+        assertArrayEquals(new long[]{2, 3}, state.getNeighbours(100L, 1));
+        assertArrayEquals(new long[]{6}, state.getNeighbours(100L, 5));
+        assertNull(state.getNeighbours(100L, 2));
+        assertEquals(5, state.getEdgeCount());
+        assertEquals(4, blocks.map.size());
+
+        HashMap<GradoopId, HashMap<GradoopId, TemporalEdge>> batch = state.get(100L);
+        assertEquals(3, batch.size());
+        TemporalEdge edge = batch.get(GradoopIdUtil.fromLong(1)).get(GradoopIdUtil.fromLong(3));
+        assertEquals(GradoopIdUtil.fromLong(1), edge.getSourceId());
+        assertEquals(Long.valueOf(100L), edge.getValidTo());
+        assertNull(state.get(300L));
+        assertSame(batch, state.get(100L));
+
+        List<Long> visited = new ArrayList<>();
+        state.forEachSource(100L, (source, neighbours, offset, degree) -> {
+            visited.add(source);
+            for (int i = offset; i < offset + degree; i++) {
+                visited.add(neighbours[i]);
+            }
+        });
+        assertEquals(List.of(1L, 2L, 3L, 3L, 1L, 5L, 6L), visited);
+
+        MapState<Long, HashMap<GradoopId, HashMap<GradoopId, TemporalEdge>>> read = FlatAdjacencyState.readBatches(blocks);
+        assertEquals(3, read.get(100L).size());
+        assertEquals(2, read.get(100L).get(GradoopIdUtil.fromLong(1)).size());
+        assertTrue(read.get(200L).get(GradoopIdUtil.fromLong(2)).containsKey(GradoopIdUtil.fromLong(4)));
+
+        state.remove(100L);
+        assertFalse(state.contains(100L));
+        assertTrue(state.contains(200L));
+        assertEquals(1, blocks.map.size());
+        assertEquals(1, sourceChunks.map.size());
+        assertEquals(1, state.getEdgeCount());
+    }
+}
@@ -0,0 +1,103 @@
+package gellyStreamingMaster.Gradoop;
+
+import gellyStreaming.gradoop.model.IncrementalTriangleCount;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class TestIncrementalTriangleCount {
+
+    @Test
+    public void testCountFollowsSlidingWindow() {
+        /*
+         * Random batches over 60 vertices, so edges repeat within and across batches. The window holds three
+         * batches, after every insert and purge the count has to match a recount of the window.
+         */
+        Random random = new Random(7);
+        IncrementalTriangleCount triangleCount = new IncrementalTriangleCount();
+        HashMap<Long, List<long[]>> batches = new HashMap<>();
+        long maxTriangles = 0;
+        for (long validTo = 100; validTo <= 1000; validTo += 100) {
+            List<long[]> batch = new ArrayList<>();
+            for (int i = 0; i < 200; i++) {
+                long[] edge = {random.nextInt(60), random.nextInt(60)};
+                batch.add(edge);
+                triangleCount.addEdge(validTo, edge[0], edge[1]);
+            }
+            batches.put(validTo, batch);
+            assertEquals(recount(batches), triangleCount.getTriangles());
+
+            triangleCount.remove(validTo - 200);
+            batches.remove(validTo - 200);
+            assertEquals(recount(batches), triangleCount.getTriangles());
+            maxTriangles = Math.max(maxTriangles, triangleCount.getTriangles());
+        }
+        assertTrue(maxTriangles > 0);
+
+        triangleCount.remove(900L);
+        triangleCount.remove(1000L);
+        assertEquals(0, triangleCount.getTriangles());
+        assertEquals(0, triangleCount.getEdgeCount());
+        assertEquals(0, triangleCount.getBatchCount());
+    }
+
+    @Test
+    public void testRestoredFromItsBatches() {
+        /*
+         * A window written to a checkpoint with getBatches and added again with addBatch has the same count, also
+         * for a batch with only a self loop. Purging a restored batch takes its triangles out again.
+         */
+        Random random = new Random(3);
+        IncrementalTriangleCount triangleCount = new IncrementalTriangleCount();
+        for (long validTo = 100; validTo <= 300; validTo += 100) {
+            for (int i = 0; i < 150; i++) {
+                triangleCount.addEdge(validTo, random.nextInt(40), random.nextInt(40));
+            }
+        }
+        triangleCount.addEdge(400, 5, 5);
+
+        IncrementalTriangleCount restored = new IncrementalTriangleCount();
+        for (Map.Entry<Long, long[]> batch : triangleCount.getBatches().entrySet()) {
+            restored.addBatch(batch.getKey(), batch.getValue());
+        }
+        assertEquals(triangleCount.getTriangles(), restored.getTriangles());
+        assertEquals(triangleCount.getEdgeCount(), restored.getEdgeCount());
+        assertEquals(4, restored.getBatchCount());
+        assertTrue(restored.contains(400));
+
+        triangleCount.remove(100);
+        restored.remove(100);
+        assertEquals(triangleCount.getTriangles(), restored.getTriangles());
+    }
+
+    private static long recount(HashMap<Long, List<long[]>> batches) {
+        HashMap<Long, HashSet<Long>> neighbours = new HashMap<>();
+        for (List<long[]> batch : batches.values()) {
+            for (long[] edge : batch) {
+                if (edge[0] != edge[1]) {
+                    neighbours.computeIfAbsent(edge[0], k -> new HashSet<>()).add(edge[1]);
+                    neighbours.computeIfAbsent(edge[1], k -> new HashSet<>()).add(edge[0]);
+                }
+            }
+        }
+        long triangles = 0;
+        for (long u : neighbours.keySet()) {
+            for (long v : neighbours.get(u)) {
+                for (long w : neighbours.get(v)) {
+                    if (u < v && v < w && neighbours.get(u).contains(w)) {
+                        triangles++;
+                    }
+                }
+            }
+        }
+        return triangles;
+    }
+}
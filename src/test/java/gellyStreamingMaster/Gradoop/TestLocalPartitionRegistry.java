@@ -0,0 +1,76 @@
+package gellyStreamingMaster.Gradoop;
+
+import gellyStreaming.gradoop.model.LocalPartitionRegistry;
+import gellyStreaming.gradoop.model.QueryState;
+import gellyStreaming.gradoop.util.GradoopIdUtil;
+import org.apache.flink.api.common.state.MapState;
+import org.gradoop.common.model.impl.id.GradoopId;
+import org.gradoop.temporal.model.impl.pojo.TemporalEdge;
+import org.junit.Test;
+
+import java.util.HashMap;
+
+import static org.junit.Assert.*;
+
+public class TestLocalPartitionRegistry {
+
+    @Test
+    public void testStateIsReadOnlySnapshot() throws Exception {
+        /*
+         * Partition 3 has batches 100 and 200. A state taken before 100 is purged still has it, and can't be changed.
+         */
+        LocalPartitionRegistry registry = new LocalPartitionRegistry();
+        assertNull(registry.getState(3));
+        registry.register(3, 100L, batch(1, 2));
+        registry.register(3, 200L, batch(1, 3));
+
+        MapState<Long, HashMap<GradoopId, HashMap<GradoopId, TemporalEdge>>> state = registry.getState(3);
+        registry.unregister(3, 100L);
+        assertTrue(state.contains(100L));
+        assertTrue(state.get(200L).get(GradoopIdUtil.fromLong(1)).containsKey(GradoopIdUtil.fromLong(3)));
+        assertFalse(registry.getState(3).contains(100L));
+        try {
+            state.remove(200L);
+            fail();
+        } catch (UnsupportedOperationException expected) { }
+
+        // A restored partition keeps the versions published since.
+        HashMap<Long, HashMap<GradoopId, HashMap<GradoopId, TemporalEdge>>> restored = new HashMap<>();
+        restored.put(200L, batch(4, 5));
+        restored.put(300L, batch(4, 6));
+        registry.registerAll(3, restored);
+        assertEquals(2, registry.getBatches(3).size());
+        assertTrue(registry.getBatches(3).get(200L).containsKey(GradoopIdUtil.fromLong(1)));
+
+        registry.unregisterAll(3);
+        assertNull(registry.getState(3));
+    }
+
+    @Test
+    public void testQueryStateReadsLocalPartitions() throws Exception {
+        /*
+         * Without a client to the proxy, partition 1 can only be answered from the registry of the scope.
+         */
+        QueryState QS = new QueryState();
+        QS.enableLocalPartitionAccess();
+        LocalPartitionRegistry registry = LocalPartitionRegistry.acquire(QS.getPartitionScope());
+        try {
+            registry.register(1, 100L, batch(1, 2));
+            assertTrue(QS.getALStateAsync(1).get().contains(100L));
+            HashMap<GradoopId, HashMap<GradoopId, TemporalEdge>> vertices = QS.getALVerticesFromToAllPartitions(
+                    0, new Integer[]{0, 1}, new GradoopId[]{GradoopIdUtil.fromLong(1)}, 0L, 100L);
+            assertEquals(1, vertices.size());
+        } finally {
+            LocalPartitionRegistry.release(QS.getPartitionScope());
+        }
+        assertNull(LocalPartitionRegistry.lookup(QS.getPartitionScope()));
+    }
+
+    private static HashMap<GradoopId, HashMap<GradoopId, TemporalEdge>> batch(long src, long trg) {
+        HashMap<GradoopId, HashMap<GradoopId, TemporalEdge>> batch = new HashMap<>();
+        HashMap<GradoopId, TemporalEdge> neighbours = new HashMap<>();
+        neighbours.put(GradoopIdUtil.fromLong(trg), null);
+        batch.put(GradoopIdUtil.fromLong(src), neighbours);
+        return batch;
+    }
+}
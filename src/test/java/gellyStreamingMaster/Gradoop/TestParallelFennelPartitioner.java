@@ -0,0 +1,187 @@
+package gellyStreamingMaster.Gradoop;
+
+import gellyStreaming.gradoop.partitioner.ParallelFennelPartitioner;
+import gellyStreaming.gradoop.partitioner.PartitionQuality;
+import gellyStreaming.gradoop.partitioner.PartitionerMetrics;
+import org.apache.flink.api.java.tuple.Tuple2;
+import org.apache.flink.configuration.Configuration;
+import org.apache.flink.graph.Edge;
+import org.apache.flink.metrics.Gauge;
+import org.apache.flink.metrics.Metric;
+import org.apache.flink.metrics.MetricGroup;
+import org.apache.flink.metrics.groups.UnregisteredMetricsGroup;
+import org.apache.flink.util.Collector;
+import org.apache.flink.util.InstantiationUtil;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class TestParallelFennelPartitioner {
+
+    @Test
+    public void testQuality() {
+        PartitionQuality quality = new PartitionQuality(2);
+        quality.addEdge(1, 2, 0);
+        quality.addEdge(1, 3, 1);
+        quality.addEdge(2, 3, 0);
+        // Vertex 1 and 3 are in both partitions, 2 only in the first.
+        assertEquals(5.0 / 3, quality.getReplicationFactor(), 1e-9);
+        assertEquals(2.0 / 1.5, quality.getBalance(), 1e-9);
+
+        PartitionQuality other = new PartitionQuality(2);
+        other.addEdge(2, 4, 1);
+        quality.merge(other);
+        assertEquals(4, quality.getVertexCount());
+        assertEquals(1.0, quality.getBalance(), 1e-9);
+    }
+
+    @Test
+    public void testTotalOfTheSubtasksInThisJVM() {
+        /*
+         * Two subtasks of a report, the total comes when the second one closes. A report without replicas only
+         * has the balance.
+         */
+        PartitionQuality.register("report", 2, true);
+        PartitionQuality.register("report", 2, true);
+        PartitionQuality first = new PartitionQuality(2);
+        first.addEdge(1, 2, 0);
+        PartitionQuality second = new PartitionQuality(2);
+        second.addEdge(1, 3, 1);
+        second.addEdge(2, 3, 0);
+        assertNull(PartitionQuality.mergeSubtask("report", first));
+        PartitionQuality total = PartitionQuality.mergeSubtask("report", second);
+        assertEquals(5.0 / 3, total.getReplicationFactor(), 1e-9);
+        assertEquals(3, total.getEdgeCount());
+        assertEquals(3, total.getVertexLoad(0));
+
+        PartitionQuality.register("balance", 2, false);
+        PartitionQuality edges = new PartitionQuality(2, false);
+        edges.addEdge(1, 2, 0);
+        edges.addEdge(1, 3, 1);
+        total = PartitionQuality.mergeSubtask("balance", edges);
+        assertEquals(0, total.getVertexCount());
+        assertTrue(Double.isNaN(total.getReplicationFactor()));
+        assertEquals(1.0, total.getBalance(), 1e-9);
+    }
+
+    @Test
+    public void testMetrics() {
+        PartitionQuality quality = new PartitionQuality(2);
+        Map<String, Metric> metrics = new HashMap<>();
+        PartitionerMetrics partitionerMetrics = new PartitionerMetrics(new RecordingGroup("", metrics), "test", quality);
+        quality.addEdge(1, 2, 0);
+        quality.addEdge(1, 3, 1);
+        quality.addEdge(2, 3, 0);
+        partitionerMetrics.assigned();
+        partitionerMetrics.assigned();
+
+        // The gauges read the quality when they are reported, not when they are registered.
+        assertEquals(5.0 / 3, (Double) ((Gauge<?>) metrics.get("partitioner.replicationFactor")).getValue(), 1e-9);
+        assertEquals(2.0 / 1.5, (Double) ((Gauge<?>) metrics.get("partitioner.loadImbalance")).getValue(), 1e-9);
+        assertEquals(2L, ((Gauge<?>) metrics.get("partitioner.partition.0.edges")).getValue());
+        assertEquals(3L, ((Gauge<?>) metrics.get("partitioner.partition.0.vertices")).getValue());
+        assertEquals(1L, ((Gauge<?>) metrics.get("partitioner.partition.1.edges")).getValue());
+        assertEquals(2L, ((Gauge<?>) metrics.get("partitioner.partition.1.vertices")).getValue());
+        String summary = partitionerMetrics.summary();
+        assertTrue(summary, summary.contains("assignments \t2"));
+        assertTrue(summary, summary.contains("edges per partition \t[2, 1]"));
+    }
+
+    @Test
+    public void testSubtasksPartitionAllEdges() throws Exception {
+        /*
+         * 4 subtasks on 4 threads, each with a quarter of 50 cliques of 8 vertices. All edges have to come out with
+         * one of the 4 keys, and a vertex keeps its edges together.
+         */
+        int numPartitions = 4;
+        ParallelFennelPartitioner partitioner = new ParallelFennelPartitioner(numPartitions, 400, 2800, 10);
+        ConcurrentLinkedQueue<Tuple2<Edge<Long, String>, Integer>> output = new ConcurrentLinkedQueue<>();
+        List<Thread> subtasks = new ArrayList<>();
+        for (int subtask = 0; subtask < 4; subtask++) {
+            int first = subtask;
+            ParallelFennelPartitioner instance = InstantiationUtil.clone(partitioner);
+            instance.setRuntimeContext(FunctionTestUtils.runtimeContext("fennel", 4, subtask));
+            subtasks.add(new Thread(() -> {
+                instance.open(new Configuration());
+                Collector<Tuple2<Edge<Long, String>, Integer>> collector = new Collector<>() {
+                    @Override
+                    public void collect(Tuple2<Edge<Long, String>, Integer> record) {
+                        output.add(record);
+                    }
+
+                    @Override
+                    public void close() {
+                    }
+                };
+                for (long vertex = first; vertex < 400; vertex += 4) {
+                    List<Long> neighbours = new ArrayList<>();
+                    long clique = vertex / 8 * 8;
+                    for (long neighbour = clique; neighbour < clique + 8; neighbour++) {
+                        if (neighbour != vertex) {
+                            neighbours.add(neighbour);
+                        }
+                    }
+                    instance.flatMap(Tuple2.of(vertex, neighbours), collector);
+                }
+                instance.close();
+            }));
+        }
+        for (Thread thread : subtasks) {
+            thread.start();
+        }
+        for (Thread thread : subtasks) {
+            thread.join();
+        }
+
+        assertEquals(2800, output.size());
+        Set<Integer> keys = new HashSet<>();
+        for (Tuple2<Edge<Long, String>, Integer> record : output) {
+            keys.add(record.f1);
+        }
+        assertTrue(keys.size() <= numPartitions);
+        for (Tuple2<Edge<Long, String>, Integer> record : output) {
+            for (Tuple2<Edge<Long, String>, Integer> other : output) {
+                if (record.f0.getSource().equals(other.f0.getSource())) {
+                    assertEquals(record.f1, other.f1);
+                }
+            }
+        }
+    }
+
+    // Keeps the metrics by their dotted name.
+    private static class RecordingGroup extends UnregisteredMetricsGroup {
+        private final String prefix;
+        private final Map<String, Metric> metrics;
+
+        RecordingGroup(String prefix, Map<String, Metric> metrics) {
+            this.prefix = prefix;
+            this.metrics = metrics;
+        }
+
+        @Override
+        public <T, G extends Gauge<T>> G gauge(String name, G gauge) {
+            metrics.put(prefix + name, gauge);
+            return gauge;
+        }
+
+        @Override
+        public MetricGroup addGroup(String name) {
+            return new RecordingGroup(prefix + name + ".", metrics);
+        }
+
+        @Override
+        public MetricGroup addGroup(String key, String value) {
+            return addGroup(key).addGroup(value);
+        }
+    }
+}
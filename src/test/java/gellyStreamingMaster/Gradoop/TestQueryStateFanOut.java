@@ -0,0 +1,84 @@
+package gellyStreamingMaster.Gradoop;
+
+import gellyStreaming.gradoop.model.QSBackoff;
+import gellyStreaming.gradoop.model.QueryState;
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class TestQueryStateFanOut {
+
+    @Test
+    public void testFanOutSkipsLocalKeyAndLimitsInFlight() throws Exception {
+        /*
+         * Five partitions, 2 is local. Requests complete later on another thread, at most 2 may be outstanding.
+         */
+        QueryState QS = new QueryState();
+        QS.setMaxInFlight(2);
+        Integer[] allKeys = {0, 1, 2, 3, 4};
+        AtomicInteger outstanding = new AtomicInteger(0);
+        AtomicInteger maxOutstanding = new AtomicInteger(0);
+        HashMap<Integer, Integer> answers = new HashMap<>();
+        QS.fanOut(2, allKeys, key -> {
+            maxOutstanding.accumulateAndGet(outstanding.incrementAndGet(), Math::max);
+            return CompletableFuture.supplyAsync(() -> {
+                try {
+                    Thread.sleep(20);
+                } catch (InterruptedException ignored) { }
+                outstanding.decrementAndGet();
+                return key * 10;
+            });
+        }, answers::put);
+
+        assertEquals(4, answers.size());
+        assertEquals(Integer.valueOf(30), answers.get(3));
+        assertTrue(!answers.containsKey(2));
+        assertTrue(maxOutstanding.get() <= 2);
+    }
+
+    @Test
+    public void testFailedPartitionIsLeftOut() throws Exception {
+        QueryState QS = new QueryState();
+        HashMap<Integer, Integer> answers = new HashMap<>();
+        QS.fanOut(0, new Integer[]{0, 1, 2}, key -> key == 1 ?
+                        CompletableFuture.failedFuture(new RuntimeException("partition down")) :
+                        CompletableFuture.completedFuture(key),
+                answers::put);
+        assertEquals(1, answers.size());
+        assertEquals(Integer.valueOf(2), answers.get(2));
+    }
+
+    @Test
+    public void testThrowingRequestReleasesItsPermit() throws Exception {
+        /*
+         * One request at a time, the request for partition 1 throws instead of returning a future. It is left out
+         * like a failed one and the other partitions are still asked.
+         */
+        QueryState QS = new QueryState();
+        QS.setMaxInFlight(1);
+        HashMap<Integer, Integer> answers = new HashMap<>();
+        int merged = QS.fanOut(0, new Integer[]{0, 1, 2, 3}, key -> {
+            if (key == 1) {
+                throw new IllegalStateException("no endpoint");
+            }
+            return CompletableFuture.completedFuture(key);
+        }, answers::put);
+        assertEquals(2, merged);
+        assertEquals(Integer.valueOf(3), answers.get(3));
+        QS.close();
+    }
+
+    @Test
+    public void testBackoffDelays() {
+        QSBackoff backoff = new QSBackoff(5, 10, 50, 2.);
+        assertEquals(10, backoff.getDelay(1));
+        assertEquals(20, backoff.getDelay(2));
+        assertEquals(40, backoff.getDelay(3));
+        assertEquals(50, backoff.getDelay(4));
+    }
+}
@@ -0,0 +1,59 @@
+package gellyStreamingMaster.Gradoop;
+
+import gellyStreaming.gradoop.model.RemoteNeighbourCache;
+import org.junit.Test;
+
+import java.util.TreeMap;
+
+import static org.junit.Assert.*;
+
+public class TestRemoteNeighbourCache {
+
+    @Test
+    public void testSlidingCoverage() {
+        /*
+         * Vertex 1 of partition 0 is fetched for [100, 300), then only [300, 400) on the next slide. Moving the window
+         * past 100 drops that batch, batches without neighbours are covered all the same.
+         */
+        RemoteNeighbourCache cache = new RemoteNeighbourCache(100);
+        assertEquals(100L, cache.cachedUntil(0, 1, 100L));
+        TreeMap<Long, long[]> fetched = new TreeMap<>();
+        fetched.put(100L, new long[]{2, 3});
+        fetched.put(300L, new long[]{4});
+        cache.put(0, 1, 100L, 300L, fetched);
+        assertEquals(300L, cache.cachedUntil(0, 1, 100L));
+        assertEquals(1, cache.get(0, 1, 100L, 300L).size());
+        assertEquals(3, cache.size());
+
+        TreeMap<Long, long[]> next = new TreeMap<>();
+        next.put(300L, new long[]{4});
+        cache.put(0, 1, 300L, 400L, next);
+        assertEquals(400L, cache.cachedUntil(0, 1, 200L));
+        TreeMap<Long, long[]> cached = cache.get(0, 1, 200L, 400L);
+        assertEquals(1, cached.size());
+        assertArrayEquals(new long[]{4}, cached.get(300L));
+        assertEquals(2, cache.size());
+
+        // Another partition, and a window the entry doesn't reach.
+        assertEquals(200L, cache.cachedUntil(1, 1, 200L));
+        assertEquals(500L, cache.cachedUntil(0, 1, 500L));
+        assertEquals(2, cache.getHits());
+        assertEquals(3, cache.getMisses());
+    }
+
+    @Test
+    public void testLeastRecentlyUsedEviction() {
+        RemoteNeighbourCache cache = new RemoteNeighbourCache(6);
+        TreeMap<Long, long[]> batches = new TreeMap<>();
+        batches.put(100L, new long[]{7, 8});
+        cache.put(0, 1, 100L, 200L, batches);
+        cache.put(0, 2, 100L, 200L, batches);
+        // Vertex 1 was used last, so adding vertex 3 evicts vertex 2.
+        cache.cachedUntil(0, 1, 100L);
+        cache.put(0, 3, 100L, 200L, batches);
+        assertEquals(6, cache.size());
+        assertEquals(200L, cache.cachedUntil(0, 1, 100L));
+        assertEquals(100L, cache.cachedUntil(0, 2, 100L));
+        assertEquals(200L, cache.cachedUntil(0, 3, 100L));
+    }
+}
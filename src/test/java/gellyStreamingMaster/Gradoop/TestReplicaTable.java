@@ -0,0 +1,45 @@
+package gellyStreamingMaster.Gradoop;
+
+import gellyStreaming.gradoop.partitioner.ReplicaTable;
+import org.junit.Test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class TestReplicaTable {
+
+    @Test
+    public void testReplicasAndDegrees() {
+        // More than 64 partitions, so every vertex has two words, and more vertices than the initial capacity.
+        ReplicaTable table = new ReplicaTable(100, 4);
+        for (long vertex = 0; vertex < 1000; vertex++) {
+            int slot = table.getOrAdd(vertex * 7);
+            table.addPartition(slot, (int) (vertex % 100));
+            table.incrementDegree(slot);
+        }
+        assertEquals(1000, table.size());
+        assertEquals(-1, table.find(1));
+
+        int slot = table.getOrAdd(7 * 70);
+        assertTrue(table.hasReplicaInPartition(slot, 70));
+        assertFalse(table.addPartition(slot, 70));
+        assertTrue(table.addPartition(slot, 3));
+        assertEquals(2, table.getReplicas(slot));
+        assertEquals(3, table.getFirstPartition(slot));
+        assertEquals(1, table.getDegree(slot));
+        assertEquals(1001, table.getTotalReplicas());
+
+        int[] counts = new int[100];
+        table.countReplicas(slot, counts);
+        table.countReplicas(table.getOrAdd(7 * 3), counts);
+        int[] expected = new int[100];
+        expected[3] = 2;
+        expected[70] = 1;
+        assertArrayEquals(expected, counts);
+
+        assertEquals(-1, table.getFirstPartition(table.getOrAdd(-5)));
+        assertEquals(1002, table.getTotalReplicas());
+    }
+}
@@ -0,0 +1,136 @@
+package gellyStreamingMaster.Gradoop;
+
+import gellyStreaming.gradoop.model.AdjacencyBatchSerializer;
+import gellyStreaming.gradoop.model.CompactAdjacencyBatch;
+import gellyStreaming.gradoop.model.SealedAdjacencyBatch;
+import gellyStreaming.gradoop.model.SealedBatchSerializer;
+import gellyStreaming.gradoop.model.SegmentStore;
+import gellyStreaming.gradoop.model.TieredAdjacencyList;
+import gellyStreaming.gradoop.util.GradoopIdUtil;
+import org.apache.flink.core.memory.DataInputDeserializer;
+import org.apache.flink.core.memory.DataOutputSerializer;
+import org.gradoop.common.model.impl.id.GradoopId;
+import org.gradoop.temporal.model.impl.pojo.TemporalEdge;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class TestTieredAdjacencyList {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testSealedBatchesAreSegments() throws Exception {
+        /*
+         * Batch 100 is sealed when batch 200 starts, with its duplicate edge once. Adding to 100 again writes a new
+         * segment, purging a batch deletes it.
+         */
+        File directory = new File(folder.getRoot(), "segments");
+        SegmentStore segments = new SegmentStore(directory);
+        HeapMapState<Long, SealedAdjacencyBatch> sealedBatches = new HeapMapState<>();
+        TieredAdjacencyList adjacencyList = new TieredAdjacencyList(1, sealedBatches, segments, null);
+        adjacencyList.addEdge(100L, 3, 1);
+        adjacencyList.addEdge(100L, 1, 3);
+        adjacencyList.addEdge(100L, 1, 2);
+        adjacencyList.addEdge(100L, 1, 2);
+        assertEquals(0, directory.list().length);
+        adjacencyList.addEdge(200L, 2, 4);
+        assertEquals(1, directory.list().length);
+        assertTrue(sealedBatches.get(100L) instanceof TieredAdjacencyList.SegmentBatch);
+        assertTrue(adjacencyList.contains(100L));
+        assertTrue(adjacencyList.contains(200L));
+        assertEquals(4, adjacencyList.getEdgeCount());
+
+        List<Long> visited = new ArrayList<>();
+        adjacencyList.forEachSource(100L, (source, neighbours, offset, degree) -> {
+            visited.add(source);
+            for (int i = offset; i < offset + degree; i++) {
+                visited.add(neighbours[i]);
+            }
+        });
+        assertEquals(List.of(1L, 2L, 3L, 3L, 1L), visited);
+
+        adjacencyList.addEdge(100L, 5, 1);
+        HashMap<GradoopId, HashMap<GradoopId, TemporalEdge>> batch100 = adjacencyList.get(100L);
+        assertEquals(3, batch100.size());
+        assertEquals(Long.valueOf(100L),
+                batch100.get(GradoopIdUtil.fromLong(5)).get(GradoopIdUtil.fromLong(1)).getValidTo());
+        assertSame(batch100, adjacencyList.get(100L));
+        // The rewritten 100 and 200, the old segment of 100 is gone.
+        assertEquals(2, directory.list().length);
+        assertEquals(5, adjacencyList.getEdgeCount());
+
+        adjacencyList.remove(100L);
+        assertFalse(adjacencyList.contains(100L));
+        assertEquals(1, directory.list().length);
+        assertEquals(1, adjacencyList.get(200L).size());
+        assertEquals(1, adjacencyList.getEdgeCount());
+
+        segments.close();
+        assertFalse(directory.exists());
+    }
+
+    @Test
+    public void testSegmentsPurgedDuringCheckpointAreKept() throws Exception {
+        /*
+         * A segment purged after a checkpoint started may still be written by its snapshot, it is only deleted once
+         * that checkpoint completed.
+         */
+        File directory = new File(folder.getRoot(), "segments");
+        SegmentStore segments = new SegmentStore(directory);
+        TieredAdjacencyList adjacencyList = new TieredAdjacencyList(1, new HeapMapState<>(), segments, null);
+        adjacencyList.addEdge(100L, 1, 2);
+        adjacencyList.addEdge(200L, 1, 3);
+        adjacencyList.seal();
+        segments.checkpointStarted(7L);
+        adjacencyList.remove(100L);
+        assertEquals(2, directory.list().length);
+        assertEquals(1, segments.getRetiredCount());
+        segments.checkpointComplete(7L);
+        assertEquals(1, directory.list().length);
+        adjacencyList.remove(200L);
+        assertEquals(0, directory.list().length);
+    }
+
+    @Test
+    public void testServedAndRestoredAsSealedBatches() throws Exception {
+        /*
+         * A segment batch is written like any sealed batch, so queryable state clients read it as an AL batch. Read
+         * back from a checkpoint it is a CompactAdjacencyBatch, which sealRestored() writes to a segment again.
+         */
+        File directory = new File(folder.getRoot(), "segments");
+        SegmentStore segments = new SegmentStore(directory);
+        HeapMapState<Long, SealedAdjacencyBatch> sealedBatches = new HeapMapState<>();
+        TieredAdjacencyList adjacencyList = new TieredAdjacencyList(1, sealedBatches, segments, null);
+        adjacencyList.addEdge(100L, 7, 1);
+        adjacencyList.addEdge(100L, 3, 9);
+        adjacencyList.seal();
+
+        DataOutputSerializer out = new DataOutputSerializer(64);
+        new SealedBatchSerializer().serialize(sealedBatches.get(100L), out);
+        HashMap<GradoopId, HashMap<GradoopId, TemporalEdge>> read = new AdjacencyBatchSerializer().deserialize(
+                new DataInputDeserializer(out.getSharedBuffer(), 0, out.length()));
+        assertEquals(2, read.size());
+        assertTrue(read.get(GradoopIdUtil.fromLong(3)).containsKey(GradoopIdUtil.fromLong(9)));
+
+        HeapMapState<Long, SealedAdjacencyBatch> restoredBatches = new HeapMapState<>();
+        restoredBatches.put(100L, new SealedBatchSerializer().deserialize(
+                new DataInputDeserializer(out.getSharedBuffer(), 0, out.length())));
+        assertTrue(restoredBatches.get(100L) instanceof CompactAdjacencyBatch);
+        File restoredDirectory = new File(folder.getRoot(), "restored");
+        TieredAdjacencyList restored = new TieredAdjacencyList(1, restoredBatches,
+                new SegmentStore(restoredDirectory), null);
+        restored.sealRestored();
+        assertTrue(restoredBatches.get(100L) instanceof TieredAdjacencyList.SegmentBatch);
+        assertEquals(1, restoredDirectory.list().length);
+        assertEquals(2, restored.getEdgeCount());
+    }
+}
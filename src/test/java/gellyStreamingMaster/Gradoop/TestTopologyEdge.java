@@ -0,0 +1,50 @@
+package gellyStreamingMaster.Gradoop;
+
+import gellyStreaming.gradoop.model.SimpleTemporalEdgeStream;
+import gellyStreaming.gradoop.model.TopologyEdge;
+import gellyStreaming.gradoop.util.GradoopIdUtil;
+import org.apache.flink.api.common.ExecutionConfig;
+import org.apache.flink.api.common.typeinfo.TypeInformation;
+import org.apache.flink.api.common.typeutils.TypeSerializer;
+import org.apache.flink.core.memory.DataInputDeserializer;
+import org.apache.flink.core.memory.DataOutputSerializer;
+import org.gradoop.temporal.model.impl.pojo.TemporalEdge;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class TestTopologyEdge {
+
+    @Test
+    public void testPropertiesAreMadeWhenAskedFor() {
+        TopologyEdge edge = new TopologyEdge(3, 9, 100L, Long.MAX_VALUE, 42);
+        assertEquals(GradoopIdUtil.fromLong(3), edge.getSourceId());
+        assertEquals(GradoopIdUtil.fromLong(9), edge.getTargetId());
+        assertEquals(42, edge.getPropertyValue("partitionID").getInt());
+        assertEquals(3L, edge.getPropertyValue("sourceVertexId").getLong());
+        assertEquals(9L, edge.getPropertyValue("targetVertexId").getLong());
+        assertEquals(edge.getId(), edge.getId());
+
+        TemporalEdge reversed = SimpleTemporalEdgeStream.reverseEdge(edge);
+        assertTrue(reversed instanceof TopologyEdge);
+        assertEquals(GradoopIdUtil.fromLong(3), reversed.getTargetId());
+        assertEquals(Long.valueOf(100L), reversed.getValidFrom());
+    }
+
+    @Test
+    public void testSerializesAsTemporalEdge() throws Exception {
+        ExecutionConfig config = new ExecutionConfig();
+        config.registerPojoType(TopologyEdge.class);
+        TypeSerializer<TemporalEdge> serializer = TypeInformation.of(TemporalEdge.class).createSerializer(config);
+
+        DataOutputSerializer out = new DataOutputSerializer(64);
+        serializer.serialize(new TopologyEdge(3, 9, 100L, 200L, 42), out);
+        TemporalEdge read = serializer.deserialize(new DataInputDeserializer(out.getSharedBuffer(), 0, out.length()));
+
+        assertTrue(read instanceof TopologyEdge);
+        assertEquals(42, ((TopologyEdge) read).getPartition());
+        assertEquals(GradoopIdUtil.fromLong(9), read.getTargetId());
+        assertEquals(Long.valueOf(200L), read.getValidTo());
+    }
+}
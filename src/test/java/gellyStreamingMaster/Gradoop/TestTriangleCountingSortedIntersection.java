@@ -0,0 +1,87 @@
+package gellyStreamingMaster.Gradoop;
+
+import gellyStreaming.gradoop.algorithms.TriangleCountingALRetrieveAllState;
+import gellyStreaming.gradoop.algorithms.TriangleCountingALSortedIntersection;
+import gellyStreaming.gradoop.model.CompactAdjacencyList;
+import gellyStreaming.gradoop.model.QueryState;
+import gellyStreaming.gradoop.util.ParallelRange;
+import org.junit.Test;
+
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertTrue;
+
+public class TestTriangleCountingSortedIntersection {
+
+    @Test
+    public void testSameCountAsRetrieveAllState() throws Exception {
+        /*
+         * Random undirected graph with some high degree vertices, spread over three batches. With a single
+         * partition both algorithms count every triangle of the window.
+         */
+        Random random = new Random(42);
+        CompactAdjacencyList state = new CompactAdjacencyList(new HeapMapState<>());
+        for (long validTo = 100; validTo <= 300; validTo += 100) {
+            for (int i = 0; i < 1500; i++) {
+                long src = random.nextInt(10) == 0 ? random.nextInt(5) : random.nextInt(300);
+                long trg = random.nextInt(300);
+                state.addEdge(validTo, src, trg);
+                state.addEdge(validTo, trg, src);
+            }
+        }
+        state.seal();
+        Integer[] keys = {0};
+        QueryState QS = new QueryState();
+
+        String expected = new TriangleCountingALRetrieveAllState().doAlgorithm(state, QS, 0, keys, 0, 300);
+        String actual = new TriangleCountingALSortedIntersection().doAlgorithm(state, QS, 0, keys, 0, 300);
+        assertEquals(expected, actual);
+        assertFalse(actual.contains(" 0 triangles"));
+
+        // Only the first two batches.
+        expected = new TriangleCountingALRetrieveAllState().doAlgorithm(state, QS, 0, keys, 0, 200);
+        actual = new TriangleCountingALSortedIntersection().doAlgorithm(state, QS, 0, keys, 0, 200);
+        assertEquals(expected, actual);
+
+        // Counting with several threads gives the same result.
+        assertEquals(expected, new TriangleCountingALRetrieveAllState(4).doAlgorithm(state, QS, 0, keys, 0, 200));
+        assertEquals(expected, new TriangleCountingALSortedIntersection(4).doAlgorithm(state, QS, 0, keys, 0, 200));
+    }
+
+    @Test
+    public void testPoolsLiveWhileRetained() throws Exception {
+        /*
+         * Two operators retain the pools. Blocking calls on all workers still finish, as the pool adds workers for
+         * them. Once both operators released the pools they are shut down, and the next use starts a new pool.
+         */
+        ParallelRange.retain();
+        ParallelRange.retain();
+        ForkJoinPool pool = ParallelRange.getPool(2);
+        CountDownLatch latch = new CountDownLatch(4);
+        long blocked = ParallelRange.sum(2, 4, (from, to) -> {
+            long done = 0;
+            for (int i = from; i < to; i++) {
+                latch.countDown();
+                try {
+                    done += ParallelRange.block(() -> latch.await(10, TimeUnit.SECONDS) ? 1L : 0L);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            return done;
+        });
+        assertEquals(4, blocked);
+        ParallelRange.release();
+        assertFalse(pool.isShutdown());
+        ParallelRange.release();
+        assertTrue(pool.isShutdown());
+        assertNotSame(pool, ParallelRange.getPool(2));
+        assertEquals(10, ParallelRange.sum(2, 10, (from, to) -> (long) (to - from)));
+    }
+}